@@ -5,6 +5,7 @@ import java.util.List;
 import com.data_management.DataStorage;
 import com.data_management.Patient;
 import com.data_management.PatientRecord;
+import com.data_management.SignalRegistry;
 
 /**
  * The {@code AlertGenerator} class is responsible for monitoring patient data
@@ -41,14 +42,20 @@ public class AlertGenerator {
         List<PatientRecord> records = dataStorage.getRecords(patient.getPatientId(), 1700000000000L, 1800000000000L);
         checkBloodPressure(records, patient);
         for (PatientRecord record : records) {
-            if ("BloodSaturation".equals(record.getRecordType())) {
-                checkBloodSaturation(record, patient);
-            }
-            if ("ECG".equals(record.getRecordType())) {
-                checkECG(record, patient);
-            }
-            if ("BloodLevels".equals(record.getRecordType())){
-                checkBloodLevels(records, patient);
+            switch (record.getSignalCode()) {
+                case SignalRegistry.SATURATION:
+                    checkBloodSaturation(record, patient);
+                    break;
+                case SignalRegistry.ECG:
+                    checkECG(record, patient);
+                    break;
+                case SignalRegistry.CHOLESTEROL:
+                case SignalRegistry.WHITE_BLOOD_CELLS:
+                case SignalRegistry.RED_BLOOD_CELLS:
+                    checkBloodLevels(record, patient);
+                    break;
+                default:
+                    break;
             }
         }
     }
@@ -62,10 +69,10 @@ public class AlertGenerator {
 
         // Iterate through records to find systolic and diastolic pressures
         for (PatientRecord record : records) {
-            if ("SystolicPressure".equals(record.getRecordType())) {
+            if (record.getSignalCode() == SignalRegistry.SYSTOLIC_PRESSURE) {
                 systolic = record.getMeasurementValue();
                 systolicSet = true;
-            } else if ("DiastolicPressure".equals(record.getRecordType())) {
+            } else if (record.getSignalCode() == SignalRegistry.DIASTOLIC_PRESSURE) {
                 diastolic = record.getMeasurementValue();
                 diastolicSet = true;
             }
@@ -97,23 +104,21 @@ public class AlertGenerator {
     }
 
      // Check conditions for blood levels and trigger alerts if needed
-    private void checkBloodLevels(List<PatientRecord> records, Patient patient) {
-        for (PatientRecord record : records) {
-            if ("Cholesterol".equals(record.getRecordType())) {
-                double cholesterol = record.getMeasurementValue();
-                if (cholesterol > 240) { // High cholesterol alert threshold
-                    triggerAlert(new Alert(Integer.toString(patient.getPatientId()), "High Cholesterol", record.getTimestamp()));
-                }
-            } else if ("WhiteBloodCells".equals(record.getRecordType())) {
-                double whiteCells = record.getMeasurementValue();
-                if (whiteCells < 4 || whiteCells > 11) { // Abnormal white blood cells count
-                    triggerAlert(new Alert(Integer.toString(patient.getPatientId()), "Abnormal White Blood Cells Count", record.getTimestamp()));
-                }
-            } else if ("RedBloodCells".equals(record.getRecordType())) {
-                double redCells = record.getMeasurementValue();
-                if (redCells < 4.5 || redCells > 6.0) { // Abnormal red blood cells count
-                    triggerAlert(new Alert(Integer.toString(patient.getPatientId()), "Abnormal Red Blood Cells Count", record.getTimestamp()));
-                }
+    private void checkBloodLevels(PatientRecord record, Patient patient) {
+        if (record.getSignalCode() == SignalRegistry.CHOLESTEROL) {
+            double cholesterol = record.getMeasurementValue();
+            if (cholesterol > 240) { // High cholesterol alert threshold
+                triggerAlert(new Alert(Integer.toString(patient.getPatientId()), "High Cholesterol", record.getTimestamp()));
+            }
+        } else if (record.getSignalCode() == SignalRegistry.WHITE_BLOOD_CELLS) {
+            double whiteCells = record.getMeasurementValue();
+            if (whiteCells < 4 || whiteCells > 11) { // Abnormal white blood cells count
+                triggerAlert(new Alert(Integer.toString(patient.getPatientId()), "Abnormal White Blood Cells Count", record.getTimestamp()));
+            }
+        } else if (record.getSignalCode() == SignalRegistry.RED_BLOOD_CELLS) {
+            double redCells = record.getMeasurementValue();
+            if (redCells < 4.5 || redCells > 6.0) { // Abnormal red blood cells count
+                triggerAlert(new Alert(Integer.toString(patient.getPatientId()), "Abnormal Red Blood Cells Count", record.getTimestamp()));
             }
         }
     }
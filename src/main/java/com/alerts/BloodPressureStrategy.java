@@ -1,9 +1,8 @@
 package com.alerts;
 
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
+import com.data_management.SignalRegistry;
+import com.data_management.TimeSeries;
 
 public class BloodPressureStrategy implements AlertStrategy {
     private AlertFactory alertFactory;
@@ -16,11 +15,10 @@ public class BloodPressureStrategy implements AlertStrategy {
     public void checkAlert(Patient patient) {
         long currentTime = System.currentTimeMillis();
         long oneDayMillis = 24 * 60 * 60 * 1000;
-        List<PatientRecord> records = patient.getRecords(currentTime - oneDayMillis, currentTime);
-
-        for (PatientRecord record : records) {
-            if ("SystolicPressure".equals(record.getRecordType()) || "DiastolicPressure".equals(record.getRecordType())) {
-                double value = record.getMeasurementValue();
+        for (int signalCode : new int[] {SignalRegistry.SYSTOLIC_PRESSURE, SignalRegistry.DIASTOLIC_PRESSURE}) {
+            TimeSeries.View records = patient.getRecords(signalCode, currentTime - oneDayMillis, currentTime);
+            for (int i = 0; i < records.size(); i++) {
+                double value = records.value(i);
                 if (value > 180 || value < 90) {
                     Alert alert = alertFactory.createAlert(String.valueOf(patient.getPatientId()), "Critical Blood Pressure");
                     alert.alertAction();
@@ -1,9 +1,8 @@
 package com.alerts;
 
 import com.data_management.Patient;
-import com.data_management.PatientRecord;
-
-import java.util.List;
+import com.data_management.SignalRegistry;
+import com.data_management.TimeSeries;
 
 public class HeartRateStrategy implements AlertStrategy {
     private AlertFactory alertFactory;
@@ -16,15 +15,13 @@ public class HeartRateStrategy implements AlertStrategy {
     public void checkAlert(Patient patient) {
         long currentTime = System.currentTimeMillis();
         long oneDayMillis = 24 * 60 * 60 * 1000;
-        List<PatientRecord> records = patient.getRecords(currentTime - oneDayMillis, currentTime);
+        TimeSeries.View records = patient.getRecords(SignalRegistry.HEART_RATE, currentTime - oneDayMillis, currentTime);
 
-        for (PatientRecord record : records) {
-            if ("HeartRate".equals(record.getRecordType())) {
-                double value = record.getMeasurementValue();
-                if (value < 50 || value > 100) {
-                    Alert alert = alertFactory.createAlert(String.valueOf(patient.getPatientId()), "Abnormal Heart Rate");
-                    alert.alertAction();
-                }
+        for (int i = 0; i < records.size(); i++) {
+            double value = records.value(i);
+            if (value < 50 || value > 100) {
+                Alert alert = alertFactory.createAlert(String.valueOf(patient.getPatientId()), "Abnormal Heart Rate");
+                alert.alertAction();
             }
         }
     }
@@ -0,0 +1,231 @@
+package com.cardio_generator;
+
+import com.cardio_generator.generators.AlertGenerator;
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.BloodSaturationDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.generators.PatientRandom;
+import com.cardio_generator.outputs.AdaptiveDeflateExtension;
+import com.cardio_generator.outputs.BinaryWireFormat;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SampleEncoder;
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.DataFrame;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@code CompressionBenchmark} class measures what WebSocket compression costs and saves for simulator data.
+ * It generates the frames that {@link WebSocketOutputStrategy} would send for a run, in the text and the binary
+ * format, and deflates them with a range of levels and thresholds. For each setting it reports the bytes on the wire
+ * per sample and the CPU time per sample spent compressing on the server and inflating on the client, so that a
+ * deployment can pick its {@code --ws-compress} settings.
+ * <p>
+ * Frames are cut at every generator tick, as the linger interval of a live server would, or when they reach the
+ * frame size. Run it with {@code java -cp <jar> com.cardio_generator.CompressionBenchmark [options]}.
+ */
+public class CompressionBenchmark {
+
+    private static final int[] LEVELS = { 1, 6, 9 };
+    private static final int[] THRESHOLDS = { 0, 512, 4096 };
+    private static final int ROUNDS = 3; // The last round is reported, the others warm up the JIT
+
+    private final List<byte[]> textFrames = new ArrayList<>();
+    private final List<byte[]> binaryFrames = new ArrayList<>();
+    private long samples;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args {@code --patient-count <count>}, {@code --minutes <minutes>}, {@code --frame-bytes <bytes>} and
+     *             {@code --seed <number>}
+     */
+    public static void main(String[] args) {
+        int patientCount = 50;
+        int minutes = 10;
+        int frameBytes = WebSocketOutputStrategy.DEFAULT_FRAME_BYTES;
+        long seed = 42;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            try {
+                switch (args[i]) {
+                    case "--patient-count":
+                        patientCount = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--minutes":
+                        minutes = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--frame-bytes":
+                        frameBytes = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[i + 1]);
+                        break;
+                    default:
+                        System.err.println("Unknown option '" + args[i] + "'");
+                        System.exit(1);
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid value for " + args[i] + ": " + args[i + 1]);
+                System.exit(1);
+            }
+        }
+
+        CompressionBenchmark benchmark = new CompressionBenchmark();
+        benchmark.generate(patientCount, minutes * 60, frameBytes, seed);
+        System.out.printf("%d patients, %d minutes: %d samples in %d text and %d binary frames%n", patientCount,
+                minutes, benchmark.samples, benchmark.textFrames.size(), benchmark.binaryFrames.size());
+        System.out.printf("%-7s %-6s %10s %13s %7s %18s %18s%n", "format", "level", "threshold", "bytes/sample",
+                "ratio", "deflate ns/sample", "inflate ns/sample");
+        benchmark.report("text", benchmark.textFrames);
+        benchmark.report("binary", benchmark.binaryFrames);
+    }
+
+    /**
+     * Generates the frames of a run, one simulated second at a time.
+     *
+     * @param patientCount The number of patients
+     * @param seconds      The length of the run in seconds
+     * @param frameBytes   The size at which a frame is sent
+     * @param seed         The seed of the generators
+     */
+    private void generate(int patientCount, int seconds, int frameBytes, long seed) {
+        int[] patientIds = new int[patientCount];
+        for (int i = 0; i < patientCount; i++) {
+            patientIds[i] = i + 1;
+        }
+        // Generators and periods in seconds, as scheduled by HealthDataSimulator
+        PatientDataGenerator[] generators = {
+            new ECGDataGenerator(1, patientCount, seed),
+            new BloodSaturationDataGenerator(1, patientCount, seed),
+            new BloodPressureDataGenerator(1, patientCount, seed),
+            new BloodLevelsDataGenerator(1, patientCount, seed),
+            new AlertGenerator(1, patientCount, seed)
+        };
+        int[] periods = { 1, 1, 60, 120, 20 };
+
+        SampleBatch batch = new SampleBatch(patientCount);
+        SampleEncoder text = new SampleEncoder(frameBytes + 256);
+        ByteBuffer binary = ByteBuffer.allocate(frameBytes + BinaryWireFormat.RECORD_HEADER_BYTES
+                + BinaryWireFormat.RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long start = 1_700_000_000_000L;
+        for (int second = 0; second < seconds; second++) {
+            long timestamp = start + second * 1000L;
+            for (int g = 0; g < generators.length; g++) {
+                if (second % periods[g] != 0) {
+                    continue;
+                }
+                batch.clear();
+                generators[g].generateBatch(patientIds, 0, patientCount, timestamp, batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    if (!text.isEmpty()) {
+                        text.appendByte('\n');
+                    }
+                    text.appendCsv(batch.patientId(i), batch.timestamp(i), batch.signalCode(i), batch.value(i));
+                    if (text.size() >= frameBytes) {
+                        cutText(text);
+                    }
+                    if (binary.position() == 0) {
+                        BinaryWireFormat.startRecordFrame(binary, batch.timestamp(i));
+                    }
+                    BinaryWireFormat.putRecord(binary, batch.patientId(i), batch.signalCode(i), batch.timestamp(i),
+                            batch.value(i));
+                    if (binary.position() >= frameBytes) {
+                        cutBinary(binary);
+                    }
+                }
+                samples += batch.size();
+            }
+            // The linger interval is far shorter than a tick, so a live server sends what is left every tick
+            cutText(text);
+            cutBinary(binary);
+        }
+    }
+
+    private void cutText(SampleEncoder text) {
+        if (!text.isEmpty()) {
+            textFrames.add(Arrays.copyOf(text.array(), text.size()));
+            text.clear();
+        }
+    }
+
+    private void cutBinary(ByteBuffer binary) {
+        if (binary.position() > 0) {
+            binaryFrames.add(Arrays.copyOf(binary.array(), binary.position()));
+            binary.clear();
+        }
+    }
+
+    /**
+     * Prints one line per compression setting for a list of frames.
+     *
+     * @param format The name of the format
+     * @param frames The frames to send
+     */
+    private void report(String format, List<byte[]> frames) {
+        long rawBytes = 0;
+        for (byte[] frame : frames) {
+            rawBytes += wireBytes(frame.length);
+        }
+        System.out.printf("%-7s %-6s %10s %13.2f %7.2f %18s %18s%n", format, "raw", "-", rawBytes / (double) samples,
+                1.0, "-", "-");
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (int level : LEVELS) {
+            for (int threshold : THRESHOLDS) {
+                long bytes = 0;
+                long deflateNanos = 0;
+                long inflateNanos = 0;
+                for (int round = 0; round < ROUNDS; round++) {
+                    AdaptiveDeflateExtension server = new AdaptiveDeflateExtension(threshold, level);
+                    List<DataFrame> sent = new ArrayList<>(frames.size());
+                    bytes = 0;
+                    long cpuStart = threads.getCurrentThreadCpuTime();
+                    for (byte[] frame : frames) {
+                        BinaryFrame data = new BinaryFrame();
+                        data.setPayload(ByteBuffer.wrap(frame));
+                        server.encodeFrame(data);
+                        bytes += wireBytes(data.getPayloadData().remaining());
+                        sent.add(data);
+                    }
+                    deflateNanos = threads.getCurrentThreadCpuTime() - cpuStart;
+
+                    AdaptiveDeflateExtension client = new AdaptiveDeflateExtension(threshold, level);
+                    cpuStart = threads.getCurrentThreadCpuTime();
+                    try {
+                        for (DataFrame data : sent) {
+                            client.decodeFrame(data);
+                        }
+                    } catch (InvalidDataException e) {
+                        System.err.println("Cannot inflate a " + format + " frame: " + e.getMessage());
+                        return;
+                    }
+                    inflateNanos = threads.getCurrentThreadCpuTime() - cpuStart;
+                }
+                System.out.printf("%-7s %-6d %10d %13.2f %7.2f %18.1f %18.1f%n", format, level, threshold,
+                        bytes / (double) samples, rawBytes / (double) bytes, deflateNanos / (double) samples,
+                        inflateNanos / (double) samples);
+            }
+        }
+    }
+
+    /**
+     * Returns the size of an unmasked server frame with the given payload, header included.
+     *
+     * @param payloadBytes The size of the payload
+     * @return the bytes on the wire
+     */
+    private static long wireBytes(int payloadBytes) {
+        int header = payloadBytes < 126 ? 2 : payloadBytes <= 0xFFFF ? 4 : 10;
+        return header + (long) payloadBytes;
+    }
+}
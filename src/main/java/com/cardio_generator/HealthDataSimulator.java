@@ -1,7 +1,5 @@
 package com.cardio_generator;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import com.cardio_generator.generators.AlertGenerator;
@@ -9,16 +7,34 @@ import com.cardio_generator.generators.BloodLevelsDataGenerator;
 import com.cardio_generator.generators.BloodPressureDataGenerator;
 import com.cardio_generator.generators.BloodSaturationDataGenerator;
 import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.generators.PatientRandom;
+import com.cardio_generator.outputs.AdaptiveDeflateExtension;
+import com.cardio_generator.outputs.ArchiveOutputStrategy;
 import com.cardio_generator.outputs.ConsoleOutputStrategy;
+import com.cardio_generator.outputs.DataStorageOutputStrategy;
 import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.MappedSegmentOutputStrategy;
+import com.cardio_generator.outputs.MulticastOutputStrategy;
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.ReplayLogOutputStrategy;
+import com.cardio_generator.outputs.SegmentLog;
 import com.cardio_generator.outputs.TcpOutputStrategy;
 import com.cardio_generator.outputs.WebSocketOutputStrategy;
+import com.cardio_generator.scheduling.GeneratorBatchTask;
+import com.cardio_generator.scheduling.SimulationClock;
+import com.cardio_generator.scheduling.TickScheduler;
+import com.cardio_generator.scheduling.VirtualClock;
+import com.cardio_generator.scheduling.WallClock;
+import com.data_management.DataStorage;
+import com.data_management.StorageBackend;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -32,10 +48,40 @@ import java.util.ArrayList;
 public class HealthDataSimulator {
 
     private static HealthDataSimulator instance; // Singleton instance
+    private static final long TICK_MILLIS = 100; // Scheduling resolution of the timing wheel
+    private static final int WHEEL_SIZE = 1024; // Buckets in the timing wheel, about 100 seconds per revolution
+    private static final int MAX_INITIAL_DELAY_SECONDS = 5; // Initial delays are spread over [0, 5) seconds
+
     private static int patientCount = 50; // Default number of patients
-    private static ScheduledExecutorService scheduler;
+    private static int threadCount = Runtime.getRuntime().availableProcessors(); // Default number of worker threads
+    private static TickScheduler scheduler;
     private static OutputStrategy outputStrategy = new ConsoleOutputStrategy(); // Default output strategy
-    private static final Random random = new Random();
+    private static boolean outputConfigured = false; // Whether --output was given
+    private static boolean virtualTime = false; // Run on simulated instead of wall-clock time
+    private static double speed = 0; // Multiple of real time for virtual time, 0 = as fast as possible
+    private static long startTime = -1; // Simulated start time, -1 = now
+    private static long durationMillis = -1; // Length of the run, -1 = run until stopped
+    private static long seed = PatientRandom.newSeed(); // Seed of all random streams, see --seed
+    private static boolean storageOutput = false; // Whether records go to the in-process DataStorage
+    private static boolean offHeapStorage = false; // Store the records off the Java heap, see storage:off-heap
+    private static String fileOutputDirectory; // Directory of the file output, null if not writing files
+    private static int flushBytes = FileOutputStrategy.DEFAULT_FLUSH_BYTES; // Buffer size per output file
+    private static long flushIntervalMillis = FileOutputStrategy.DEFAULT_FLUSH_INTERVAL_MILLIS; // Write-out interval
+    private static boolean fsync = false; // Force file output to the storage device on every write-out
+    private static String archiveFile; // File of the compressed archive output, null if not archiving
+    private static String segmentDirectory; // Directory of the segment log output, null if not writing segments
+    private static int segmentBytes = SegmentLog.DEFAULT_SEGMENT_BYTES; // Size of each segment file
+    private static int replayPort = -1; // Port of the replayable log output, -1 if not serving a log
+    private static String replayDirectory = "replay-log"; // Directory of the replayable log
+    private static int tcpPort = -1; // Port of the TCP output, -1 if not serving TCP
+    private static int tcpQueueChunks = TcpOutputStrategy.DEFAULT_QUEUE_CHUNKS; // Queue size per TCP client
+    private static TcpOutputStrategy.OverflowPolicy tcpOverflow = TcpOutputStrategy.OverflowPolicy.DROP_OLDEST;
+    private static String multicastGroup; // Group of the multicast output, null if not publishing to a group
+    private static int multicastPort = -1; // UDP port of the multicast output
+    private static String multicastInterface; // Name of the interface to publish on, null = default
+    private static int websocketPort = -1; // Port of the WebSocket output, -1 if not serving WebSocket clients
+    private static int websocketCompressBytes = -1; // Smallest WebSocket frame that is compressed, -1 = never
+    private static int websocketCompressLevel = AdaptiveDeflateExtension.DEFAULT_LEVEL; // Deflate level, 1 to 9
 
     /**
      * Private constructor to prevent instantiation.
@@ -65,13 +111,106 @@ public class HealthDataSimulator {
         HealthDataSimulator simulator = HealthDataSimulator.getInstance();
         simulator.parseArguments(args);
 
-        HealthDataSimulator.outputStrategy = new WebSocketOutputStrategy(8080);
-        scheduler = Executors.newScheduledThreadPool(patientCount * 4);
+        if (!outputConfigured) {
+            HealthDataSimulator.outputStrategy = createWebSocketOutput(8080);
+        } else if (websocketPort >= 0) {
+            outputStrategy = createWebSocketOutput(websocketPort);
+        } else if (storageOutput) {
+            // The backend is switched after parsing, so a later --output leaves the storage untouched
+            if (offHeapStorage) {
+                DataStorage.getInstance().setStorageBackend(StorageBackend.OFF_HEAP);
+            }
+            outputStrategy = new DataStorageOutputStrategy(DataStorage.getInstance());
+        } else if (fileOutputDirectory != null) {
+            // Created after parsing so that the flush options may follow --output
+            outputStrategy = new FileOutputStrategy(fileOutputDirectory, flushBytes, flushIntervalMillis, fsync);
+        } else if (archiveFile != null) {
+            outputStrategy = new ArchiveOutputStrategy(archiveFile);
+        } else if (segmentDirectory != null) {
+            outputStrategy = new MappedSegmentOutputStrategy(segmentDirectory, segmentBytes);
+        } else if (replayPort >= 0) {
+            outputStrategy = new ReplayLogOutputStrategy(replayDirectory, replayPort, segmentBytes);
+        } else if (tcpPort >= 0) {
+            outputStrategy = new TcpOutputStrategy(tcpPort, tcpQueueChunks, tcpOverflow);
+        } else if (multicastGroup != null) {
+            NetworkInterface networkInterface = multicastInterface != null
+                    ? NetworkInterface.getByName(multicastInterface)
+                    : MulticastOutputStrategy.defaultInterface();
+            if (networkInterface == null) {
+                System.err.println("Unknown network interface: " + multicastInterface);
+                System.exit(1);
+            }
+            outputStrategy = new MulticastOutputStrategy(InetAddress.getByName(multicastGroup), multicastPort,
+                    networkInterface, MulticastOutputStrategy.DEFAULT_DATAGRAM_BYTES, 1);
+        }
+        // Buffered outputs are written out when the run ends, including on Ctrl+C
+        final OutputStrategy output = outputStrategy;
+        Runtime.getRuntime().addShutdownHook(new Thread(output::close, "output-close"));
+        SimulationClock clock = virtualTime
+                ? new VirtualClock(startTime >= 0 ? startTime : System.currentTimeMillis(), speed)
+                : new WallClock();
+        scheduler = new TickScheduler(threadCount, TICK_MILLIS, WHEEL_SIZE, clock);
 
+        System.out.println("Simulation seed: " + seed + " (pass --seed " + seed + " to replay this run)");
         List<Integer> patientIds = simulator.initializePatientIds(patientCount);
-        Collections.shuffle(patientIds); // Randomize the order of patient IDs
+        Collections.shuffle(patientIds, new Random(seed)); // Randomize the order of patient IDs
 
         simulator.scheduleTasksForPatients(patientIds);
+        if (durationMillis >= 0) {
+            scheduler.stopAt(clock.currentTimeMillis() + durationMillis);
+        }
+        long wallStart = System.currentTimeMillis();
+        scheduler.start();
+        if (durationMillis >= 0) {
+            awaitCompletion(wallStart);
+        }
+    }
+
+    /**
+     * Creates the WebSocket output, with compression if --ws-compress was given.
+     * 
+     * @param port The port on which the server listens for connections
+     * @return the WebSocket output
+     */
+    private static WebSocketOutputStrategy createWebSocketOutput(int port) {
+        AdaptiveDeflateExtension compression = null;
+        if (websocketCompressBytes >= 0) {
+            compression = new AdaptiveDeflateExtension(websocketCompressBytes, websocketCompressLevel);
+            System.out.println("WebSocket frames of " + websocketCompressBytes + " bytes and more are compressed at level "
+                    + websocketCompressLevel);
+        }
+        return new WebSocketOutputStrategy(port, WebSocketOutputStrategy.DEFAULT_FRAME_BYTES,
+                WebSocketOutputStrategy.DEFAULT_LINGER_MILLIS, compression);
+    }
+
+    /**
+     * Waits for a run with a fixed duration to finish, prints a summary and exits.
+     * 
+     * @param wallStart The wall-clock time at which the run was started
+     */
+    private static void awaitCompletion(long wallStart) {
+        try {
+            scheduler.awaitTermination();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long wallMillis = Math.max(1, System.currentTimeMillis() - wallStart);
+        System.out.printf("Simulated %d ms of data for %d patients in %d ms (%.1fx real time)%n",
+                durationMillis, patientCount, wallMillis, durationMillis / (double) wallMillis);
+        if (outputStrategy instanceof DataStorageOutputStrategy) {
+            long records = ((DataStorageOutputStrategy) outputStrategy).getRecordCount();
+            System.out.printf("Stored %d records (%.0f records/s)%n", records, records * 1000.0 / wallMillis);
+        }
+        if (outputStrategy instanceof TcpOutputStrategy) {
+            System.out.printf("Dropped %d chunks for slow TCP clients%n",
+                    ((TcpOutputStrategy) outputStrategy).getDroppedChunks());
+        }
+        if (outputStrategy instanceof MulticastOutputStrategy) {
+            System.out.printf("Sent %d multicast datagrams%n",
+                    ((MulticastOutputStrategy) outputStrategy).getSentDatagrams());
+        }
+        System.exit(0);
     }
 
     /**
@@ -96,36 +235,212 @@ public class HealthDataSimulator {
                         }
                     }
                     break;
+                case "--threads":
+                    if (i + 1 < args.length) {
+                        try {
+                            threadCount = Math.max(1, Integer.parseInt(args[++i]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid number of threads. Using default value: " + threadCount);
+                        }
+                    }
+                    break;
+                case "--seed":
+                    if (i + 1 < args.length) {
+                        try {
+                            seed = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid seed. Using random seed: " + seed);
+                        }
+                    }
+                    break;
+                case "--clock":
+                    if (i + 1 < args.length) {
+                        String clockArg = args[++i];
+                        if (clockArg.equals("wall") || clockArg.equals("virtual")) {
+                            virtualTime = clockArg.equals("virtual");
+                        } else {
+                            System.err.println("Unknown clock type. Using wall-clock time.");
+                        }
+                    }
+                    break;
+                case "--speed":
+                    if (i + 1 < args.length) {
+                        try {
+                            speed = Math.max(0, Double.parseDouble(args[++i]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid speed. Running as fast as possible.");
+                        }
+                    }
+                    break;
+                case "--start-time":
+                    if (i + 1 < args.length) {
+                        try {
+                            startTime = Long.parseLong(args[++i]);
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid start time. Starting at the current time.");
+                        }
+                    }
+                    break;
+                case "--duration":
+                    if (i + 1 < args.length) {
+                        durationMillis = parseDuration(args[++i]);
+                        if (durationMillis < 0) {
+                            System.err.println("Error: Invalid duration. Running until stopped.");
+                        }
+                    }
+                    break;
+                case "--flush-bytes":
+                    if (i + 1 < args.length) {
+                        try {
+                            flushBytes = Math.max(1, Integer.parseInt(args[++i]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid flush size. Using default value: " + flushBytes);
+                        }
+                    }
+                    break;
+                case "--flush-interval":
+                    if (i + 1 < args.length) {
+                        long interval = parseDuration(args[++i]);
+                        if (interval < 0) {
+                            System.err.println("Error: Invalid flush interval. Using default value: " + flushIntervalMillis);
+                        } else {
+                            flushIntervalMillis = interval;
+                        }
+                    }
+                    break;
+                case "--segment-bytes":
+                    if (i + 1 < args.length) {
+                        try {
+                            int bytes = Integer.parseInt(args[++i]);
+                            if (bytes < SegmentLog.MIN_SEGMENT_BYTES) {
+                                System.err.println("Error: Segment size must be at least " + SegmentLog.MIN_SEGMENT_BYTES
+                                        + " bytes. Using default value: " + segmentBytes);
+                            } else {
+                                segmentBytes = bytes;
+                            }
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid segment size. Using default value: " + segmentBytes);
+                        }
+                    }
+                    break;
+                case "--replay-dir":
+                    if (i + 1 < args.length) {
+                        replayDirectory = args[++i];
+                    }
+                    break;
+                case "--tcp-queue":
+                    if (i + 1 < args.length) {
+                        try {
+                            tcpQueueChunks = Math.max(1, Integer.parseInt(args[++i]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid TCP queue size. Using default value: " + tcpQueueChunks);
+                        }
+                    }
+                    break;
+                case "--tcp-overflow":
+                    if (i + 1 < args.length) {
+                        String policyArg = args[++i];
+                        if (policyArg.equals("drop-oldest")) {
+                            tcpOverflow = TcpOutputStrategy.OverflowPolicy.DROP_OLDEST;
+                        } else if (policyArg.equals("disconnect")) {
+                            tcpOverflow = TcpOutputStrategy.OverflowPolicy.DISCONNECT;
+                        } else {
+                            System.err.println("Unknown TCP overflow policy. Dropping the oldest data.");
+                        }
+                    }
+                    break;
+                case "--multicast-interface":
+                    if (i + 1 < args.length) {
+                        multicastInterface = args[++i];
+                    }
+                    break;
+                case "--ws-compress":
+                    if (i + 1 < args.length) {
+                        try {
+                            websocketCompressBytes = Math.max(0, Integer.parseInt(args[++i]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid compression threshold. WebSocket frames are not compressed.");
+                        }
+                    }
+                    break;
+                case "--ws-compress-level":
+                    if (i + 1 < args.length) {
+                        try {
+                            websocketCompressLevel = Math.max(1, Math.min(9, Integer.parseInt(args[++i])));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Error: Invalid compression level. Using default value: "
+                                    + websocketCompressLevel);
+                        }
+                    }
+                    break;
+                case "--fsync":
+                    fsync = true;
+                    break;
                 case "--output":
                     if (i + 1 < args.length) {
                         String outputArg = args[++i];
+                        outputConfigured = true;
+                        storageOutput = false;
+                        offHeapStorage = false;
+                        fileOutputDirectory = null;
+                        archiveFile = null;
+                        segmentDirectory = null;
+                        replayPort = -1;
+                        tcpPort = -1;
+                        websocketPort = -1;
+                        multicastGroup = null;
                         if (outputArg.equals("console")) {
                             outputStrategy = new ConsoleOutputStrategy();
+                        } else if (outputArg.equals("storage") || outputArg.equals("storage:off-heap")) {
+                            storageOutput = true;
+                            offHeapStorage = outputArg.endsWith(":off-heap");
                         } else if (outputArg.startsWith("file:")) {
                             String baseDirectory = outputArg.substring(5);
                             Path outputPath = Paths.get(baseDirectory);
                             if (!Files.exists(outputPath)) {
                                 Files.createDirectories(outputPath);
                             }
-                            outputStrategy = new FileOutputStrategy(baseDirectory);
+                            fileOutputDirectory = baseDirectory;
+                        } else if (outputArg.startsWith("archive:")) {
+                            archiveFile = outputArg.substring(8);
+                        } else if (outputArg.startsWith("segments:")) {
+                            segmentDirectory = outputArg.substring(9);
                         } else if (outputArg.startsWith("websocket:")) {
                             try {
                                 int port = Integer.parseInt(outputArg.substring(10));
-                                outputStrategy = new WebSocketOutputStrategy(port);
+                                websocketPort = port;
                                 System.out.println("WebSocket output will be on port: " + port);
                             } catch (NumberFormatException e) {
                                 System.err.println("Invalid port for WebSocket output. Please specify a valid port number.");
                             }
+                        } else if (outputArg.startsWith("replay:")) {
+                            try {
+                                replayPort = Integer.parseInt(outputArg.substring(7));
+                                System.out.println("Replayable log output will be served on port: " + replayPort);
+                            } catch (NumberFormatException e) {
+                                System.err.println("Invalid port for replay output. Please specify a valid port number.");
+                            }
                         } else if (outputArg.startsWith("tcp:")) {
                             try {
                                 int port = Integer.parseInt(outputArg.substring(4));
-                                outputStrategy = new TcpOutputStrategy(port);
+                                tcpPort = port;
                                 System.out.println("TCP socket output will be on port: " + port);
                             } catch (NumberFormatException e) {
                                 System.err.println("Invalid port for TCP output. Please specify a valid port number.");
                             }
+                        } else if (outputArg.startsWith("multicast:")) {
+                            String address = outputArg.substring(10);
+                            int colon = address.lastIndexOf(':');
+                            try {
+                                multicastPort = Integer.parseInt(address.substring(colon + 1));
+                                multicastGroup = address.substring(0, Math.max(0, colon));
+                                System.out.println("Multicast output will be sent to " + address);
+                            } catch (NumberFormatException e) {
+                                System.err.println("Invalid multicast output. Please specify it as multicast:<group>:<port>.");
+                            }
                         } else {
                             System.err.println("Unknown output type. Using default (console).");
+                            outputStrategy = new ConsoleOutputStrategy();
                         }
                     }
                     break;
@@ -137,6 +452,42 @@ public class HealthDataSimulator {
         }
     }
 
+    /**
+     * Parses a duration such as "90s", "30m", "24h" or "2d". A plain number is taken as milliseconds.
+     * 
+     * @param value The duration to parse
+     * @return the duration in milliseconds, or -1 if the value is invalid
+     */
+    private static long parseDuration(String value) {
+        if (value.isEmpty()) {
+            return -1;
+        }
+        TimeUnit unit;
+        switch (value.charAt(value.length() - 1)) {
+            case 's':
+                unit = TimeUnit.SECONDS;
+                break;
+            case 'm':
+                unit = TimeUnit.MINUTES;
+                break;
+            case 'h':
+                unit = TimeUnit.HOURS;
+                break;
+            case 'd':
+                unit = TimeUnit.DAYS;
+                break;
+            default:
+                unit = TimeUnit.MILLISECONDS;
+        }
+        String amount = unit == TimeUnit.MILLISECONDS ? value : value.substring(0, value.length() - 1);
+        try {
+            long parsed = Long.parseLong(amount);
+            return parsed < 0 ? -1 : unit.toMillis(parsed);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     /**
      * Prints help information to the console.
      */
@@ -146,15 +497,41 @@ public class HealthDataSimulator {
         System.out.println("  -h                       Show help and exit.");
         System.out.println(
                 "  --patient-count <count>  Specify the number of patients to simulate data for (default: 50).");
+        System.out.println(
+                "  --threads <count>        Specify the number of worker threads, each owning a shard of patients (default: number of processors).");
         System.out.println("  --output <type>          Define the output method. Options are:");
         System.out.println("                             'console' for console output,");
+        System.out.println("                             'storage' to feed an in-process DataStorage directly,");
+        System.out.println("                             'storage:off-heap' to do so with the samples kept outside the heap,");
         System.out.println("                             'file:<directory>' for file output,");
+        System.out.println("                             'archive:<file>' for a compressed time-series archive,");
+        System.out.println("                             'segments:<directory>' for a binary, memory-mapped segment log,");
+        System.out.println("                             'replay:<port>' for a segment log that consumers can replay from any offset,");
         System.out.println("                             'websocket:<port>' for WebSocket output,");
-        System.out.println("                             'tcp:<port>' for TCP socket output.");
+        System.out.println("                             'tcp:<port>' for TCP socket output,");
+        System.out.println("                             'multicast:<group>:<port>' to publish UDP datagrams to a multicast group.");
+        System.out.println("  --flush-bytes <bytes>    Buffer size per output file; a full buffer is written out at once (default: 1048576).");
+        System.out.println("  --flush-interval <length> Write out partially filled file buffers this often, 0 = only when full (default: 1000).");
+        System.out.println("  --segment-bytes <bytes>  Size of each segment file of the segment log (default: 67108864).");
+        System.out.println("  --replay-dir <directory> Directory of the log of the replay output (default: replay-log).");
+        System.out.println("  --tcp-queue <chunks>     Chunks of samples that can be queued per TCP client (default: 1024).");
+        System.out.println("  --tcp-overflow <policy>  'drop-oldest' (default) or 'disconnect' a TCP client whose queue is full.");
+        System.out.println("  --multicast-interface <name> Network interface for multicast output, e.g. lo (default: first multicast interface).");
+        System.out.println("  --ws-compress <bytes>    Deflate WebSocket frames of at least this size for clients that support it (default: off).");
+        System.out.println("  --ws-compress-level <n>  Deflate level of WebSocket compression, 1 (fastest) to 9 (smallest) (default: 1).");
+        System.out.println("  --fsync                  Force file output to the storage device on every write-out.");
+        System.out.println("  --seed <number>          Seed all random streams so that runs can be replayed exactly (default: random).");
+        System.out.println("  --clock <wall|virtual>   Run on wall-clock time (default) or on simulated time.");
+        System.out.println("  --speed <multiplier>     Pace virtual time at this multiple of real time (default: 0, as fast as possible).");
+        System.out.println("  --start-time <millis>    Simulated start time in milliseconds since the epoch (default: now).");
+        System.out.println("  --duration <length>      Stop after this much time, e.g. 90s, 30m, 24h or 2d (default: run until stopped).");
         System.out.println("Example:");
         System.out.println("  java HealthDataSimulator --patient-count 100 --output websocket:8080");
         System.out.println(
                 "  This command simulates data for 100 patients and sends the output to WebSocket clients connected to port 8080.");
+        System.out.println("  java HealthDataSimulator --patient-count 1000 --clock virtual --duration 24h --output file:./backfill");
+        System.out.println(
+                "  This command generates a day of data for 1000 patients as fast as possible and writes it to ./backfill.");
     }
 
     /**
@@ -173,33 +550,77 @@ public class HealthDataSimulator {
 
     /**
      * Schedules the simulation tasks for all patients.
+     * Patient IDs are split into contiguous ranges, one per worker thread of the scheduler. Each range
+     * (shard) owns its own generator instances, and is only ever run by its own worker, so generator
+     * state is never shared between threads. Every patient/generator pair draws from its own random
+     * stream derived from the run seed, so the generated data does not depend on the number of shards.
      * 
      * @param patientIds List of patient IDs for whom to schedule tasks
      */
     private void scheduleTasksForPatients(List<Integer> patientIds) {
-        ECGDataGenerator ecgDataGenerator = new ECGDataGenerator(patientCount);
-        BloodSaturationDataGenerator bloodSaturationDataGenerator = new BloodSaturationDataGenerator(patientCount);
-        BloodPressureDataGenerator bloodPressureDataGenerator = new BloodPressureDataGenerator(patientCount);
-        BloodLevelsDataGenerator bloodLevelsDataGenerator = new BloodLevelsDataGenerator(patientCount);
-        AlertGenerator alertGenerator = new AlertGenerator(patientCount);
+        int shardCount = Math.max(1, Math.min(scheduler.getLaneCount(), patientCount));
+        int shardSize = (patientCount + shardCount - 1) / shardCount;
 
+        List<List<Integer>> shards = new ArrayList<>();
+        for (int shard = 0; shard < shardCount; shard++) {
+            shards.add(new ArrayList<>());
+        }
         for (int patientId : patientIds) {
-            scheduleTask(() -> ecgDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodSaturationDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.SECONDS);
-            scheduleTask(() -> bloodPressureDataGenerator.generate(patientId, outputStrategy), 1, TimeUnit.MINUTES);
-            scheduleTask(() -> bloodLevelsDataGenerator.generate(patientId, outputStrategy), 2, TimeUnit.MINUTES);
-            scheduleTask(() -> alertGenerator.generate(patientId, outputStrategy), 20, TimeUnit.SECONDS);
+            shards.get((patientId - 1) / shardSize).add(patientId);
+        }
+
+        for (int shard = 0; shard < shardCount; shard++) {
+            List<Integer> shardPatients = shards.get(shard);
+            if (shardPatients.isEmpty()) {
+                continue;
+            }
+            int firstPatientId = shard * shardSize + 1;
+            int lastPatientId = Math.min(patientCount, firstPatientId + shardSize - 1);
+
+            scheduleTask(new ECGDataGenerator(firstPatientId, lastPatientId, seed),
+                    PatientRandom.ECG_STREAM, shardPatients, shard, 1, TimeUnit.SECONDS);
+            scheduleTask(new BloodSaturationDataGenerator(firstPatientId, lastPatientId, seed),
+                    PatientRandom.SATURATION_STREAM, shardPatients, shard, 1, TimeUnit.SECONDS);
+            scheduleTask(new BloodPressureDataGenerator(firstPatientId, lastPatientId, seed),
+                    PatientRandom.BLOOD_PRESSURE_STREAM, shardPatients, shard, 1, TimeUnit.MINUTES);
+            scheduleTask(new BloodLevelsDataGenerator(firstPatientId, lastPatientId, seed),
+                    PatientRandom.BLOOD_LEVELS_STREAM, shardPatients, shard, 2, TimeUnit.MINUTES);
+            scheduleTask(new AlertGenerator(firstPatientId, lastPatientId, seed),
+                    PatientRandom.ALERT_STREAM, shardPatients, shard, 20, TimeUnit.SECONDS);
         }
     }
 
     /**
-     * Schedules a recurring task with a random initial delay.
+     * Schedules a recurring generator for the patients of one shard on the shard's worker thread.
+     * Each patient still gets a random initial delay, but patients that share a delay are
+     * generated together as a single batch. The delay is drawn from the patient's own stream,
+     * so it is reproducible for a given seed.
      * 
-     * @param task    The task to be scheduled
-     * @param period  The period between consecutive executions of the task
-     * @param timeUnit The time unit of the period
+     * @param generator  The generator to run
+     * @param streamId   The random stream of the generator, see {@link PatientRandom}
+     * @param patientIds The patients of the shard
+     * @param lane       The worker thread that owns the shard
+     * @param period     The period between consecutive executions of the task
+     * @param timeUnit   The time unit of the period
      */
-    private void scheduleTask(Runnable task, long period, TimeUnit timeUnit) {
-        scheduler.scheduleAtFixedRate(task, random.nextInt(5), period, timeUnit);
+    private void scheduleTask(PatientDataGenerator generator, int streamId, List<Integer> patientIds, int lane,
+            long period, TimeUnit timeUnit) {
+        List<List<Integer>> byDelay = new ArrayList<>();
+        for (int delay = 0; delay < MAX_INITIAL_DELAY_SECONDS; delay++) {
+            byDelay.add(new ArrayList<>());
+        }
+        for (int patientId : patientIds) {
+            int delay = PatientRandom.forPatient(seed, PatientRandom.START_DELAY_STREAM + streamId, patientId)
+                    .nextInt(MAX_INITIAL_DELAY_SECONDS);
+            byDelay.get(delay).add(patientId);
+        }
+        for (int delay = 0; delay < MAX_INITIAL_DELAY_SECONDS; delay++) {
+            List<Integer> batch = byDelay.get(delay);
+            if (!batch.isEmpty()) {
+                int[] batchIds = batch.stream().mapToInt(Integer::intValue).toArray();
+                scheduler.schedule(new GeneratorBatchTask(generator, batchIds, outputStrategy), lane,
+                        TimeUnit.SECONDS.toMillis(delay), timeUnit.toMillis(period));
+            }
+        }
     }
 }
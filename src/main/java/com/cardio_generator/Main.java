@@ -1,6 +1,7 @@
 package com.cardio_generator;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import com.data_management.DataStorage;
 
@@ -8,6 +9,8 @@ public class Main {
     public static void main(String[] args) throws IOException {
    if (args.length > 0 && args[0].equals("DataStorage")) {
     DataStorage.main(new String[]{});
+    } else if (args.length > 0 && args[0].equals("CompressionBenchmark")) {
+    CompressionBenchmark.main(Arrays.copyOfRange(args, 1, args.length));
     } else {
     HealthDataSimulator.main(new String[]{});
     }
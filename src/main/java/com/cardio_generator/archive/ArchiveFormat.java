@@ -0,0 +1,110 @@
+package com.cardio_generator.archive;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The layout of a compressed archive file
+ * <p>
+ * An archive starts with a 4 byte magic number and a 4 byte version, followed by any number of blocks. Each block
+ * holds consecutive samples of one signal of one patient: the patient ID, the signal code, the number of samples
+ * and the length of the compressed data (4 byte big-endian integers each), then the bits written by a
+ * {@link SeriesEncoder}. Blocks of different series are interleaved in the order in which they were completed, so an
+ * archive can be appended to and read as a stream
+ */
+
+public final class ArchiveFormat {
+
+    /** Magic number at the start of every archive, "CGA1" */
+    public static final int MAGIC = 0x43474131;
+    /** Version of the block layout */
+    public static final int VERSION = 1;
+    /** Size of the file header in bytes */
+    public static final int HEADER_BYTES = 8;
+    /** Size of the header of each block in bytes */
+    public static final int BLOCK_HEADER_BYTES = 16;
+
+    private ArchiveFormat() {
+    }
+
+    /**
+     * Writes the file header
+     * 
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+
+    public static void writeHeader(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * Finds the end of the last complete block of an existing archive
+     * A writer that was killed leaves a torn block at the end; appending after it would make readers take the torn
+     * block's length across the new blocks, so appending has to start where the complete blocks end
+     *
+     * @param file the archive file
+     * @return the length of the archive without a torn block at its end, or 0 if not even the file header is complete
+     * @throws IOException if the file cannot be read or is not an archive of this version
+     */
+
+    public static long completeLength(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                return 0;
+            }
+            ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+            readFully(channel, header.limit(HEADER_BYTES), 0);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a compressed archive: " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported archive version " + header.getInt(4) + ": " + file);
+            }
+            long position = HEADER_BYTES;
+            while (position + BLOCK_HEADER_BYTES <= size) {
+                readFully(channel, header.clear(), position);
+                int count = header.getInt(8);
+                int length = header.getInt(12);
+                if (count < 0 || length < 0 || position + BLOCK_HEADER_BYTES + length > size) {
+                    break;
+                }
+                position += BLOCK_HEADER_BYTES + length;
+            }
+            return position;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+        }
+    }
+
+    /**
+     * Writes the current block of an encoder
+     * 
+     * @param out the output to write to
+     * @param patientId the identifier of the patient of the series
+     * @param signalCode the code of the signal of the series
+     * @param encoder the encoder holding the block; it is not reset
+     * @throws IOException if the output cannot be written
+     */
+
+    public static void writeBlock(DataOutput out, int patientId, int signalCode, SeriesEncoder encoder)
+            throws IOException {
+        out.writeInt(patientId);
+        out.writeInt(signalCode);
+        out.writeInt(encoder.count());
+        out.writeInt(encoder.bits().byteLength());
+        encoder.bits().writeTo(out);
+    }
+}
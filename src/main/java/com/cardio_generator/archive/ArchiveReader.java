@@ -0,0 +1,111 @@
+package com.cardio_generator.archive;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads an archive as a stream of blocks, see {@link ArchiveFormat}
+ * Only one block is held in memory at a time, and its buffer is reused for the next block
+ */
+
+public final class ArchiveReader implements AutoCloseable {
+
+    private final DataInputStream in;
+    private final SeriesDecoder decoder = new SeriesDecoder();
+    private byte[] block = new byte[256];
+    private int patientId;
+    private int signalCode;
+    private int count;
+
+    /**
+     * Starts reading an archive and checks its header
+     * 
+     * @param in the archive, positioned at its start
+     * @throws IOException if the stream cannot be read or is not an archive
+     */
+
+    public ArchiveReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        if (this.in.readInt() != ArchiveFormat.MAGIC) {
+            throw new IOException("Not a compressed archive");
+        }
+        int version = this.in.readInt();
+        if (version != ArchiveFormat.VERSION) {
+            throw new IOException("Unsupported archive version: " + version);
+        }
+    }
+
+    /**
+     * Reads the next block, whose samples are then available from {@link #decoder()}
+     * 
+     * @return {@code false} at the end of the archive
+     * @throws IOException if the stream cannot be read or ends in the middle of a block
+     */
+
+    public boolean nextBlock() throws IOException {
+        try {
+            patientId = in.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        signalCode = in.readInt();
+        count = in.readInt();
+        int length = in.readInt();
+        if (count < 0 || length < 0) {
+            throw new IOException("Corrupt archive block for patient " + patientId);
+        }
+        if (length > block.length) {
+            block = new byte[Math.max(length, block.length * 2)];
+        }
+        in.readFully(block, 0, length);
+        decoder.reset(block, 0, length, count);
+        return true;
+    }
+
+    /**
+     * Returns the patient ID of the current block
+     * 
+     * @return the patient ID
+     */
+
+    public int patientId() {
+        return patientId;
+    }
+
+    /**
+     * Returns the signal code of the current block
+     * 
+     * @return the signal code
+     */
+
+    public int signalCode() {
+        return signalCode;
+    }
+
+    /**
+     * Returns the number of samples in the current block
+     * 
+     * @return the sample count
+     */
+
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns the decoder positioned at the start of the current block
+     * 
+     * @return the decoder of the current block
+     */
+
+    public SeriesDecoder decoder() {
+        return decoder;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,74 @@
+package com.cardio_generator.archive;
+
+/**
+ * Reads bits from a byte array, most significant bit first, as written by {@link BitOutput}
+ */
+
+public final class BitInput {
+
+    private byte[] bytes;
+    private int position;
+    private int end;
+    private int bitsLeft;
+
+    /**
+     * Constructs a reader that has no input yet, see {@link #reset(byte[], int, int)}
+     */
+
+    public BitInput() {
+        this.bytes = new byte[0];
+    }
+
+    /**
+     * Starts reading a new range of bytes
+     * 
+     * @param bytes the array holding the bits
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     */
+
+    public void reset(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.end = offset + length;
+        this.bitsLeft = 8;
+    }
+
+    /**
+     * Reads a single bit
+     * 
+     * @return {@code true} for a one bit
+     * @throws IllegalStateException if the input is exhausted
+     */
+
+    public boolean readBit() {
+        return readBits(1) != 0;
+    }
+
+    /**
+     * Reads a number of bits as an unsigned value
+     * 
+     * @param count the number of bits to read, between 0 and 64
+     * @return the bits, right-aligned
+     * @throws IllegalStateException if the input is exhausted
+     */
+
+    public long readBits(int count) {
+        long value = 0;
+        while (count > 0) {
+            if (position >= end) {
+                throw new IllegalStateException("Unexpected end of compressed block");
+            }
+            int take = Math.min(bitsLeft, count);
+            int chunk = (bytes[position] >>> (bitsLeft - take)) & ((1 << take) - 1);
+            value = (value << take) | chunk;
+            bitsLeft -= take;
+            count -= take;
+            if (bitsLeft == 0) {
+                position++;
+                bitsLeft = 8;
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,115 @@
+package com.cardio_generator.archive;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A growable buffer that bits are appended to, most significant bit first
+ * The buffer is reused after {@link #clear()}, so a long-lived instance stops allocating once it has grown
+ */
+
+public final class BitOutput {
+
+    private byte[] bytes;
+    private int size;
+    private int current;
+    private int currentBits;
+
+    /**
+     * Constructs an empty bit buffer
+     * 
+     * @param capacity the number of bytes the buffer can hold before it grows
+     */
+
+    public BitOutput(int capacity) {
+        bytes = new byte[Math.max(8, capacity)];
+    }
+
+    /**
+     * Appends a single bit
+     * 
+     * @param bit {@code true} for a one bit
+     */
+
+    public void writeBit(boolean bit) {
+        current = (current << 1) | (bit ? 1 : 0);
+        if (++currentBits == 8) {
+            push();
+        }
+    }
+
+    /**
+     * Appends the lowest bits of a value, most significant first
+     * 
+     * @param value the value whose bits are appended
+     * @param count the number of bits to append, between 0 and 64
+     */
+
+    public void writeBits(long value, int count) {
+        while (count > 0) {
+            int take = Math.min(8 - currentBits, count);
+            int chunk = (int) (value >>> (count - take)) & ((1 << take) - 1);
+            current = (current << take) | chunk;
+            currentBits += take;
+            count -= take;
+            if (currentBits == 8) {
+                push();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bits written since the last {@link #clear()}
+     * 
+     * @return the length in bits
+     */
+
+    public long bitLength() {
+        return size * 8L + currentBits;
+    }
+
+    /**
+     * Returns the number of bytes needed to hold the written bits, the last byte being padded with zeros
+     * 
+     * @return the length in bytes
+     */
+
+    public int byteLength() {
+        return size + (currentBits > 0 ? 1 : 0);
+    }
+
+    /**
+     * Writes the bits, padded with zeros to whole bytes
+     * 
+     * @param out the output to write to
+     * @throws IOException if the output cannot be written
+     */
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.write(bytes, 0, size);
+        if (currentBits > 0) {
+            out.write(current << (8 - currentBits));
+        }
+    }
+
+    /**
+     * Discards the written bits; the buffer is kept
+     */
+
+    public void clear() {
+        size = 0;
+        current = 0;
+        currentBits = 0;
+    }
+
+    private void push() {
+        if (size == bytes.length) {
+            byte[] grown = new byte[bytes.length * 2];
+            System.arraycopy(bytes, 0, grown, 0, size);
+            bytes = grown;
+        }
+        bytes[size++] = (byte) current;
+        current = 0;
+        currentBits = 0;
+    }
+}
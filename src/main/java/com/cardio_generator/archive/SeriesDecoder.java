@@ -0,0 +1,112 @@
+package com.cardio_generator.archive;
+
+/**
+ * Decompresses a block written by {@link SeriesEncoder}, one sample at a time
+ */
+
+public final class SeriesDecoder {
+
+    private final BitInput bits = new BitInput();
+    private int remaining;
+    private boolean first;
+    private long timestamp;
+    private long delta;
+    private long valueBits;
+    private int leading;
+    private int trailing;
+
+    /**
+     * Starts decoding a new block
+     * 
+     * @param bytes the array holding the compressed block
+     * @param offset the index of the first byte of the block
+     * @param length the length of the block in bytes
+     * @param count the number of samples in the block
+     */
+
+    public void reset(byte[] bytes, int offset, int length, int count) {
+        bits.reset(bytes, offset, length);
+        remaining = count;
+        first = true;
+        delta = 0;
+    }
+
+    /**
+     * Decodes the next sample, which is then available from {@link #timestamp()} and {@link #value()}
+     * 
+     * @return {@code false} if the block has no more samples
+     * @throws IllegalStateException if the block is corrupt
+     */
+
+    public boolean next() {
+        if (remaining == 0) {
+            return false;
+        }
+        remaining--;
+        if (first) {
+            first = false;
+            timestamp = bits.readBits(64);
+            valueBits = bits.readBits(64);
+            return true;
+        }
+        delta += readDeltaOfDelta();
+        timestamp += delta;
+        readXor();
+        return true;
+    }
+
+    /**
+     * Returns the timestamp of the current sample
+     * 
+     * @return the timestamp in milliseconds since the Unix epoch
+     */
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the value of the current sample
+     * 
+     * @return the value
+     */
+
+    public double value() {
+        return Double.longBitsToDouble(valueBits);
+    }
+
+    private long readDeltaOfDelta() {
+        if (!bits.readBit()) {
+            return 0;
+        }
+        if (!bits.readBit()) {
+            return signExtend(bits.readBits(7), 7);
+        }
+        if (!bits.readBit()) {
+            return signExtend(bits.readBits(9), 9);
+        }
+        if (!bits.readBit()) {
+            return signExtend(bits.readBits(12), 12);
+        }
+        return bits.readBits(64);
+    }
+
+    private void readXor() {
+        if (!bits.readBit()) {
+            return;
+        }
+        if (bits.readBit()) {
+            leading = (int) bits.readBits(5);
+            int significant = (int) bits.readBits(6) + 1;
+            trailing = 64 - leading - significant;
+        }
+        valueBits ^= bits.readBits(64 - leading - trailing) << trailing;
+    }
+
+    private static long signExtend(long value, int width) {
+        long sign = 1L << (width - 1);
+        // Encoders write ranges such as [-63, 64], so the top positive value wraps to the most negative pattern
+        long extended = (value ^ sign) - sign;
+        return extended == -sign ? sign : extended;
+    }
+}
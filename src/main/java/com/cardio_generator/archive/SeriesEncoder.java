@@ -0,0 +1,124 @@
+package com.cardio_generator.archive;
+
+/**
+ * Compresses one time series (the samples of one signal of one patient) into a block of bits,
+ * in the style of Facebook's Gorilla time-series store
+ * <p>
+ * The first sample is stored raw. After that, each timestamp is stored as the change of the interval to the
+ * previous sample (delta-of-delta), which is zero for regular sampling and then takes a single bit. Each value is
+ * stored as the XOR of its bits with those of the previous value: an unchanged value takes a single bit, and a
+ * small change only stores the few bits that differ. See {@link SeriesDecoder} for the reverse
+ */
+
+public final class SeriesEncoder {
+
+    private final BitOutput bits;
+    private int count;
+    private long previousTimestamp;
+    private long previousDelta;
+    private long previousValueBits;
+    private int previousLeading;
+    private int previousTrailing;
+
+    /**
+     * Constructs an empty encoder
+     */
+
+    public SeriesEncoder() {
+        this.bits = new BitOutput(64);
+    }
+
+    /**
+     * Appends a sample to the block
+     * 
+     * @param timestamp the time of the sample, in milliseconds since the Unix epoch
+     * @param value the value of the sample
+     */
+
+    public void add(long timestamp, double value) {
+        long valueBits = Double.doubleToRawLongBits(value);
+        if (count == 0) {
+            bits.writeBits(timestamp, 64);
+            bits.writeBits(valueBits, 64);
+            previousLeading = -1;
+        } else {
+            long delta = timestamp - previousTimestamp;
+            writeDeltaOfDelta(delta - previousDelta);
+            previousDelta = delta;
+            writeXor(valueBits ^ previousValueBits);
+        }
+        previousTimestamp = timestamp;
+        previousValueBits = valueBits;
+        count++;
+    }
+
+    /**
+     * Returns the number of samples in the block
+     * 
+     * @return the sample count
+     */
+
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Returns the compressed bits of the block
+     * 
+     * @return the bits written so far
+     */
+
+    public BitOutput bits() {
+        return bits;
+    }
+
+    /**
+     * Empties the block so that the encoder can start a new one
+     */
+
+    public void reset() {
+        bits.clear();
+        count = 0;
+        previousDelta = 0;
+    }
+
+    private void writeDeltaOfDelta(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            bits.writeBit(false);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            bits.writeBits(0b10, 2);
+            bits.writeBits(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            bits.writeBits(0b110, 3);
+            bits.writeBits(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            bits.writeBits(0b1110, 4);
+            bits.writeBits(deltaOfDelta, 12);
+        } else {
+            bits.writeBits(0b1111, 4);
+            bits.writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeXor(long xor) {
+        if (xor == 0) {
+            bits.writeBit(false);
+            return;
+        }
+        int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+            // The changed bits fit in the window of the previous value
+            bits.writeBits(0b10, 2);
+            bits.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+            int significant = 64 - leading - trailing;
+            bits.writeBits(0b11, 2);
+            bits.writeBits(leading, 5);
+            bits.writeBits(significant - 1, 6);
+            bits.writeBits(xor >>> trailing, significant);
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+    }
+}
@@ -1,8 +1,9 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
-import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
 
 /**
  * Generates alert conditions for patients as part of the health data simulation
@@ -11,7 +12,8 @@ import com.cardio_generator.outputs.OutputStrategy;
 
 public class AlertGenerator implements PatientDataGenerator {
 
-    public static final Random randomGenerator = new Random();
+    private final SplittableRandom[] randomGenerators;
+    private final int firstPatientId;
     //Changed the variable name in camelCase
     private boolean[] alertStates; // false = resolved, true = pressed, 
 
@@ -22,41 +24,59 @@ public class AlertGenerator implements PatientDataGenerator {
  */
 
     public AlertGenerator(int patientCount) {
-        alertStates = new boolean[patientCount + 1];
+        this(1, patientCount, PatientRandom.newSeed());
     }
 
 /**
- * Generates and outputs alert conditions for a specific patient. The method simulates the triggering
- * and resolving of alerts based on random probabilities
+ * Constructs an AlertGenerator that owns the alert states of a contiguous range of patients
  * 
- * @param patientId the identifier for the patient to generate alerts for
- * @param outputStrategy the strategy for outputting the alert status
+ * @param firstPatientId the first patient ID of the range, inclusive
+ * @param lastPatientId the last patient ID of the range, inclusive
+ * @param seed the seed of the simulation run
+ */
+
+    public AlertGenerator(int firstPatientId, int lastPatientId, long seed) {
+        this.firstPatientId = firstPatientId;
+        this.randomGenerators = PatientRandom.forRange(seed, PatientRandom.ALERT_STREAM, firstPatientId, lastPatientId);
+        alertStates = new boolean[lastPatientId - firstPatientId + 1];
+    }
+
+/**
+ * Generates alert conditions for a range of patients. The method simulates the triggering
+ * and resolving of alerts based on random probabilities; only changes of the alert state are added
+ * to the batch, as 1 for "triggered" and 0 for "resolved"
+ * 
+ * @param patientIds the patients to generate alerts for
+ * @param from the index of the first patient in {@code patientIds}, inclusive
+ * @param to the index of the last patient in {@code patientIds}, exclusive
+ * @param timestamp the time at which the alert status is generated, in milliseconds
+ * @param batch the batch that receives the alert changes
  */
 
     @Override
-    public void generate(int patientId, OutputStrategy outputStrategy) {
-        try {
-            if (alertStates[patientId]) {
+    public void generateBatch(int[] patientIds, int from, int to, long timestamp, SampleBatch batch) {
+        //Changed the variable name to camelCase
+        double lambda = 0.1; // Average rate (alerts per period), adjust based on desired frequency
+        double p = -Math.expm1(-lambda); // Probability of at least one alert in the period
+        for (int i = from; i < to; i++) {
+            int patientId = patientIds[i];
+            int slot = patientId - firstPatientId;
+            SplittableRandom randomGenerator = randomGenerators[slot];
+            if (alertStates[slot]) {
                 if (randomGenerator.nextDouble() < 0.9) { // 90% chance to resolve
-                    alertStates[patientId] = false;
+                    alertStates[slot] = false;
                     // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "resolved");
+                    batch.add(patientId, timestamp, SignalType.ALERT, 0);
                 }
             } else {
-                //Changed the variable name to camelCase
-                double lambda = 0.1; // Average rate (alerts per period), adjust based on desired frequency
-                double p = -Math.expm1(-lambda); // Probability of at least one alert in the period
                 boolean alertTriggered = randomGenerator.nextDouble() < p;
 
                 if (alertTriggered) {
-                     alertStates[patientId] = true;
+                    alertStates[slot] = true;
                     // Output the alert
-                    outputStrategy.output(patientId, System.currentTimeMillis(), "Alert", "triggered");
+                    batch.add(patientId, timestamp, SignalType.ALERT, 1);
                 }
             }
-        } catch (Exception e) {
-            System.err.println("Error generating alert " + e.getMessage()); //Changed the exception messge, catch blocks should log the exception, consider alertStates more specific exception and add alertStates comment rather than just printing the stack trace
-            e.printStackTrace();
         }
     }
 }
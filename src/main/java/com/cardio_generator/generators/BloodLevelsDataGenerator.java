@@ -1,23 +1,41 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
-import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
 
 public class BloodLevelsDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms;
+    private final int firstPatientId;
     private final double[] baselineCholesterol;
     private final double[] baselineWhiteCells;
     private final double[] baselineRedCells;
 
     public BloodLevelsDataGenerator(int patientCount) {
+        this(1, patientCount, PatientRandom.newSeed());
+    }
+
+    /**
+     * Constructs a generator that owns the baselines of a contiguous range of patients.
+     *
+     * @param firstPatientId the first patient ID of the range, inclusive
+     * @param lastPatientId  the last patient ID of the range, inclusive
+     * @param seed           the seed of the simulation run
+     */
+    public BloodLevelsDataGenerator(int firstPatientId, int lastPatientId, long seed) {
+        this.firstPatientId = firstPatientId;
+        this.randoms = PatientRandom.forRange(seed, PatientRandom.BLOOD_LEVELS_STREAM, firstPatientId, lastPatientId);
+        int patientCount = lastPatientId - firstPatientId + 1;
+
         // Initialize arrays to store baseline values for each patient
-        baselineCholesterol = new double[patientCount + 1];
-        baselineWhiteCells = new double[patientCount + 1];
-        baselineRedCells = new double[patientCount + 1];
+        baselineCholesterol = new double[patientCount];
+        baselineWhiteCells = new double[patientCount];
+        baselineRedCells = new double[patientCount];
 
         // Generate baseline values for each patient
-        for (int i = 1; i <= patientCount; i++) {
+        for (int i = 0; i < patientCount; i++) {
+            SplittableRandom random = randoms[i];
             baselineCholesterol[i] = 150 + random.nextDouble() * 50; // Initial random baseline
             baselineWhiteCells[i] = 4 + random.nextDouble() * 6; // Initial random baseline
             baselineRedCells[i] = 4.5 + random.nextDouble() * 1.5; // Initial random baseline
@@ -25,21 +43,20 @@ public class BloodLevelsDataGenerator implements PatientDataGenerator {
     }
 
     @Override
-    public void generate(int patientId, OutputStrategy outputStrategy) {
-        try {
+    public void generateBatch(int[] patientIds, int from, int to, long timestamp, SampleBatch batch) {
+        for (int i = from; i < to; i++) {
             // Generate values around the baseline for realism
-            double cholesterol = baselineCholesterol[patientId] + (random.nextDouble() - 0.5) * 10; // Small variation
-            double whiteCells = baselineWhiteCells[patientId] + (random.nextDouble() - 0.5) * 1; // Small variation
-            double redCells = baselineRedCells[patientId] + (random.nextDouble() - 0.5) * 0.2; // Small variation
+            int patientId = patientIds[i];
+            int slot = patientId - firstPatientId;
+            SplittableRandom random = randoms[slot];
+            double cholesterol = baselineCholesterol[slot] + (random.nextDouble() - 0.5) * 10; // Small variation
+            double whiteCells = baselineWhiteCells[slot] + (random.nextDouble() - 0.5) * 1; // Small variation
+            double redCells = baselineRedCells[slot] + (random.nextDouble() - 0.5) * 0.2; // Small variation
 
             // Output the generated values
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Cholesterol", Double.toString(cholesterol));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "WhiteBloodCells",
-                    Double.toString(whiteCells));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "RedBloodCells", Double.toString(redCells));
-        } catch (Exception e) {
-            System.err.println("An error occurred while generating blood levels data for patient " + patientId);
-            e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
+            batch.add(patientId, timestamp, SignalType.CHOLESTEROL, cholesterol);
+            batch.add(patientId, timestamp, SignalType.WHITE_BLOOD_CELLS, whiteCells);
+            batch.add(patientId, timestamp, SignalType.RED_BLOOD_CELLS, redCells);
         }
     }
 }
@@ -1,46 +1,60 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
-import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
 
 public class BloodPressureDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms;
+    private final int firstPatientId;
 
     private int[] lastSystolicValues;
     private int[] lastDiastolicValues;
 
     public BloodPressureDataGenerator(int patientCount) {
-        lastSystolicValues = new int[patientCount + 1];
-        lastDiastolicValues = new int[patientCount + 1];
+        this(1, patientCount, PatientRandom.newSeed());
+    }
+
+    /**
+     * Constructs a generator that owns the blood pressure state of a contiguous range of patients.
+     *
+     * @param firstPatientId the first patient ID of the range, inclusive
+     * @param lastPatientId  the last patient ID of the range, inclusive
+     * @param seed           the seed of the simulation run
+     */
+    public BloodPressureDataGenerator(int firstPatientId, int lastPatientId, long seed) {
+        this.firstPatientId = firstPatientId;
+        this.randoms = PatientRandom.forRange(seed, PatientRandom.BLOOD_PRESSURE_STREAM, firstPatientId, lastPatientId);
+        int patientCount = lastPatientId - firstPatientId + 1;
+        lastSystolicValues = new int[patientCount];
+        lastDiastolicValues = new int[patientCount];
 
         // Initialize with baseline values for each patient
-        for (int i = 1; i <= patientCount; i++) {
-            lastSystolicValues[i] = 110 + random.nextInt(20); // Random baseline between 110 and 130
-            lastDiastolicValues[i] = 70 + random.nextInt(15); // Random baseline between 70 and 85
+        for (int i = 0; i < patientCount; i++) {
+            lastSystolicValues[i] = 110 + randoms[i].nextInt(20); // Random baseline between 110 and 130
+            lastDiastolicValues[i] = 70 + randoms[i].nextInt(15); // Random baseline between 70 and 85
         }
     }
 
     @Override
-    public void generate(int patientId, OutputStrategy outputStrategy) {
-        try {
+    public void generateBatch(int[] patientIds, int from, int to, long timestamp, SampleBatch batch) {
+        for (int i = from; i < to; i++) {
+            int patientId = patientIds[i];
+            int slot = patientId - firstPatientId;
+            SplittableRandom random = randoms[slot];
             int systolicVariation = random.nextInt(5) - 2; // -2, -1, 0, 1, or 2
             int diastolicVariation = random.nextInt(5) - 2;
-            int newSystolicValue = lastSystolicValues[patientId] + systolicVariation;
-            int newDiastolicValue = lastDiastolicValues[patientId] + diastolicVariation;
+            int newSystolicValue = lastSystolicValues[slot] + systolicVariation;
+            int newDiastolicValue = lastDiastolicValues[slot] + diastolicVariation;
             // Ensure the blood pressure stays within a realistic and safe range
             newSystolicValue = Math.min(Math.max(newSystolicValue, 90), 180);
             newDiastolicValue = Math.min(Math.max(newDiastolicValue, 60), 120);
-            lastSystolicValues[patientId] = newSystolicValue;
-            lastDiastolicValues[patientId] = newDiastolicValue;
-
-            outputStrategy.output(patientId, System.currentTimeMillis(), "SystolicPressure",
-                    Double.toString(newSystolicValue));
-            outputStrategy.output(patientId, System.currentTimeMillis(), "DiastolicPressure",
-                    Double.toString(newDiastolicValue));
-        } catch (Exception e) {
-            System.err.println("An error occurred while generating blood pressure data for patient " + patientId);
-            e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
+            lastSystolicValues[slot] = newSystolicValue;
+            lastDiastolicValues[slot] = newDiastolicValue;
+
+            batch.add(patientId, timestamp, SignalType.SYSTOLIC_PRESSURE, newSystolicValue);
+            batch.add(patientId, timestamp, SignalType.DIASTOLIC_PRESSURE, newDiastolicValue);
         }
     }
 }
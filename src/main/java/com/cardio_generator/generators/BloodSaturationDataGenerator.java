@@ -1,8 +1,9 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
-import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
 
 /**
  * Generates simulated blood saturation data for patients
@@ -11,7 +12,8 @@ import com.cardio_generator.outputs.OutputStrategy;
  */
 
 public class BloodSaturationDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms;
+    private final int firstPatientId;
     private int[] lastSaturationValues;
 
 /**
@@ -22,38 +24,54 @@ public class BloodSaturationDataGenerator implements PatientDataGenerator {
  */
 
     public BloodSaturationDataGenerator(int patientCount) {
-        lastSaturationValues = new int[patientCount + 1];
+        this(1, patientCount, PatientRandom.newSeed());
+    }
+
+/**
+ * Constructs a BloodSaturationDataGenerator that owns the saturation state of a contiguous range of patients
+ * 
+ * @param firstPatientId The first patient ID of the range, inclusive
+ * @param lastPatientId The last patient ID of the range, inclusive
+ * @param seed The seed of the simulation run
+ */
+
+    public BloodSaturationDataGenerator(int firstPatientId, int lastPatientId, long seed) {
+        this.firstPatientId = firstPatientId;
+        this.randoms = PatientRandom.forRange(seed, PatientRandom.SATURATION_STREAM, firstPatientId, lastPatientId);
+        int patientCount = lastPatientId - firstPatientId + 1;
+        lastSaturationValues = new int[patientCount];
 
         // Initialize with baseline saturation values for each patient
-        for (int i = 1; i <= patientCount; i++) {
-            lastSaturationValues[i] = 95 + random.nextInt(6); // Initializes with a value between 95 and 100
+        for (int i = 0; i < patientCount; i++) {
+            lastSaturationValues[i] = 95 + randoms[i].nextInt(6); // Initializes with a value between 95 and 100
         }
     }
 
 /**
- * Generates and outputs new saturation data for a specified patient
- * The new saturation value is based on the last recorded value with a small random fluctuation
+ * Generates new saturation data for a range of patients
+ * Each new saturation value is based on the last recorded value with a small random fluctuation
  * and is kept within the range of 90% to 100% to remain realistic and healthy
  * 
- * @param patientId the identifier for the patient the generate data for
- * @param outputStrategy the strategy for outputting the generated data
+ * @param patientIds the patients to generate data for
+ * @param from the index of the first patient in {@code patientIds}, inclusive
+ * @param to the index of the last patient in {@code patientIds}, exclusive
+ * @param timestamp the time at which the data is generated, in milliseconds
+ * @param batch the batch that receives the generated samples
  */
 
     @Override
-    public void generate(int patientId, OutputStrategy outputStrategy) {
-        try {
+    public void generateBatch(int[] patientIds, int from, int to, long timestamp, SampleBatch batch) {
+        for (int i = from; i < to; i++) {
             // Simulate blood saturation values
-            int variation = random.nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
-            int newSaturationValue = lastSaturationValues[patientId] + variation;
+            int patientId = patientIds[i];
+            int slot = patientId - firstPatientId;
+            int variation = randoms[slot].nextInt(3) - 1; // -1, 0, or 1 to simulate small fluctuations
+            int newSaturationValue = lastSaturationValues[slot] + variation;
 
             // Ensure the saturation stays within a realistic and healthy range
             newSaturationValue = Math.min(Math.max(newSaturationValue, 90), 100);
-            lastSaturationValues[patientId] = newSaturationValue;
-            outputStrategy.output(patientId, System.currentTimeMillis(), "Saturation",
-                    Double.toString(newSaturationValue) + "%");
-        } catch (Exception e) {
-            System.err.println("An error occurred while generating blood saturation data for patient " + patientId);
-            e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
+            lastSaturationValues[slot] = newSaturationValue;
+            batch.add(patientId, timestamp, SignalType.SATURATION, newSaturationValue);
         }
     }
 }
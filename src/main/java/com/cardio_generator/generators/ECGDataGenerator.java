@@ -1,39 +1,54 @@
 package com.cardio_generator.generators;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
-import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
 
 public class ECGDataGenerator implements PatientDataGenerator {
-    private static final Random random = new Random();
+    private final SplittableRandom[] randoms;
+    private final int firstPatientId;
     private double[] lastEcgValues;
     private static final double PI = Math.PI;
 
     public ECGDataGenerator(int patientCount) {
-        lastEcgValues = new double[patientCount + 1];
+        this(1, patientCount, PatientRandom.newSeed());
+    }
+
+    /**
+     * Constructs a generator that owns the ECG state of a contiguous range of patients.
+     *
+     * @param firstPatientId the first patient ID of the range, inclusive
+     * @param lastPatientId  the last patient ID of the range, inclusive
+     * @param seed           the seed of the simulation run
+     */
+    public ECGDataGenerator(int firstPatientId, int lastPatientId, long seed) {
+        this.firstPatientId = firstPatientId;
+        this.randoms = PatientRandom.forRange(seed, PatientRandom.ECG_STREAM, firstPatientId, lastPatientId);
+        int patientCount = lastPatientId - firstPatientId + 1;
+        lastEcgValues = new double[patientCount];
         // Initialize the last ECG value for each patient
-        for (int i = 1; i <= patientCount; i++) {
+        for (int i = 0; i < patientCount; i++) {
             lastEcgValues[i] = 0; // Initial ECG value can be set to 0
         }
     }
 
     @Override
-    public void generate(int patientId, OutputStrategy outputStrategy) {
+    public void generateBatch(int[] patientIds, int from, int to, long timestamp, SampleBatch batch) {
         // TODO Check how realistic this data is and make it more realistic if necessary
-        try {
-            double ecgValue = simulateEcgWaveform(patientId, lastEcgValues[patientId]);
-            outputStrategy.output(patientId, System.currentTimeMillis(), "ECG", Double.toString(ecgValue));
-            lastEcgValues[patientId] = ecgValue;
-        } catch (Exception e) {
-            System.err.println("An error occurred while generating ECG data for patient " + patientId);
-            e.printStackTrace(); // This will print the stack trace to help identify where the error occurred.
+        double t = timestamp / 1000.0; // Use the sample time to simulate continuous time
+        for (int i = from; i < to; i++) {
+            int patientId = patientIds[i];
+            int slot = patientId - firstPatientId;
+            double ecgValue = simulateEcgWaveform(randoms[slot], t, lastEcgValues[slot]);
+            batch.add(patientId, timestamp, SignalType.ECG, ecgValue);
+            lastEcgValues[slot] = ecgValue;
         }
     }
 
-    private double simulateEcgWaveform(int patientId, double lastEcgValue) {
+    private double simulateEcgWaveform(SplittableRandom random, double t, double lastEcgValue) {
         // Simplified ECG waveform generation based on sinusoids
         double hr = 60.0 + random.nextDouble() * 20.0; // Simulate heart rate variability between 60 and 80 bpm
-        double t = System.currentTimeMillis() / 1000.0; // Use system time to simulate continuous time
         double ecgFrequency = hr / 60.0; // Convert heart rate to Hz
 
         // Simulate different components of the ECG signal
@@ -1,19 +1,51 @@
 package com.cardio_generator.generators;
 
 import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
 
 /**
  * Interface for generating patient data
  * Implementation of this interface should provide mechanisms to generate and output patient-specific data
+ * Implementations keep per-patient state and are not thread-safe, so each instance is driven by a single
+ * shard worker
  */
 
 public interface PatientDataGenerator {
 
     /**
-     * Generates and outputs data for a specific patient
+     * Generates and outputs data for a specific patient, stamped with the current system time
      * 
      * @param patientId The unique identifier for the patient for whom data is to be generated
      * @param outputStrategy The output strategy to be used for displaying or storing the generated data
      */
-    void generate(int patientId, OutputStrategy outputStrategy);
+    default void generate(int patientId, OutputStrategy outputStrategy) {
+        generate(patientId, System.currentTimeMillis(), outputStrategy);
+    }
+
+    /**
+     * Generates and outputs data for a specific patient at the given time
+     * This is a convenience over {@link #generateBatch} for a batch of one patient
+     * 
+     * @param patientId The unique identifier for the patient for whom data is to be generated
+     * @param timestamp The time at which the data is generated, in milliseconds since the Unix epoch
+     * @param outputStrategy The output strategy to be used for displaying or storing the generated data
+     */
+    default void generate(int patientId, long timestamp, OutputStrategy outputStrategy) {
+        SampleBatch batch = new SampleBatch(4);
+        generateBatch(new int[] { patientId }, 0, 1, timestamp, batch);
+        outputStrategy.outputBatch(batch);
+    }
+
+    /**
+     * Generates one round of data for a range of patients and appends it to a columnar batch
+     * All samples are stamped with the same timestamp, and the samples of each patient are appended
+     * in the same order as the single-patient path would output them
+     * 
+     * @param patientIds The patients to generate data for
+     * @param from The index of the first patient in {@code patientIds}, inclusive
+     * @param to The index of the last patient in {@code patientIds}, exclusive
+     * @param timestamp The time at which the data is generated, in milliseconds since the Unix epoch
+     * @param batch The batch that receives the generated samples
+     */
+    void generateBatch(int[] patientIds, int from, int to, long timestamp, SampleBatch batch);
 }
@@ -0,0 +1,71 @@
+package com.cardio_generator.generators;
+
+import java.util.SplittableRandom;
+
+/**
+ * Derives reproducible random number streams for patient/generator pairs.
+ * Every pair gets its own {@link SplittableRandom} whose seed depends only on the run seed, the stream
+ * identifier and the patient ID, so a patient's data is the same however the patients are spread over
+ * threads or shards.
+ */
+public final class PatientRandom {
+
+    public static final int ECG_STREAM = 1;
+    public static final int SATURATION_STREAM = 2;
+    public static final int BLOOD_PRESSURE_STREAM = 3;
+    public static final int BLOOD_LEVELS_STREAM = 4;
+    public static final int ALERT_STREAM = 5;
+    /** Offset added to a generator stream to get the stream for its scheduling jitter. */
+    public static final int START_DELAY_STREAM = 100;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private PatientRandom() {
+    }
+
+    /**
+     * Returns the random number stream of a patient/generator pair.
+     *
+     * @param seed      the seed of the simulation run
+     * @param streamId  the identifier of the generator stream, e.g. {@link #ECG_STREAM}
+     * @param patientId the identifier of the patient
+     * @return a new random number generator positioned at the start of the stream
+     */
+    public static SplittableRandom forPatient(long seed, int streamId, int patientId) {
+        long key = ((long) streamId << 32) | (patientId & 0xffffffffL);
+        return new SplittableRandom(mix64(seed ^ mix64(key * GOLDEN_GAMMA)));
+    }
+
+    /**
+     * Returns a seed for runs that were not given one.
+     *
+     * @return a fresh, randomly chosen seed
+     */
+    public static long newSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    /**
+     * Creates the streams for a contiguous range of patients.
+     *
+     * @param seed           the seed of the simulation run
+     * @param streamId       the identifier of the generator stream
+     * @param firstPatientId the first patient ID of the range, inclusive
+     * @param lastPatientId  the last patient ID of the range, inclusive
+     * @return one random number generator per patient, indexed by {@code patientId - firstPatientId}
+     */
+    static SplittableRandom[] forRange(long seed, int streamId, int firstPatientId, int lastPatientId) {
+        SplittableRandom[] randoms = new SplittableRandom[lastPatientId - firstPatientId + 1];
+        for (int i = 0; i < randoms.length; i++) {
+            randoms[i] = forPatient(seed, streamId, firstPatientId + i);
+        }
+        return randoms;
+    }
+
+    // Stafford variant 13 of the MurmurHash3 finalizer, as used by SplittableRandom itself
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
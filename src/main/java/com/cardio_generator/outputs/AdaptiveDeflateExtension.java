@@ -0,0 +1,174 @@
+package com.cardio_generator.outputs;
+
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * The permessage-deflate WebSocket extension (RFC 7692) with a size threshold
+ * <p>
+ * Messages smaller than the threshold are sent uncompressed, as are messages that deflate does not make smaller, so
+ * small frames cost no CPU and incompressible ones no extra bytes. Each message is compressed on its own (no context
+ * takeover), which makes a compressed frame valid for every connection: when a frame is broadcast to a group of
+ * clients, it is compressed for the first one and sent as is to the others
+ * <p>
+ * Incoming messages are only inflated when the sender marked them as compressed. Both ends of a connection need the
+ * extension; peers that do not offer it get uncompressed frames
+ */
+
+public class AdaptiveDeflateExtension extends PerMessageDeflateExtension {
+
+    /** Default size from which messages are compressed, about where deflate starts to pay off for sample data */
+    public static final int DEFAULT_THRESHOLD_BYTES = 512;
+    /** Default compression level, which is much faster than the maximum and nearly as small for sample data */
+    public static final int DEFAULT_LEVEL = 1;
+
+    private static final int TAIL_LENGTH = 4; // The 00 00 FF FF that ends every sync-flushed message
+
+    private final int thresholdBytes;
+    private final int level;
+    private Deflater compressor; // Created on first use, so that the prototype of each connection holds none
+    private byte[] output = new byte[0];
+    private boolean inflatingMessage;
+
+    /**
+     * Constructs an extension with the default threshold and compression level
+     */
+
+    public AdaptiveDeflateExtension() {
+        this(DEFAULT_THRESHOLD_BYTES, DEFAULT_LEVEL);
+    }
+
+    /**
+     * Constructs an extension with the given threshold and compression level
+     *
+     * @param thresholdBytes Messages with fewer payload bytes are sent uncompressed
+     * @param level The deflate level, from 1 (fastest) to 9 (smallest)
+     */
+
+    public AdaptiveDeflateExtension(int thresholdBytes, int level) {
+        if (thresholdBytes < 0) {
+            throw new IllegalArgumentException("Compression threshold must not be negative: " + thresholdBytes);
+        }
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9: " + level);
+        }
+        this.thresholdBytes = thresholdBytes;
+        this.level = level;
+    }
+
+    /**
+     * Returns the size from which messages are compressed
+     *
+     * @return the threshold in bytes
+     */
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    /**
+     * Returns the deflate level
+     *
+     * @return the level, from 1 to 9
+     */
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Compresses a whole message frame if it reaches the threshold and deflate makes it smaller
+     * Fragmented messages and frames that are already compressed are left alone
+     *
+     * @param frame The frame about to be sent
+     */
+
+    @Override
+    public synchronized void encodeFrame(Framedata frame) {
+        if (!(frame instanceof DataFrame) || frame.getOpcode() == Opcode.CONTINUOUS || !frame.isFin()
+                || frame.isRSV1()) {
+            return;
+        }
+        ByteBuffer payload = frame.getPayloadData();
+        if (payload.remaining() < thresholdBytes) {
+            return;
+        }
+        int length = compress(payload.duplicate());
+        if (length >= payload.remaining()) {
+            return;
+        }
+        DataFrame data = (DataFrame) frame;
+        data.setRSV1(true);
+        data.setPayload(ByteBuffer.wrap(Arrays.copyOf(output, length)));
+    }
+
+    /**
+     * Inflates the frames of messages that the sender compressed and passes the others through
+     *
+     * @param frame The frame that was received
+     * @throws InvalidDataException if a compressed frame cannot be inflated
+     */
+
+    @Override
+    public synchronized void decodeFrame(Framedata frame) throws InvalidDataException {
+        if (!(frame instanceof DataFrame)) {
+            return;
+        }
+        if (frame.getOpcode() != Opcode.CONTINUOUS) {
+            inflatingMessage = frame.isRSV1();
+        }
+        if (inflatingMessage) {
+            super.decodeFrame(frame);
+        }
+    }
+
+    @Override
+    public IExtension copyInstance() {
+        return new AdaptiveDeflateExtension(thresholdBytes, level);
+    }
+
+    @Override
+    public String toString() {
+        return "AdaptiveDeflateExtension(threshold=" + thresholdBytes + ", level=" + level + ")";
+    }
+
+    /**
+     * Deflates a payload into the output buffer, without the trailing sync marker
+     *
+     * @param payload The bytes to compress
+     * @return the number of compressed bytes in the output buffer
+     */
+
+    private int compress(ByteBuffer payload) {
+        if (compressor == null) {
+            compressor = new Deflater(level, true);
+        }
+        if (output.length < payload.remaining() / 2 + 64) {
+            output = new byte[payload.remaining() / 2 + 64];
+        }
+        compressor.setInput(payload);
+        int length = 0;
+        while (true) {
+            length += compressor.deflate(output, length, output.length - length, Deflater.SYNC_FLUSH);
+            if (length < output.length) {
+                break;
+            }
+            // A sync flush is complete once it leaves room in the buffer
+            output = Arrays.copyOf(output, output.length * 2);
+        }
+        compressor.reset();
+        if (length >= TAIL_LENGTH && output[length - 4] == 0 && output[length - 3] == 0
+                && output[length - 2] == (byte) 0xFF && output[length - 1] == (byte) 0xFF) {
+            length -= TAIL_LENGTH;
+        }
+        return length;
+    }
+}
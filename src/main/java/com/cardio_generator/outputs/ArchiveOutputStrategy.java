@@ -0,0 +1,199 @@
+package com.cardio_generator.outputs;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cardio_generator.archive.ArchiveFormat;
+import com.cardio_generator.archive.SeriesEncoder;
+
+/**
+ * An implementation of {@link OutputStrategy} that writes a compressed archive, see {@link ArchiveFormat}
+ * Samples are collected per patient and signal and compressed with delta-of-delta timestamps and XOR values;
+ * a series is written out as a block whenever it holds the configured number of samples. Slowly changing signals
+ * such as saturation and blood pressure take one or two bytes per sample instead of about 70 as text
+ * Blocks that are still being filled are only written by {@link #flush()} and {@link #close()}
+ */
+
+public class ArchiveOutputStrategy implements OutputStrategy {
+
+    /** Default number of samples per block */
+    public static final int DEFAULT_BLOCK_SAMPLES = 1024;
+
+    private final String filePath;
+    private final int blockSamples;
+    private final DataOutputStream out;
+    private final Map<Long, SeriesEncoder> series = new HashMap<>();
+    private boolean closed;
+
+    /**
+     * Constructs an archive output with the default block size
+     *
+     * @param filePath The archive file; an existing archive is appended to after its last complete block
+     * @throws IOException if the file cannot be opened or is not an archive
+     */
+
+    public ArchiveOutputStrategy(String filePath) throws IOException {
+        this(filePath, DEFAULT_BLOCK_SAMPLES);
+    }
+
+    /**
+     * Constructs an archive output
+     *
+     * @param filePath The archive file; an existing archive is appended to after its last complete block
+     * @param blockSamples The number of samples after which a series is written out as a block
+     * @throws IOException if the file cannot be opened or is not an archive
+     */
+
+    public ArchiveOutputStrategy(String filePath, int blockSamples) throws IOException {
+        if (blockSamples < 1) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.filePath = filePath;
+        this.blockSamples = blockSamples;
+        File file = new File(filePath);
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        boolean append = false;
+        if (file.length() > 0) {
+            // Drop a block torn by a writer that was killed, so that the new blocks follow a complete one
+            long complete = ArchiveFormat.completeLength(file.toPath());
+            if (complete < file.length()) {
+                System.err.println("Dropping " + (file.length() - complete) + " bytes of a torn block from archive "
+                        + filePath);
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(complete);
+                }
+            }
+            append = complete > 0;
+        }
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+        if (!append) {
+            ArchiveFormat.writeHeader(out);
+        }
+    }
+
+    /**
+     * Converts the data back to a number and adds it to the archive
+     * Labels that are not a known {@link SignalType} cannot be archived and are skipped
+     *
+     * @param patientId The identifier for the patient to whom the data pertains
+     * @param timestamp The time at which the data is recorded, in milliseconds
+     * @param label A descriptive label for the data
+     * @param data The actual data value as a string
+     */
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        SignalType signal = SignalType.fromLabel(label);
+        if (signal == null) {
+            System.err.println("Cannot archive unknown label: " + label);
+            return;
+        }
+        try {
+            output(patientId, timestamp, signal.code(), signal.parse(data));
+        } catch (NumberFormatException e) {
+            System.err.println("Error converting " + label + " value for the archive: " + data);
+        }
+    }
+
+    /**
+     * Adds a sample to the block of its series, writing the block out when it is full
+     *
+     * @param patientId The identifier of the patient
+     * @param timestamp The time of the sample, in milliseconds
+     * @param signalCode The code of the signal
+     * @param value The value of the sample
+     */
+
+    @Override
+    public synchronized void output(int patientId, long timestamp, int signalCode, double value) {
+        if (closed) {
+            return;
+        }
+        add(patientId, timestamp, signalCode, value);
+    }
+
+    /**
+     * Adds a whole batch under a single lock
+     *
+     * @param batch The samples to archive
+     */
+
+    @Override
+    public synchronized void outputBatch(SampleBatch batch) {
+        if (closed) {
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            add(batch.patientId(i), batch.timestamp(i), batch.signalCode(i), batch.value(i));
+        }
+    }
+
+    /**
+     * Writes out every partially filled block and flushes the file
+     * Each flush starts new blocks, so flushing often costs some compression
+     */
+
+    public synchronized void flush() {
+        if (closed) {
+            return;
+        }
+        for (Map.Entry<Long, SeriesEncoder> entry : series.entrySet()) {
+            SeriesEncoder encoder = entry.getValue();
+            if (encoder.count() > 0) {
+                writeBlock(entry.getKey(), encoder);
+            }
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Error writing to archive " + filePath + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes out every partially filled block and closes the file
+     */
+
+    @Override
+    public synchronized void close() {
+        flush();
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("Error closing archive " + filePath + ": " + e.getMessage());
+        }
+    }
+
+    private void add(int patientId, long timestamp, int signalCode, double value) {
+        long key = ((long) patientId << 32) | (signalCode & 0xFFFFFFFFL);
+        SeriesEncoder encoder = series.get(key);
+        if (encoder == null) {
+            encoder = new SeriesEncoder();
+            series.put(key, encoder);
+        }
+        encoder.add(timestamp, value);
+        if (encoder.count() >= blockSamples) {
+            writeBlock(key, encoder);
+        }
+    }
+
+    private void writeBlock(long key, SeriesEncoder encoder) {
+        try {
+            ArchiveFormat.writeBlock(out, (int) (key >>> 32), (int) key, encoder);
+        } catch (IOException e) {
+            System.err.println("Error writing to archive " + filePath + ": " + e.getMessage());
+        }
+        encoder.reset();
+    }
+}
@@ -0,0 +1,118 @@
+package com.cardio_generator.outputs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The binary WebSocket subprotocol {@value #PROTOCOL}, an alternative to the comma-separated text frames
+ * <p>
+ * Every message is one binary frame in little-endian byte order that starts with a one-byte frame type and a
+ * one-byte version. A dictionary frame maps signal codes to labels and is sent once, right after the connection is
+ * opened:
+ * <pre>
+ * type=1 | version | entry count (u16) | entries: code (u16), label length (u16), ASCII label
+ * </pre>
+ * Record frames carry a batch of fixed-width records; timestamps are stored relative to a base timestamp in the frame
+ * header:
+ * <pre>
+ * type=2 | version | reserved (u16) | record count (i32) | base timestamp (i64)
+ * records: patient ID (i32), signal code (i32), timestamp - base (i32), value (f64)
+ * </pre>
+ * Alert values are 1 for "triggered" and 0 for "resolved"; saturation values are percentages without the "%" sign
+ */
+
+public final class BinaryWireFormat {
+
+    /** The subprotocol name that clients offer in the WebSocket handshake */
+    public static final String PROTOCOL = "cardio.bin.v1";
+    /** The version written to every frame */
+    public static final byte VERSION = 1;
+    /** The type of a frame that maps signal codes to labels */
+    public static final byte DICTIONARY_FRAME = 1;
+    /** The type of a frame that carries records */
+    public static final byte RECORD_FRAME = 2;
+    /** The size of a record frame header in bytes */
+    public static final int RECORD_HEADER_BYTES = 16;
+    /** The size of one record in bytes */
+    public static final int RECORD_BYTES = 20;
+
+    /** Offset of the record count in a record frame */
+    public static final int COUNT_OFFSET = 4;
+    /** Offset of the base timestamp in a record frame */
+    public static final int BASE_TIMESTAMP_OFFSET = 8;
+
+    private static final byte[] DICTIONARY = encodeDictionary();
+
+    private BinaryWireFormat() {
+    }
+
+    /**
+     * Returns a dictionary frame for every {@link SignalType}, ready to be sent
+     *
+     * @return a new read-only buffer positioned at the start of the frame
+     */
+
+    public static ByteBuffer dictionary() {
+        return ByteBuffer.wrap(DICTIONARY).asReadOnlyBuffer();
+    }
+
+    /**
+     * Starts a record frame in an empty buffer by writing its header with a zero record count
+     *
+     * @param frame the buffer to write to, in little-endian order
+     * @param baseTimestamp the timestamp that the records of the frame are relative to
+     */
+
+    public static void startRecordFrame(ByteBuffer frame, long baseTimestamp) {
+        frame.clear();
+        frame.put(RECORD_FRAME).put(VERSION).putShort((short) 0).putInt(0).putLong(baseTimestamp);
+    }
+
+    /**
+     * Appends a record to a record frame and updates the record count in its header
+     * The caller must check that the timestamp fits, see {@link #fitsFrame(ByteBuffer, long)}
+     *
+     * @param frame the frame started with {@link #startRecordFrame(ByteBuffer, long)}
+     * @param patientId the identifier of the patient
+     * @param signalCode the code of the signal
+     * @param timestamp the time of the sample, in milliseconds
+     * @param value the value of the sample
+     */
+
+    public static void putRecord(ByteBuffer frame, int patientId, int signalCode, long timestamp, double value) {
+        frame.putInt(patientId)
+                .putInt(signalCode)
+                .putInt((int) (timestamp - frame.getLong(BASE_TIMESTAMP_OFFSET)))
+                .putDouble(value);
+        frame.putInt(COUNT_OFFSET, frame.getInt(COUNT_OFFSET) + 1);
+    }
+
+    /**
+     * Returns whether a timestamp can be stored relative to the base timestamp of a frame
+     *
+     * @param frame the frame started with {@link #startRecordFrame(ByteBuffer, long)}
+     * @param timestamp the time of the sample, in milliseconds
+     * @return {@code true} if the difference fits in 32 bits
+     */
+
+    public static boolean fitsFrame(ByteBuffer frame, long timestamp) {
+        long delta = timestamp - frame.getLong(BASE_TIMESTAMP_OFFSET);
+        return delta == (int) delta;
+    }
+
+    private static byte[] encodeDictionary() {
+        SignalType[] signals = SignalType.values();
+        int size = 4;
+        for (SignalType signal : signals) {
+            size += 4 + signal.label().length();
+        }
+        ByteBuffer frame = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        frame.put(DICTIONARY_FRAME).put(VERSION).putShort((short) signals.length);
+        for (SignalType signal : signals) {
+            byte[] label = signal.label().getBytes(StandardCharsets.US_ASCII);
+            frame.putShort((short) signal.code()).putShort((short) label.length).put(label);
+        }
+        return frame.array();
+    }
+}
@@ -1,8 +1,42 @@
 package com.cardio_generator.outputs;
 
 public class ConsoleOutputStrategy implements OutputStrategy {
+
+    private final ThreadLocal<SampleEncoder> encoders = ThreadLocal.withInitial(() -> new SampleEncoder(8192));
+
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
         System.out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n", patientId, timestamp, label, data);
     }
+
+    /**
+     * Prints a sample without building any intermediate text.
+     *
+     * @param patientId  The identifier of the patient
+     * @param timestamp  The time of the sample, in milliseconds
+     * @param signalCode The code of the signal
+     * @param value      The value of the sample
+     */
+    @Override
+    public void output(int patientId, long timestamp, int signalCode, double value) {
+        SampleEncoder encoder = encoders.get();
+        encoder.clear();
+        encoder.appendReadable(patientId, timestamp, signalCode, value);
+        System.out.write(encoder.array(), 0, encoder.size());
+    }
+
+    /**
+     * Prints a whole batch with a single write to the console.
+     *
+     * @param batch The samples to print
+     */
+    @Override
+    public void outputBatch(SampleBatch batch) {
+        SampleEncoder encoder = encoders.get();
+        encoder.clear();
+        for (int i = 0; i < batch.size(); i++) {
+            encoder.appendReadable(batch.patientId(i), batch.timestamp(i), batch.signalCode(i), batch.value(i));
+        }
+        System.out.write(encoder.array(), 0, encoder.size());
+    }
 }
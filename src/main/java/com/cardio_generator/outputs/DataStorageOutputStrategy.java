@@ -0,0 +1,99 @@
+package com.cardio_generator.outputs;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.data_management.DataStorage;
+
+/**
+ * An implementation of {@link OutputStrategy} that feeds generated data straight into a {@link DataStorage}
+ * This skips any transport and is meant for backfilling storage and for load-testing the storage and alerting paths
+ */
+
+public class DataStorageOutputStrategy implements OutputStrategy {
+
+    private final DataStorage dataStorage;
+    private final LongAdder recordCount = new LongAdder();
+
+    /**
+     * Constructs a new {@code DataStorageOutputStrategy} that writes into the given storage
+     * 
+     * @param dataStorage The storage that receives the generated records
+     */
+
+    public DataStorageOutputStrategy(DataStorage dataStorage) {
+        this.dataStorage = dataStorage;
+    }
+
+    /**
+     * Converts the data value to a number and adds it to the storage
+     * Percentages such as "97.0%" are stored without the percent sign, and alert states are stored as
+     * 1 for "triggered" and 0 for "resolved"
+     * 
+     * @param patientId The identifier for the patient to whom the data pertains
+     * @param timestamp The time at which the data is recorded, in milliseconds
+     * @param label A descriptive label for the data, stored as the record type
+     * @param data The actual data value as a string
+     */
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        double value;
+        if ("triggered".equals(data)) {
+            value = 1;
+        } else if ("resolved".equals(data)) {
+            value = 0;
+        } else {
+            try {
+                value = Double.parseDouble(data.endsWith("%") ? data.substring(0, data.length() - 1) : data);
+            } catch (NumberFormatException e) {
+                System.err.println("Error converting " + label + " value for storage: " + data);
+                return;
+            }
+        }
+        dataStorage.addPatientData(patientId, value, label, timestamp);
+        recordCount.increment();
+    }
+
+    /**
+     * Adds a sample to the storage without going through the text form of its value
+     * 
+     * @param patientId The identifier for the patient to whom the data pertains
+     * @param timestamp The time at which the data is recorded, in milliseconds
+     * @param signalCode The code of the kind of data, stored as the record type as it is
+     * @param value The actual data value
+     */
+
+    @Override
+    public void output(int patientId, long timestamp, int signalCode, double value) {
+        SignalType signal = SignalType.fromCode(signalCode);
+        if (signal == null) {
+            throw new IllegalArgumentException("Unknown signal code: " + signalCode);
+        }
+        dataStorage.addPatientData(patientId, value, signal.code(), timestamp);
+        recordCount.increment();
+    }
+
+    /**
+     * Adds a whole batch to the storage without going through the text form of the values
+     * 
+     * @param batch The samples to store
+     */
+
+    @Override
+    public void outputBatch(SampleBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            dataStorage.addPatientData(batch.patientId(i), batch.value(i), batch.signalCode(i), batch.timestamp(i));
+        }
+        recordCount.add(batch.size());
+    }
+
+    /**
+     * Returns the number of records added to the storage so far
+     * 
+     * @return the record count
+     */
+
+    public long getRecordCount() {
+        return recordCount.sum();
+    }
+}
@@ -1,21 +1,49 @@
 package com.cardio_generator.outputs;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * An implementation of {@link OutputStrategy} that writes output data to files
  * This class manages file creation and writing in a specified base directory
+ * <p>
+ * Each label's file is opened once and kept open. Encoded lines are appended to a large per-file buffer, which is
+ * written out (group commit) when it is full and, in the background, at a fixed interval, so that many samples
+ * share one write system call. With the durable option every write is also forced to the storage device before
+ * the buffer is reused. Call {@link #close()} to write out the remaining data
  */
 
 //Renamed the class to start with an uppercase letter
 public class FileOutputStrategy implements OutputStrategy {
 
+    /** Default size of the per-file buffer, which is written out when full */
+    public static final int DEFAULT_FLUSH_BYTES = 1 << 20;
+    /** Default interval at which partially filled buffers are written out */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+
     private String baseDirectory;
+    private final int flushBytes;
+    private final boolean durable;
+    private final ConcurrentHashMap<String, LabelFile> files = new ConcurrentHashMap<>();
+    private final Function<String, LabelFile> openLabelFile = this::openLabelFile;
+    private final ScheduledExecutorService flusher;
+    /** Guards opening files against {@link #close()}, so no file is opened after it has run */
+    private final Object openLock = new Object();
+    private volatile boolean closed;
+
+    /** Per-thread line buffers, indexed by signal code */
+    private final ThreadLocal<SampleEncoder[]> encoders = ThreadLocal.withInitial(FileOutputStrategy::newEncoders);
 
     /**
      * A map of file paths associated with data labels to ensure each data type is written to a consistent file
@@ -26,20 +54,52 @@ public class FileOutputStrategy implements OutputStrategy {
 
     /**
      * Constructs a new {@code FileOutputStrategy} with a specified base directory for file output
-     * 
+     * and the default flush policy, without forcing writes to the storage device
+     *
      * @param baseDirectory The directory in which data files will be created and managed
      */
 
     //Changed the constructor name starting with an uppercase letter
     public FileOutputStrategy(String baseDirectory) {
+        this(baseDirectory, DEFAULT_FLUSH_BYTES, DEFAULT_FLUSH_INTERVAL_MILLIS, false);
+    }
+
+    /**
+     * Constructs a new {@code FileOutputStrategy} with a specified base directory and flush policy
+     *
+     * @param baseDirectory The directory in which data files will be created and managed
+     * @param flushBytes The size of each file's buffer; a buffer is written out as soon as it is full
+     * @param flushIntervalMillis The interval at which partially filled buffers are written out, 0 to only write
+     *                            out full buffers and on {@link #close()}
+     * @param durable Whether every write-out is forced to the storage device, so that data that has been
+     *                written out survives a crash of the machine
+     */
+
+    public FileOutputStrategy(String baseDirectory, int flushBytes, long flushIntervalMillis, boolean durable) {
+        if (flushBytes < 1 || flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Flush size must be positive and flush interval non-negative");
+        }
         //Changed the variable name to camelCase to align with Google Java Style Guide
         this.baseDirectory = baseDirectory;
+        this.flushBytes = flushBytes;
+        this.durable = durable;
+        if (flushIntervalMillis > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "file-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
     }
 
     /**
      * Outputs data to a file specific to the data label. If the file doesn't exist, it is created
      * Each output entry is formatted and appended to the appropriate file
-     * 
+     *
      * @param patientId The identifier for the patient to whom the data pertains
      * @param timestamp The time at which the data is recorded, in milliseconds
      * @param label A descriptive label for the data, used to determine the output file
@@ -48,22 +108,197 @@ public class FileOutputStrategy implements OutputStrategy {
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
+        byte[] line = String.format("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n",
+                patientId, timestamp, label, data).getBytes(StandardCharsets.UTF_8);
+        append(label, line, line.length);
+    }
+
+    /**
+     * Appends a sample to the file of its label, encoding it straight into a reusable byte buffer
+     *
+     * @param patientId The identifier of the patient
+     * @param timestamp The time of the sample, in milliseconds
+     * @param signalCode The code of the signal, which determines the output file
+     * @param value The value of the sample
+     */
+
+    @Override
+    public void output(int patientId, long timestamp, int signalCode, double value) {
+        SignalType signal = SignalType.fromCode(signalCode);
+        if (signal == null) {
+            throw new IllegalArgumentException("Unknown signal code: " + signalCode);
+        }
+        SampleEncoder encoder = encoders.get()[signalCode];
+        encoder.clear();
+        encoder.appendReadable(patientId, timestamp, signalCode, value);
+        append(signal.label(), encoder.array(), encoder.size());
+    }
+
+    /**
+     * Outputs a whole batch, appending each label's lines to its buffer in one go
+     *
+     * @param batch The samples to write
+     */
+
+    @Override
+    public void outputBatch(SampleBatch batch) {
+        // Group the encoded lines by signal, so that each buffer is locked once per batch
+        SampleEncoder[] linesBySignal = encoders.get();
+        for (SampleEncoder lines : linesBySignal) {
+            if (lines != null) {
+                lines.clear();
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            int signalCode = batch.signalCode(i);
+            // Checked before anything is written, so a bad sample leaves the files untouched
+            if (SignalType.fromCode(signalCode) == null) {
+                throw new IllegalArgumentException("Unknown signal code: " + signalCode);
+            }
+            linesBySignal[signalCode].appendReadable(batch.patientId(i), batch.timestamp(i), signalCode,
+                    batch.value(i));
+        }
+        for (SignalType signal : SignalType.values()) {
+            SampleEncoder lines = linesBySignal[signal.code()];
+            if (!lines.isEmpty()) {
+                append(signal.label(), lines.array(), lines.size());
+            }
+        }
+    }
+
+    /**
+     * Writes out the buffered data of every file, forcing it to the storage device if this strategy is durable
+     */
+
+    public void flush() {
+        for (LabelFile file : files.values()) {
+            synchronized (file) {
+                file.writeOut();
+            }
+        }
+    }
+
+    /**
+     * Writes out the remaining buffered data and closes all files
+     * Data output after closing is discarded
+     */
+
+    @Override
+    public void close() {
+        synchronized (openLock) {
+            closed = true;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        for (LabelFile file : files.values()) {
+            synchronized (file) {
+                file.writeOut();
+                try {
+                    file.channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing file " + file.path + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void append(String label, byte[] bytes, int length) {
+        if (closed) {
+            return;
+        }
+        LabelFile file = files.get(label);
+        if (file == null) {
+            synchronized (openLock) {
+                if (closed) {
+                    return;
+                }
+                try {
+                    file = files.computeIfAbsent(label, openLabelFile);
+                } catch (UncheckedIOException e) {
+                    System.err.println("Error opening file for " + label + ": " + e.getCause().getMessage());
+                    return;
+                }
+            }
+        }
+        synchronized (file) {
+            if (closed) {
+                return;
+            }
+            file.append(bytes, length);
+        }
+    }
+
+    private LabelFile openLabelFile(String label) {
         try {
             // Create the directory
             Files.createDirectories(Paths.get(baseDirectory));
+            // Set the filePath variable, changed the variable to camelCase
+            String filePath = FILE_MAP.computeIfAbsent(label, k -> Paths.get(baseDirectory, label + ".txt").toString());
+            FileChannel channel = FileChannel.open(Paths.get(filePath),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            return new LabelFile(filePath, channel, ByteBuffer.allocateDirect(flushBytes));
         } catch (IOException e) {
-            System.err.println("Error creating base directory: " + e.getMessage());
-            return;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static SampleEncoder[] newEncoders() {
+        SampleEncoder[] encoders = new SampleEncoder[SignalType.values().length + 1];
+        for (SignalType signal : SignalType.values()) {
+            encoders[signal.code()] = new SampleEncoder(4096);
+        }
+        return encoders;
+    }
+
+    /**
+     * An open file together with its write buffer; guarded by its own monitor
+     */
+
+    private final class LabelFile {
+        private final String path;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        private LabelFile(String path, FileChannel channel, ByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private void append(byte[] bytes, int length) {
+            int offset = 0;
+            while (offset < length) {
+                int chunk = Math.min(buffer.remaining(), length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                if (!buffer.hasRemaining()) {
+                    writeOut();
+                }
+            }
         }
-        // Set the filePath variable, changed the variable to camelCase
-        String filePath = FILE_MAP.computeIfAbsent(label, k -> Paths.get(baseDirectory, label + ".txt").toString());
 
-        // Write the data to the file
-        try (PrintWriter out = new PrintWriter(
-                Files.newBufferedWriter(Paths.get(filePath), StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
-            out.printf("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n", patientId, timestamp, label, data);
-        } catch (Exception e) {
-            System.err.println("Error writing to file " + filePath + ": " + e.getMessage());
+        private void writeOut() {
+            if (!channel.isOpen()) {
+                buffer.clear();
+                return;
+            }
+            if (buffer.position() == 0) {
+                return;
+            }
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (durable) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + path + ": " + e.getMessage());
+            } finally {
+                buffer.clear();
+            }
         }
     }
 }
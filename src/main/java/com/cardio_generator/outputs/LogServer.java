@@ -0,0 +1,276 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves a {@link SegmentLog} to consumers over TCP, from any position in the log onwards
+ * <p>
+ * A consumer connects and sends one request line: {@code OFFSET <sequence>} to start at a record number,
+ * {@code TIME <millis>} to start at the first record at or after a time, or {@code TAIL} for new records only.
+ * The server then streams the log from that position, straight from the mapped segment files and as fast as the
+ * consumer reads, and follows the log live once the consumer has caught up. A consumer that falls behind simply
+ * reads older records from disk, so it never holds up the writer or other consumers, and a consumer that reconnects
+ * with the offset after its last record continues without gaps or duplicates.
+ * <p>
+ * The response is a sequence of chunks, each a little-endian header followed by the records in the segment layout:
+ * <pre>
+ * first offset (i64) | record count (i32) | reserved (i32)
+ * records: timestamp (i64), value (f64), patient ID (i32), signal code (i32)
+ * </pre>
+ */
+
+public class LogServer implements AutoCloseable {
+
+    /** The size of a chunk header in bytes */
+    public static final int CHUNK_HEADER_BYTES = 16;
+    /** The largest number of records sent in one chunk */
+    public static final int MAX_CHUNK_RECORDS = 4096;
+
+    private static final int MAX_REQUEST_BYTES = 256;
+    private static final long TAIL_WAIT_MILLIS = 500;
+    private static final long SEGMENT_RETRY_MILLIS = 10;
+
+    private final SegmentLog log;
+    private final ServerSocketChannel serverChannel;
+    private final Set<SocketChannel> consumers = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+
+    /**
+     * Starts serving a log
+     *
+     * @param log The log to serve; it may be appended to while it is served
+     * @param port The port to listen on, 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+
+    public LogServer(SegmentLog log, int port) throws IOException {
+        this.log = log;
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(new InetSocketAddress(port));
+        Thread acceptor = new Thread(this::acceptConsumers, "log-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        System.out.println("Log server started on port " + getPort() + " for " + log.getDirectory());
+    }
+
+    /**
+     * Returns the port the server listens on
+     *
+     * @return the local port
+     */
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the number of connected consumers
+     *
+     * @return the consumer count
+     */
+
+    public int getConsumerCount() {
+        return consumers.size();
+    }
+
+    /**
+     * Stops accepting consumers and disconnects the connected ones
+     */
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        for (SocketChannel consumer : consumers) {
+            closeQuietly(consumer);
+        }
+    }
+
+    private void acceptConsumers() {
+        while (running) {
+            try {
+                SocketChannel consumer = serverChannel.accept();
+                consumers.add(consumer);
+                Thread thread = new Thread(() -> serve(consumer), "log-consumer-" + consumer.getRemoteAddress());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error accepting log consumer: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(SocketChannel consumer) {
+        String address = consumer.socket().getRemoteSocketAddress().toString();
+        try {
+            consumer.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            String request = readRequest(consumer);
+            long offset = resolve(request);
+            System.out.println("Log consumer " + address + " (" + request + ") starts at offset " + offset);
+            stream(consumer, offset);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid request from log consumer " + address + ": " + e.getMessage());
+        } catch (IOException e) {
+            if (running) {
+                System.out.println("Log consumer disconnected: " + address);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            consumers.remove(consumer);
+            closeQuietly(consumer);
+        }
+    }
+
+    /**
+     * Sends the log from an offset onwards until the consumer disconnects or the server stops
+     *
+     * @param consumer The channel to the consumer
+     * @param offset The sequence number of the first record to send
+     */
+
+    private void stream(SocketChannel consumer, long offset) throws IOException, InterruptedException {
+        ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer[] chunk = new ByteBuffer[2];
+        SegmentLog.Segment segment = null;
+        while (running) {
+            if (segment == null) {
+                segment = segmentFor(offset);
+                if (segment == null) {
+                    // The segment is still being created by the writer
+                    Thread.sleep(SEGMENT_RETRY_MILLIS);
+                    continue;
+                }
+            }
+            // Read the seal first: a sealed segment has published its final count
+            boolean sealed = segment.isSealed();
+            int available = segment.refresh();
+            int index = (int) (offset - segment.baseSequence());
+            if (index < available) {
+                int count = Math.min(available - index, MAX_CHUNK_RECORDS);
+                header.clear();
+                header.putLong(offset).putInt(count).putInt(0).flip();
+                chunk[0] = header;
+                chunk[1] = segment.records(index, index + count);
+                while (chunk[1].hasRemaining()) {
+                    consumer.write(chunk);
+                }
+                offset += count;
+            } else if (sealed) {
+                segment = null;
+            } else if (log.isClosed()) {
+                return;
+            } else {
+                log.awaitAppend(offset, TAIL_WAIT_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Turns a request line into the offset of the first record to send
+     *
+     * @param request The request line, without the line terminator
+     * @return the offset, clamped to the records in the log
+     */
+
+    private long resolve(String request) throws IOException {
+        String[] parts = request.trim().split("\\s+");
+        String command = parts[0].toUpperCase();
+        if (command.equals("TAIL") && parts.length == 1) {
+            return log.nextSequence();
+        }
+        if (parts.length != 2 || !(command.equals("OFFSET") || command.equals("TIME"))) {
+            throw new IllegalArgumentException(request);
+        }
+        long argument;
+        try {
+            argument = Long.parseLong(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(request);
+        }
+        List<Path> paths = SegmentLog.listSegments(log.getDirectory());
+        long first = paths.isEmpty() ? 0 : SegmentLog.baseSequenceOf(paths.get(0));
+        if (command.equals("OFFSET")) {
+            return Math.max(first, Math.min(argument, log.nextSequence()));
+        }
+        for (Path path : paths) {
+            SegmentLog.Segment segment;
+            try {
+                segment = SegmentLog.Segment.open(path);
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            int count = segment.count();
+            int index = segment.seek(argument);
+            while (index < count && segment.timestamp(index) < argument) {
+                index++;
+            }
+            if (index < count) {
+                return segment.baseSequence() + index;
+            }
+        }
+        return log.nextSequence();
+    }
+
+    /**
+     * Maps the segment that holds an offset
+     *
+     * @param offset The sequence number of a record
+     * @return the segment, or null if it is not ready yet
+     */
+
+    private SegmentLog.Segment segmentFor(long offset) throws IOException {
+        List<Path> paths = SegmentLog.listSegments(log.getDirectory());
+        for (int i = paths.size() - 1; i >= 0; i--) {
+            if (SegmentLog.baseSequenceOf(paths.get(i)) <= offset) {
+                try {
+                    return SegmentLog.Segment.open(paths.get(i));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String readRequest(SocketChannel consumer) throws IOException {
+        ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST_BYTES);
+        while (request.hasRemaining()) {
+            if (consumer.read(request) < 0) {
+                throw new IOException("Closed before sending a request");
+            }
+            for (int i = 0; i < request.position(); i++) {
+                if (request.get(i) == '\n') {
+                    return new String(request.array(), 0, i, StandardCharsets.US_ASCII).trim();
+                }
+            }
+        }
+        throw new IllegalArgumentException("Request too long");
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already closed by the consumer
+        }
+    }
+}
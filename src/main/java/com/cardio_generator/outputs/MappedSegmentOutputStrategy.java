@@ -0,0 +1,107 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * An implementation of {@link OutputStrategy} that appends binary records to a {@link SegmentLog}
+ * Records are copied into memory-mapped segment files of a fixed size, so output never waits for a write system
+ * call, and a new segment is started whenever the current one is full. This is the format of choice for long,
+ * multi-gigabyte recordings, which can be read back with {@code com.data_management.SegmentLogReader}
+ */
+
+public class MappedSegmentOutputStrategy implements OutputStrategy {
+
+    private final SegmentLog log;
+
+    /**
+     * Constructs a segment log output in the given directory, using segments of the default size
+     * 
+     * @param directory The directory of the segment files; an existing log in it is continued
+     * @throws IOException if the directory or the first segment cannot be created
+     */
+
+    public MappedSegmentOutputStrategy(String directory) throws IOException {
+        this(directory, SegmentLog.DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Constructs a segment log output in the given directory
+     * 
+     * @param directory The directory of the segment files; an existing log in it is continued
+     * @param segmentBytes The size of each segment file in bytes
+     * @throws IOException if the directory or the first segment cannot be created
+     */
+
+    public MappedSegmentOutputStrategy(String directory, int segmentBytes) throws IOException {
+        this.log = new SegmentLog(Paths.get(directory), segmentBytes);
+    }
+
+    /**
+     * Converts the data back to a number and appends it to the log
+     * Labels that are not a known {@link SignalType} cannot be stored in the binary format and are skipped
+     * 
+     * @param patientId The identifier for the patient to whom the data pertains
+     * @param timestamp The time at which the data is recorded, in milliseconds
+     * @param label A descriptive label for the data
+     * @param data The actual data value as a string
+     */
+
+    @Override
+    public void output(int patientId, long timestamp, String label, String data) {
+        SignalType signal = SignalType.fromLabel(label);
+        if (signal == null) {
+            System.err.println("Cannot write unknown label to segment log: " + label);
+            return;
+        }
+        try {
+            log.append(patientId, timestamp, signal.code(), signal.parse(data));
+        } catch (NumberFormatException e) {
+            System.err.println("Error converting " + label + " value for segment log: " + data);
+        }
+    }
+
+    /**
+     * Appends a sample to the log
+     * 
+     * @param patientId The identifier of the patient
+     * @param timestamp The time of the sample, in milliseconds
+     * @param signalCode The code of the signal
+     * @param value The value of the sample
+     */
+
+    @Override
+    public void output(int patientId, long timestamp, int signalCode, double value) {
+        log.append(patientId, timestamp, signalCode, value);
+    }
+
+    /**
+     * Appends a whole batch to the log under a single lock
+     * 
+     * @param batch The samples to append
+     */
+
+    @Override
+    public void outputBatch(SampleBatch batch) {
+        log.append(batch);
+    }
+
+    /**
+     * Returns the log this strategy appends to
+     * 
+     * @return the segment log
+     */
+
+    public SegmentLog getLog() {
+        return log;
+    }
+
+    /**
+     * Forces the active segment to disk and stops appending
+     */
+
+    @Override
+    public void close() {
+        log.close();
+    }
+}
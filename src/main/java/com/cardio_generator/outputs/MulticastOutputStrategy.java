@@ -0,0 +1,235 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.ProtocolFamily;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An implementation of {@link OutputStrategy} that publishes samples to a UDP multicast group
+ * <p>
+ * Samples are packed into datagrams of fixed-width records, so publishing costs the same however many receivers
+ * have joined the group. Every datagram carries the random ID of this source and a sequence number that grows by one
+ * per datagram, which lets receivers detect lost, duplicated and reordered datagrams; UDP does not retransmit.
+ * Datagrams are little-endian:
+ * <pre>
+ * magic (i32) | version (u8) | reserved (u8) | record count (u16) | source ID (i64) | sequence (i64) | base timestamp (i64)
+ * records: patient ID (i32), signal code (i32), timestamp - base (i32), value (f64)
+ * </pre>
+ * Each call sends its samples right away, filling datagrams up to the configured size
+ */
+
+public class MulticastOutputStrategy implements OutputStrategy {
+
+    /** The first four bytes of every datagram, "CGM1" */
+    public static final int MAGIC = 0x314D4743;
+    /** The version written to every datagram */
+    public static final byte VERSION = 1;
+    /** The size of the datagram header in bytes */
+    public static final int HEADER_BYTES = 32;
+    /** The size of one record in bytes */
+    public static final int RECORD_BYTES = 20;
+    /** Default datagram size, which fits an Ethernet frame without IP fragmentation */
+    public static final int DEFAULT_DATAGRAM_BYTES = 1400;
+
+    /** Offset of the record count in a datagram */
+    public static final int COUNT_OFFSET = 6;
+    /** Offset of the source ID in a datagram */
+    public static final int SOURCE_OFFSET = 8;
+    /** Offset of the sequence number in a datagram */
+    public static final int SEQUENCE_OFFSET = 16;
+    /** Offset of the base timestamp in a datagram */
+    public static final int BASE_TIMESTAMP_OFFSET = 24;
+
+    private final InetSocketAddress target;
+    private final long sourceId = ThreadLocalRandom.current().nextLong();
+    private final ByteBuffer datagram;
+    private DatagramChannel channel;
+    private long sequence;
+
+    /**
+     * Constructs a multicast output on the default interface with the default datagram size
+     *
+     * @param group The multicast group address, e.g. "239.255.42.99"
+     * @param port The UDP port that receivers listen on
+     * @throws IOException if the group address cannot be resolved
+     */
+
+    public MulticastOutputStrategy(String group, int port) throws IOException {
+        this(InetAddress.getByName(group), port, defaultInterface(), DEFAULT_DATAGRAM_BYTES, 1);
+    }
+
+    /**
+     * Constructs a multicast output
+     *
+     * @param group The multicast group address
+     * @param port The UDP port that receivers listen on
+     * @param networkInterface The interface that datagrams are sent from
+     * @param datagramBytes The largest datagram to send, at least one header and one record
+     * @param timeToLive The number of router hops datagrams may cross, 0 to stay on this host
+     */
+
+    public MulticastOutputStrategy(InetAddress group, int port, NetworkInterface networkInterface, int datagramBytes,
+            int timeToLive) {
+        if (!group.isMulticastAddress()) {
+            throw new IllegalArgumentException("Not a multicast address: " + group.getHostAddress());
+        }
+        if (datagramBytes < HEADER_BYTES + RECORD_BYTES || datagramBytes > 65507) {
+            throw new IllegalArgumentException("Invalid datagram size: " + datagramBytes);
+        }
+        target = new InetSocketAddress(group, port);
+        datagram = ByteBuffer.allocateDirect(datagramBytes - (datagramBytes - HEADER_BYTES) % RECORD_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            channel = DatagramChannel.open(family(group));
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, timeToLive);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            System.out.println("Multicast output to " + group.getHostAddress() + ":" + port + " on "
+                    + networkInterface.getName() + ", source ID " + Long.toHexString(sourceId));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public synchronized void output(int patientId, long timestamp, String label, String data) {
+        SignalType signal = SignalType.fromLabel(label);
+        if (signal == null) {
+            System.err.println("Cannot send unknown signal over multicast: " + label);
+            return;
+        }
+        try {
+            append(patientId, timestamp, signal.code(), signal.parse(data));
+        } catch (NumberFormatException e) {
+            System.err.println("Cannot send " + label + " value over multicast: " + data);
+        }
+        send();
+    }
+
+    /**
+     * Sends a sample in a datagram of its own
+     *
+     * @param patientId The identifier of the patient
+     * @param timestamp The time of the sample, in milliseconds
+     * @param signalCode The code of the signal
+     * @param value The value of the sample
+     */
+
+    @Override
+    public synchronized void output(int patientId, long timestamp, int signalCode, double value) {
+        append(patientId, timestamp, signalCode, value);
+        send();
+    }
+
+    /**
+     * Sends a batch in as few datagrams as possible
+     *
+     * @param batch The samples to send
+     */
+
+    @Override
+    public synchronized void outputBatch(SampleBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            append(batch.patientId(i), batch.timestamp(i), batch.signalCode(i), batch.value(i));
+        }
+        send();
+    }
+
+    /**
+     * Returns the ID that this source stamps on its datagrams
+     *
+     * @return the source ID
+     */
+
+    public long getSourceId() {
+        return sourceId;
+    }
+
+    /**
+     * Returns the number of datagrams sent so far, which is also the next sequence number
+     *
+     * @return the datagram count
+     */
+
+    public synchronized long getSentDatagrams() {
+        return sequence;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the interface that multicast uses when none is given: the first interface that is up and supports
+     * multicast, or the loopback interface if there is none
+     *
+     * @return the interface
+     * @throws SocketException if the interfaces cannot be listed
+     */
+
+    public static NetworkInterface defaultInterface() throws SocketException {
+        for (NetworkInterface candidate : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (candidate.isUp() && candidate.supportsMulticast() && !candidate.isLoopback()) {
+                return candidate;
+            }
+        }
+        return NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+    }
+
+    private void append(int patientId, long timestamp, int signalCode, double value) {
+        if (datagram.position() > 0) {
+            long delta = timestamp - datagram.getLong(BASE_TIMESTAMP_OFFSET);
+            if (datagram.remaining() < RECORD_BYTES || delta != (int) delta) {
+                send();
+            }
+        }
+        if (datagram.position() == 0) {
+            datagram.putInt(MAGIC).put(VERSION).put((byte) 0).putShort((short) 0)
+                    .putLong(sourceId).putLong(sequence).putLong(timestamp);
+        }
+        datagram.putInt(patientId)
+                .putInt(signalCode)
+                .putInt((int) (timestamp - datagram.getLong(BASE_TIMESTAMP_OFFSET)))
+                .putDouble(value);
+        datagram.putShort(COUNT_OFFSET, (short) (datagram.getShort(COUNT_OFFSET) + 1));
+    }
+
+    private void send() {
+        if (datagram.position() == 0) {
+            return;
+        }
+        datagram.flip();
+        try {
+            if (channel != null && channel.isOpen()) {
+                channel.send(datagram, target);
+            }
+        } catch (IOException e) {
+            // A datagram that cannot be sent is lost like one dropped by the network; receivers see the gap
+            System.err.println("Error sending multicast datagram " + sequence + ": " + e.getMessage());
+        }
+        datagram.clear();
+        sequence++;
+    }
+
+    private static ProtocolFamily family(InetAddress group) {
+        return group.getAddress().length == 4 ? StandardProtocolFamily.INET : StandardProtocolFamily.INET6;
+    }
+}
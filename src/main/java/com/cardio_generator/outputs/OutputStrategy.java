@@ -6,7 +6,7 @@ package com.cardio_generator.outputs;
  * allowing different implementations to handle how data is presented or stored
  */
 
-public interface OutputStrategy {
+public interface OutputStrategy extends AutoCloseable {
 
 /**
  * Outputs data for a specific patient at a given time
@@ -18,4 +18,47 @@ public interface OutputStrategy {
  */
 
     void output(int patientId, long timestamp, String label, String data);
+
+/**
+ * Outputs a single sample given as primitives, so that no text has to be built by the caller
+ * The default implementation formats the value through {@link SignalType} and passes it to
+ * {@link #output(int, long, String, String)}; the built-in strategies override it to encode the sample
+ * straight into a reusable byte buffer
+ * 
+ * @param patientId The identifier for the patient to whom the data pertains
+ * @param timestamp The time at which the data is recorded, represented as a long
+ * @param signalCode The code of the kind of data, see {@link SignalType#code()}
+ * @param value The actual data value
+ */
+
+    default void output(int patientId, long timestamp, int signalCode, double value) {
+        SignalType signal = SignalType.fromCode(signalCode);
+        if (signal == null) {
+            throw new IllegalArgumentException("Unknown signal code: " + signalCode);
+        }
+        output(patientId, timestamp, signal.label(), signal.format(value));
+    }
+
+/**
+ * Outputs every sample of a batch, in order
+ * The default implementation passes each sample to {@link #output(int, long, int, double)};
+ * implementations override it to amortize encoding, framing and I/O over the whole batch
+ * 
+ * @param batch The samples to output; the batch is not modified
+ */
+
+    default void outputBatch(SampleBatch batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            output(batch.patientId(i), batch.timestamp(i), batch.signalCode(i), batch.value(i));
+        }
+    }
+
+/**
+ * Writes out any buffered data and releases the resources held by this strategy
+ * The default implementation does nothing, for strategies that do not buffer
+ */
+
+    @Override
+    default void close() {
+    }
 }
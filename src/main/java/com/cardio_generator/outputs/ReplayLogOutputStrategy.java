@@ -0,0 +1,66 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+
+/**
+ * A {@link MappedSegmentOutputStrategy} whose log is also served to consumers by a {@link LogServer}
+ * Consumers that connect late, or reconnect after a restart, ask for an offset or a time and catch up from the local
+ * log at disk speed before they follow the live output, instead of missing everything sent while they were away.
+ * They are read with {@code com.data_management.LogReplayReader}
+ */
+
+public class ReplayLogOutputStrategy extends MappedSegmentOutputStrategy {
+
+    private final LogServer server;
+
+    /**
+     * Constructs a replayable log output in the given directory, using segments of the default size
+     *
+     * @param directory The directory of the segment files; an existing log in it is continued and served too
+     * @param port The port consumers connect to, 0 for any free port
+     * @throws IOException if the log cannot be created or the port cannot be bound
+     */
+
+    public ReplayLogOutputStrategy(String directory, int port) throws IOException {
+        this(directory, port, SegmentLog.DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Constructs a replayable log output in the given directory
+     *
+     * @param directory The directory of the segment files; an existing log in it is continued and served too
+     * @param port The port consumers connect to, 0 for any free port
+     * @param segmentBytes The size of each segment file in bytes
+     * @throws IOException if the log cannot be created or the port cannot be bound
+     */
+
+    public ReplayLogOutputStrategy(String directory, int port, int segmentBytes) throws IOException {
+        super(directory, segmentBytes);
+        try {
+            server = new LogServer(getLog(), port);
+        } catch (IOException e) {
+            super.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the server that consumers connect to
+     *
+     * @return the log server
+     */
+
+    public LogServer getServer() {
+        return server;
+    }
+
+    /**
+     * Disconnects the consumers, then closes the log
+     */
+
+    @Override
+    public void close() {
+        server.close();
+        super.close();
+    }
+}
@@ -0,0 +1,98 @@
+package com.cardio_generator.outputs;
+
+import java.util.Arrays;
+
+/**
+ * A reusable, columnar batch of generated samples
+ * Samples are kept in parallel primitive arrays (patient IDs, timestamps, signal codes and values) so that
+ * generators can fill them in tight loops and output strategies can encode many samples at once
+ * A batch is not thread-safe; it is meant to be filled and drained by one thread and then cleared for reuse
+ */
+
+public class SampleBatch {
+
+    private int[] patientIds;
+    private long[] timestamps;
+    private int[] signalCodes;
+    private double[] values;
+    private int size;
+
+    /**
+     * Constructs an empty batch with the given initial capacity
+     * The batch grows as needed
+     * 
+     * @param capacity the number of samples the batch can hold before it grows
+     */
+
+    public SampleBatch(int capacity) {
+        int initial = Math.max(1, capacity);
+        patientIds = new int[initial];
+        timestamps = new long[initial];
+        signalCodes = new int[initial];
+        values = new double[initial];
+    }
+
+    /**
+     * Appends a sample to the batch
+     * 
+     * @param patientId the identifier of the patient
+     * @param timestamp the time of the sample, in milliseconds since the Unix epoch
+     * @param signal the kind of signal
+     * @param value the value of the sample
+     */
+
+    public void add(int patientId, long timestamp, SignalType signal, double value) {
+        if (size == patientIds.length) {
+            grow();
+        }
+        patientIds[size] = patientId;
+        timestamps[size] = timestamp;
+        signalCodes[size] = signal.code();
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Removes all samples while keeping the allocated capacity
+     */
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int patientId(int index) {
+        return patientIds[index];
+    }
+
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    public int signalCode(int index) {
+        return signalCodes[index];
+    }
+
+    public SignalType signal(int index) {
+        return SignalType.fromCode(signalCodes[index]);
+    }
+
+    public double value(int index) {
+        return values[index];
+    }
+
+    private void grow() {
+        int capacity = patientIds.length * 2;
+        patientIds = Arrays.copyOf(patientIds, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        signalCodes = Arrays.copyOf(signalCodes, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+}
@@ -0,0 +1,304 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable byte buffer that encodes samples as ASCII text without creating intermediate strings
+ * Numbers are written digit by digit straight into the buffer, and labels come from precomputed byte arrays,
+ * so once the buffer has grown to its working size, encoding a sample allocates nothing
+ * Values with a fractional part are written with at most nine fractional digits; values that are not finite
+ * or too large for that form fall back to {@link Double#toString(double)}
+ * An encoder is not thread-safe; strategies keep one per thread
+ */
+
+public final class SampleEncoder {
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PATIENT_ID = ascii("Patient ID: ");
+    private static final byte[] TIMESTAMP = ascii(", Timestamp: ");
+    private static final byte[] LABEL = ascii(", Label: ");
+    private static final byte[] DATA = ascii(", Data: ");
+    private static final byte[] TRIGGERED = ascii("triggered");
+    private static final byte[] RESOLVED = ascii("resolved");
+    private static final byte[] MIN_LONG = ascii(Long.toString(Long.MIN_VALUE));
+    private static final byte[][] LABELS = new byte[SignalType.values().length + 1][];
+
+    /** Largest magnitude written in plain digits; {@link Double#toString(double)} switches to exponents from here */
+    private static final double PLAIN_LIMIT = 1e7;
+    private static final int FRACTION_DIGITS = 9;
+    private static final long FRACTION_SCALE = 1_000_000_000L;
+
+    static {
+        for (SignalType signal : SignalType.values()) {
+            LABELS[signal.code()] = ascii(signal.label());
+        }
+    }
+
+    private byte[] buffer;
+    private int size;
+
+    /**
+     * Constructs an empty encoder with the given initial capacity
+     * The buffer grows as needed
+     *
+     * @param capacity the number of bytes the encoder can hold before it grows
+     */
+
+    public SampleEncoder(int capacity) {
+        buffer = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Appends a sample in the human-readable line format used by the console and file outputs,
+     * e.g. "Patient ID: 7, Timestamp: 1700000000000, Label: Saturation, Data: 97.0%", followed by a line separator
+     *
+     * @param patientId the identifier of the patient
+     * @param timestamp the time of the sample, in milliseconds since the Unix epoch
+     * @param signalCode the code of the signal, see {@link SignalType#code()}
+     * @param value the value of the sample
+     */
+
+    public void appendReadable(int patientId, long timestamp, int signalCode, double value) {
+        append(PATIENT_ID);
+        appendLong(patientId);
+        append(TIMESTAMP);
+        appendLong(timestamp);
+        append(LABEL);
+        append(label(signalCode));
+        append(DATA);
+        appendValue(signalCode, value);
+        append(NEWLINE);
+    }
+
+    /**
+     * Appends a sample in the comma-separated format used by the network outputs,
+     * e.g. "7,1700000000000,Saturation,97.0%", without a line separator
+     *
+     * @param patientId the identifier of the patient
+     * @param timestamp the time of the sample, in milliseconds since the Unix epoch
+     * @param signalCode the code of the signal, see {@link SignalType#code()}
+     * @param value the value of the sample
+     */
+
+    public void appendCsv(int patientId, long timestamp, int signalCode, double value) {
+        appendLong(patientId);
+        appendByte(',');
+        appendLong(timestamp);
+        appendByte(',');
+        append(label(signalCode));
+        appendByte(',');
+        appendValue(signalCode, value);
+    }
+
+    /**
+     * Appends a value the way {@link SignalType#format(double)} writes it for the given signal
+     *
+     * @param signalCode the code of the signal
+     * @param value the value to append
+     */
+
+    public void appendValue(int signalCode, double value) {
+        if (signalCode == SignalType.ALERT.code()) {
+            append(value != 0 ? TRIGGERED : RESOLVED);
+            return;
+        }
+        appendDouble(value);
+        if (signalCode == SignalType.SATURATION.code()) {
+            appendByte('%');
+        }
+    }
+
+    /**
+     * Appends text that is expected to be ASCII; other characters are written as '?'
+     *
+     * @param text the text to append
+     */
+
+    public void appendAscii(CharSequence text) {
+        int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            buffer[size++] = (byte) (c < 128 ? c : '?');
+        }
+    }
+
+    /**
+     * Appends the line separator of the platform
+     */
+
+    public void appendNewline() {
+        append(NEWLINE);
+    }
+
+    /**
+     * Appends a single ASCII character
+     *
+     * @param c the character to append
+     */
+
+    public void appendByte(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    /**
+     * Appends a number in decimal digits
+     *
+     * @param value the number to append
+     */
+
+    public void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            append(MIN_LONG);
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        int end = size + digitCount(value);
+        int pos = end;
+        do {
+            buffer[--pos] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        size = end;
+    }
+
+    /**
+     * Appends a floating-point number
+     * Whole numbers are written like {@link Double#toString(double)} does, e.g. "120.0"; other values are rounded
+     * to at most nine fractional digits and written without trailing zeros
+     *
+     * @param value the number to append
+     */
+
+    public void appendDouble(double value) {
+        double magnitude = Math.abs(value);
+        if (!(magnitude < PLAIN_LIMIT)) {
+            // NaN, infinities and large values are rare enough to go through the JDK
+            append(ascii(Double.toString(value)));
+            return;
+        }
+        if (value < 0 || (value == 0 && 1 / value < 0)) {
+            appendByte('-');
+        }
+        long whole = (long) magnitude;
+        long fraction = Math.round((magnitude - whole) * FRACTION_SCALE);
+        if (fraction == FRACTION_SCALE) {
+            whole++;
+            fraction = 0;
+        }
+        appendLong(whole);
+        appendByte('.');
+        if (fraction == 0) {
+            appendByte('0');
+            return;
+        }
+        int digits = FRACTION_DIGITS;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        ensureCapacity(digits);
+        for (int pos = size + digits - 1; pos >= size; pos--) {
+            buffer[pos] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        size += digits;
+    }
+
+    /**
+     * Discards the contents so that the encoder can be reused; the buffer is kept
+     */
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the number of encoded bytes
+     *
+     * @return the size in bytes
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether nothing has been encoded since the last {@link #clear()}
+     *
+     * @return {@code true} if the encoder is empty
+     */
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the backing array; only the first {@link #size()} bytes are valid
+     * The array is replaced when the encoder grows, so it must not be held on to across appends
+     *
+     * @return the backing array
+     */
+
+    public byte[] array() {
+        return buffer;
+    }
+
+    /**
+     * Writes the encoded bytes to a stream
+     *
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, size, StandardCharsets.US_ASCII);
+    }
+
+    private void append(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            byte[] grown = new byte[Math.max(buffer.length * 2, size + extra)];
+            System.arraycopy(buffer, 0, grown, 0, size);
+            buffer = grown;
+        }
+    }
+
+    private static byte[] label(int signalCode) {
+        byte[] label = signalCode > 0 && signalCode < LABELS.length ? LABELS[signalCode] : null;
+        if (label == null) {
+            throw new IllegalArgumentException("Unknown signal code: " + signalCode);
+        }
+        return label;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (value >= 10) {
+            value /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,641 @@
+package com.cardio_generator.outputs;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only log of fixed-width binary samples, stored in memory-mapped segment files
+ * <p>
+ * Every segment file has the same size and layout: a 64 byte header, a sparse index with the smallest and largest
+ * timestamp of every block of {@link #INDEX_INTERVAL} records, and the records themselves, each
+ * {@link #RECORD_BYTES} bytes wide (timestamp, value, patient ID, signal code; little-endian). Records are numbered
+ * with a sequence that continues across segments, and each segment file is named after the sequence number of its
+ * first record, so the files sort in log order.
+ * <p>
+ * Appending only copies bytes into the mapped file and publishes the new record count in the header; the operating
+ * system writes the pages back in the background. When a segment is full it is sealed and the writer moves on to the
+ * next segment, which is created and mapped ahead of time by a background thread, as is forcing the sealed segment to
+ * disk. Readers map segments read-only, see {@link Segment}, and may read the active segment up to its published
+ * record count.
+ */
+
+public class SegmentLog implements AutoCloseable {
+
+    /** Size of the segment header in bytes */
+    public static final int HEADER_BYTES = 64;
+    /** Size of one record in bytes */
+    public static final int RECORD_BYTES = 24;
+    /** Number of records covered by one sparse index entry */
+    public static final int INDEX_INTERVAL = 1024;
+    /** Size of one sparse index entry in bytes (smallest and largest timestamp of the block) */
+    public static final int INDEX_ENTRY_BYTES = 16;
+    /** Default size of a segment file */
+    public static final int DEFAULT_SEGMENT_BYTES = 64 << 20;
+    /** Smallest size of a segment file, which holds a single record */
+    public static final int MIN_SEGMENT_BYTES = HEADER_BYTES + INDEX_ENTRY_BYTES + RECORD_BYTES;
+
+    private static final int MAGIC = 0x43534547; // "CSEG"
+    private static final int VERSION = 1;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int RECORD_BYTES_OFFSET = 8;
+    private static final int INDEX_INTERVAL_OFFSET = 12;
+    private static final int CAPACITY_OFFSET = 16;
+    private static final int SEALED_OFFSET = 20;
+    private static final int BASE_SEQUENCE_OFFSET = 24;
+    private static final int COUNT_OFFSET = 32;
+    private static final String SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final ExecutorService background;
+    private Segment active;
+    private Future<Segment> next;
+    private boolean closed;
+    private int waiters; // Threads in awaitAppend, so that appends only notify when someone is waiting
+
+    /**
+     * Opens a segment log in the given directory, creating the directory if needed
+     * If the directory already holds a log, appending continues after its last record; segments at the end that never
+     * got a record, such as the one prepared for the next roll when the previous writer was not closed, are removed
+     *
+     * @param directory the directory of the segment files
+     * @param segmentBytes the size of each new segment file
+     * @throws IOException if the directory or a segment file cannot be created
+     */
+
+    public SegmentLog(Path directory, int segmentBytes) throws IOException {
+        if (capacityFor(segmentBytes) < 1) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+        this.background = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "segment-roller");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Path> existing = listSegments(directory);
+        // Continuing after an empty segment would leave a gap in the sequence
+        while (!existing.isEmpty() && isUnused(existing.get(existing.size() - 1))) {
+            Files.delete(existing.remove(existing.size() - 1));
+        }
+        // Only the last segment may still grow, so readers must not wait at the end of an older one
+        for (int i = 0; i < existing.size() - 1; i++) {
+            ByteBuffer header = readHeader(existing.get(i));
+            if (header != null && header.getInt(SEALED_OFFSET) == 0) {
+                Segment older = Segment.open(existing.get(i), true);
+                older.seal();
+                older.force();
+            }
+        }
+        Segment last = existing.isEmpty() ? null : Segment.open(existing.get(existing.size() - 1), true);
+        if (last != null && !last.isSealed()) {
+            active = last;
+        } else {
+            active = create(last == null ? 0 : last.baseSequence() + last.count());
+        }
+        prepareNext();
+    }
+
+    /**
+     * Appends a single record
+     *
+     * @param patientId the identifier of the patient
+     * @param timestamp the time of the sample, in milliseconds since the Unix epoch
+     * @param signalCode the code of the signal, see {@link SignalType#code()}
+     * @param value the value of the sample
+     */
+
+    public synchronized void append(int patientId, long timestamp, int signalCode, double value) {
+        if (closed) {
+            return;
+        }
+        if (active.isFull()) {
+            roll();
+        }
+        active.put(patientId, timestamp, signalCode, value);
+        active.publish();
+        if (waiters > 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Appends every sample of a batch, publishing the new record count once per segment touched
+     *
+     * @param batch the samples to append
+     */
+
+    public synchronized void append(SampleBatch batch) {
+        if (closed) {
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            if (active.isFull()) {
+                active.publish();
+                roll();
+            }
+            active.put(batch.patientId(i), batch.timestamp(i), batch.signalCode(i), batch.value(i));
+        }
+        active.publish();
+        if (waiters > 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the sequence number that the next appended record will get
+     *
+     * @return the next sequence number
+     */
+
+    public synchronized long nextSequence() {
+        return active.baseSequence() + active.count();
+    }
+
+    /**
+     * Waits until a record with the given sequence number has been appended, the log is closed or the time is up
+     * Readers that have caught up with the log use this to follow it live
+     *
+     * @param sequence the sequence number to wait for
+     * @param timeoutMillis the longest time to wait, in milliseconds
+     * @return the next sequence number when the wait ended
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+
+    public synchronized long awaitAppend(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        waiters++;
+        try {
+            long remaining = timeoutMillis;
+            while (!closed && nextSequence() <= sequence && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        } finally {
+            waiters--;
+        }
+        return nextSequence();
+    }
+
+    /**
+     * Returns whether the log has been closed
+     *
+     * @return {@code true} once {@link #close()} has been called
+     */
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Returns the directory of this log
+     *
+     * @return the directory of the segment files
+     */
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Forces the active segment to disk and stops appending
+     * The active segment stays unsealed, so that a later writer continues it; appends after closing are ignored
+     */
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        notifyAll();
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        active.force();
+        // The segment prepared for the next roll was never written; leave no gap in the sequence behind
+        try {
+            Files.deleteIfExists(next.get().path);
+        } catch (IOException | ExecutionException e) {
+            System.err.println("Error removing unused segment: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lists the segment files of a log directory in log order
+     *
+     * @param directory the directory of the segment files
+     * @return the segment files, oldest first; empty if the directory does not exist
+     * @throws IOException if the directory cannot be listed
+     */
+
+    public static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                segments.add(file);
+            }
+        }
+        // Names are zero-padded sequence numbers, so lexical order is log order
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Returns the sequence number of the first record of a segment file from its name, without opening it
+     *
+     * @param segment a segment file, as listed by {@link #listSegments(Path)}
+     * @return the base sequence number of the segment
+     * @throws IllegalArgumentException if the name is not a segment file name
+     */
+
+    public static long baseSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) {
+            throw new IllegalArgumentException("Not a segment file: " + segment);
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a segment file: " + segment);
+        }
+    }
+
+    private void roll() {
+        Segment sealed = active;
+        sealed.seal();
+        try {
+            active = next.get();
+        } catch (InterruptedException | ExecutionException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // Fall back to creating the segment on the writer thread
+            try {
+                active = create(sealed.baseSequence() + sealed.count());
+            } catch (IOException io) {
+                throw new IllegalStateException("Cannot create segment after " + sealed.path, io);
+            }
+        }
+        background.execute(sealed::force);
+        prepareNext();
+    }
+
+    private void prepareNext() {
+        long base = active.baseSequence() + active.capacity();
+        next = background.submit(() -> create(base));
+    }
+
+    private Segment create(long baseSequence) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", baseSequence, SUFFIX));
+        int capacity = capacityFor(segmentBytes);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(RECORD_BYTES_OFFSET, RECORD_BYTES);
+        buffer.putInt(INDEX_INTERVAL_OFFSET, INDEX_INTERVAL);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putLong(BASE_SEQUENCE_OFFSET, baseSequence);
+        buffer.putLong(COUNT_OFFSET, 0);
+        // Written last, so that a half-initialized file is never taken for a segment
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        return new Segment(path, buffer);
+    }
+
+    /**
+     * Returns whether a segment file never got a record: it is empty and unsealed, or was not fully created
+     */
+
+    private static boolean isUnused(Path path) throws IOException {
+        ByteBuffer header = readHeader(path);
+        return header == null || header.getInt(MAGIC_OFFSET) != MAGIC
+                || header.getInt(SEALED_OFFSET) == 0 && header.getLong(COUNT_OFFSET) == 0;
+    }
+
+    /**
+     * Reads the header of a segment file without mapping it
+     *
+     * @return the header, or {@code null} if the file is too short to hold one
+     */
+
+    private static ByteBuffer readHeader(Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return null;
+                }
+            }
+        }
+        return header;
+    }
+
+    private static int capacityFor(int segmentBytes) {
+        long usable = (long) segmentBytes - HEADER_BYTES;
+        long capacity = usable * INDEX_INTERVAL / ((long) RECORD_BYTES * INDEX_INTERVAL + INDEX_ENTRY_BYTES);
+        while (capacity > 0 && HEADER_BYTES + indexBytes(capacity) + capacity * RECORD_BYTES > segmentBytes) {
+            capacity--;
+        }
+        return (int) Math.max(0, capacity);
+    }
+
+    private static long indexBytes(long capacity) {
+        return (capacity + INDEX_INTERVAL - 1) / INDEX_INTERVAL * INDEX_ENTRY_BYTES;
+    }
+
+    /**
+     * A mapped segment file, used for reading and, within the log, for appending
+     * Reading is zero-copy: the accessors read straight from the mapped file
+     */
+
+    public static final class Segment {
+
+        // The count and the seal flag are written with release and read with acquire semantics, so that a reader
+        // in another thread or process that sees a count also sees the records it covers
+        private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+                ByteOrder.LITTLE_ENDIAN);
+        private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class,
+                ByteOrder.LITTLE_ENDIAN);
+
+        private final Path path;
+        private final ByteBuffer buffer;
+        private final int capacity;
+        private final int recordsOffset;
+        private int count;
+
+        private Segment(Path path, ByteBuffer buffer) {
+            if (buffer.getInt(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION
+                    || buffer.getInt(RECORD_BYTES_OFFSET) != RECORD_BYTES
+                    || buffer.getInt(INDEX_INTERVAL_OFFSET) != INDEX_INTERVAL) {
+                throw new IllegalArgumentException("Not a segment file: " + path);
+            }
+            this.path = path;
+            this.buffer = buffer;
+            this.capacity = buffer.getInt(CAPACITY_OFFSET);
+            this.recordsOffset = HEADER_BYTES + (int) indexBytes(capacity);
+            this.count = (int) (long) LONGS.getAcquire(buffer, COUNT_OFFSET);
+        }
+
+        /**
+         * Maps a segment file read-only
+         *
+         * @param path the segment file
+         * @return the segment
+         * @throws IOException if the file cannot be mapped
+         * @throws IllegalArgumentException if the file is not a segment file
+         */
+
+        public static Segment open(Path path) throws IOException {
+            return open(path, false);
+        }
+
+        private static Segment open(Path path, boolean writable) throws IOException {
+            ByteBuffer buffer;
+            try (FileChannel channel = writable
+                    ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                    : FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() < HEADER_BYTES) {
+                    throw new IllegalArgumentException("Not a segment file: " + path);
+                }
+                buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                        0, channel.size());
+            }
+            return new Segment(path, buffer.order(ByteOrder.LITTLE_ENDIAN));
+        }
+
+        /**
+         * Returns the file of this segment
+         *
+         * @return the path of the segment file
+         */
+
+        public Path path() {
+            return path;
+        }
+
+        /**
+         * Returns the sequence number of the first record of this segment
+         *
+         * @return the base sequence number
+         */
+
+        public long baseSequence() {
+            return buffer.getLong(BASE_SEQUENCE_OFFSET);
+        }
+
+        /**
+         * Returns the number of records this segment can hold
+         *
+         * @return the capacity in records
+         */
+
+        public int capacity() {
+            return capacity;
+        }
+
+        /**
+         * Returns the number of records published so far
+         * For the active segment of a running writer this grows over time; call {@link #refresh()} to re-read it
+         *
+         * @return the record count
+         */
+
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Re-reads the published record count from the header
+         *
+         * @return the record count
+         */
+
+        public int refresh() {
+            count = (int) (long) LONGS.getAcquire(buffer, COUNT_OFFSET);
+            return count;
+        }
+
+        /**
+         * Returns whether the writer has moved on from this segment, so that it will not change any more
+         *
+         * @return {@code true} if the segment is sealed
+         */
+
+        public boolean isSealed() {
+            return (int) INTS.getAcquire(buffer, SEALED_OFFSET) != 0;
+        }
+
+        /**
+         * Returns the index of the first record whose index block may contain timestamps at or after the given time
+         * Blocks whose largest timestamp is earlier are skipped without reading their records
+         *
+         * @param timestamp the time to seek to, in milliseconds since the Unix epoch
+         * @return the index of the first record to scan, or {@link #count()} if no record can match
+         */
+
+        public int seek(long timestamp) {
+            int blocks = (count + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+            for (int block = 0; block < blocks; block++) {
+                if (blockMaxTimestamp(block) >= timestamp) {
+                    return block * INDEX_INTERVAL;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Returns the smallest timestamp of an index block
+         *
+         * @param block the index of the block, covering records {@code block * INDEX_INTERVAL} onwards
+         * @return the smallest timestamp in the block
+         */
+
+        public long blockMinTimestamp(int block) {
+            return buffer.getLong(HEADER_BYTES + block * INDEX_ENTRY_BYTES);
+        }
+
+        /**
+         * Returns the largest timestamp of an index block
+         *
+         * @param block the index of the block, covering records {@code block * INDEX_INTERVAL} onwards
+         * @return the largest timestamp in the block
+         */
+
+        public long blockMaxTimestamp(int block) {
+            return buffer.getLong(HEADER_BYTES + block * INDEX_ENTRY_BYTES + 8);
+        }
+
+        /**
+         * Returns the timestamp of a record
+         *
+         * @param index the index of the record within this segment
+         * @return the timestamp in milliseconds since the Unix epoch
+         */
+
+        public long timestamp(int index) {
+            return buffer.getLong(recordsOffset + index * RECORD_BYTES);
+        }
+
+        /**
+         * Returns the value of a record
+         *
+         * @param index the index of the record within this segment
+         * @return the value
+         */
+
+        public double value(int index) {
+            return buffer.getDouble(recordsOffset + index * RECORD_BYTES + 8);
+        }
+
+        /**
+         * Returns the patient ID of a record
+         *
+         * @param index the index of the record within this segment
+         * @return the patient ID
+         */
+
+        public int patientId(int index) {
+            return buffer.getInt(recordsOffset + index * RECORD_BYTES + 16);
+        }
+
+        /**
+         * Returns the signal code of a record
+         *
+         * @param index the index of the record within this segment
+         * @return the signal code, see {@link SignalType#code()}
+         */
+
+        public int signalCode(int index) {
+            return buffer.getInt(recordsOffset + index * RECORD_BYTES + 20);
+        }
+
+        /**
+         * Returns the raw bytes of a range of records, in the layout described by {@link SegmentLog}
+         * The buffer is a read-only view of the mapped file, so it can be written to a channel without copying
+         *
+         * @param from the index of the first record, inclusive
+         * @param to the index of the last record, exclusive
+         * @return a little-endian view of the records
+         */
+
+        public ByteBuffer records(int from, int to) {
+            if (from < 0 || to < from || to > capacity) {
+                throw new IndexOutOfBoundsException("Records " + from + " to " + to + " of " + capacity);
+            }
+            ByteBuffer view = buffer.asReadOnlyBuffer();
+            view.limit(recordsOffset + to * RECORD_BYTES).position(recordsOffset + from * RECORD_BYTES);
+            return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private boolean isFull() {
+            return count == capacity;
+        }
+
+        private void put(int patientId, long timestamp, int signalCode, double value) {
+            int offset = recordsOffset + count * RECORD_BYTES;
+            buffer.putLong(offset, timestamp);
+            buffer.putDouble(offset + 8, value);
+            buffer.putInt(offset + 16, patientId);
+            buffer.putInt(offset + 20, signalCode);
+
+            int indexOffset = HEADER_BYTES + (count / INDEX_INTERVAL) * INDEX_ENTRY_BYTES;
+            if (count % INDEX_INTERVAL == 0) {
+                buffer.putLong(indexOffset, timestamp);
+                buffer.putLong(indexOffset + 8, timestamp);
+            } else if (timestamp < buffer.getLong(indexOffset)) {
+                buffer.putLong(indexOffset, timestamp);
+            } else if (timestamp > buffer.getLong(indexOffset + 8)) {
+                buffer.putLong(indexOffset + 8, timestamp);
+            }
+            count++;
+        }
+
+        private void publish() {
+            LONGS.setRelease(buffer, COUNT_OFFSET, (long) count);
+        }
+
+        private void seal() {
+            publish();
+            INTS.setRelease(buffer, SEALED_OFFSET, 1);
+        }
+
+        private void force() {
+            if (buffer instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) buffer).force();
+            }
+        }
+    }
+}
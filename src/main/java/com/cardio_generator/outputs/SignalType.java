@@ -0,0 +1,131 @@
+package com.cardio_generator.outputs;
+
+/**
+ * The kinds of signals produced by the simulator
+ * Each signal has a stable numeric code for compact encodings, the label used in text output,
+ * and knows how its values are written as text
+ */
+
+public enum SignalType {
+    ECG(1, "ECG"),
+    SATURATION(2, "Saturation") {
+        @Override
+        public String format(double value) {
+            return Double.toString(value) + "%";
+        }
+
+        @Override
+        public double parse(String text) {
+            return super.parse(text.endsWith("%") ? text.substring(0, text.length() - 1) : text);
+        }
+    },
+    SYSTOLIC_PRESSURE(3, "SystolicPressure"),
+    DIASTOLIC_PRESSURE(4, "DiastolicPressure"),
+    CHOLESTEROL(5, "Cholesterol"),
+    WHITE_BLOOD_CELLS(6, "WhiteBloodCells"),
+    RED_BLOOD_CELLS(7, "RedBloodCells"),
+    /** Alert states, 1 for "triggered" and 0 for "resolved" */
+    ALERT(8, "Alert") {
+        @Override
+        public String format(double value) {
+            return value != 0 ? "triggered" : "resolved";
+        }
+
+        @Override
+        public double parse(String text) {
+            if ("triggered".equals(text)) {
+                return 1;
+            }
+            if ("resolved".equals(text)) {
+                return 0;
+            }
+            return super.parse(text);
+        }
+    };
+
+    private static final SignalType[] BY_CODE = new SignalType[9];
+
+    static {
+        for (SignalType signal : values()) {
+            BY_CODE[signal.code] = signal;
+        }
+    }
+
+    private final int code;
+    private final String label;
+
+    SignalType(int code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    /**
+     * Returns the numeric code of this signal, which never changes between versions
+     * 
+     * @return the signal code
+     */
+
+    public int code() {
+        return code;
+    }
+
+    /**
+     * Returns the label of this signal as used in text output
+     * 
+     * @return the label, e.g. "Saturation"
+     */
+
+    public String label() {
+        return label;
+    }
+
+    /**
+     * Formats a value of this signal the way it appears in text output
+     * 
+     * @param value the value to format
+     * @return the value as text, e.g. "97.0%" for a saturation of 97
+     */
+
+    public String format(double value) {
+        return Double.toString(value);
+    }
+
+    /**
+     * Converts a value of this signal back from its text form, the reverse of {@link #format(double)}
+     * 
+     * @param text the value as text, e.g. "97.0%" for a saturation of 97
+     * @return the value
+     * @throws NumberFormatException if the text is not a valid value of this signal
+     */
+
+    public double parse(String text) {
+        return Double.parseDouble(text);
+    }
+
+    /**
+     * Returns the signal with the given code
+     * 
+     * @param code the numeric code of the signal
+     * @return the signal, or {@code null} if no signal has this code
+     */
+
+    public static SignalType fromCode(int code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * Returns the signal with the given text label
+     * 
+     * @param label the label of the signal, e.g. "ECG"
+     * @return the signal, or {@code null} if no signal has this label
+     */
+
+    public static SignalType fromLabel(String label) {
+        for (SignalType signal : values()) {
+            if (signal.label.equals(label)) {
+                return signal;
+            }
+        }
+        return null;
+    }
+}
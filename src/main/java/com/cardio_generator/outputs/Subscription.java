@@ -0,0 +1,192 @@
+package com.cardio_generator.outputs;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The patients and signals a streaming client wants to receive
+ * Subscriptions are immutable values: clients with equal subscriptions receive exactly the same data, so output
+ * strategies can encode it once for all of them
+ * <p>
+ * Clients choose a subscription with a control message such as {@code SUBSCRIBE patients=1,5-9;signals=ECG,Alert}.
+ * Leaving out {@code patients} or {@code signals} means all of them, and {@code SUBSCRIBE all} restores the default
+ */
+
+public final class Subscription {
+
+    /** The subscription to everything, which every client starts with */
+    public static final Subscription ALL = new Subscription(null, 0);
+
+    private static final String COMMAND = "SUBSCRIBE";
+
+    // Sorted, non-overlapping inclusive ranges of patient IDs as first/last pairs, null = all patients. Ranges keep
+    // the size independent of how many IDs a client asks for
+    private final int[] patients;
+    private final int signalMask; // bit per signal code, 0 = all signals
+
+    private Subscription(int[] patients, int signalMask) {
+        this.patients = patients;
+        this.signalMask = signalMask;
+    }
+
+    /**
+     * Returns whether a message is a subscription control message rather than data
+     *
+     * @param message the message received from a client
+     * @return {@code true} if the message starts with {@code SUBSCRIBE}
+     */
+
+    public static boolean isControlMessage(String message) {
+        return message.regionMatches(true, 0, COMMAND, 0, COMMAND.length());
+    }
+
+    /**
+     * Parses a control message such as {@code SUBSCRIBE patients=1,5-9;signals=ECG,Saturation}
+     *
+     * @param message the control message
+     * @return the subscription
+     * @throws IllegalArgumentException if the message is not a valid subscription
+     */
+
+    public static Subscription parse(String message) {
+        if (!isControlMessage(message)) {
+            throw new IllegalArgumentException("Not a subscription: " + message);
+        }
+        String spec = message.substring(COMMAND.length()).trim();
+        if (spec.isEmpty() || spec.equalsIgnoreCase("all")) {
+            return ALL;
+        }
+        int[] patients = null;
+        int signalMask = 0;
+        for (String part : spec.split(";")) {
+            String[] keyValue = part.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Expected key=value but found: " + part.trim());
+            }
+            String key = keyValue[0].trim();
+            if (key.equalsIgnoreCase("patients")) {
+                patients = parsePatients(keyValue[1]);
+            } else if (key.equalsIgnoreCase("signals")) {
+                signalMask = parseSignals(keyValue[1]);
+            } else {
+                throw new IllegalArgumentException("Unknown subscription key: " + key);
+            }
+        }
+        return new Subscription(patients, signalMask);
+    }
+
+    /**
+     * Returns whether a sample is part of this subscription
+     *
+     * @param patientId the identifier of the patient
+     * @param signalCode the code of the signal, or 0 for data that is not a known {@link SignalType}
+     * @return {@code true} if the sample should be sent
+     */
+
+    public boolean matches(int patientId, int signalCode) {
+        if (patients != null && !containsPatient(patientId)) {
+            return false;
+        }
+        return signalMask == 0 || (signalCode > 0 && signalCode < 32 && (signalMask & (1 << signalCode)) != 0);
+    }
+
+    /**
+     * Returns whether this subscription lets every sample through
+     *
+     * @return {@code true} for the subscription to everything
+     */
+
+    public boolean isAll() {
+        return patients == null && signalMask == 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Subscription)) {
+            return false;
+        }
+        Subscription subscription = (Subscription) other;
+        return signalMask == subscription.signalMask && Arrays.equals(patients, subscription.patients);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(patients) + signalMask;
+    }
+
+    @Override
+    public String toString() {
+        return isAll() ? COMMAND + " all"
+                : COMMAND + " patients=" + (patients == null ? "all" : formatPatients()) + ";signalMask=" + signalMask;
+    }
+
+    private boolean containsPatient(int patientId) {
+        // Index of the first range that starts after the patient, among the first IDs at even positions
+        int low = 0;
+        int high = patients.length / 2;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (patients[2 * middle] <= patientId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low > 0 && patientId <= patients[2 * low - 1];
+    }
+
+    private String formatPatients() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < patients.length; i += 2) {
+            text.append(i == 0 ? "" : ",").append(patients[i]);
+            if (patients[i + 1] != patients[i]) {
+                text.append('-').append(patients[i + 1]);
+            }
+        }
+        return text.toString();
+    }
+
+    private static int[] parsePatients(String list) {
+        List<int[]> ranges = new ArrayList<>();
+        for (String item : list.split(",")) {
+            String range = item.trim();
+            try {
+                int dash = range.indexOf('-', 1);
+                int first = Integer.parseInt((dash < 0 ? range : range.substring(0, dash)).trim());
+                int last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1).trim());
+                if (first < 0 || last < first) {
+                    throw new IllegalArgumentException("Invalid patient range: " + range);
+                }
+                ranges.add(new int[] { first, last });
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid patient ID: " + range);
+            }
+        }
+        // Merge overlapping and adjacent ranges so that equal sets of patients give equal subscriptions
+        ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int[] patients = new int[2 * ranges.size()];
+        int length = 0;
+        for (int[] range : ranges) {
+            if (length > 0 && range[0] <= (long) patients[length - 1] + 1) {
+                patients[length - 1] = Math.max(patients[length - 1], range[1]);
+            } else {
+                patients[length++] = range[0];
+                patients[length++] = range[1];
+            }
+        }
+        return Arrays.copyOf(patients, length);
+    }
+
+    private static int parseSignals(String list) {
+        int mask = 0;
+        for (String item : list.split(",")) {
+            SignalType signal = SignalType.fromLabel(item.trim());
+            if (signal == null) {
+                throw new IllegalArgumentException("Unknown signal: " + item.trim());
+            }
+            mask |= 1 << signal.code();
+        }
+        return mask;
+    }
+}
@@ -1,53 +1,108 @@
 package com.cardio_generator.outputs;
 
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.util.concurrent.Executors;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Implements a {@link OutputStrategy} that sends output data to a client over TCP
- * This class manages the server socket connection and sends formatted data strings
+ * Implements a {@link OutputStrategy} that sends output data to any number of clients over TCP
+ * <p>
+ * A single selector thread accepts clients and writes to them with non-blocking, gathering writes. Output is
+ * encoded once into a chunk of lines, and the chunk is queued for every client; each client has its own bounded
+ * queue, so a slow client never blocks the generators or the other clients. When a client's queue is full the
+ * configured {@link OverflowPolicy} either drops the oldest queued chunk or disconnects the client
  */
 
 public class TcpOutputStrategy implements OutputStrategy {
 
-    private ServerSocket serverSocket;
-    private Socket clientSocket;
-    private PrintWriter out;
+    /** Default number of chunks that can be queued for a client */
+    public static final int DEFAULT_QUEUE_CHUNKS = 1024;
+
+    /** Maximum number of chunks written by a single gathering write */
+    private static final int GATHER_CHUNKS = 16;
+
+    /**
+     * What to do when a client's queue is full
+     */
+
+    public enum OverflowPolicy {
+        /** Discard the oldest chunk that has not been started yet; the client misses those samples */
+        DROP_OLDEST,
+        /** Close the connection; the client may reconnect and continue from live data */
+        DISCONNECT
+    }
+
+    private final int queueChunks;
+    private final OverflowPolicy overflowPolicy;
+    private final CopyOnWriteArrayList<Client> clients = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<Client> ready = new ConcurrentLinkedQueue<>();
+    private final LongAdder droppedChunks = new LongAdder();
+    private final ThreadLocal<SampleEncoder> encoders = ThreadLocal.withInitial(() -> new SampleEncoder(8192));
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private Thread selectorThread;
+    private volatile boolean running;
 
 /**
  * Constructs a TCP output strategy that listens for client connections on the specified port
- * Initializes a server socket and accepts client connections in a new thread
- * 
+ * Clients get the default queue size and have their oldest queued data dropped when they fall behind
+ *
  * @param port The port number on which the server will listen for connections
  */
 
     public TcpOutputStrategy(int port) {
+        this(port, DEFAULT_QUEUE_CHUNKS, OverflowPolicy.DROP_OLDEST);
+    }
+
+/**
+ * Constructs a TCP output strategy that listens for client connections on the specified port
+ * Accepting and writing happen on a selector thread, so construction does not block
+ *
+ * @param port The port number on which the server will listen for connections, 0 for any free port
+ * @param queueChunks The number of chunks that can be queued for a client before the overflow policy applies
+ * @param overflowPolicy What to do with a client whose queue is full
+ */
+
+    public TcpOutputStrategy(int port, int queueChunks, OverflowPolicy overflowPolicy) {
+        if (queueChunks < 1) {
+            throw new IllegalArgumentException("Queue size must be positive");
+        }
+        this.queueChunks = queueChunks;
+        this.overflowPolicy = overflowPolicy;
         try {
-            serverSocket = new ServerSocket(port);
-            System.out.println("TCP Server started on port " + port);
-
-            // Accept clients in a new thread to not block the main thread
-            Executors.newSingleThreadExecutor().submit(() -> {
-                try {
-                    clientSocket = serverSocket.accept();
-                    out = new PrintWriter(clientSocket.getOutputStream(), true);
-                    System.out.println("Client connected: " + clientSocket.getInetAddress());
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            });
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            System.out.println("TCP Server started on port " + getPort());
+
+            running = true;
+            selectorThread = new Thread(this::runSelector, "tcp-output");
+            selectorThread.setDaemon(true);
+            selectorThread.start();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Sends data to the connected client over TCP
-     * The data is formatted as a string and sent only if a client is connected
-     * 
+     * Sends data to the connected clients over TCP
+     * The data is formatted as a comma-separated line and sent only if a client is connected
+     *
      * @param patientId the identifier for the patient to whom the data pertains
      * @param timestamp The time at which the data was recorded, in milliseconds
      * @param label A descreptive label for the data (eg Heart Rate)
@@ -56,9 +111,302 @@ public class TcpOutputStrategy implements OutputStrategy {
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        if (out != null) {
-            String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-            out.println(message);
+        if (!clients.isEmpty()) {
+            String message = String.format("%d,%d,%s,%s%n", patientId, timestamp, label, data);
+            publish(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * Sends a sample to the connected clients without building any intermediate text
+     *
+     * @param patientId The identifier of the patient
+     * @param timestamp The time of the sample, in milliseconds
+     * @param signalCode The code of the signal
+     * @param value The value of the sample
+     */
+
+    @Override
+    public void output(int patientId, long timestamp, int signalCode, double value) {
+        if (!clients.isEmpty()) {
+            SampleEncoder encoder = encoders.get();
+            encoder.clear();
+            encoder.appendCsv(patientId, timestamp, signalCode, value);
+            encoder.appendNewline();
+            publish(copyOf(encoder));
+        }
+    }
+
+    /**
+     * Sends a whole batch to the connected clients as a single chunk
+     * The batch is encoded once, whatever the number of clients
+     *
+     * @param batch The samples to send
+     */
+
+    @Override
+    public void outputBatch(SampleBatch batch) {
+        if (!clients.isEmpty()) {
+            SampleEncoder encoder = encoders.get();
+            encoder.clear();
+            for (int i = 0; i < batch.size(); i++) {
+                encoder.appendCsv(batch.patientId(i), batch.timestamp(i), batch.signalCode(i), batch.value(i));
+                encoder.appendNewline();
+            }
+            publish(copyOf(encoder));
+        }
+    }
+
+    /**
+     * Returns the port the server listens on
+     *
+     * @return the local port, or -1 if the server could not be started
+     */
+
+    public int getPort() {
+        return serverChannel == null ? -1 : serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Returns the number of connected clients
+     *
+     * @return the client count
+     */
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Returns the number of chunks dropped so far because clients fell behind
+     *
+     * @return the dropped chunk count, summed over all clients
+     */
+
+    public long getDroppedChunks() {
+        return droppedChunks.sum();
+    }
+
+    /**
+     * Stops the server and disconnects every client; data still queued is discarded
+     */
+
+    @Override
+    public void close() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (selectorThread != null) {
+            try {
+                selectorThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static ByteBuffer copyOf(SampleEncoder encoder) {
+        byte[] chunk = new byte[encoder.size()];
+        System.arraycopy(encoder.array(), 0, chunk, 0, chunk.length);
+        return ByteBuffer.wrap(chunk);
+    }
+
+    private void publish(ByteBuffer chunk) {
+        for (Client client : clients) {
+            // Every client gets its own view of the shared bytes, with its own position
+            if (client.offer(chunk.duplicate()) && client.scheduled.compareAndSet(false, true)) {
+                ready.add(client);
+                selector.wakeup();
+            }
+        }
+    }
+
+    private void runSelector() {
+        try {
+            while (running) {
+                selector.select();
+                Client client;
+                while ((client = ready.poll()) != null) {
+                    flush(client);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Client selected = (Client) key.attachment();
+                        if (key.isReadable()) {
+                            selected.drainInput();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(selected);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("TCP output stopped: " + e.getMessage());
+        } finally {
+            for (Client client : clients) {
+                client.close();
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Client client = new Client(channel);
+            client.key = channel.register(selector, SelectionKey.OP_READ, client);
+            clients.add(client);
+            System.out.println("Client connected: " + channel.getRemoteAddress());
+        }
+    }
+
+    // Called on the selector thread only
+    private void flush(Client client) {
+        try {
+            while (true) {
+                if (client.inFlightStart == client.inFlightCount) {
+                    client.inFlightStart = 0;
+                    client.inFlightCount = client.drainTo(client.inFlight);
+                    if (client.inFlightCount == 0) {
+                        client.scheduled.set(false);
+                        // A chunk may have arrived after draining but before the flag was cleared
+                        if (client.isEmpty() || !client.scheduled.compareAndSet(false, true)) {
+                            client.key.interestOps(SelectionKey.OP_READ);
+                            return;
+                        }
+                        continue;
+                    }
+                }
+                client.channel.write(client.inFlight, client.inFlightStart,
+                        client.inFlightCount - client.inFlightStart);
+                while (client.inFlightStart < client.inFlightCount
+                        && !client.inFlight[client.inFlightStart].hasRemaining()) {
+                    client.inFlight[client.inFlightStart++] = null;
+                }
+                if (client.inFlightStart < client.inFlightCount) {
+                    // The socket buffer is full; continue when the client has read some data
+                    client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException | CancelledKeyException e) {
+            client.close();
+        }
+    }
+
+    /**
+     * A connected client with its bounded queue of chunks
+     * The queue is shared with the generator threads and guarded by the client's monitor; the in-flight chunks
+     * belong to the selector thread
+     */
+
+    private final class Client {
+        private final SocketChannel channel;
+        private final ByteBuffer[] queue = new ByteBuffer[queueChunks];
+        private final ByteBuffer[] inFlight = new ByteBuffer[GATHER_CHUNKS];
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final ByteBuffer discard = ByteBuffer.allocate(256);
+        private SelectionKey key;
+        private int head;
+        private int count;
+        private int inFlightStart;
+        private int inFlightCount;
+        private boolean closed;
+
+        private Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private boolean offer(ByteBuffer chunk) {
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                if (count < queue.length) {
+                    queue[(head + count++) % queue.length] = chunk;
+                    return true;
+                }
+                if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                    queue[head] = chunk;
+                    head = (head + 1) % queue.length;
+                    droppedChunks.increment();
+                    return true;
+                }
+            }
+            System.err.println("Disconnecting slow TCP client: " + remoteAddress());
+            close();
+            return false;
+        }
+
+        private synchronized int drainTo(ByteBuffer[] target) {
+            int drained = Math.min(count, target.length);
+            for (int i = 0; i < drained; i++) {
+                target[i] = queue[head];
+                queue[head] = null;
+                head = (head + 1) % queue.length;
+            }
+            count -= drained;
+            return drained;
+        }
+
+        private synchronized boolean isEmpty() {
+            return count == 0;
+        }
+
+        private void drainInput() {
+            // Clients are not expected to send anything; reading detects when they disconnect
+            try {
+                discard.clear();
+                if (channel.read(discard) < 0) {
+                    close();
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                count = 0;
+            }
+            clients.remove(this);
+            System.out.println("Client disconnected: " + remoteAddress());
+            try {
+                channel.close();
+            } catch (ClosedChannelException e) {
+                // Already closed
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        private Object remoteAddress() {
+            try {
+                return channel.getRemoteAddress();
+            } catch (IOException e) {
+                return "unknown";
+            }
         }
     }
 }
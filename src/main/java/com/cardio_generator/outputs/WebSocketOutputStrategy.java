@@ -1,58 +1,398 @@
 package com.cardio_generator.outputs;
 
 import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
 import org.java_websocket.server.WebSocketServer;
 
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An implementation of {@link OutputStrategy} that streams data to WebSocket clients
+ * <p>
+ * Samples are sent as comma-separated lines ({@code patientId,timestamp,label,data}), many lines per text frame,
+ * separated by newlines. Clients that have the same {@link Subscription} form a group that shares one pending frame:
+ * each sample is encoded once per group and each frame is framed once and broadcast to the whole group. A frame is
+ * sent when it reaches the configured size or, at the latest, after the linger interval. Clients pick the patients
+ * and signals they want with a control message such as {@code SUBSCRIBE patients=1,5-9;signals=ECG}; new clients
+ * receive everything
+ * <p>
+ * Clients that offer the {@value BinaryWireFormat#PROTOCOL} subprotocol in the handshake receive binary frames of
+ * fixed-width records instead, see {@link BinaryWireFormat}; they share their group's subscription but have a pending
+ * frame of their own
+ * <p>
+ * Compression is opt-in: with an {@link AdaptiveDeflateExtension}, frames from its threshold up are deflated for
+ * clients that negotiate permessage-deflate. A broadcast frame is compressed once and shared by the whole group
+ */
 
 public class WebSocketOutputStrategy implements OutputStrategy {
 
-    private WebSocketServer server;
+    /** Default size at which a frame is sent */
+    public static final int DEFAULT_FRAME_BYTES = 16 * 1024;
+    /** Default longest time a sample waits for its frame to be sent */
+    public static final long DEFAULT_LINGER_MILLIS = 50;
+
+    private final SimpleWebSocketServer server;
+    private final int frameBytes;
+    private final ConcurrentHashMap<Subscription, Group> groups = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService linger;
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    /**
+     * Constructs a WebSocket output with the default frame size and linger interval
+     *
+     * @param port The port on which the server listens for connections
+     */
 
     public WebSocketOutputStrategy(int port) {
-        server = new SimpleWebSocketServer(new InetSocketAddress(port));
-        System.out.println("WebSocket server created on port: " + port + ", listening for connections...");
+        this(port, DEFAULT_FRAME_BYTES, DEFAULT_LINGER_MILLIS);
+    }
+
+    /**
+     * Constructs a WebSocket output and starts its server
+     *
+     * @param port The port on which the server listens for connections, 0 for any free port
+     * @param frameBytes The size at which a pending frame is sent
+     * @param lingerMillis The longest time a sample waits in a pending frame
+     */
+
+    public WebSocketOutputStrategy(int port, int frameBytes, long lingerMillis) {
+        this(port, frameBytes, lingerMillis, null);
+    }
+
+    /**
+     * Constructs a WebSocket output with optional compression and starts its server
+     *
+     * @param port The port on which the server listens for connections, 0 for any free port
+     * @param frameBytes The size at which a pending frame is sent
+     * @param lingerMillis The longest time a sample waits in a pending frame
+     * @param compression The compression offered to clients, copied for each connection, or null to send raw frames
+     */
+
+    public WebSocketOutputStrategy(int port, int frameBytes, long lingerMillis, AdaptiveDeflateExtension compression) {
+        if (frameBytes < 1 || lingerMillis < 1) {
+            throw new IllegalArgumentException("Frame size and linger interval must be positive");
+        }
+        this.frameBytes = frameBytes;
+        server = new SimpleWebSocketServer(new InetSocketAddress(port), drafts(compression));
+        server.setReuseAddr(true);
         server.start();
+        try {
+            // Wait for the server to bind, so that the port can be used right away
+            started.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("WebSocket server created on port: " + getPort() + ", listening for connections...");
+        linger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "websocket-linger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        linger.scheduleWithFixedDelay(this::flush, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void output(int patientId, long timestamp, String label, String data) {
-        String message = String.format("%d,%d,%s,%s", patientId, timestamp, label, data);
-        // Broadcast the message to all connected clients
-        for (WebSocket conn : server.getConnections()) {
-            conn.send(message);
+        SignalType signal = SignalType.fromLabel(label);
+        int signalCode = signal == null ? 0 : signal.code();
+        for (Group group : groups.values()) {
+            if (group.subscription.matches(patientId, signalCode)) {
+                synchronized (group) {
+                    if (!group.connections.isEmpty()) {
+                        group.startLine();
+                        group.pending.appendLong(patientId);
+                        group.pending.appendByte(',');
+                        group.pending.appendLong(timestamp);
+                        group.pending.appendByte(',');
+                        group.pending.appendAscii(label);
+                        group.pending.appendByte(',');
+                        group.pending.appendAscii(data);
+                    }
+                    if (signal != null && !group.binaryConnections.isEmpty()) {
+                        // Binary clients only know the signals of the dictionary, and need numeric values
+                        try {
+                            group.appendRecord(patientId, timestamp, signalCode, signal.parse(data));
+                        } catch (NumberFormatException e) {
+                            System.err.println("Cannot send " + label + " value in binary: " + data);
+                        }
+                    }
+                    group.flushIfFull();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a sample to the pending frame of every group that subscribed to it
+     *
+     * @param patientId The identifier of the patient
+     * @param timestamp The time of the sample, in milliseconds
+     * @param signalCode The code of the signal
+     * @param value The value of the sample
+     */
+
+    @Override
+    public void output(int patientId, long timestamp, int signalCode, double value) {
+        for (Group group : groups.values()) {
+            if (group.subscription.matches(patientId, signalCode)) {
+                synchronized (group) {
+                    group.add(patientId, timestamp, signalCode, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a whole batch to the pending frames, locking each group once
+     *
+     * @param batch The samples to send
+     */
+
+    @Override
+    public void outputBatch(SampleBatch batch) {
+        for (Group group : groups.values()) {
+            Subscription subscription = group.subscription;
+            synchronized (group) {
+                for (int i = 0; i < batch.size(); i++) {
+                    int patientId = batch.patientId(i);
+                    int signalCode = batch.signalCode(i);
+                    if (subscription.matches(patientId, signalCode)) {
+                        group.add(patientId, batch.timestamp(i), signalCode, batch.value(i));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends every pending frame right away
+     */
+
+    public void flush() {
+        for (Group group : groups.values()) {
+            synchronized (group) {
+                group.send();
+            }
+        }
+    }
+
+    /**
+     * Returns the port the server listens on
+     *
+     * @return the local port
+     */
+
+    public int getPort() {
+        return server.getPort();
+    }
+
+    /**
+     * Sends the pending frames and stops the server
+     */
+
+    @Override
+    public void close() {
+        linger.shutdown();
+        flush();
+        try {
+            server.stop(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void subscribe(WebSocket conn, Subscription subscription) {
+        // Membership changes are rare, so they are serialized to keep empty groups from being reused
+        synchronized (groups) {
+            unsubscribe(conn);
+            conn.setAttachment(subscription);
+            Group group = groups.computeIfAbsent(subscription, Group::new);
+            (isBinary(conn) ? group.binaryConnections : group.connections).add(conn);
+        }
+    }
+
+    private void unsubscribe(WebSocket conn) {
+        synchronized (groups) {
+            Subscription previous = conn.getAttachment();
+            if (previous == null) {
+                return;
+            }
+            Group group = groups.get(previous);
+            if (group != null) {
+                (isBinary(conn) ? group.binaryConnections : group.connections).remove(conn);
+                if (group.connections.isEmpty() && group.binaryConnections.isEmpty()) {
+                    groups.remove(previous, group);
+                }
+            }
+            conn.setAttachment(null);
+        }
+    }
+
+    private static List<Draft> drafts(AdaptiveDeflateExtension compression) {
+        // Clients that do not offer the extension fall back to uncompressed frames
+        List<IExtension> extensions = compression == null
+                ? Collections.emptyList()
+                : Collections.singletonList(compression);
+        // The binary protocol is preferred when offered; the empty protocol accepts every other client
+        List<IProtocol> protocols = Arrays.asList(new Protocol(BinaryWireFormat.PROTOCOL), new Protocol(""));
+        return Collections.singletonList(new Draft_6455(extensions, protocols));
+    }
+
+    private static boolean isBinary(WebSocket conn) {
+        IProtocol protocol = conn.getProtocol();
+        return protocol != null && BinaryWireFormat.PROTOCOL.equals(protocol.getProvidedProtocol());
+    }
+
+    /**
+     * The clients that share a subscription, with the frame that is being filled for them
+     */
+
+    private final class Group {
+        private final Subscription subscription;
+        private final Set<WebSocket> connections = new CopyOnWriteArraySet<>();
+        private final SampleEncoder pending = new SampleEncoder(frameBytes + 256);
+        private final Set<WebSocket> binaryConnections = new CopyOnWriteArraySet<>();
+        private final ByteBuffer binaryPending = ByteBuffer
+                .allocate(frameBytes + BinaryWireFormat.RECORD_HEADER_BYTES + BinaryWireFormat.RECORD_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        private Group(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        private void add(int patientId, long timestamp, int signalCode, double value) {
+            // Each encoding is only produced when some client of the group uses it
+            if (!connections.isEmpty()) {
+                startLine();
+                pending.appendCsv(patientId, timestamp, signalCode, value);
+            }
+            if (!binaryConnections.isEmpty()) {
+                appendRecord(patientId, timestamp, signalCode, value);
+            }
+            flushIfFull();
+        }
+
+        private void appendRecord(int patientId, long timestamp, int signalCode, double value) {
+            if (binaryPending.position() > 0 && !BinaryWireFormat.fitsFrame(binaryPending, timestamp)) {
+                sendBinary();
+            }
+            if (binaryPending.position() == 0) {
+                BinaryWireFormat.startRecordFrame(binaryPending, timestamp);
+            }
+            BinaryWireFormat.putRecord(binaryPending, patientId, signalCode, timestamp, value);
+        }
+
+        private void startLine() {
+            if (!pending.isEmpty()) {
+                pending.appendByte('\n');
+            }
+        }
+
+        private void flushIfFull() {
+            if (pending.size() >= frameBytes) {
+                sendText();
+            }
+            if (binaryPending.position() >= frameBytes) {
+                sendBinary();
+            }
+        }
+
+        private void send() {
+            sendText();
+            sendBinary();
+        }
+
+        private void sendText() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            String frame = new String(pending.array(), 0, pending.size(), StandardCharsets.US_ASCII);
+            pending.clear();
+            if (!connections.isEmpty()) {
+                // Framed once per protocol draft and shared by every connection of the group
+                server.broadcast(frame, connections);
+            }
+        }
+
+        private void sendBinary() {
+            if (binaryPending.position() == 0) {
+                return;
+            }
+            binaryPending.flip();
+            if (!binaryConnections.isEmpty()) {
+                // The frame is copied while it is broadcast, so the buffer can be reused right away
+                server.broadcast(binaryPending, binaryConnections);
+            }
+            binaryPending.clear();
         }
     }
 
-    private static class SimpleWebSocketServer extends WebSocketServer {
+    private class SimpleWebSocketServer extends WebSocketServer {
 
-        public SimpleWebSocketServer(InetSocketAddress address) {
-            super(address);
+        public SimpleWebSocketServer(InetSocketAddress address, List<Draft> drafts) {
+            super(address, drafts);
         }
 
         @Override
-        public void onOpen(WebSocket conn, org.java_websocket.handshake.ClientHandshake handshake) {
-            System.out.println("New connection: " + conn.getRemoteSocketAddress());
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+            System.out.println("New connection: " + conn.getRemoteSocketAddress()
+                    + (isBinary(conn) ? " (" + BinaryWireFormat.PROTOCOL + ")" : ""));
+            if (isBinary(conn)) {
+                // Sent before the connection joins a group, so it arrives ahead of any records
+                conn.send(BinaryWireFormat.dictionary());
+            }
+            subscribe(conn, Subscription.ALL);
         }
 
         @Override
         public void onClose(WebSocket conn, int code, String reason, boolean remote) {
             System.out.println("Closed connection: " + conn.getRemoteSocketAddress());
+            unsubscribe(conn);
         }
 
         @Override
         public void onMessage(WebSocket conn, String message) {
-            // Not used in this context
+            if (!Subscription.isControlMessage(message)) {
+                return;
+            }
+            try {
+                Subscription subscription = Subscription.parse(message.trim());
+                subscribe(conn, subscription);
+                System.out.println("Subscription of " + conn.getRemoteSocketAddress() + ": " + subscription);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid subscription from " + conn.getRemoteSocketAddress() + ": "
+                        + e.getMessage());
+            }
         }
 
         @Override
         public void onError(WebSocket conn, Exception ex) {
             ex.printStackTrace();
+            started.countDown();
         }
 
         @Override
         public void onStart() {
             System.out.println("Server started successfully");
+            started.countDown();
         }
     }
 }
@@ -0,0 +1,63 @@
+package com.cardio_generator.scheduling;
+
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+
+/**
+ * A {@link TickTask} that runs one {@link PatientDataGenerator} for a whole batch of patients.
+ * Every patient in the batch is generated with the same tick timestamp into a reusable columnar
+ * {@link SampleBatch}, which is then handed to the output strategy in one call. Large batches are
+ * split into chunks of {@link #CHUNK_SIZE} patients to keep the buffer small.
+ */
+public class GeneratorBatchTask implements TickTask {
+
+    /** The maximum number of patients generated before the samples are flushed to the output */
+    public static final int CHUNK_SIZE = 4096;
+
+    private final PatientDataGenerator generator;
+    private final int[] patientIds;
+    private final OutputStrategy outputStrategy;
+    private final SampleBatch batch;
+
+    /**
+     * Constructs a batch task for the given generator and patients.
+     *
+     * @param generator      The generator to invoke for each patient
+     * @param patientIds     The patients this task generates data for
+     * @param outputStrategy The strategy used to output the generated data
+     */
+    public GeneratorBatchTask(PatientDataGenerator generator, int[] patientIds, OutputStrategy outputStrategy) {
+        this.generator = generator;
+        this.patientIds = patientIds;
+        this.outputStrategy = outputStrategy;
+        this.batch = new SampleBatch(Math.min(patientIds.length, CHUNK_SIZE));
+    }
+
+    @Override
+    public void run(long tickTime) {
+        for (int from = 0; from < patientIds.length; from += CHUNK_SIZE) {
+            int to = Math.min(patientIds.length, from + CHUNK_SIZE);
+            batch.clear();
+            try {
+                generator.generateBatch(patientIds, from, to, tickTime, batch);
+            } catch (RuntimeException e) {
+                System.err.println("An error occurred while generating data for patients " + patientIds[from]
+                        + " to " + patientIds[to - 1]);
+                e.printStackTrace();
+            }
+            if (!batch.isEmpty()) {
+                outputStrategy.outputBatch(batch);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of patients handled by this task.
+     *
+     * @return the batch size
+     */
+    public int size() {
+        return patientIds.length;
+    }
+}
@@ -0,0 +1,25 @@
+package com.cardio_generator.scheduling;
+
+/**
+ * Source of time for the {@link TickScheduler}.
+ * A clock decides how long the scheduler waits between ticks and which timestamp a tick is stamped with,
+ * which lets the same schedule run either in real time or in simulated time.
+ */
+public interface SimulationClock {
+
+    /**
+     * Returns the current time of this clock.
+     *
+     * @return the current time in milliseconds since the Unix epoch
+     */
+    long currentTimeMillis();
+
+    /**
+     * Blocks until this clock has reached the given time.
+     *
+     * @param time The time to wait for, in milliseconds since the Unix epoch
+     * @return the timestamp to use for work done at that time
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    long awaitTime(long time) throws InterruptedException;
+}
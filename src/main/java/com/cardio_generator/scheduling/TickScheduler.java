@@ -0,0 +1,309 @@
+package com.cardio_generator.scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A tick-driven scheduler built on a hashed timing wheel.
+ * <p>
+ * Instead of one scheduled future per task, all tasks live in the buckets of a wheel
+ * that is advanced once per tick by a single driver thread. A bucket holds every task
+ * whose due tick maps to it, and tasks further away than one revolution simply stay in
+ * their bucket until their due tick comes around. The tasks that are due on a tick are
+ * grouped by lane and handed to a small, fixed set of lane workers, each of which runs
+ * its tasks sequentially with the same tick timestamp. The driver waits for every lane
+ * to finish before moving on, so ticks never overlap and the number of threads is
+ * independent of the number of tasks.
+ * <p>
+ * Time comes from a {@link SimulationClock}: with a {@link WallClock} ticks follow real
+ * time, with a {@link VirtualClock} they are stamped with simulated time and can run much
+ * faster than real time.
+ */
+public class TickScheduler {
+
+    private final long tickMillis;
+    private final SimulationClock clock;
+    private final Entry[] wheel;
+    private final int wheelMask;
+    private final ExecutorService[] lanes;
+    private final List<List<Entry>> dueByLane;
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+
+    private Thread driver;
+    private volatile boolean running;
+    private volatile long endTime = Long.MAX_VALUE;
+    private volatile long ticksRun;
+    private long currentTick;
+
+    /**
+     * Constructs a real-time scheduler with the given number of lanes and wheel geometry.
+     *
+     * @param laneCount  The number of worker threads that execute due tasks
+     * @param tickMillis The duration of one tick in milliseconds
+     * @param wheelSize  The number of buckets in the wheel, rounded up to a power of two
+     */
+    public TickScheduler(int laneCount, long tickMillis, int wheelSize) {
+        this(laneCount, tickMillis, wheelSize, new WallClock());
+    }
+
+    /**
+     * Constructs a scheduler with the given number of lanes, wheel geometry and clock.
+     *
+     * @param laneCount  The number of worker threads that execute due tasks
+     * @param tickMillis The duration of one tick in milliseconds
+     * @param wheelSize  The number of buckets in the wheel, rounded up to a power of two
+     * @param clock      The clock that paces the ticks and provides their timestamps
+     */
+    public TickScheduler(int laneCount, long tickMillis, int wheelSize, SimulationClock clock) {
+        if (laneCount < 1 || tickMillis < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("Lane count, tick duration and wheel size must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        this.wheel = new Entry[size];
+        this.wheelMask = size - 1;
+        this.lanes = new ExecutorService[laneCount];
+        this.dueByLane = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            final String name = "tick-lane-" + i;
+            lanes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            dueByLane.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Returns the number of lanes (worker threads) of this scheduler.
+     *
+     * @return the lane count
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Returns the duration of one tick.
+     *
+     * @return the tick duration in milliseconds
+     */
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * Returns the clock that drives this scheduler.
+     *
+     * @return the clock
+     */
+    public SimulationClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Returns the number of ticks that have been run so far.
+     *
+     * @return the tick count
+     */
+    public long getTicksRun() {
+        return ticksRun;
+    }
+
+    /**
+     * Makes the scheduler stop by itself after the last tick at or before the given clock time.
+     *
+     * @param endTime The clock time of the end of the run, in milliseconds since the Unix epoch
+     */
+    public void stopAt(long endTime) {
+        this.endTime = endTime;
+    }
+
+    /**
+     * Schedules a task to run periodically on the given lane. Delays and periods are
+     * rounded up to whole ticks. Tasks on the same lane never run concurrently with each
+     * other.
+     *
+     * @param task               The task to run
+     * @param lane               The lane that executes the task
+     * @param initialDelayMillis The delay before the first run, in milliseconds
+     * @param periodMillis       The period between consecutive runs, in milliseconds
+     */
+    public void schedule(TickTask task, int lane, long initialDelayMillis, long periodMillis) {
+        if (lane < 0 || lane >= lanes.length) {
+            throw new IllegalArgumentException("No such lane: " + lane);
+        }
+        if (periodMillis < 1 || initialDelayMillis < 0) {
+            throw new IllegalArgumentException("Period must be positive and delay non-negative");
+        }
+        pending.add(new Entry(task, lane, toTicks(initialDelayMillis), Math.max(1, toTicks(periodMillis))));
+    }
+
+    /**
+     * Starts the driver thread. The first tick fires immediately.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        driver = new Thread(this::runTicks, "tick-driver");
+        driver.start();
+    }
+
+    /**
+     * Blocks until the driver thread has finished, either because {@link #stop()} was called
+     * or because the end time set with {@link #stopAt(long)} was reached.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void awaitTermination() throws InterruptedException {
+        Thread current;
+        synchronized (this) {
+            current = driver;
+        }
+        if (current != null) {
+            current.join();
+        }
+    }
+
+    /**
+     * Stops the driver and the lane workers. Tasks of the tick in progress are allowed to finish.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (driver != null) {
+            driver.interrupt();
+        }
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    private long toTicks(long millis) {
+        return (millis + tickMillis - 1) / tickMillis;
+    }
+
+    private void runTicks() {
+        long start = clock.currentTimeMillis();
+        try {
+            while (running) {
+                long deadline = start + currentTick * tickMillis;
+                if (deadline > endTime) {
+                    break;
+                }
+                // One coarse clock read is shared by every task that is due on this tick
+                runTick(clock.awaitTime(deadline));
+                currentTick++;
+                ticksRun = currentTick;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+            for (ExecutorService lane : lanes) {
+                lane.shutdown();
+            }
+        }
+    }
+
+    private void runTick(long tickTime) throws InterruptedException {
+        Entry registered;
+        while ((registered = pending.poll()) != null) {
+            place(registered, currentTick + registered.remainingTicks);
+        }
+
+        int slot = (int) (currentTick & wheelMask);
+        Entry previous = null;
+        Entry entry = wheel[slot];
+        int busyLanes = 0;
+        while (entry != null) {
+            Entry next = entry.next;
+            if (entry.dueTick > currentTick) {
+                previous = entry;
+            } else {
+                if (previous == null) {
+                    wheel[slot] = next;
+                } else {
+                    previous.next = next;
+                }
+                entry.next = null;
+                List<Entry> laneTasks = dueByLane.get(entry.lane);
+                if (laneTasks.isEmpty()) {
+                    busyLanes++;
+                }
+                laneTasks.add(entry);
+            }
+            entry = next;
+        }
+        if (busyLanes == 0) {
+            return;
+        }
+
+        CountDownLatch done = new CountDownLatch(busyLanes);
+        for (int lane = 0; lane < lanes.length; lane++) {
+            List<Entry> laneTasks = dueByLane.get(lane);
+            if (!laneTasks.isEmpty()) {
+                lanes[lane].execute(() -> runLane(laneTasks, tickTime, done));
+            }
+        }
+        done.await();
+
+        for (List<Entry> laneTasks : dueByLane) {
+            for (Entry due : laneTasks) {
+                place(due, currentTick + due.periodTicks);
+            }
+            laneTasks.clear();
+        }
+    }
+
+    private void runLane(List<Entry> laneTasks, long tickTime, CountDownLatch done) {
+        try {
+            for (Entry entry : laneTasks) {
+                try {
+                    entry.task.run(tickTime);
+                } catch (RuntimeException e) {
+                    System.err.println("Error running scheduled task: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private void place(Entry entry, long dueTick) {
+        entry.dueTick = Math.max(dueTick, currentTick);
+        int slot = (int) (entry.dueTick & wheelMask);
+        entry.next = wheel[slot];
+        wheel[slot] = entry;
+    }
+
+    /**
+     * A scheduled task together with its position in the wheel.
+     */
+    private static final class Entry {
+        private final TickTask task;
+        private final int lane;
+        private final long remainingTicks;
+        private final long periodTicks;
+        private long dueTick;
+        private Entry next;
+
+        private Entry(TickTask task, int lane, long remainingTicks, long periodTicks) {
+            this.task = task;
+            this.lane = lane;
+            this.remainingTicks = remainingTicks;
+            this.periodTicks = periodTicks;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.cardio_generator.scheduling;
+
+/**
+ * A unit of periodic work driven by the {@link TickScheduler}.
+ * Implementations are invoked once per period with the timestamp of the tick that made them due,
+ * so that a whole batch of work shares a single clock read.
+ */
+public interface TickTask {
+
+    /**
+     * Runs the task for the tick that made it due.
+     *
+     * @param tickTime The time of the tick in milliseconds since the Unix epoch
+     */
+    void run(long tickTime);
+}
@@ -0,0 +1,61 @@
+package com.cardio_generator.scheduling;
+
+/**
+ * A {@link SimulationClock} that runs on simulated time.
+ * Every tick is stamped with its exact scheduled time, independent of how long the work takes.
+ * With a speed of zero the clock never waits, so a simulation runs as fast as the CPU allows;
+ * with a positive speed the clock is paced at that multiple of real time.
+ */
+public class VirtualClock implements SimulationClock {
+
+    private final long startTime;
+    private final double speed;
+    private volatile long currentTime;
+    private long wallStart = -1;
+
+    /**
+     * Constructs a virtual clock.
+     *
+     * @param startTime The simulated time at which the clock starts, in milliseconds since the Unix epoch
+     * @param speed     The multiple of real time to run at, or zero to run as fast as possible
+     */
+    public VirtualClock(long startTime, double speed) {
+        if (speed < 0 || Double.isNaN(speed)) {
+            throw new IllegalArgumentException("Speed must be zero or positive: " + speed);
+        }
+        this.startTime = startTime;
+        this.speed = speed;
+        this.currentTime = startTime;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTime;
+    }
+
+    @Override
+    public long awaitTime(long time) throws InterruptedException {
+        if (speed > 0) {
+            if (wallStart < 0) {
+                wallStart = System.currentTimeMillis();
+            }
+            long wait = wallStart + (long) ((time - startTime) / speed) - System.currentTimeMillis();
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+        }
+        if (time > currentTime) {
+            currentTime = time;
+        }
+        return time;
+    }
+
+    /**
+     * Returns the speed multiplier of this clock.
+     *
+     * @return the multiple of real time, or zero when unpaced
+     */
+    public double getSpeed() {
+        return speed;
+    }
+}
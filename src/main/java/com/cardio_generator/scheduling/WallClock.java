@@ -0,0 +1,21 @@
+package com.cardio_generator.scheduling;
+
+/**
+ * A {@link SimulationClock} that follows the system clock, so that data is generated in real time.
+ */
+public class WallClock implements SimulationClock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public long awaitTime(long time) throws InterruptedException {
+        long wait = time - System.currentTimeMillis();
+        if (wait > 0) {
+            Thread.sleep(wait);
+        }
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,138 @@
+package com.data_management;
+
+import java.util.List;
+
+/**
+ * Summarizes the records of one record type within a time bucket: their
+ * minimum, maximum, mean and count. Aggregates are returned by
+ * {@link DataStorage#getAggregates(int, String, long, long, long)} and are
+ * computed from rollups or raw records, whichever covers the bucket.
+ */
+public class Aggregate {
+    private final long startTime;
+    private final long resolution;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+    private long count;
+
+    /**
+     * Constructs an empty aggregate for a bucket.
+     *
+     * @param startTime  the start of the bucket, in milliseconds since the Unix
+     *                   epoch
+     * @param resolution the width of the bucket, in milliseconds
+     */
+    Aggregate(long startTime, long resolution) {
+        this.startTime = startTime;
+        this.resolution = resolution;
+    }
+
+    /**
+     * Adds a single record to the aggregate.
+     *
+     * @param value the measured value
+     */
+    void add(double value) {
+        add(value, value, value, 1);
+    }
+
+    /**
+     * Adds the summary of several records to the aggregate.
+     *
+     * @param min   the smallest value
+     * @param max   the largest value
+     * @param sum   the sum of the values
+     * @param count the number of records
+     */
+    void add(double min, double max, double sum, long count) {
+        this.min = Math.min(this.min, min);
+        this.max = Math.max(this.max, max);
+        this.sum += sum;
+        this.count += count;
+    }
+
+    /**
+     * Adds a summary to the aggregate for its bucket, which is the last one of
+     * the list or a new one appended to it. Summaries must be added in time
+     * order.
+     *
+     * @param aggregates the aggregates to add to
+     * @param time       the time of the summarized records
+     * @param resolution the width of the aggregates, in milliseconds
+     * @param min        the smallest value
+     * @param max        the largest value
+     * @param sum        the sum of the values
+     * @param count      the number of records
+     */
+    static void addTo(List<Aggregate> aggregates, long time, long resolution, double min, double max, double sum,
+            long count) {
+        long bucket = Math.floorDiv(time, resolution) * resolution;
+        Aggregate last = aggregates.isEmpty() ? null : aggregates.get(aggregates.size() - 1);
+        if (last == null || last.startTime != bucket) {
+            last = new Aggregate(bucket, resolution);
+            aggregates.add(last);
+        }
+        last.add(min, max, sum, count);
+    }
+
+    /**
+     * Returns the start of the bucket.
+     *
+     * @return the start time, in milliseconds since the Unix epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the end of the bucket, exclusive.
+     *
+     * @return the end time, in milliseconds since the Unix epoch
+     */
+    public long getEndTime() {
+        return startTime + resolution;
+    }
+
+    /**
+     * Returns the smallest value in the bucket.
+     *
+     * @return the minimum
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the largest value in the bucket.
+     *
+     * @return the maximum
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the values in the bucket.
+     *
+     * @return the mean
+     */
+    public double getMean() {
+        return sum / count;
+    }
+
+    /**
+     * Returns the number of records in the bucket.
+     *
+     * @return the record count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "Aggregate[" + startTime + ", " + getEndTime() + "): min=" + min + ", max=" + max + ", mean="
+                + getMean() + ", count=" + count;
+    }
+}
@@ -0,0 +1,59 @@
+package com.data_management;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import com.cardio_generator.archive.ArchiveReader;
+import com.cardio_generator.archive.SeriesDecoder;
+import com.cardio_generator.outputs.SignalType;
+
+/**
+ * The {@code ArchiveDataReader} class implements the {@link DataReader} interface
+ * to read patient data from a compressed archive written by the simulator's
+ * archive output. The archive is decompressed as a stream, one block at a time,
+ * so archives larger than memory can be loaded.
+ */
+public class ArchiveDataReader implements DataReader {
+
+    private final String filePath;
+
+    /**
+     * Constructs an {@code ArchiveDataReader} for the specified archive file.
+     *
+     * @param filePath the path to the archive file
+     */
+    public ArchiveDataReader(String filePath) {
+        this.filePath = filePath;
+    }
+
+    /**
+     * Decompresses the archive and adds every sample to the provided
+     * {@link DataStorage} instance.
+     *
+     * @param dataStorage the {@code DataStorage} instance to which the read data
+     *                    will be added
+     * @throws IOException if the file cannot be read or is not a valid archive
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        try (ArchiveReader reader = new ArchiveReader(new BufferedInputStream(new FileInputStream(filePath), 1 << 16))) {
+            while (reader.nextBlock()) {
+                SignalType signal = SignalType.fromCode(reader.signalCode());
+                if (signal == null) {
+                    System.err.println("Skipping archive block with unknown signal code " + reader.signalCode());
+                    continue;
+                }
+                SeriesDecoder decoder = reader.decoder();
+                try {
+                    while (decoder.next()) {
+                        dataStorage.addPatientData(reader.patientId(), decoder.value(), signal.code(),
+                                decoder.timestamp());
+                    }
+                } catch (IllegalStateException e) {
+                    throw new IOException("Corrupt archive block for patient " + reader.patientId(), e);
+                }
+            }
+        }
+    }
+}
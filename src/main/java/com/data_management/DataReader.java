@@ -1,6 +1,8 @@
 package com.data_management;
 
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
 
 public interface DataReader {
     /**
@@ -12,10 +14,22 @@ public interface DataReader {
     void readData(DataStorage dataStorage) throws IOException;
      /**
      * Connects to a WebSocket server and receives real-time data.
+     * The default implementation connects a {@link WebSocketClientImpl} that adds every received record to the
+     * storage, so readers of files and logs get live streaming for free.
      * 
      * @param url the URL of the WebSocket server
      * @param dataStorage the storage where data will be stored
      * @throws IOException if there is an error connecting to the WebSocket server
      */
-    void connectToWebSocket(String url, DataStorage dataStorage) throws IOException;
+    default void connectToWebSocket(String url, DataStorage dataStorage) throws IOException {
+         // Connect to the WebSocket server to handle real-time data
+        try {
+            URI uri = new URI(url);
+            WebSocketClientImpl client = new WebSocketClientImpl(uri, dataStorage);
+            client.connectBlocking(); // Blocking connect to ensure connection is established
+        } catch (URISyntaxException | InterruptedException e) {
+            // Handle connection errors
+            throw new IOException("Failed to connect to WebSocket", e);
+        }
+    }
 }
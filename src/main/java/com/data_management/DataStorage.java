@@ -1,9 +1,11 @@
 package com.data_management;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import com.alerts.AlertGenerator;
 
 /**
@@ -11,17 +13,41 @@ import com.alerts.AlertGenerator;
  * system.
  * This class serves as a repository for all patient records, organized by
  * patient IDs.
+ * <p>
+ * The storage is safe for concurrent use without a global lock. Patients are
+ * found through a lock-free {@link PatientIndex}; records of different patients
+ * are added in parallel, and reads return snapshots without waiting for
+ * writers, so ingest threads and alert evaluation do not block each other.
+ * <p>
+ * By default every record is kept. For long-running monitoring, a
+ * {@link RetentionPolicy} per record type bounds the memory of each series and
+ * keeps rollups that {@link #getAggregates(int, String, long, long, long)}
+ * uses to summarize long ranges after the raw records are gone.
+ * <p>
+ * Records are kept on the heap unless {@link StorageBackend#OFF_HEAP} is chosen
+ * with {@link #setStorageBackend(StorageBackend)}, which keeps the samples in
+ * direct memory so that very large working sets do not grow the heap or the
+ * garbage collection pauses. Either way, {@link TimeSeries.View#cursor()} scans
+ * a range without copying it.
+ * <p>
+ * The storage lives in memory. {@link #enablePersistence(Path)} recovers the
+ * records of an earlier run from a {@link StorageJournal} and logs every new
+ * record to it, so that a restart does not lose the data.
  */
-public class DataStorage {
+public class DataStorage implements RecordSink {
     private static DataStorage instance; // Singleton instance
-    private Map<Integer, Patient> patientMap; // Stores patient objects indexed by their unique patient ID.
+    private final PatientIndex patients; // Stores patient objects indexed by their unique patient ID.
+    private final Map<String, RetentionPolicy> retentionPolicies = new ConcurrentHashMap<>();
+    private volatile RetentionPolicy defaultRetentionPolicy = RetentionPolicy.UNLIMITED;
+    private volatile StorageBackend storageBackend = StorageBackend.HEAP;
+    private volatile StorageJournal journal;
 
     /**
      * Private constructor to prevent instantiation.
      * Initializes the underlying storage structure.
      */
     private DataStorage() {
-        this.patientMap = new HashMap<>();
+        this.patients = new PatientIndex(this::getRetentionPolicy, this::getStorageBackend);
     }
 
     /**
@@ -49,13 +75,53 @@ public class DataStorage {
      * @param timestamp        the time at which the measurement was taken, in
      *                         milliseconds since the Unix epoch
      */
-    public synchronized void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
-        Patient patient = patientMap.get(patientId);
-        if (patient == null) {
-            patient = new Patient(patientId);
-            patientMap.put(patientId, patient);
+    public void addPatientData(int patientId, double measurementValue, String recordType, long timestamp) {
+        addPatientData(patientId, measurementValue, SignalRegistry.code(recordType), timestamp);
+    }
+
+    /**
+     * Adds patient data for a signal code, the form readers use once they have
+     * resolved the record type.
+     *
+     * @param patientId        the unique identifier of the patient
+     * @param measurementValue the value of the health metric being recorded
+     * @param signalCode       the type of record, see {@link SignalRegistry}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since the Unix epoch
+     */
+    public void addPatientData(int patientId, double measurementValue, int signalCode, long timestamp) {
+        Patient patient = patients.getOrCreate(patientId);
+        StorageJournal log = journal;
+        if (log == null) {
+            patient.addRecord(measurementValue, signalCode, timestamp);
+        } else {
+            log.append(patient, signalCode, timestamp, measurementValue);
+        }
+    }
+
+    /**
+     * Adds a batch of records of one patient and signal code. Bulk loaders use
+     * it to look up the patient and the series once per batch instead of once
+     * per record.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param signalCode the type of the records, see {@link SignalRegistry}
+     * @param timestamps the times at which the measurements were taken, in
+     *                   milliseconds since the Unix epoch
+     * @param values     the values of the measurements
+     * @param offset     the index of the first record in the arrays
+     * @param count      the number of records
+     */
+    @Override
+    public void addRecords(int patientId, int signalCode, long[] timestamps, double[] values, int offset,
+            int count) {
+        Patient patient = patients.getOrCreate(patientId);
+        StorageJournal log = journal;
+        if (log == null) {
+            patient.addRecords(signalCode, timestamps, values, offset, count);
+        } else {
+            log.appendAll(patient, signalCode, timestamps, values, offset, count);
         }
-        patient.addRecord(measurementValue, recordType, timestamp);
     }
 
     /**
@@ -71,21 +137,209 @@ public class DataStorage {
      * @return a list of PatientRecord objects that fall within the specified time
      *         range
      */
-    public synchronized List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
-        Patient patient = patientMap.get(patientId);
+    public List<PatientRecord> getRecords(int patientId, long startTime, long endTime) {
+        Patient patient = patients.get(patientId);
         if (patient != null) {
             return patient.getRecords(startTime, endTime);
         }
         return new ArrayList<>(); // return an empty list if no patient is found
     }
 
+    /**
+     * Retrieves the records of one type for a specific patient, filtered by a time
+     * range. The range is found by binary search and returned as a view, without
+     * copying the records.
+     *
+     * @param patientId  the unique identifier of the patient whose records are to
+     *                   be retrieved
+     * @param recordType the type of record, e.g., "HeartRate"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return a view of the matching records in timestamp order, empty if there
+     *         are none
+     */
+    public TimeSeries.View getRecords(int patientId, String recordType, long startTime, long endTime) {
+        return getRecords(patientId, SignalRegistry.lookup(recordType), startTime, endTime);
+    }
+
+    /**
+     * Retrieves the records of one signal code for a specific patient, like
+     * {@link #getRecords(int, String, long, long)}.
+     *
+     * @param patientId  the unique identifier of the patient whose records are to
+     *                   be retrieved
+     * @param signalCode the type of record, see {@link SignalRegistry}
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @return a view of the matching records in timestamp order, empty if there
+     *         are none
+     */
+    public TimeSeries.View getRecords(int patientId, int signalCode, long startTime, long endTime) {
+        Patient patient = patients.get(patientId);
+        if (patient == null) {
+            patient = new Patient(patientId);
+        }
+        return patient.getRecords(signalCode, startTime, endTime);
+    }
+
+    /**
+     * Summarizes the records of one type for a specific patient in buckets of
+     * the given width. Parts of the range that the rollups of the retention
+     * policy have closed are read from the rollups, so the cost depends on the
+     * number of buckets rather than on the number of records.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param recordType the type of record, e.g., "HeartRate"
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the Unix
+     *                   epoch
+     * @param resolution the width of the buckets, in milliseconds
+     * @return the aggregates of the buckets that have records, in time order
+     * @throws IllegalArgumentException if the resolution is not positive
+     */
+    public List<Aggregate> getAggregates(int patientId, String recordType, long startTime, long endTime,
+            long resolution) {
+        Patient patient = patients.get(patientId);
+        if (patient == null) {
+            patient = new Patient(patientId);
+        }
+        return patient.getAggregates(recordType, startTime, endTime, resolution);
+    }
+
+    /**
+     * Sets the retention policy of a record type. The policy applies to the
+     * series of the type that are created afterwards, i.e. to patients whose
+     * first record of the type has not arrived yet, so it is best set before
+     * ingest starts.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @param policy     the retention policy for the type
+     */
+    public void setRetentionPolicy(String recordType, RetentionPolicy policy) {
+        retentionPolicies.put(SignalRegistry.name(SignalRegistry.code(recordType)), policy);
+    }
+
+    /**
+     * Sets the retention policy of the record types that have no policy of
+     * their own. Like {@link #setRetentionPolicy(String, RetentionPolicy)}, it
+     * applies to series created afterwards.
+     *
+     * @param policy the default retention policy
+     */
+    public void setDefaultRetentionPolicy(RetentionPolicy policy) {
+        defaultRetentionPolicy = policy;
+    }
+
+    /**
+     * Returns the retention policy that new series of a record type get.
+     *
+     * @param recordType the type of record, e.g., "ECG"
+     * @return the policy of the type, or the default policy
+     */
+    public RetentionPolicy getRetentionPolicy(String recordType) {
+        int signalCode = SignalRegistry.lookup(recordType);
+        String name = signalCode == SignalRegistry.UNKNOWN ? recordType : SignalRegistry.name(signalCode);
+        return retentionPolicies.getOrDefault(name, defaultRetentionPolicy);
+    }
+
+    /**
+     * Sets where the records of patients are kept. Like retention policies, the
+     * backend applies to patients created afterwards, so it is best set before
+     * ingest starts.
+     *
+     * @param backend the storage backend for new patients
+     */
+    public void setStorageBackend(StorageBackend backend) {
+        storageBackend = backend;
+    }
+
+    /**
+     * Returns where the records of new patients are kept.
+     *
+     * @return the storage backend
+     */
+    public StorageBackend getStorageBackend() {
+        return storageBackend;
+    }
+
+    /**
+     * Makes the storage persistent with the default journal settings: records
+     * are written to the log within 100 ms and a snapshot is taken every 10
+     * minutes.
+     *
+     * @param directory the directory of the journal
+     * @throws IOException if the journal cannot be recovered or created
+     * @see #enablePersistence(Path, long, long, boolean)
+     */
+    public void enablePersistence(Path directory) throws IOException {
+        enablePersistence(directory, StorageJournal.DEFAULT_FLUSH_INTERVAL_MILLIS,
+                StorageJournal.DEFAULT_SNAPSHOT_INTERVAL_MILLIS, false);
+    }
+
+    /**
+     * Makes the storage persistent. The records of the journal in the directory,
+     * if any, are recovered into the storage first; from then on every record
+     * that is added is also logged to the journal. Best called before ingest
+     * starts, since records added before are not logged.
+     *
+     * @param directory              the directory of the journal
+     * @param flushIntervalMillis    the longest time a record stays buffered
+     *                               before it is written to the log
+     * @param snapshotIntervalMillis the interval at which snapshots are taken,
+     *                               0 to only take them on {@link #snapshot()}
+     * @param durable                whether every write is forced to the
+     *                               storage device
+     * @throws IOException           if the journal cannot be recovered or
+     *                               created
+     * @throws IllegalStateException if persistence is already enabled
+     */
+    public synchronized void enablePersistence(Path directory, long flushIntervalMillis,
+            long snapshotIntervalMillis, boolean durable) throws IOException {
+        if (journal != null) {
+            throw new IllegalStateException("Persistence is already enabled in " + journal.getDirectory());
+        }
+        new JournalReader(directory).readData(this);
+        journal = new StorageJournal(directory, patients::values, StorageJournal.DEFAULT_PARTITIONS,
+                flushIntervalMillis, snapshotIntervalMillis, durable);
+    }
+
+    /**
+     * Takes a snapshot of the storage, which shortens the log that has to be
+     * replayed on recovery. Does nothing if persistence is not enabled.
+     *
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        StorageJournal log = journal;
+        if (log != null) {
+            log.snapshot();
+        }
+    }
+
+    /**
+     * Writes out the buffered records and closes the journal. The records stay
+     * in the storage, but new records are no longer logged.
+     */
+    public synchronized void disablePersistence() {
+        StorageJournal log = journal;
+        if (log != null) {
+            journal = null;
+            log.close();
+        }
+    }
+
     /**
      * Retrieves a collection of all patients stored in the data storage.
      *
      * @return a list of all patients
      */
-    public synchronized List<Patient> getAllPatients() {
-        return new ArrayList<>(patientMap.values());
+    public List<Patient> getAllPatients() {
+        return patients.values();
     }
 
     /**
@@ -0,0 +1,125 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses decimal numbers straight from bytes, without creating strings, for
+ * the text readers. Malformed numbers are reported with a sentinel value
+ * instead of an exception, since readers skip such records and exceptions
+ * would be costly on that path.
+ */
+final class DecimalParser {
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private DecimalParser() {
+    }
+
+    /**
+     * Parses a decimal integer.
+     *
+     * @return the number, or {@code Long.MIN_VALUE} if the text is not one
+     */
+    static long parseLong(ByteBuffer bytes, int from, int to) {
+        boolean negative = from < to && bytes.get(from) == '-';
+        int position = negative || (from < to && bytes.get(from) == '+') ? from + 1 : from;
+        if (position >= to || to - position > 18) {
+            return Long.MIN_VALUE;
+        }
+        long result = 0;
+        for (; position < to; position++) {
+            int digit = bytes.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    /**
+     * Parses a decimal number. Numbers with at most 15 significant digits and
+     * a decimal exponent of at most 22 are computed with one multiplication or
+     * division of two exactly representable numbers, which is correctly
+     * rounded; anything else falls back to {@link Double#parseDouble(String)}.
+     *
+     * @return the number, or NaN if the text is not one
+     */
+    static double parseDouble(ByteBuffer bytes, int from, int to) {
+        int position = from;
+        boolean negative = position < to && bytes.get(position) == '-';
+        if (negative || (position < to && bytes.get(position) == '+')) {
+            position++;
+        }
+        long mantissa = 0;
+        int significant = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; position < to; position++) {
+            byte b = bytes.get(position);
+            if (b >= '0' && b <= '9') {
+                digits++;
+                if (mantissa > 0 || b != '0') {
+                    significant++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (fraction) {
+                    exponent--;
+                }
+                if (significant > 15) {
+                    return parseSlowly(bytes, from, to);
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return parseSlowly(bytes, from, to);
+        }
+        if (position < to) {
+            byte b = bytes.get(position);
+            if (b != 'e' && b != 'E') {
+                return Double.NaN;
+            }
+            long explicit = parseLong(bytes, position + 1, to);
+            if (explicit == Long.MIN_VALUE || Math.abs(explicit) > 1000) {
+                return parseSlowly(bytes, from, to);
+            }
+            exponent += (int) explicit;
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return parseSlowly(bytes, from, to);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double parseSlowly(ByteBuffer bytes, int from, int to) {
+        byte[] text = new byte[to - from];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = bytes.get(from + i);
+        }
+        try {
+            return Double.parseDouble(new String(text, StandardCharsets.ISO_8859_1));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
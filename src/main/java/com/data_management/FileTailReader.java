@@ -0,0 +1,466 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code FileTailReader} class implements the {@link DataReader} interface
+ * to follow the output directory of the simulator's file output while it is
+ * being written. Every label file in the directory is read from where the
+ * reader left off, so each new line is read exactly once and files are never
+ * read again from the start.
+ * <p>
+ * Lines have the form
+ * {@code Patient ID: 7, Timestamp: 1700000000000, Label: Saturation, Data: 97.0%}.
+ * They are parsed straight from the read buffer and added to the storage in
+ * batches per patient and signal; a trailing "%" is ignored and alert states
+ * "triggered" and "resolved" are stored as 1 and 0. A file is only read up to
+ * its last complete line, since the file output may have written part of a
+ * line. A file that is created again, or that shrinks, is assumed to have been
+ * replaced and is read again from the start.
+ * <p>
+ * {@link #readData(DataStorage)} is notified of new and grown files through a
+ * {@link WatchService} and also checks every file at a fixed interval, in case
+ * the file system does not deliver events. With an offset file the offsets
+ * survive a restart of the reading process, in the same way as for
+ * {@link LogReplayReader}.
+ */
+public class FileTailReader implements DataReader, AutoCloseable {
+
+    /** The suffix of the label files written by the simulator's file output. */
+    public static final String FILE_SUFFIX = ".txt";
+    /** The interval at which every file is checked by default, in milliseconds. */
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 1000;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long SAVE_INTERVAL_MILLIS = 1000;
+    private static final byte[] PATIENT_ID = "Patient ID: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP = ", Timestamp: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LABEL = ", Label: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DATA = ", Data: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRIGGERED = "triggered".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESOLVED = "resolved".getBytes(StandardCharsets.US_ASCII);
+
+    private final Path directory;
+    private final long pollIntervalMillis;
+    private final Path offsetFile;
+    private final Map<String, TailedFile> files = new HashMap<>();
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+    private final SignalNameCache signals = new SignalNameCache();
+    private final RecordBatches batches = new RecordBatches();
+    private volatile boolean closed;
+    private volatile WatchService watcher;
+    private boolean offsetsChanged;
+    private long lastSave;
+    private long malformed;
+
+    /**
+     * Constructs a {@code FileTailReader} that reads every file of a directory
+     * from the start.
+     *
+     * @param directory the output directory of the file output
+     */
+    public FileTailReader(String directory) {
+        this.directory = Paths.get(directory);
+        this.pollIntervalMillis = DEFAULT_POLL_INTERVAL_MILLIS;
+        this.offsetFile = null;
+    }
+
+    /**
+     * Constructs a {@code FileTailReader} that continues from the offsets saved
+     * in a file, or from the start of every file if the offset file does not
+     * exist, and saves its progress to that file.
+     *
+     * @param directory          the output directory of the file output
+     * @param offsetFile         the file that holds the offset of each label
+     *                           file
+     * @param pollIntervalMillis the interval at which every file is checked
+     *                           for new lines, in milliseconds
+     * @throws IOException if the offset file exists but cannot be read
+     */
+    public FileTailReader(String directory, Path offsetFile, long pollIntervalMillis) throws IOException {
+        if (pollIntervalMillis < 1) {
+            throw new IllegalArgumentException("Poll interval must be positive");
+        }
+        this.directory = Paths.get(directory);
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.offsetFile = offsetFile;
+        if (offsetFile != null) {
+            loadOffsets();
+        }
+    }
+
+    /**
+     * Follows the directory and adds the records of new lines to the provided
+     * {@link DataStorage} instance until the reader is closed. The lines that
+     * are already in the files are read first.
+     *
+     * @param dataStorage the {@code DataStorage} instance to which the read data
+     *                    will be added
+     * @throws IOException if the directory cannot be watched or the offset file
+     *                     cannot be written
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        follow(dataStorage);
+    }
+
+    /**
+     * Follows the directory and adds the records of new lines to a sink until
+     * the reader is closed, like {@link #readData(DataStorage)}. May be called
+     * again after it returned because the directory became inaccessible; it
+     * continues from the offsets reached.
+     *
+     * @param sink the sink to which the records are added, e.g. an
+     *             {@link IngestionPipeline} source
+     * @throws IOException if the directory cannot be watched or the offset file
+     *                     cannot be written
+     */
+    public void follow(RecordSink sink) throws IOException {
+        Files.createDirectories(directory);
+        try (WatchService service = directory.getFileSystem().newWatchService()) {
+            watcher = service;
+            if (closed) {
+                return;
+            }
+            // Register before catching up, so that no line written in between is missed
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            readAvailable(sink);
+            while (!closed) {
+                WatchKey key = service.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    readAvailable(sink);
+                    continue;
+                }
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else {
+                        Path name = (Path) event.context();
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            restart(name.toString());
+                        }
+                        changed.add(name);
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("Stopped following " + directory + ": the directory is no longer accessible");
+                    return;
+                }
+                if (overflow) {
+                    readAvailable(sink);
+                } else {
+                    for (Path name : changed) {
+                        if (name.toString().endsWith(FILE_SUFFIX)) {
+                            synchronized (this) {
+                                tail(name.toString(), sink);
+                            }
+                        }
+                    }
+                }
+                saveOffsets(false);
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Closed by close()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            synchronized (this) {
+                for (TailedFile file : files.values()) {
+                    file.closeChannel();
+                }
+            }
+            saveOffsets(true);
+        }
+    }
+
+    /**
+     * Reads the lines that were added to the files of the directory since the
+     * last read, without waiting for more.
+     *
+     * @param sink the sink to which the records are added, usually the
+     *             {@code DataStorage}
+     * @return the number of records added
+     * @throws IOException if the directory cannot be listed
+     */
+    public synchronized long readAvailable(RecordSink sink) throws IOException {
+        long records = 0;
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                records += tail(path.getFileName().toString(), sink);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Returns the offset up to which a file has been read.
+     *
+     * @param fileName the name of the file in the directory, e.g. "ECG.txt"
+     * @return the offset after the last line read, 0 if none has been read
+     */
+    public synchronized long getOffset(String fileName) {
+        TailedFile file = files.get(fileName);
+        return file == null ? 0 : file.offset;
+    }
+
+    /**
+     * Returns the number of lines that could not be parsed and were skipped.
+     *
+     * @return the number of malformed lines
+     */
+    public synchronized long getMalformedLines() {
+        return malformed;
+    }
+
+    /**
+     * Stops {@link #readData(DataStorage)} or {@link #follow(RecordSink)} and
+     * saves the offsets.
+     *
+     * @throws IOException if the watch service cannot be closed or the offset
+     *                     file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        WatchService service = watcher;
+        if (service != null) {
+            service.close();
+        }
+        saveOffsets(true);
+    }
+
+    /**
+     * Forgets the offset of a file that was created again under a name that
+     * was read before, i.e. that is no longer the file that is open.
+     */
+    private synchronized void restart(String fileName) {
+        TailedFile file = files.get(fileName);
+        if (file == null || file.key == null) {
+            return;
+        }
+        Object key;
+        try {
+            key = Files.readAttributes(directory.resolve(fileName), BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return; // Deleted again; the next read notices
+        }
+        if (!file.key.equals(key)) {
+            file.closeChannel();
+            file.offset = 0;
+            offsetsChanged = true;
+        }
+    }
+
+    /**
+     * Reads the complete lines after the offset of a file.
+     *
+     * @return the number of records added
+     */
+    private long tail(String fileName, RecordSink sink) {
+        TailedFile file = files.computeIfAbsent(fileName, TailedFile::new);
+        long records = 0;
+        try {
+            FileChannel channel = file.channel();
+            long size = channel.size();
+            if (size < file.offset) {
+                System.err.println(directory.resolve(fileName) + " shrank to " + size
+                        + " bytes, reading it again from the start");
+                file.offset = 0;
+                offsetsChanged = true;
+            }
+            while (file.offset < size) {
+                buffer.clear();
+                int read = channel.read(buffer, file.offset);
+                if (read <= 0) {
+                    break;
+                }
+                int consumed = 0;
+                for (int lineEnd = 0; lineEnd < read; lineEnd++) {
+                    if (buffer.get(lineEnd) == '\n') {
+                        int contentEnd = lineEnd > consumed && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                        if (contentEnd > consumed) {
+                            if (parseLine(consumed, contentEnd)) {
+                                records++;
+                            } else {
+                                malformed++;
+                            }
+                        }
+                        consumed = lineEnd + 1;
+                    }
+                }
+                if (consumed == 0) {
+                    if (read < BUFFER_BYTES) {
+                        break; // An incomplete last line; wait for the rest of it
+                    }
+                    System.err.println("Skipping a line of more than " + BUFFER_BYTES + " bytes in "
+                            + directory.resolve(fileName));
+                    consumed = read;
+                    malformed++;
+                }
+                batches.commitTo(sink);
+                file.offset += consumed;
+                offsetsChanged = true;
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading " + directory.resolve(fileName) + ": " + e.getMessage());
+            file.closeChannel();
+        }
+        return records;
+    }
+
+    /**
+     * Parses a line of the buffer into the batch of its series.
+     *
+     * @return whether the line was well-formed
+     */
+    private boolean parseLine(int from, int to) {
+        if (!SignalNameCache.matches(buffer, from, PATIENT_ID)) {
+            return false;
+        }
+        int position = from + PATIENT_ID.length;
+        int end = indexOf(position, to, TIMESTAMP);
+        long patientId = DecimalParser.parseLong(buffer, position, end);
+        position = end + TIMESTAMP.length;
+        end = indexOf(position, to, LABEL);
+        long timestamp = DecimalParser.parseLong(buffer, position, end);
+        position = end + LABEL.length;
+        end = indexOf(position, to, DATA);
+        if (end >= to || end == position || patientId != (int) patientId || timestamp == Long.MIN_VALUE) {
+            return false;
+        }
+        int signalCode = signals.code(buffer, position, end);
+        position = end + DATA.length;
+        double value;
+        if (to - position == TRIGGERED.length && SignalNameCache.matches(buffer, position, TRIGGERED)) {
+            value = 1;
+        } else if (to - position == RESOLVED.length && SignalNameCache.matches(buffer, position, RESOLVED)) {
+            value = 0;
+        } else {
+            value = DecimalParser.parseDouble(buffer, position, buffer.get(to - 1) == '%' ? to - 1 : to);
+            if (Double.isNaN(value)) {
+                return false;
+            }
+        }
+        batches.add((int) patientId, signalCode, timestamp, value);
+        return true;
+    }
+
+    /**
+     * Finds the next separator of a line.
+     *
+     * @return the index of the separator, or {@code to} if there is none
+     */
+    private int indexOf(int from, int to, byte[] separator) {
+        for (int i = from; i + separator.length <= to; i++) {
+            if (buffer.get(i) == separator[0] && SignalNameCache.matches(buffer, i, separator)) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private synchronized void loadOffsets() throws IOException {
+        if (!Files.exists(offsetFile)) {
+            return;
+        }
+        for (String line : Files.readAllLines(offsetFile, StandardCharsets.UTF_8)) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            int separator = line.lastIndexOf(' ');
+            try {
+                TailedFile file = new TailedFile(line.substring(0, separator));
+                file.offset = Long.parseLong(line.substring(separator + 1));
+                files.put(file.name, file);
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid offset in " + offsetFile + ": " + line);
+            }
+        }
+    }
+
+    /**
+     * Writes the offsets to the offset file, replacing the file atomically so
+     * that a crash never leaves partial offsets behind.
+     *
+     * @param force {@code true} to write even if the last write was recent
+     */
+    private synchronized void saveOffsets(boolean force) throws IOException {
+        if (offsetFile == null || !offsetsChanged) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!force && now - lastSave < SAVE_INTERVAL_MILLIS) {
+            return;
+        }
+        StringBuilder content = new StringBuilder();
+        for (TailedFile file : files.values()) {
+            content.append(file.name).append(' ').append(file.offset).append('\n');
+        }
+        Path temporary = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+        Files.write(temporary, content.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        offsetsChanged = false;
+        lastSave = now;
+    }
+
+    /**
+     * A label file and the offset after the last line read from it.
+     */
+    private final class TailedFile {
+
+        private final String name;
+        private long offset;
+        private FileChannel channel;
+        private Object key; // Identifies the open file, if the file system supports it
+
+        private TailedFile(String name) {
+            this.name = name;
+        }
+
+        private FileChannel channel() throws IOException {
+            if (channel == null) {
+                Path path = directory.resolve(name);
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                key = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            }
+            return channel;
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing " + directory.resolve(name) + ": " + e.getMessage());
+                }
+                channel = null;
+                key = null;
+            }
+        }
+    }
+}
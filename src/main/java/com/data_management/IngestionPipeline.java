@@ -0,0 +1,661 @@
+package com.data_management;
+
+import com.data_management.WebSocketClientImpl.TextFormat;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The {@code IngestionPipeline} class receives records from several sources at
+ * once, such as WebSocket, TCP and file outputs of the simulator, and merges
+ * them into one stream that is added to a {@link RecordSink}, usually the
+ * {@link DataStorage}, in timestamp order.
+ * <p>
+ * Each source runs on its own thread. When its connection fails or ends, the
+ * source is started again after a delay that doubles from 100 ms up to 5 s and
+ * starts over once the source delivers records again. A source hands its
+ * records to a bounded queue of its own; when the queue is full only that
+ * source waits, so a slow or flapping feed never holds up the others.
+ * <p>
+ * A single merge thread moves the queued records into a buffer ordered by
+ * timestamp and releases them up to a watermark, the lowest progress of the
+ * active sources. Assuming each source sends its records in time order, no
+ * record below the progress of a source can still arrive from it. Readers hand
+ * over the records of a message in batches per patient and signal, in the
+ * order of their first records, so the progress of a source is the first
+ * timestamp of the latest batch it has handed over rather than its latest
+ * timestamp. A source is active while it has sent a record within the idle
+ * timeout, so a source that stalls stops holding the watermark back once the
+ * timeout has passed. A source whose connection drops keeps its progress for
+ * the idle timeout after the drop, so that it can reconnect and continue
+ * before the others run ahead of it. With a single active source there is
+ * nothing to merge, and records are released as soon as they are taken. If
+ * the buffer fills up, its oldest records are released regardless of the
+ * watermark. Records that arrive below what was already
+ * released are added at once and counted as late; the storage still files them
+ * in order, at a higher cost.
+ */
+public class IngestionPipeline implements AutoCloseable {
+
+    /** The default capacity of the queue of each source, in records. */
+    public static final int DEFAULT_QUEUE_RECORDS = 1 << 16;
+    /** The default time after which a silent source no longer holds the watermark back. */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 2000;
+    /** The default capacity of the merge buffer, in records. */
+    public static final int DEFAULT_MAX_BUFFERED_RECORDS = 1 << 20;
+
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    private static final long CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * A feed of records. The pipeline calls {@link #run(RecordSink)} again
+     * whenever it returns or fails, until the pipeline is closed.
+     */
+    public interface Source {
+        /**
+         * Returns the name under which the source is reported.
+         *
+         * @return the name of the source
+         */
+        String getName();
+
+        /**
+         * Connects to the feed and adds its records to a sink until the
+         * connection ends or the source is closed.
+         *
+         * @param sink the sink to which the records are added
+         * @throws IOException if the feed cannot be reached or fails
+         */
+        void run(RecordSink sink) throws IOException;
+
+        /**
+         * Stops the source for good, making a running {@link #run(RecordSink)}
+         * return.
+         *
+         * @throws IOException if the connection cannot be closed
+         */
+        void close() throws IOException;
+    }
+
+    private final RecordSink target;
+    private final int queueRecords;
+    private final long idleTimeoutMillis;
+    private final RecordHeap heap;
+    private final List<Feed> feeds = new CopyOnWriteArrayList<>();
+    private final Thread merger;
+    private volatile boolean closed;
+    private volatile boolean sourcesStopped;
+    private volatile long deliveredRecords;
+    private volatile long lateRecords;
+    private long releasedTimestamp = Long.MIN_VALUE; // The highest timestamp released so far; merge thread only
+
+    /**
+     * Constructs an {@code IngestionPipeline} with the default queue, idle
+     * timeout and buffer sizes.
+     *
+     * @param target the sink to which the merged records are added, usually
+     *               the {@link DataStorage}
+     */
+    public IngestionPipeline(RecordSink target) {
+        this(target, DEFAULT_QUEUE_RECORDS, DEFAULT_IDLE_TIMEOUT_MILLIS, DEFAULT_MAX_BUFFERED_RECORDS);
+    }
+
+    /**
+     * Constructs an {@code IngestionPipeline}.
+     *
+     * @param target             the sink to which the merged records are added,
+     *                           usually the {@link DataStorage}
+     * @param queueRecords       the capacity of the queue of each source, in
+     *                           records; rounded up to a power of two
+     * @param idleTimeoutMillis  the time after which a source that sent nothing
+     *                           no longer holds the watermark back
+     * @param maxBufferedRecords the capacity of the merge buffer, in records
+     */
+    public IngestionPipeline(RecordSink target, int queueRecords, long idleTimeoutMillis, int maxBufferedRecords) {
+        int ringRecords = queueRecords < 1 ? 0 : Integer.highestOneBit(queueRecords);
+        if (ringRecords < queueRecords) {
+            ringRecords <<= 1;
+        }
+        if (ringRecords < 1 || maxBufferedRecords < ringRecords || idleTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Invalid pipeline sizes");
+        }
+        this.target = target;
+        this.queueRecords = ringRecords;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.heap = new RecordHeap(maxBufferedRecords);
+        this.merger = new Thread(this::merge, "ingest-merger");
+        merger.setDaemon(true);
+        merger.start();
+    }
+
+    /**
+     * Creates a source that receives the text messages of a WebSocket server,
+     * in either line layout, with a new connection for every run.
+     *
+     * @param serverUri the URI of the WebSocket server
+     * @return the source
+     */
+    public static Source webSocket(URI serverUri) {
+        return new WebSocketSource(serverUri);
+    }
+
+    /**
+     * Creates a source that reads the lines sent by a TCP server, such as the
+     * simulator's TCP output, in either line layout.
+     *
+     * @param host the host of the server
+     * @param port the port of the server
+     * @return the source
+     */
+    public static Source tcp(String host, int port) {
+        return new TcpSource(new InetSocketAddress(host, port));
+    }
+
+    /**
+     * Creates a source that follows the files of the simulator's file output.
+     * The reader keeps its offsets across runs, so a run that ends because the
+     * directory became inaccessible continues where it stopped.
+     *
+     * @param reader the reader of the output directory
+     * @return the source
+     */
+    public static Source files(FileTailReader reader) {
+        return new FileSource(reader);
+    }
+
+    /**
+     * Starts receiving records from a source.
+     *
+     * @param source the source
+     * @throws IllegalStateException if the pipeline is closed
+     */
+    public synchronized void addSource(Source source) {
+        if (closed) {
+            throw new IllegalStateException("Pipeline is closed");
+        }
+        Feed feed = new Feed(source);
+        feeds.add(feed);
+        feed.thread.start();
+    }
+
+    /**
+     * Returns the number of records added to the target so far.
+     *
+     * @return the number of delivered records
+     */
+    public long getDeliveredRecords() {
+        return deliveredRecords;
+    }
+
+    /**
+     * Returns the number of records that were delivered after a record with a
+     * later timestamp, because they arrived below the watermark.
+     *
+     * @return the number of late records
+     */
+    public long getLateRecords() {
+        return lateRecords;
+    }
+
+    /**
+     * Stops every source, then delivers the records that are still queued or
+     * buffered and stops the merge thread.
+     *
+     * @throws IOException if a source cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        IOException failure = null;
+        for (Feed feed : feeds) {
+            try {
+                feed.source.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+            feed.thread.interrupt();
+        }
+        try {
+            for (Feed feed : feeds) {
+                feed.thread.join();
+            }
+            sourcesStopped = true;
+            merger.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs a source again and again until the pipeline is closed.
+     */
+    private void supervise(Feed feed) {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (!closed) {
+            long before = feed.received;
+            String problem;
+            try {
+                feed.source.run(feed);
+                problem = "ended";
+            } catch (IOException | RuntimeException e) {
+                problem = "unavailable (" + e.getMessage() + ")";
+            }
+            if (closed) {
+                return;
+            }
+            // Only a source that was still active holds the watermark after a drop; failed retries do not
+            long now = System.currentTimeMillis();
+            if (now - feed.lastArrival <= idleTimeoutMillis) {
+                feed.lastDrop = now;
+            }
+            if (feed.received != before) {
+                backoff = MIN_BACKOFF_MILLIS;
+            }
+            System.err.println("Source " + feed.source.getName() + " " + problem + ", retrying in " + backoff + " ms");
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+        }
+    }
+
+    /**
+     * Moves queued records into the merge buffer and releases them up to the
+     * watermark, until the sources have stopped and everything is delivered.
+     */
+    private void merge() {
+        RecordBatches batches = new RecordBatches();
+        while (true) {
+            boolean stopping = sourcesStopped;
+            boolean moved = false;
+            for (Feed feed : feeds) {
+                moved |= drain(feed);
+            }
+            release(batches, stopping ? Long.MAX_VALUE : watermark());
+            while (heap.size() > heap.capacity() - queueRecords) {
+                release(batches); // The buffer is full: make room without waiting for the watermark
+            }
+            if (batches.size() > 0) {
+                batches.commitTo(target);
+            }
+            if (stopping && heap.size() == 0 && queuesEmpty()) {
+                return;
+            }
+            if (!moved) {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    }
+
+    private boolean drain(Feed feed) {
+        long head = feed.head;
+        int count = (int) Math.min(feed.tail - head, heap.capacity() - heap.size());
+        for (int i = 0; i < count; i++) {
+            int slot = (int) (head + i) & feed.mask;
+            heap.push(feed.patientIds[slot], feed.signalCodes[slot], feed.timestamps[slot], feed.values[slot]);
+        }
+        if (count == 0) {
+            return false;
+        }
+        feed.progress = feed.floors[(int) (head + count - 1) & feed.mask];
+        feed.head = head + count;
+        return true;
+    }
+
+    /**
+     * Returns the lowest progress of the active sources, or
+     * {@code Long.MAX_VALUE} if fewer than two sources are active. A source
+     * counts as active for the idle timeout after its last record or, if it
+     * dropped since, after the drop.
+     */
+    private long watermark() {
+        long now = System.currentTimeMillis();
+        long watermark = Long.MAX_VALUE;
+        int active = 0;
+        for (Feed feed : feeds) {
+            if (feed.progress != Long.MIN_VALUE
+                    && (feed.tail != feed.head
+                            || now - Math.max(feed.lastArrival, feed.lastDrop) <= idleTimeoutMillis)) {
+                watermark = Math.min(watermark, feed.progress);
+                active++;
+            }
+        }
+        return active < 2 ? Long.MAX_VALUE : watermark;
+    }
+
+    private boolean queuesEmpty() {
+        for (Feed feed : feeds) {
+            if (feed.tail != feed.head) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void release(RecordBatches batches, long watermark) {
+        while (heap.size() > 0 && heap.minTimestamp() <= watermark) {
+            release(batches);
+        }
+    }
+
+    private void release(RecordBatches batches) {
+        long timestamp = heap.minTimestamp();
+        if (timestamp < releasedTimestamp) {
+            lateRecords++;
+        } else {
+            releasedTimestamp = timestamp;
+        }
+        heap.popInto(batches);
+        deliveredRecords++;
+    }
+
+    /**
+     * A source with its thread and its queue. The queue is a ring of records
+     * with one writer, the source's thread, and one reader, the merge thread.
+     * Each record is queued with the progress of the source as of its batch, so
+     * the merge thread knows the progress up to the last record it has taken.
+     */
+    private final class Feed implements RecordSink {
+
+        private final Source source;
+        private final Thread thread;
+        private final int mask;
+        private final int[] patientIds;
+        private final int[] signalCodes;
+        private final long[] timestamps;
+        private final double[] values;
+        private final long[] floors;
+        private volatile long head; // The number of records taken by the merge thread
+        private volatile long tail; // The number of records added by the source
+        private volatile long lastArrival;
+        private volatile long lastDrop; // When a run of the source last ended or failed
+        private volatile long received;
+        private long floor = Long.MIN_VALUE; // The highest first timestamp of a batch; source thread only
+        private long progress = Long.MIN_VALUE; // The floor of the last record taken; merge thread only
+
+        Feed(Source source) {
+            this.source = source;
+            this.mask = queueRecords - 1;
+            this.patientIds = new int[queueRecords];
+            this.signalCodes = new int[queueRecords];
+            this.timestamps = new long[queueRecords];
+            this.values = new double[queueRecords];
+            this.floors = new long[queueRecords];
+            this.thread = new Thread(() -> supervise(this), "ingest-" + source.getName());
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Queues a batch of records, waiting while the queue is full.
+         */
+        @Override
+        public void addRecords(int patientId, int signalCode, long[] timestamps, double[] values, int offset,
+                int count) {
+            if (count > 0 && timestamps[offset] > floor) {
+                floor = timestamps[offset];
+            }
+            long end = tail;
+            for (int i = 0; i < count; ) {
+                int free = (int) (queueRecords - (end - head));
+                if (free == 0) {
+                    lastArrival = System.currentTimeMillis();
+                    LockSupport.parkNanos(PARK_NANOS);
+                    continue;
+                }
+                int n = Math.min(free, count - i);
+                for (int j = 0; j < n; j++) {
+                    int slot = (int) (end + j) & mask;
+                    this.patientIds[slot] = patientId;
+                    this.signalCodes[slot] = signalCode;
+                    this.timestamps[slot] = timestamps[offset + i + j];
+                    this.values[slot] = values[offset + i + j];
+                    this.floors[slot] = floor;
+                }
+                end += n;
+                i += n;
+                tail = end;
+            }
+            received += count;
+            lastArrival = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * A binary min-heap of records ordered by timestamp, and by arrival among
+     * equal timestamps. Records are kept in slots and the heap orders slot
+     * numbers, so sifting moves one int per level.
+     */
+    private static final class RecordHeap {
+
+        private final int[] heap;
+        private final int[] freeSlots;
+        private final int[] patientIds;
+        private final int[] signalCodes;
+        private final long[] timestamps;
+        private final long[] sequences;
+        private final double[] values;
+        private int size;
+        private long sequence;
+
+        RecordHeap(int capacity) {
+            heap = new int[capacity];
+            freeSlots = new int[capacity];
+            for (int i = 0; i < capacity; i++) {
+                freeSlots[i] = capacity - 1 - i;
+            }
+            patientIds = new int[capacity];
+            signalCodes = new int[capacity];
+            timestamps = new long[capacity];
+            sequences = new long[capacity];
+            values = new double[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int capacity() {
+            return heap.length;
+        }
+
+        long minTimestamp() {
+            return timestamps[heap[0]];
+        }
+
+        void push(int patientId, int signalCode, long timestamp, double value) {
+            int slot = freeSlots[heap.length - 1 - size];
+            patientIds[slot] = patientId;
+            signalCodes[slot] = signalCode;
+            timestamps[slot] = timestamp;
+            sequences[slot] = sequence++;
+            values[slot] = value;
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(slot, heap[parent])) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = slot;
+        }
+
+        void popInto(RecordBatches batches) {
+            int top = heap[0];
+            batches.add(patientIds[top], signalCodes[top], timestamps[top], values[top]);
+            int last = heap[--size];
+            freeSlots[heap.length - 1 - size] = top;
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!before(heap[child], last)) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+        }
+
+        private boolean before(int a, int b) {
+            return timestamps[a] < timestamps[b] || timestamps[a] == timestamps[b] && sequences[a] < sequences[b];
+        }
+    }
+
+    /**
+     * Receives the text messages of a WebSocket server.
+     */
+    private static final class WebSocketSource implements Source {
+
+        private final URI serverUri;
+        private volatile boolean closed;
+        private volatile WebSocketClientImpl client;
+
+        WebSocketSource(URI serverUri) {
+            this.serverUri = serverUri;
+        }
+
+        @Override
+        public String getName() {
+            return serverUri.toString();
+        }
+
+        @Override
+        public void run(RecordSink sink) throws IOException {
+            WebSocketClientImpl connection = new WebSocketClientImpl(serverUri, sink, false, null, TextFormat.AUTO);
+            client = connection;
+            if (closed) {
+                return;
+            }
+            try {
+                if (!connection.connectBlocking(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("cannot connect");
+                }
+                connection.awaitClose();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                connection.close();
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            WebSocketClientImpl connection = client;
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the lines sent by a TCP server.
+     */
+    private static final class TcpSource implements Source {
+
+        private final InetSocketAddress server;
+        private volatile boolean closed;
+        private volatile SocketChannel channel;
+
+        TcpSource(InetSocketAddress server) {
+            this.server = server;
+        }
+
+        @Override
+        public String getName() {
+            return "tcp://" + server.getHostString() + ":" + server.getPort();
+        }
+
+        @Override
+        public void run(RecordSink sink) throws IOException {
+            try (SocketChannel socket = SocketChannel.open()) {
+                // Published before connecting, so that close() also aborts a connection attempt
+                channel = socket;
+                if (closed) {
+                    return;
+                }
+                socket.socket().connect(server, (int) CONNECT_TIMEOUT_MILLIS);
+                TextRecordParser parser = new TextRecordParser(TextFormat.AUTO);
+                ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+                while (socket.read(buffer) >= 0) {
+                    int end = parser.parseLines(buffer, 0, buffer.position(), false);
+                    parser.commitTo(sink);
+                    buffer.flip().position(end);
+                    buffer.compact();
+                    if (!buffer.hasRemaining()) {
+                        // A line longer than the buffer
+                        buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+                    }
+                }
+                parser.parseLines(buffer, 0, buffer.position(), true);
+                parser.commitTo(sink);
+            } catch (IOException e) {
+                if (!closed) {
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            SocketChannel socket = channel;
+            if (socket != null) {
+                socket.close();
+            }
+        }
+    }
+
+    /**
+     * Follows the files of the simulator's file output.
+     */
+    private static final class FileSource implements Source {
+
+        private final FileTailReader reader;
+
+        FileSource(FileTailReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public String getName() {
+            return "files";
+        }
+
+        @Override
+        public void run(RecordSink sink) throws IOException {
+            reader.follow(sink);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
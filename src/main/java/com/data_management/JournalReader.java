@@ -0,0 +1,244 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+
+/**
+ * The {@code JournalReader} class implements the {@link DataReader} interface
+ * to recover the records of a {@link StorageJournal} after a restart.
+ * <p>
+ * Partitions hold disjoint sets of patients, so they are recovered in parallel,
+ * one thread per partition up to the number of processors. Each partition
+ * loads its newest complete snapshot and then replays the log files written
+ * since, in order. Files are memory-mapped and every frame is checked against
+ * its checksum; a log ends at the first torn or corrupt frame, which is what a
+ * crash during a write leaves behind, and the records before it are kept.
+ * Records are added to the storage in batches per patient and signal: a
+ * snapshot frame is one batch, and the records of a log frame are grouped by
+ * series first.
+ */
+public class JournalReader implements DataReader {
+
+    private final Path directory;
+    private final int threads;
+
+    /**
+     * Constructs a {@code JournalReader} for the journal in the specified
+     * directory.
+     *
+     * @param directory the directory of the journal
+     */
+    public JournalReader(Path directory) {
+        this(directory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a {@code JournalReader} that recovers at most a number of
+     * partitions at a time.
+     *
+     * @param directory the directory of the journal
+     * @param threads   the number of partitions recovered in parallel
+     */
+    public JournalReader(Path directory, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        this.directory = directory;
+        this.threads = threads;
+    }
+
+    /**
+     * Recovers the records of the journal into the provided {@link DataStorage}
+     * instance. A directory without a journal is not an error; there is
+     * nothing to recover.
+     *
+     * @param dataStorage the {@code DataStorage} instance to which the read data
+     *                    will be added
+     * @throws IOException if a journal file cannot be read
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        List<Path> partitions = StorageJournal.partitionDirectories(directory);
+        if (partitions.isEmpty()) {
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, partitions.size()), r -> {
+            Thread thread = new Thread(r, "journal-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for (Path partition : partitions) {
+                results.add(pool.submit(() -> {
+                    recover(partition, dataStorage);
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while recovering " + directory, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to recover " + directory, e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void recover(Path partition, DataStorage dataStorage) throws IOException {
+        long from = 0;
+        List<Path> snapshots = StorageJournal.files(partition, StorageJournal.SNAPSHOT_SUFFIX);
+        // A snapshot is used only if it is complete; otherwise fall back to an older one
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            if (isComplete(snapshots.get(i))) {
+                loadSnapshot(snapshots.get(i), dataStorage);
+                from = StorageJournal.sequenceOf(snapshots.get(i));
+                break;
+            }
+            System.err.println("Skipping incomplete snapshot " + snapshots.get(i));
+        }
+        for (Path log : StorageJournal.files(partition, StorageJournal.LOG_SUFFIX)) {
+            if (StorageJournal.sequenceOf(log) >= from) {
+                replayLog(log, dataStorage);
+            }
+        }
+    }
+
+    private static boolean isComplete(Path snapshot) throws IOException {
+        ByteBuffer buffer = map(snapshot);
+        if (buffer.remaining() < 16 || buffer.getInt(0) != StorageJournal.SNAPSHOT_MAGIC) {
+            return false;
+        }
+        buffer.position(16);
+        while (true) {
+            int kind = nextFrame(buffer);
+            if (kind <= 0) {
+                return false;
+            }
+            if (kind == StorageJournal.KIND_END) {
+                return true;
+            }
+            buffer.position(buffer.limit()).limit(buffer.capacity());
+        }
+    }
+
+    private static void loadSnapshot(Path snapshot, DataStorage dataStorage) throws IOException {
+        ByteBuffer buffer = map(snapshot);
+        buffer.position(16);
+        Map<String, Integer> codes = new HashMap<>();
+        long[] timestamps = new long[0];
+        double[] values = new double[0];
+        int kind;
+        while ((kind = nextFrame(buffer)) == StorageJournal.KIND_SERIES) {
+            int patientId = buffer.getInt();
+            int count = buffer.getInt();
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            int signalCode = codes.computeIfAbsent(new String(name, StandardCharsets.UTF_8), SignalRegistry::code);
+            if (count < 0 || count > StorageJournal.MAX_SERIES_FRAME_RECORDS || buffer.remaining() < count * 16) {
+                throw new IOException("Invalid series frame of " + count + " records in " + snapshot);
+            }
+            if (timestamps.length < count) {
+                timestamps = new long[count];
+                values = new double[count];
+            }
+            buffer.asLongBuffer().get(timestamps, 0, count);
+            buffer.position(buffer.position() + count * 8);
+            buffer.asDoubleBuffer().get(values, 0, count);
+            dataStorage.addRecords(patientId, signalCode, timestamps, values, 0, count);
+            buffer.position(buffer.limit()).limit(buffer.capacity());
+        }
+    }
+
+    private static void replayLog(Path log, DataStorage dataStorage) throws IOException {
+        ByteBuffer buffer = map(log);
+        // Codes registered at runtime are named in the file before they are used
+        Map<Integer, Integer> dynamicCodes = new HashMap<>();
+        RecordBatches batches = new RecordBatches();
+        while (buffer.hasRemaining()) {
+            int frameStart = buffer.position();
+            int kind = nextFrame(buffer);
+            if (kind == StorageJournal.KIND_RECORDS) {
+                for (int at = buffer.position(); at + StorageJournal.RECORD_BYTES <= buffer.limit();
+                        at += StorageJournal.RECORD_BYTES) {
+                    int signalCode = buffer.getInt(at + 20);
+                    if (signalCode >= SignalRegistry.FIRST_DYNAMIC_CODE) {
+                        Integer local = dynamicCodes.get(signalCode);
+                        if (local == null) {
+                            continue;
+                        }
+                        signalCode = local;
+                    }
+                    batches.add(buffer.getInt(at + 16), signalCode, buffer.getLong(at), buffer.getDouble(at + 8));
+                }
+                batches.commitTo(dataStorage);
+            } else if (kind == StorageJournal.KIND_SIGNAL_NAME) {
+                int signalCode = buffer.getInt();
+                byte[] name = new byte[buffer.remaining()];
+                buffer.get(name);
+                dynamicCodes.put(signalCode, SignalRegistry.code(new String(name, StandardCharsets.UTF_8)));
+            } else {
+                System.err.println("Journal " + log + " ends with a torn or corrupt frame at byte " + frameStart
+                        + "; ignoring the rest of the file");
+                return;
+            }
+            buffer.position(buffer.limit()).limit(buffer.capacity());
+        }
+    }
+
+    /**
+     * Reads the frame header at the position of the buffer and, if the frame is
+     * complete and its checksum matches, limits the buffer to its payload.
+     *
+     * @return the kind of the frame, or -1 if it is torn or corrupt
+     */
+    private static int nextFrame(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < StorageJournal.FRAME_HEADER_BYTES) {
+            return -1;
+        }
+        int kind = buffer.getInt(start);
+        int length = buffer.getInt(start + 4);
+        int checksum = buffer.getInt(start + 8);
+        int payload = start + StorageJournal.FRAME_HEADER_BYTES;
+        if (length < 0 || length > buffer.limit() - payload) {
+            return -1;
+        }
+        buffer.position(payload).limit(payload + length);
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return -1;
+        }
+        return kind;
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package com.data_management;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import com.cardio_generator.outputs.LogServer;
+import com.cardio_generator.outputs.SegmentLog;
+
+/**
+ * The {@code LogReplayReader} class implements the {@link DataReader} interface
+ * to consume the log served by the simulator's replay output. The reader asks
+ * the {@link LogServer} for the records from a starting offset or time, receives
+ * the backlog as fast as the server can read it from disk, and then keeps
+ * receiving new records as they are written, until it is closed.
+ * <p>
+ * The reader remembers the offset after the last record it stored. When the
+ * connection drops it reconnects with a growing delay and continues from that
+ * offset, so no record is lost or stored twice. With an offset file the
+ * position also survives a restart of the reading process: it is saved at most
+ * once a second and when the reader stops, so after a crash at most the last
+ * second of records is stored again.
+ * <p>
+ * The records of each chunk are added to the storage in one batch per patient
+ * and signal.
+ */
+public class LogReplayReader implements DataReader, AutoCloseable {
+
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    private static final long SAVE_INTERVAL_MILLIS = 1000;
+
+    private final InetSocketAddress server;
+    private final String firstRequest;
+    private final Path offsetFile;
+    private volatile long nextOffset = -1;
+    private volatile boolean closed;
+    private volatile SocketChannel channel;
+    private volatile long unknownRecords;
+    private long savedOffset = -1;
+    private long lastSave;
+
+    /**
+     * Constructs a {@code LogReplayReader} that starts at a record offset.
+     *
+     * @param host        the host of the log server
+     * @param port        the port of the log server
+     * @param startOffset the sequence number of the first record to read; 0
+     *                    reads the whole log
+     */
+    public LogReplayReader(String host, int port, long startOffset) {
+        this(host, port, "OFFSET " + startOffset, null);
+    }
+
+    /**
+     * Constructs a {@code LogReplayReader} that continues from the offset saved
+     * in a file, or from the start of the log if the file does not exist, and
+     * saves its progress to that file.
+     *
+     * @param host       the host of the log server
+     * @param port       the port of the log server
+     * @param offsetFile the file that holds the offset of the next record
+     * @throws IOException if the offset file exists but cannot be read
+     */
+    public LogReplayReader(String host, int port, Path offsetFile) throws IOException {
+        this(host, port, "OFFSET " + loadOffset(offsetFile), offsetFile);
+    }
+
+    private LogReplayReader(String host, int port, String firstRequest, Path offsetFile) {
+        this.server = new InetSocketAddress(host, port);
+        this.firstRequest = firstRequest;
+        this.offsetFile = offsetFile;
+    }
+
+    /**
+     * Creates a {@code LogReplayReader} that starts at the first record written
+     * at or after a time.
+     *
+     * @param host      the host of the log server
+     * @param port      the port of the log server
+     * @param startTime the time to start at, in milliseconds since the Unix epoch
+     * @return the reader
+     */
+    public static LogReplayReader fromTime(String host, int port, long startTime) {
+        return new LogReplayReader(host, port, "TIME " + startTime, null);
+    }
+
+    /**
+     * Receives records from the log server and adds them to the provided
+     * {@link DataStorage} instance until the reader is closed, reconnecting
+     * whenever the connection is lost.
+     *
+     * @param dataStorage the {@code DataStorage} instance to which the received
+     *                    data will be added
+     * @throws IOException if the offset file cannot be written
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        long backoff = MIN_BACKOFF_MILLIS;
+        try {
+            while (!closed) {
+                try (SocketChannel socket = SocketChannel.open(server)) {
+                    channel = socket;
+                    if (closed) {
+                        return;
+                    }
+                    String request = nextOffset < 0 ? firstRequest : "OFFSET " + nextOffset;
+                    socket.write(ByteBuffer.wrap((request + "\n").getBytes(StandardCharsets.US_ASCII)));
+                    backoff = MIN_BACKOFF_MILLIS;
+                    receive(socket, dataStorage);
+                } catch (UncheckedIOException e) {
+                    // The offset file failed, which reconnecting does not fix
+                    throw e.getCause();
+                } catch (IOException e) {
+                    if (closed) {
+                        return;
+                    }
+                    System.err.println("Log server " + server + " unavailable (" + e.getMessage()
+                            + "), retrying in " + backoff + " ms");
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        } finally {
+            saveOffset(true);
+        }
+    }
+
+    /**
+     * Returns the offset of the next record to receive, which is also the
+     * number of records in the log before it.
+     *
+     * @return the next offset, or -1 if nothing has been received yet
+     */
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * Returns the number of records that were skipped because their signal
+     * code is not registered in the {@link SignalRegistry}.
+     *
+     * @return the number of records with an unknown signal
+     */
+    public long getUnknownRecords() {
+        return unknownRecords;
+    }
+
+    /**
+     * Disconnects from the log server and stops {@link #readData(DataStorage)}.
+     *
+     * @throws IOException if the connection cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        SocketChannel socket = channel;
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private void receive(SocketChannel socket, DataStorage dataStorage) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(LogServer.CHUNK_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer records = ByteBuffer.allocateDirect(LogServer.MAX_CHUNK_RECORDS * SegmentLog.RECORD_BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        RecordBatches batches = new RecordBatches();
+        while (!closed) {
+            header.clear();
+            readFully(socket, header);
+            long offset = header.getLong(0);
+            int count = header.getInt(8);
+            if (count < 0 || count > LogServer.MAX_CHUNK_RECORDS) {
+                throw new IOException("Invalid chunk of " + count + " records");
+            }
+            records.clear().limit(count * SegmentLog.RECORD_BYTES);
+            readFully(socket, records);
+            for (int i = 0, position = 0; i < count; i++, position += SegmentLog.RECORD_BYTES) {
+                // The simulator's signal codes are registry codes, so only codes nobody registered are skipped
+                int signalCode = records.getInt(position + 20);
+                if (SignalRegistry.name(signalCode) == null) {
+                    unknownRecords++;
+                    continue;
+                }
+                batches.add(records.getInt(position + 16), signalCode, records.getLong(position),
+                        records.getDouble(position + 8));
+            }
+            batches.commitTo(dataStorage);
+            nextOffset = offset + count;
+            try {
+                saveOffset(false);
+            } catch (IOException e) {
+                // Kept apart from the socket errors, which only lead to a reconnect
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static void readFully(SocketChannel socket, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (socket.read(buffer) < 0) {
+                throw new EOFException("Log server closed the connection");
+            }
+        }
+    }
+
+    private static long loadOffset(Path offsetFile) throws IOException {
+        if (!Files.exists(offsetFile)) {
+            return 0;
+        }
+        String content = new String(Files.readAllBytes(offsetFile), StandardCharsets.US_ASCII).trim();
+        try {
+            return Long.parseLong(content);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid offset in " + offsetFile + ": " + content);
+        }
+    }
+
+    /**
+     * Writes the next offset to the offset file, replacing the file atomically
+     * so that a crash never leaves a partial offset behind.
+     *
+     * @param force {@code true} to write even if the last write was recent
+     */
+    private void saveOffset(boolean force) throws IOException {
+        long offset = nextOffset;
+        if (offsetFile == null || offset < 0 || offset == savedOffset) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!force && now - lastSave < SAVE_INTERVAL_MILLIS) {
+            return;
+        }
+        Path temporary = offsetFile.resolveSibling(offsetFile.getFileName() + ".tmp");
+        Files.write(temporary, Long.toString(offset).getBytes(StandardCharsets.US_ASCII));
+        Files.move(temporary, offsetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        savedOffset = offset;
+        lastSave = now;
+    }
+}
@@ -0,0 +1,374 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.cardio_generator.outputs.MulticastOutputStrategy;
+
+/**
+ * The {@code MulticastDataReader} class implements the {@link DataReader}
+ * interface to receive the datagrams that the simulator's multicast output
+ * publishes. The reader joins the group when it is constructed, and
+ * {@link #readData(DataStorage)} receives datagrams until the reader is closed.
+ * <p>
+ * UDP may lose, duplicate and reorder datagrams. The reader tracks the
+ * sequence numbers of every source: skipped numbers are counted as lost, a
+ * datagram that arrives after a later one fills its gap again, and duplicates
+ * are dropped so that no record is stored twice. The records of a datagram are
+ * added to the storage in one batch per patient and signal.
+ */
+public class MulticastDataReader implements DataReader, AutoCloseable {
+
+    private static final int MAX_DATAGRAM_BYTES = 65507;
+
+    private final DatagramChannel channel;
+    private final Map<Long, SourceStats> sources = new ConcurrentHashMap<>();
+    private final RecordBatches batches = new RecordBatches();
+    private volatile long malformedDatagrams;
+    private volatile long unknownRecords;
+    private volatile boolean closed;
+
+    /**
+     * Constructs a {@code MulticastDataReader} that joins a group on the
+     * default multicast interface.
+     *
+     * @param group the multicast group address, e.g. "239.255.42.99"
+     * @param port  the UDP port the simulator publishes to
+     * @throws IOException if the group cannot be joined
+     */
+    public MulticastDataReader(String group, int port) throws IOException {
+        this(InetAddress.getByName(group), port, MulticastOutputStrategy.defaultInterface());
+    }
+
+    /**
+     * Constructs a {@code MulticastDataReader} that joins a group on the given
+     * interface.
+     *
+     * @param group            the multicast group address
+     * @param port             the UDP port the simulator publishes to
+     * @param networkInterface the interface on which to join the group
+     * @throws IOException if the group cannot be joined
+     */
+    public MulticastDataReader(InetAddress group, int port, NetworkInterface networkInterface) throws IOException {
+        channel = DatagramChannel.open(group.getAddress().length == 4
+                ? StandardProtocolFamily.INET
+                : StandardProtocolFamily.INET6);
+        try {
+            // Several readers on one host may share the port
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+            channel.bind(new InetSocketAddress(port));
+            channel.join(group, networkInterface);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Receives datagrams and adds their records to the provided
+     * {@link DataStorage} instance until the reader is closed.
+     *
+     * @param dataStorage the {@code DataStorage} instance to which the received
+     *                    data will be added
+     * @throws IOException if receiving fails for a reason other than closing
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        ByteBuffer datagram = ByteBuffer.allocateDirect(MAX_DATAGRAM_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (!closed) {
+            datagram.clear();
+            try {
+                channel.receive(datagram);
+            } catch (ClosedChannelException e) {
+                if (closed) {
+                    return;
+                }
+                throw e;
+            }
+            datagram.flip();
+            handle(datagram, dataStorage);
+        }
+    }
+
+    /**
+     * Returns the UDP port the reader listens on.
+     *
+     * @return the local port
+     * @throws IOException if the reader is closed
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Returns the statistics of every source heard from so far.
+     *
+     * @return a snapshot of the sources
+     */
+    public Collection<SourceStats> getSources() {
+        return new ArrayList<>(sources.values());
+    }
+
+    /**
+     * Returns the number of datagrams received from all sources, duplicates
+     * excluded.
+     *
+     * @return the number of received datagrams
+     */
+    public long getReceivedDatagrams() {
+        long received = 0;
+        for (SourceStats source : sources.values()) {
+            received += source.getReceived();
+        }
+        return received;
+    }
+
+    /**
+     * Returns the number of datagrams from all sources that were skipped in
+     * their sequence and have not arrived since.
+     *
+     * @return the number of lost datagrams
+     */
+    public long getLostDatagrams() {
+        long lost = 0;
+        for (SourceStats source : sources.values()) {
+            lost += source.getLost();
+        }
+        return lost;
+    }
+
+    /**
+     * Returns the share of datagrams that were lost, over all sources.
+     *
+     * @return the loss rate between 0 and 1
+     */
+    public double getLossRate() {
+        long lost = getLostDatagrams();
+        long expected = lost + getReceivedDatagrams();
+        return expected == 0 ? 0 : lost / (double) expected;
+    }
+
+    /**
+     * Returns the number of datagrams that were not valid simulator datagrams.
+     *
+     * @return the number of malformed datagrams
+     */
+    public long getMalformedDatagrams() {
+        return malformedDatagrams;
+    }
+
+    /**
+     * Returns the number of records that were dropped because their signal
+     * code is not registered in the {@link SignalRegistry}.
+     *
+     * @return the number of records with an unknown signal
+     */
+    public long getUnknownRecords() {
+        return unknownRecords;
+    }
+
+    /**
+     * Prints the loss statistics of every source to the console.
+     */
+    public void printStatistics() {
+        for (SourceStats source : getSources()) {
+            System.out.println(source);
+        }
+        System.out.printf("Loss rate: %.4f%% (%d malformed datagrams, %d records with unknown signals)%n",
+                getLossRate() * 100, malformedDatagrams, unknownRecords);
+    }
+
+    /**
+     * Leaves the group and stops {@link #readData(DataStorage)}.
+     *
+     * @throws IOException if the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    private void handle(ByteBuffer datagram, DataStorage dataStorage) {
+        int length = datagram.remaining();
+        if (length < MulticastOutputStrategy.HEADER_BYTES
+                || datagram.getInt(0) != MulticastOutputStrategy.MAGIC
+                || datagram.get(4) != MulticastOutputStrategy.VERSION) {
+            malformedDatagrams++;
+            return;
+        }
+        int count = datagram.getShort(MulticastOutputStrategy.COUNT_OFFSET) & 0xFFFF;
+        if (length < MulticastOutputStrategy.HEADER_BYTES + count * MulticastOutputStrategy.RECORD_BYTES) {
+            malformedDatagrams++;
+            return;
+        }
+        long sourceId = datagram.getLong(MulticastOutputStrategy.SOURCE_OFFSET);
+        long sequence = datagram.getLong(MulticastOutputStrategy.SEQUENCE_OFFSET);
+        if (!sources.computeIfAbsent(sourceId, SourceStats::new).accept(sequence)) {
+            return;
+        }
+        long baseTimestamp = datagram.getLong(MulticastOutputStrategy.BASE_TIMESTAMP_OFFSET);
+        int position = MulticastOutputStrategy.HEADER_BYTES;
+        for (int i = 0; i < count; i++, position += MulticastOutputStrategy.RECORD_BYTES) {
+            // The simulator's signal codes are registry codes, so only codes nobody registered are dropped
+            int signalCode = datagram.getInt(position + 4);
+            if (SignalRegistry.name(signalCode) == null) {
+                unknownRecords++;
+                continue;
+            }
+            batches.add(datagram.getInt(position), signalCode, baseTimestamp + datagram.getInt(position + 8),
+                    datagram.getDouble(position + 12));
+        }
+        batches.commitTo(dataStorage);
+    }
+
+    /**
+     * The sequence tracking and loss statistics of one source. The last 64
+     * sequence numbers are remembered, so late datagrams within that window
+     * are told apart from duplicates.
+     */
+    public static final class SourceStats {
+
+        private static final int WINDOW = 64;
+
+        private final long sourceId;
+        private long first = -1; // The first sequence number heard; earlier ones were never counted as lost
+        private long highest = -1;
+        private long window; // bit i set = datagram highest - i was received
+        private long received;
+        private long lost;
+        private long reordered;
+        private long duplicates;
+        private long late;
+
+        private SourceStats(long sourceId) {
+            this.sourceId = sourceId;
+        }
+
+        /**
+         * Records the arrival of a datagram.
+         *
+         * @param sequence the sequence number of the datagram
+         * @return {@code true} if the records of the datagram should be stored
+         */
+        private synchronized boolean accept(long sequence) {
+            if (highest < 0) {
+                // Joining late is not loss, so counting starts at the first datagram heard
+                first = sequence;
+                highest = sequence;
+                window = 1;
+                received++;
+                return true;
+            }
+            if (sequence > highest) {
+                long shift = sequence - highest;
+                lost += shift - 1;
+                window = shift >= WINDOW ? 1 : (window << shift) | 1;
+                highest = sequence;
+                received++;
+                return true;
+            }
+            long back = highest - sequence;
+            if (back >= WINDOW) {
+                late++;
+                return false;
+            }
+            long bit = 1L << back;
+            if ((window & bit) != 0) {
+                duplicates++;
+                return false;
+            }
+            window |= bit;
+            if (sequence > first) {
+                lost--;
+            }
+            reordered++;
+            received++;
+            return true;
+        }
+
+        /**
+         * Returns the random ID the source stamps on its datagrams.
+         *
+         * @return the source ID
+         */
+        public long getSourceId() {
+            return sourceId;
+        }
+
+        /**
+         * Returns the highest sequence number received from the source.
+         *
+         * @return the highest sequence number
+         */
+        public synchronized long getHighestSequence() {
+            return highest;
+        }
+
+        /**
+         * Returns the number of datagrams received, duplicates excluded.
+         *
+         * @return the number of received datagrams
+         */
+        public synchronized long getReceived() {
+            return received;
+        }
+
+        /**
+         * Returns the number of datagrams that were skipped and have not arrived
+         * since.
+         *
+         * @return the number of lost datagrams
+         */
+        public synchronized long getLost() {
+            return lost;
+        }
+
+        /**
+         * Returns the number of datagrams that arrived after a later one.
+         *
+         * @return the number of reordered datagrams
+         */
+        public synchronized long getReordered() {
+            return reordered;
+        }
+
+        /**
+         * Returns the number of datagrams that arrived more than once.
+         *
+         * @return the number of duplicates
+         */
+        public synchronized long getDuplicates() {
+            return duplicates;
+        }
+
+        /**
+         * Returns the number of datagrams that arrived too late to be told
+         * apart from duplicates; they were dropped and still count as lost.
+         *
+         * @return the number of late datagrams
+         */
+        public synchronized long getLate() {
+            return late;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("Source %016x: %d received, %d lost, %d reordered, %d duplicates, %d late",
+                    sourceId, received, lost, reordered, duplicates, late);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Hands out the direct memory of off-heap time series.
+ * <p>
+ * Allocating a direct buffer is slow and every buffer carries its own cleaner,
+ * so chunks are not allocated one by one. Instead, chunks are cut from large
+ * slabs by bumping an offset, and each chunk is a slice of its slab. A slice
+ * keeps its slab reachable, so a slab is freed by the garbage collector once
+ * every chunk cut from it has been dropped, e.g. by retention. As series fill
+ * up at about the same pace, the chunks of a slab tend to expire together.
+ */
+final class OffHeapArena {
+
+    /** The size of each slab, in bytes. */
+    static final int SLAB_BYTES = 4 << 20;
+
+    private static ByteBuffer slab;
+
+    private OffHeapArena() {
+    }
+
+    /**
+     * Allocates a zeroed buffer in native byte order.
+     *
+     * @param bytes the size of the buffer, a power of two of at most
+     *              {@link #SLAB_BYTES}
+     * @return the buffer, positioned at 0 with its limit at its capacity
+     */
+    static synchronized ByteBuffer allocate(int bytes) {
+        if (slab == null || slab.remaining() < bytes) {
+            slab = ByteBuffer.allocateDirect(SLAB_BYTES);
+        }
+        int position = slab.position();
+        slab.limit(position + bytes);
+        ByteBuffer chunk = slab.slice().order(ByteOrder.nativeOrder());
+        slab.limit(SLAB_BYTES).position(position + bytes);
+        return chunk;
+    }
+}
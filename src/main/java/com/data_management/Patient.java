@@ -1,27 +1,69 @@
 package com.data_management;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * Represents a patient and manages their medical records.
  * This class stores patient-specific data, allowing for the addition and
  * retrieval
  * of medical records based on specified criteria.
+ * <p>
+ * Records are kept in one {@link TimeSeries} per record type, so that a time
+ * range of one type is found by binary search instead of a scan of the whole
+ * history. Series are told apart by their {@link SignalRegistry} code, so
+ * finding the series of a record compares integers, not names.
+ * <p>
+ * A patient may be read and written from several threads. Readers never lock:
+ * the list of series is replaced, not changed, when a new record type arrives,
+ * and each series can be read while it is appended to. Writers only contend
+ * when they add records of the same type for the same patient.
  */
 public class Patient {
-    private int patientId;
-    private List<PatientRecord> patientRecords;
+    private final int patientId;
+    private final Function<String, RetentionPolicy> policies; // Retention of each new series, by record type
+    private final StorageBackend backend; // Where new series keep their records
+    private volatile TimeSeries[] series; // One time-ordered series per record type, in order of first arrival
 
     /**
      * Constructs a new Patient with a specified ID.
-     * Initializes an empty list of patient records.
+     * Initializes an empty set of record series, which keep every record.
      *
      * @param patientId the unique identifier for the patient
      */
     public Patient(int patientId) {
+        this(patientId, recordType -> RetentionPolicy.UNLIMITED);
+    }
+
+    /**
+     * Constructs a new Patient with a specified ID whose record series are
+     * retained according to a policy per record type.
+     *
+     * @param patientId the unique identifier for the patient
+     * @param policies  the retention policy for each record type, looked up
+     *                  when the first record of the type arrives
+     */
+    public Patient(int patientId, Function<String, RetentionPolicy> policies) {
+        this(patientId, policies, StorageBackend.HEAP);
+    }
+
+    /**
+     * Constructs a new Patient with a specified ID whose record series are
+     * retained according to a policy per record type and kept in the given
+     * kind of memory.
+     *
+     * @param patientId the unique identifier for the patient
+     * @param policies  the retention policy for each record type, looked up
+     *                  when the first record of the type arrives
+     * @param backend   where the records are kept
+     */
+    public Patient(int patientId, Function<String, RetentionPolicy> policies, StorageBackend backend) {
         this.patientId = patientId;
-        this.patientRecords = new ArrayList<>();
+        this.policies = policies;
+        this.backend = backend;
+        this.series = new TimeSeries[0];
     }
 
     /**
@@ -36,14 +78,49 @@ public class Patient {
      *                         milliseconds since UNIX epoch
      */
     public void addRecord(double measurementValue, String recordType, long timestamp) {
-        PatientRecord record = new PatientRecord(this.patientId, measurementValue, recordType, timestamp);
-        this.patientRecords.add(record);
+        addRecord(measurementValue, SignalRegistry.code(recordType), timestamp);
+    }
+
+    /**
+     * Adds a new record for a signal code to this patient's medical records.
+     *
+     * @param measurementValue the measurement value to store in the record
+     * @param signalCode       the type of record, see {@link SignalRegistry}
+     * @param timestamp        the time at which the measurement was taken, in
+     *                         milliseconds since UNIX epoch
+     */
+    public void addRecord(double measurementValue, int signalCode, long timestamp) {
+        TimeSeries records = findSeries(signalCode);
+        if (records == null) {
+            records = addSeries(signalCode);
+        }
+        records.add(timestamp, measurementValue);
+    }
+
+    /**
+     * Adds a batch of records of one signal code to this patient's medical
+     * records.
+     *
+     * @param signalCode the type of the records, see {@link SignalRegistry}
+     * @param timestamps the times at which the measurements were taken, in
+     *                   milliseconds since UNIX epoch
+     * @param values     the measurement values
+     * @param offset     the index of the first record in the arrays
+     * @param count      the number of records
+     */
+    public void addRecords(int signalCode, long[] timestamps, double[] values, int offset, int count) {
+        TimeSeries records = findSeries(signalCode);
+        if (records == null) {
+            records = addSeries(signalCode);
+        }
+        records.addAll(timestamps, values, offset, count);
     }
 
     /**
      * Retrieves a list of PatientRecord objects for this patient that fall within a
      * specified time range.
-     * The method filters records based on the start and end times provided.
+     * The records of all types are merged in timestamp order; records with equal
+     * timestamps are ordered by the type that arrived first.
      *
      * @param startTime the start of the time range, in milliseconds since UNIX
      *                  epoch
@@ -52,16 +129,128 @@ public class Patient {
      *         range
      */
     public List<PatientRecord> getRecords(long startTime, long endTime) {
-        List<PatientRecord> filteredRecords = new ArrayList<>();
-        for (PatientRecord record : patientRecords) {
-            if (record.getTimestamp() >= startTime && record.getTimestamp() <= endTime) {
-                filteredRecords.add(record);
+        TimeSeries[] current = series;
+        List<TimeSeries.View> views = new ArrayList<>(current.length);
+        int total = 0;
+        for (TimeSeries records : current) {
+            TimeSeries.View view = records.range(startTime, endTime);
+            if (!view.isEmpty()) {
+                views.add(view);
+                total += view.size();
             }
         }
-        return filteredRecords;
+        if (views.size() == 1) {
+            return new ArrayList<>(views.get(0));
+        }
+        List<PatientRecord> merged = new ArrayList<>(total);
+        int[] positions = new int[views.size()];
+        for (int n = 0; n < total; n++) {
+            int next = -1;
+            long earliest = Long.MAX_VALUE;
+            for (int i = 0; i < views.size(); i++) {
+                TimeSeries.View view = views.get(i);
+                if (positions[i] < view.size() && (next < 0 || view.timestamp(positions[i]) < earliest)) {
+                    next = i;
+                    earliest = view.timestamp(positions[i]);
+                }
+            }
+            merged.add(views.get(next).get(positions[next]++));
+        }
+        return merged;
+    }
+
+    /**
+     * Retrieves the records of one type that fall within a specified time range.
+     * The result is a view of the stored series, found by binary search, so the
+     * cost depends on the number of matching records and not on the length of
+     * the history.
+     *
+     * @param recordType the type of record, e.g., "HeartRate"
+     * @param startTime  the start of the time range, in milliseconds since UNIX
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return a view of the matching records in timestamp order, empty if the
+     *         patient has no records of the type
+     */
+    public TimeSeries.View getRecords(String recordType, long startTime, long endTime) {
+        return getRecords(SignalRegistry.lookup(recordType), startTime, endTime);
+    }
+
+    /**
+     * Retrieves the records of one signal code that fall within a specified time
+     * range, like {@link #getRecords(String, long, long)}.
+     *
+     * @param signalCode the type of record, see {@link SignalRegistry}
+     * @param startTime  the start of the time range, in milliseconds since UNIX
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @return a view of the matching records in timestamp order, empty if the
+     *         patient has no records of the type
+     */
+    public TimeSeries.View getRecords(int signalCode, long startTime, long endTime) {
+        TimeSeries records = findSeries(signalCode);
+        if (records == null) {
+            records = new TimeSeries(patientId, signalCode, RetentionPolicy.UNLIMITED);
+        }
+        return records.range(startTime, endTime);
+    }
+
+    /**
+     * Summarizes the records of one type within a time range in buckets of the
+     * given width, using the rollups of the series where they cover the range.
+     *
+     * @param recordType the type of record, e.g., "HeartRate"
+     * @param startTime  the start of the time range, in milliseconds since UNIX
+     *                   epoch
+     * @param endTime    the end of the time range, in milliseconds since UNIX epoch
+     * @param resolution the width of the buckets, in milliseconds
+     * @return the aggregates of the buckets that have records, in time order
+     * @see TimeSeries#aggregate(long, long, long)
+     */
+    public List<Aggregate> getAggregates(String recordType, long startTime, long endTime, long resolution) {
+        int signalCode = SignalRegistry.lookup(recordType);
+        TimeSeries records = findSeries(signalCode);
+        if (records == null) {
+            records = new TimeSeries(patientId, signalCode, RetentionPolicy.UNLIMITED);
+        }
+        return records.aggregate(startTime, endTime, resolution);
+    }
+
+    /**
+     * Returns the types of the records stored for this patient.
+     *
+     * @return the record types, in order of their first record
+     */
+    public List<String> getRecordTypes() {
+        List<String> types = new ArrayList<>();
+        for (TimeSeries records : series) {
+            types.add(records.getRecordType());
+        }
+        return types;
     }
 
     public int getPatientId() {
         return patientId;
-    } 
+    }
+
+    // A patient has a handful of record types, so a scan of the codes is enough
+    private TimeSeries findSeries(int signalCode) {
+        for (TimeSeries records : series) {
+            if (records.getSignalCode() == signalCode) {
+                return records;
+            }
+        }
+        return null;
+    }
+
+    private synchronized TimeSeries addSeries(int signalCode) {
+        TimeSeries records = findSeries(signalCode);
+        if (records == null) {
+            records = new TimeSeries(patientId, signalCode, policies.apply(SignalRegistry.name(signalCode)), backend);
+            TimeSeries[] grown = Arrays.copyOf(series, series.length + 1);
+            grown[grown.length - 1] = records;
+            series = grown;
+        }
+        return records;
+    }
 }
@@ -0,0 +1,132 @@
+package com.data_management;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A concurrent map from patient ID to {@link Patient}, keyed by the primitive
+ * ID so that lookups neither box the key nor allocate.
+ * <p>
+ * The patients are kept in an open-addressing table with linear probing; the
+ * key of a slot is the ID of the patient in it. Lookups never lock. Patients
+ * are only ever added, under a lock, by publishing them into an empty slot, and
+ * when the table fills up it is rebuilt at twice the size and swapped in as a
+ * whole, so a lookup that races with either finds the patient or misses it,
+ * but never sees a half-made entry.
+ */
+class PatientIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Function<String, RetentionPolicy> policies;
+    private final Supplier<StorageBackend> backend;
+    private volatile AtomicReferenceArray<Patient> table = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private volatile int size;
+
+    /**
+     * Constructs an empty index.
+     *
+     * @param policies the retention policy for each record type, handed to the
+     *                 patients the index creates
+     * @param backend  the storage backend of the patients the index creates,
+     *                 asked for each new patient
+     */
+    PatientIndex(Function<String, RetentionPolicy> policies, Supplier<StorageBackend> backend) {
+        this.policies = policies;
+        this.backend = backend;
+    }
+
+    /**
+     * Returns the patient with the given ID.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the patient, or {@code null} if there is none
+     */
+    Patient get(int patientId) {
+        AtomicReferenceArray<Patient> slots = table;
+        int mask = slots.length() - 1;
+        for (int slot = hash(patientId) & mask; ; slot = (slot + 1) & mask) {
+            Patient patient = slots.get(slot);
+            if (patient == null || patient.getPatientId() == patientId) {
+                return patient;
+            }
+        }
+    }
+
+    /**
+     * Returns the patient with the given ID, adding a new patient if there is
+     * none. Only adding takes a lock.
+     *
+     * @param patientId the unique identifier of the patient
+     * @return the patient
+     */
+    Patient getOrCreate(int patientId) {
+        Patient patient = get(patientId);
+        return patient != null ? patient : create(patientId);
+    }
+
+    /**
+     * Returns the patients in the index at the time of the call.
+     *
+     * @return the patients, in no particular order
+     */
+    List<Patient> values() {
+        AtomicReferenceArray<Patient> slots = table;
+        List<Patient> patients = new ArrayList<>(size);
+        for (int slot = 0; slot < slots.length(); slot++) {
+            Patient patient = slots.get(slot);
+            if (patient != null) {
+                patients.add(patient);
+            }
+        }
+        return patients;
+    }
+
+    /**
+     * Returns the number of patients in the index.
+     *
+     * @return the patient count
+     */
+    int size() {
+        return size;
+    }
+
+    private synchronized Patient create(int patientId) {
+        Patient patient = get(patientId);
+        if (patient != null) {
+            return patient;
+        }
+        patient = new Patient(patientId, policies, backend.get());
+        // Keep the table at most half full, so probe sequences stay short
+        if ((size + 1) * 2 > table.length()) {
+            AtomicReferenceArray<Patient> grown = new AtomicReferenceArray<>(table.length() * 2);
+            for (Patient existing : values()) {
+                insert(grown, existing);
+            }
+            insert(grown, patient);
+            table = grown;
+        } else {
+            insert(table, patient);
+        }
+        size++;
+        return patient;
+    }
+
+    private static void insert(AtomicReferenceArray<Patient> slots, Patient patient) {
+        int mask = slots.length() - 1;
+        int slot = hash(patient.getPatientId()) & mask;
+        while (slots.get(slot) != null) {
+            slot = (slot + 1) & mask;
+        }
+        slots.set(slot, patient);
+    }
+
+    // Spreads sequential IDs over the table, so that they do not form one long probe run
+    private static int hash(int patientId) {
+        int h = patientId * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
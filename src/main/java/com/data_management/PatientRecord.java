@@ -8,10 +8,13 @@ package com.data_management;
  * pressure),
  * the measurement value, and the exact timestamp when the measurement was
  * taken.
+ * <p>
+ * The record type is kept as its {@link SignalRegistry} code, so comparing
+ * types is an integer comparison.
  */
 public class PatientRecord {
     private int patientId;
-    private String recordType; // Example: ECG, blood pressure, etc.
+    private int signalCode; // Example: ECG, blood pressure, etc., as a SignalRegistry code
     private double measurementValue; // Example: heart rate
     private long timestamp;
 
@@ -26,9 +29,22 @@ public class PatientRecord {
      *                         milliseconds since epoch
      */
     public PatientRecord(int patientId, double measurementValue, String recordType, long timestamp) {
+        this(patientId, measurementValue, SignalRegistry.code(recordType), timestamp);
+    }
+
+    /**
+     * Constructs a new patient record for a signal code.
+     * 
+     * @param patientId        the unique identifier for the patient
+     * @param measurementValue the numerical value of the recorded measurement
+     * @param signalCode       the type of measurement, see {@link SignalRegistry}
+     * @param timestamp        the time at which the measurement was recorded, in
+     *                         milliseconds since epoch
+     */
+    public PatientRecord(int patientId, double measurementValue, int signalCode, long timestamp) {
         this.patientId = patientId;
         this.measurementValue = measurementValue;
-        this.recordType = recordType;
+        this.signalCode = signalCode;
         this.timestamp = timestamp;
     }
 
@@ -61,10 +77,20 @@ public class PatientRecord {
 
     /**
      * Returns the type of record (e.g., "ECG", "Blood Pressure").
+     * Aliases are resolved, so this is the canonical name of the signal.
      * 
      * @return the record type
      */
     public String getRecordType() {
-        return recordType;
+        return SignalRegistry.name(signalCode);
+    }
+
+    /**
+     * Returns the type of record as a signal code.
+     * 
+     * @return the code, see {@link SignalRegistry}
+     */
+    public int getSignalCode() {
+        return signalCode;
     }
 }
@@ -0,0 +1,135 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Gathers parsed records into one batch per patient and signal code, so that
+ * readers hand them to a {@link RecordSink} such as {@link DataStorage} with
+ * one call per batch instead of one per record. Batches keep their arrays
+ * after they are committed, so a reader that is fed again and again, such as
+ * a stream client, stops allocating once its batches have grown to their
+ * working size. Not thread-safe; each reader has its own batches.
+ */
+final class RecordBatches {
+
+    private long[] keys = new long[64];
+    private Batch[] table = new Batch[64];
+    private int batches;
+    private Batch[] pending = new Batch[32]; // Batches with records, in the order of their first record
+    private int pendingCount;
+    private long records;
+
+    /**
+     * Adds a record to the batch of its patient and signal code.
+     *
+     * @param patientId  the patient the record belongs to
+     * @param signalCode the type of the record, see {@link SignalRegistry}
+     * @param timestamp  the time of the record, in milliseconds since the Unix
+     *                   epoch
+     * @param value      the measured value
+     */
+    void add(int patientId, int signalCode, long timestamp, double value) {
+        Batch batch = get(patientId, signalCode);
+        if (batch.size == 0) {
+            if (pendingCount == pending.length) {
+                pending = Arrays.copyOf(pending, pendingCount * 2);
+            }
+            pending[pendingCount++] = batch;
+        }
+        batch.add(timestamp, value);
+        records++;
+    }
+
+    /**
+     * Returns the number of records added since the last commit.
+     *
+     * @return the number of pending records
+     */
+    long size() {
+        return records;
+    }
+
+    /**
+     * Adds every batch to a sink, in the order of their first record, and
+     * empties them.
+     *
+     * @param sink the sink to which the records are added, e.g. the storage
+     */
+    void commitTo(RecordSink sink) {
+        for (int i = 0; i < pendingCount; i++) {
+            Batch batch = pending[i];
+            sink.addRecords(batch.patientId, batch.signalCode, batch.timestamps, batch.values, 0, batch.size);
+            batch.size = 0;
+            pending[i] = null;
+        }
+        pendingCount = 0;
+        records = 0;
+    }
+
+    private Batch get(int patientId, int signalCode) {
+        long key = ((long) patientId << 32) | (signalCode & 0xFFFFFFFFL);
+        int mask = table.length - 1;
+        int slot = slot(key, mask);
+        while (table[slot] != null) {
+            if (keys[slot] == key) {
+                return table[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        Batch batch = new Batch(patientId, signalCode);
+        keys[slot] = key;
+        table[slot] = batch;
+        if (++batches * 2 > table.length) {
+            rehash();
+        }
+        return batch;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        Batch[] oldTable = table;
+        keys = new long[oldKeys.length * 2];
+        table = new Batch[oldTable.length * 2];
+        int mask = table.length - 1;
+        for (int i = 0; i < oldTable.length; i++) {
+            if (oldTable[i] != null) {
+                int slot = slot(oldKeys[i], mask);
+                while (table[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                table[slot] = oldTable[i];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) (key * 0x9E3779B97F4A7C15L >>> 40) & mask;
+    }
+
+    /**
+     * The pending records of one patient and signal code.
+     */
+    private static final class Batch {
+
+        private final int patientId;
+        private final int signalCode;
+        private long[] timestamps = new long[16];
+        private double[] values = new double[16];
+        private int size;
+
+        Batch(int patientId, int signalCode) {
+            this.patientId = patientId;
+            this.signalCode = signalCode;
+        }
+
+        void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            timestamps[size] = timestamp;
+            values[size++] = value;
+        }
+    }
+}
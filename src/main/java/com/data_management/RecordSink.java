@@ -0,0 +1,21 @@
+package com.data_management;
+
+/**
+ * Receives batches of parsed records. {@link DataStorage} is the usual sink;
+ * an {@link IngestionPipeline} puts a sink in front of it to merge several
+ * sources before the records are stored.
+ */
+public interface RecordSink {
+    /**
+     * Adds a batch of records of one patient and signal code.
+     *
+     * @param patientId  the unique identifier of the patient
+     * @param signalCode the type of the records, see {@link SignalRegistry}
+     * @param timestamps the times at which the measurements were taken, in
+     *                   milliseconds since the Unix epoch
+     * @param values     the values of the measurements
+     * @param offset     the index of the first record in the arrays
+     * @param count      the number of records
+     */
+    void addRecords(int patientId, int signalCode, long[] timestamps, double[] values, int offset, int count);
+}
@@ -0,0 +1,158 @@
+package com.data_management;
+
+import java.util.Arrays;
+
+/**
+ * Describes how much of a signal the {@link DataStorage} keeps in memory.
+ * <p>
+ * Raw records are kept up to a maximum age and a maximum count; older records
+ * are dropped, a chunk at a time, as new ones arrive. Ages are measured from
+ * the newest record of the series, not from the wall clock, so that replayed
+ * and simulated data are retained the same way as live data. A policy can also
+ * keep rollups: per-bucket minimum, maximum, mean and count at coarser
+ * resolutions, each with its own maximum age, so that long ranges can still be
+ * summarized after their raw records are gone. Every rollup is held in a ring
+ * buffer sized for its maximum age, so the memory of a series is bounded
+ * however long the storage runs.
+ * <p>
+ * Policies are immutable; {@link #withRollup(long, long)} returns a new policy.
+ */
+public final class RetentionPolicy {
+
+    /** Keeps every raw record and no rollups. */
+    public static final RetentionPolicy UNLIMITED = new RetentionPolicy(Long.MAX_VALUE, Integer.MAX_VALUE);
+
+    private final long maxAgeMillis;
+    private final int maxRecords;
+    private final long[] rollupResolutions;
+    private final long[] rollupMaxAges;
+
+    /**
+     * Constructs a policy for raw records, without rollups.
+     *
+     * @param maxAgeMillis the age after which raw records are dropped, in
+     *                     milliseconds; {@code Long.MAX_VALUE} for no limit
+     * @param maxRecords   the number of raw records to keep at most;
+     *                     {@code Integer.MAX_VALUE} for no limit
+     * @throws IllegalArgumentException if a limit is not positive
+     */
+    public RetentionPolicy(long maxAgeMillis, int maxRecords) {
+        this(maxAgeMillis, maxRecords, new long[0], new long[0]);
+    }
+
+    private RetentionPolicy(long maxAgeMillis, int maxRecords, long[] rollupResolutions, long[] rollupMaxAges) {
+        if (maxAgeMillis <= 0 || maxRecords <= 0) {
+            throw new IllegalArgumentException("Retention limits must be positive");
+        }
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxRecords = maxRecords;
+        this.rollupResolutions = rollupResolutions;
+        this.rollupMaxAges = rollupMaxAges;
+    }
+
+    /**
+     * Returns a policy that also keeps a rollup at the given resolution. Each
+     * rollup must be coarser than the previous one and a multiple of it, so
+     * that its buckets are made of whole buckets of the finer rollups, and must
+     * be kept at least as long, so that a range never falls back to a finer
+     * rollup that has already dropped it.
+     *
+     * @param resolutionMillis the width of the rollup buckets, in milliseconds
+     * @param maxAgeMillis     the age after which buckets are dropped, in
+     *                         milliseconds
+     * @return the new policy
+     * @throws IllegalArgumentException if the resolution does not fit the
+     *                                  previous rollup or the age is not
+     *                                  positive and finite or is shorter than
+     *                                  that of the previous rollup
+     */
+    public RetentionPolicy withRollup(long resolutionMillis, long maxAgeMillis) {
+        int levels = rollupResolutions.length;
+        long previous = levels == 0 ? 1 : rollupResolutions[levels - 1];
+        if (resolutionMillis <= 0 || (levels > 0 && resolutionMillis <= previous)
+                || resolutionMillis % previous != 0) {
+            throw new IllegalArgumentException("Rollup resolution must be a larger multiple of " + previous
+                    + " ms: " + resolutionMillis);
+        }
+        if (maxAgeMillis <= 0 || maxAgeMillis == Long.MAX_VALUE || maxAgeMillis / resolutionMillis >= 1 << 24) {
+            throw new IllegalArgumentException("Rollup age must be positive and at most 2^24 buckets: "
+                    + maxAgeMillis);
+        }
+        if (levels > 0 && maxAgeMillis < rollupMaxAges[levels - 1]) {
+            throw new IllegalArgumentException("Rollup age must be at least " + rollupMaxAges[levels - 1]
+                    + " ms: " + maxAgeMillis);
+        }
+        long[] resolutions = Arrays.copyOf(rollupResolutions, levels + 1);
+        long[] ages = Arrays.copyOf(rollupMaxAges, levels + 1);
+        resolutions[levels] = resolutionMillis;
+        ages[levels] = maxAgeMillis;
+        return new RetentionPolicy(this.maxAgeMillis, maxRecords, resolutions, ages);
+    }
+
+    /**
+     * Returns the age after which raw records are dropped.
+     *
+     * @return the maximum age in milliseconds
+     */
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    /**
+     * Returns the number of raw records that are kept at most.
+     *
+     * @return the maximum record count
+     */
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * Returns whether raw records are ever dropped.
+     *
+     * @return {@code true} if the policy limits age or count
+     */
+    public boolean isBounded() {
+        return maxAgeMillis != Long.MAX_VALUE || maxRecords != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the number of rollups.
+     *
+     * @return the rollup count
+     */
+    public int getRollupCount() {
+        return rollupResolutions.length;
+    }
+
+    /**
+     * Returns the bucket width of a rollup.
+     *
+     * @param level the rollup, 0 for the finest
+     * @return the resolution in milliseconds
+     */
+    public long getRollupResolution(int level) {
+        return rollupResolutions[level];
+    }
+
+    /**
+     * Returns the age after which the buckets of a rollup are dropped.
+     *
+     * @param level the rollup, 0 for the finest
+     * @return the maximum age in milliseconds
+     */
+    public long getRollupMaxAge(int level) {
+        return rollupMaxAges[level];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("RetentionPolicy(maxAge=").append(maxAgeMillis)
+                .append(" ms, maxRecords=").append(maxRecords);
+        for (int level = 0; level < rollupResolutions.length; level++) {
+            text.append(", rollup ").append(rollupResolutions[level]).append(" ms for ")
+                    .append(rollupMaxAges[level]).append(" ms");
+        }
+        return text.append(')').toString();
+    }
+}
@@ -0,0 +1,270 @@
+package com.data_management;
+
+import java.util.List;
+
+/**
+ * The rollup of one {@link TimeSeries} at one resolution: the minimum,
+ * maximum, sum and count of the records in each time bucket.
+ * <p>
+ * Closed buckets are kept in a ring buffer that holds the buckets of the
+ * maximum age, so the oldest bucket is overwritten once the ring is full.
+ * When the records have gaps the ring also holds buckets past the maximum
+ * age, so reads skip every bucket that starts more than the maximum age
+ * before the open bucket. The ring starts small and doubles up to its full
+ * size, so rarely sampled signals do not pay for buckets they never fill. The
+ * bucket that records are currently added to stays private to the writer
+ * until a record for a later bucket closes it. A late record for a closed
+ * bucket updates that bucket, or inserts it if the bucket had no records yet.
+ * <p>
+ * Like the series it belongs to, a rollup has one writer at a time and readers
+ * that never lock: every change to the ring happens while {@code version} is
+ * odd, and readers copy what they need and retry if the version changed.
+ */
+final class RollupSeries {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long resolution;
+    private final long maxAge;
+    private final int maxCapacity;
+    private volatile Ring ring;
+    private volatile long written; // Number of buckets ever closed; the ring holds the last ones
+    private volatile int version; // Odd while the ring changes
+    private volatile long closedUntil = Long.MIN_VALUE; // Start of the open bucket; earlier buckets are closed
+
+    // The open bucket, only touched by the writer
+    private long openStart;
+    private double openMin;
+    private double openMax;
+    private double openSum;
+    private long openCount;
+
+    /**
+     * Constructs an empty rollup.
+     *
+     * @param resolution the width of the buckets, in milliseconds
+     * @param maxAge     the age after which buckets are dropped, in milliseconds
+     */
+    RollupSeries(long resolution, long maxAge) {
+        this.resolution = resolution;
+        this.maxAge = maxAge;
+        this.maxCapacity = (int) (maxAge / resolution) + 2;
+        this.ring = new Ring(Math.min(INITIAL_CAPACITY, maxCapacity));
+    }
+
+    /**
+     * Returns the width of the buckets.
+     *
+     * @return the resolution in milliseconds
+     */
+    long getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Returns the time before which all buckets are closed, which is the start
+     * of the bucket that records are currently added to.
+     *
+     * @return the time in milliseconds since the Unix epoch, or
+     *         {@code Long.MIN_VALUE} if no record has been added
+     */
+    long getClosedUntil() {
+        return closedUntil;
+    }
+
+    /**
+     * Adds a record to its bucket. Only the writer of the series calls this.
+     *
+     * @param timestamp the time of the record
+     * @param value     the measured value
+     */
+    void add(long timestamp, double value) {
+        long bucket = Math.floorDiv(timestamp, resolution) * resolution;
+        if (openCount > 0 && bucket == openStart) {
+            openMin = Math.min(openMin, value);
+            openMax = Math.max(openMax, value);
+            openSum += value;
+            openCount++;
+        } else if (openCount == 0 || bucket > openStart) {
+            if (openCount > 0) {
+                insert(written, openStart, openMin, openMax, openSum, openCount);
+            }
+            openStart = bucket;
+            openMin = value;
+            openMax = value;
+            openSum = value;
+            openCount = 1;
+            closedUntil = bucket;
+        } else if (bucket >= openStart - maxAge) {
+            addLate(bucket, value);
+        }
+    }
+
+    /**
+     * Adds the closed buckets that start within a time range to a list of
+     * aggregates.
+     *
+     * @param from       the start of the range, inclusive
+     * @param until      the end of the range, exclusive
+     * @param resolution the width of the aggregates, a multiple of the
+     *                   resolution of this rollup
+     * @param aggregates the aggregates to add to, in time order
+     */
+    void summarize(long from, long until, long resolution, List<Aggregate> aggregates) {
+        long[] starts;
+        double[] mins;
+        double[] maxs;
+        double[] sums;
+        long[] counts;
+        int length;
+        while (true) {
+            int before = version;
+            if ((before & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            Ring current = ring;
+            long end = written;
+            long oldest = closedUntil - maxAge; // Ages are measured from the open bucket, as in add()
+            long first = search(current, Math.max(0, end - current.capacity()), end, Math.max(from, oldest));
+            long last = search(current, first, end, until);
+            length = (int) (last - first);
+            starts = new long[length];
+            mins = new double[length];
+            maxs = new double[length];
+            sums = new double[length];
+            counts = new long[length];
+            for (int i = 0; i < length; i++) {
+                int slot = current.slot(first + i);
+                starts[i] = current.starts[slot];
+                mins[i] = current.mins[slot];
+                maxs[i] = current.maxs[slot];
+                sums[i] = current.sums[slot];
+                counts[i] = current.counts[slot];
+            }
+            if (version == before) {
+                break;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            Aggregate.addTo(aggregates, starts[i], resolution, mins[i], maxs[i], sums[i], counts[i]);
+        }
+    }
+
+    private void addLate(long bucket, double value) {
+        Ring current = ring;
+        long end = written;
+        long first = Math.max(0, end - current.capacity());
+        long position = search(current, first, end, bucket);
+        if (position < end && current.starts[current.slot(position)] == bucket) {
+            int slot = current.slot(position);
+            version++;
+            current.mins[slot] = Math.min(current.mins[slot], value);
+            current.maxs[slot] = Math.max(current.maxs[slot], value);
+            current.sums[slot] += value;
+            current.counts[slot]++;
+            version++;
+        } else {
+            insert(position, bucket, value, value, value, 1);
+        }
+    }
+
+    /**
+     * Inserts a closed bucket at a position of the ring, moving the later
+     * buckets up by one. When the ring is full and cannot grow, the oldest
+     * bucket is dropped.
+     */
+    private void insert(long position, long start, double min, double max, double sum, long count) {
+        version++;
+        long end = written;
+        Ring current = ring;
+        if (end - Math.max(0, end - current.capacity()) == current.capacity()) {
+            if (current.capacity() < maxCapacity) {
+                current = current.grow(Math.max(0, end - current.capacity()), end,
+                        Math.min(maxCapacity, current.capacity() * 2));
+                ring = current;
+            } else if (position == end - current.capacity()) {
+                // Older than every bucket the full ring holds
+                version++;
+                return;
+            }
+        }
+        for (long i = end; i > position; i--) {
+            current.copy(current.slot(i - 1), current.slot(i));
+        }
+        int slot = current.slot(position);
+        current.starts[slot] = start;
+        current.mins[slot] = min;
+        current.maxs[slot] = max;
+        current.sums[slot] = sum;
+        current.counts[slot] = count;
+        written = end + 1;
+        version++;
+    }
+
+    // Returns the first position in [first, end) whose bucket starts at or after the time
+    private static long search(Ring ring, long first, long end, long time) {
+        long low = first;
+        long high = end;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (ring.starts[ring.slot(middle)] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The arrays of the ring buffer. Bucket number {@code n}, counted from the
+     * first bucket ever closed, is kept in slot {@code n % capacity}.
+     */
+    private static final class Ring {
+
+        private final long[] starts;
+        private final double[] mins;
+        private final double[] maxs;
+        private final double[] sums;
+        private final long[] counts;
+
+        private Ring(int capacity) {
+            starts = new long[capacity];
+            mins = new double[capacity];
+            maxs = new double[capacity];
+            sums = new double[capacity];
+            counts = new long[capacity];
+        }
+
+        private int capacity() {
+            return starts.length;
+        }
+
+        private int slot(long position) {
+            return (int) (position % starts.length);
+        }
+
+        private void copy(int from, int to) {
+            starts[to] = starts[from];
+            mins[to] = mins[from];
+            maxs[to] = maxs[from];
+            sums[to] = sums[from];
+            counts[to] = counts[from];
+        }
+
+        private Ring grow(long first, long end, int capacity) {
+            Ring grown = new Ring(capacity);
+            for (long position = first; position < end; position++) {
+                int from = slot(position);
+                int to = grown.slot(position);
+                grown.starts[to] = starts[from];
+                grown.mins[to] = mins[from];
+                grown.maxs[to] = maxs[from];
+                grown.sums[to] = sums[from];
+                grown.counts[to] = counts[from];
+            }
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import com.cardio_generator.outputs.SegmentLog;
+import com.cardio_generator.outputs.SignalType;
+
+/**
+ * The {@code SegmentLogReader} class implements the {@link DataReader} interface
+ * to read patient data from the binary segment log written by the simulator's
+ * segment output. Segments are memory-mapped read-only and scanned in place, and
+ * the sparse timestamp index of each segment is used to skip blocks of records
+ * outside of the requested time range.
+ */
+public class SegmentLogReader implements DataReader {
+
+    private final Path directory;
+    private final long startTime;
+    private final long endTime;
+
+    /**
+     * Constructs a {@code SegmentLogReader} that reads every record of the log
+     * in the specified directory.
+     *
+     * @param directory the directory containing the segment files
+     */
+    public SegmentLogReader(String directory) {
+        this(directory, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructs a {@code SegmentLogReader} that reads the records of the log in
+     * the specified directory that fall within a time range.
+     *
+     * @param directory the directory containing the segment files
+     * @param startTime the start of the time range, in milliseconds since the Unix epoch
+     * @param endTime   the end of the time range, in milliseconds since the Unix epoch
+     */
+    public SegmentLogReader(String directory, long startTime, long endTime) {
+        this.directory = Paths.get(directory);
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    /**
+     * Reads the records of the log and adds them to the provided
+     * {@link DataStorage} instance.
+     *
+     * @param dataStorage the {@code DataStorage} instance to which the read data
+     *                    will be added
+     * @throws IOException if a segment file cannot be read
+     */
+    @Override
+    public void readData(DataStorage dataStorage) throws IOException {
+        scan((patientId, timestamp, signalCode, value) -> {
+            SignalType signal = SignalType.fromCode(signalCode);
+            if (signal != null) {
+                dataStorage.addPatientData(patientId, value, signal.code(), timestamp);
+            }
+        });
+    }
+
+    /**
+     * Passes every record of the log within the time range to a visitor, in log
+     * order, without copying the records out of the mapped segments. Segments
+     * that are still being written are read up to their published record count.
+     *
+     * @param visitor the visitor that receives the records
+     * @return the number of records visited
+     * @throws IOException if a segment file cannot be read
+     */
+    public long scan(RecordVisitor visitor) throws IOException {
+        long visited = 0;
+        List<Path> segments = SegmentLog.listSegments(directory);
+        for (Path path : segments) {
+            SegmentLog.Segment segment;
+            try {
+                segment = SegmentLog.Segment.open(path);
+            } catch (IllegalArgumentException e) {
+                // A segment that the writer is still creating; it holds no records yet
+                continue;
+            }
+            visited += scan(segment, visitor);
+        }
+        return visited;
+    }
+
+    private long scan(SegmentLog.Segment segment, RecordVisitor visitor) {
+        long visited = 0;
+        int count = segment.count();
+        for (int blockStart = 0; blockStart < count; blockStart += SegmentLog.INDEX_INTERVAL) {
+            int block = blockStart / SegmentLog.INDEX_INTERVAL;
+            if (segment.blockMaxTimestamp(block) < startTime || segment.blockMinTimestamp(block) > endTime) {
+                continue;
+            }
+            int blockEnd = Math.min(count, blockStart + SegmentLog.INDEX_INTERVAL);
+            for (int i = blockStart; i < blockEnd; i++) {
+                long timestamp = segment.timestamp(i);
+                if (timestamp >= startTime && timestamp <= endTime) {
+                    visitor.visit(segment.patientId(i), timestamp, segment.signalCode(i), segment.value(i));
+                    visited++;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Receives the records of a scan as primitives.
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        /**
+         * Handles one record.
+         *
+         * @param patientId  the identifier of the patient
+         * @param timestamp  the time of the record, in milliseconds since the Unix epoch
+         * @param signalCode the code of the signal, see {@link SignalType#code()}
+         * @param value      the value of the record
+         */
+        void visit(int patientId, long timestamp, int signalCode, double value);
+    }
+}
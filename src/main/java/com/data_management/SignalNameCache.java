@@ -0,0 +1,94 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Resolves record type names read as bytes to signal codes without creating a
+ * string for every record. Files and streams hold few distinct types, so the
+ * names seen so far are kept in a short list that is searched linearly; names
+ * beyond its capacity are resolved through {@link SignalRegistry} each time.
+ * A cache for data from the network registers names through
+ * {@link SignalRegistry#tryCode(String)}, so that a peer cannot fill the
+ * registry with made-up types. Not thread-safe; each parser has its own cache.
+ */
+final class SignalNameCache {
+
+    private static final int CAPACITY = 32;
+
+    private final boolean trusted;
+    private final byte[][] names = new byte[CAPACITY][];
+    private final int[] codes = new int[CAPACITY];
+    private int size;
+
+    /**
+     * Creates a cache for trusted input, which registers every name it does
+     * not know yet.
+     */
+    SignalNameCache() {
+        this(true);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param trusted whether every name that is not known yet is registered;
+     *                {@code false} for names from untrusted sources, which are
+     *                only registered up to a limit
+     */
+    SignalNameCache(boolean trusted) {
+        this.trusted = trusted;
+    }
+
+    /**
+     * Returns the signal code of the name in a range of a buffer, registering
+     * the name if it is not known yet and, for untrusted input, the limit of
+     * runtime codes has not been reached.
+     *
+     * @param bytes the buffer holding the name
+     * @param from  the index of the first byte of the name
+     * @param to    the index after the last byte of the name
+     * @return the signal code, or {@link SignalRegistry#UNKNOWN} if the name
+     *         is untrusted, not known and over the limit
+     */
+    int code(ByteBuffer bytes, int from, int to) {
+        int length = to - from;
+        for (int i = 0; i < size; i++) {
+            if (names[i].length == length && matches(bytes, from, names[i])) {
+                return codes[i];
+            }
+        }
+        byte[] name = new byte[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = bytes.get(from + i);
+        }
+        String text = new String(name, StandardCharsets.UTF_8);
+        int code = trusted ? SignalRegistry.code(text) : SignalRegistry.tryCode(text);
+        // Unknown names are not cached, so that they resolve once they have been registered elsewhere
+        if (code != SignalRegistry.UNKNOWN && size < CAPACITY) {
+            names[size] = name;
+            codes[size++] = code;
+        }
+        return code;
+    }
+
+    /**
+     * Tells whether a range of a buffer holds a given name.
+     *
+     * @param bytes the buffer
+     * @param from  the index of the first byte to compare
+     * @param name  the name, in UTF-8
+     * @return whether the bytes from {@code from} on are the name
+     */
+    static boolean matches(ByteBuffer bytes, int from, byte[] name) {
+        if (from + name.length > bytes.limit()) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (bytes.get(from + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,161 @@
+package com.data_management;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.cardio_generator.outputs.SignalType;
+
+/**
+ * Maps the names of record types to compact integer signal codes.
+ * <p>
+ * Record types are resolved to a code once, when a record is ingested, and
+ * storage, readers and alert rules then work with the code: a record stores an
+ * {@code int} instead of a {@code String}, and rules dispatch with a
+ * {@code switch} instead of chains of string comparisons. Each signal has one
+ * canonical name, returned by {@link #name(int)}, and may have aliases, so that
+ * "Saturation", "BloodSaturation" and "OxygenSaturation" are all the same
+ * signal.
+ * <p>
+ * The signals of the simulator keep the codes of {@link SignalType}, so codes
+ * read from binary outputs can be stored as they are. Names that are not known
+ * yet are registered on first use with the next free code, from
+ * {@link #FIRST_DYNAMIC_CODE} on. Lookups never lock; only registering a new
+ * name does.
+ */
+public final class SignalRegistry {
+
+    /** The code of no signal, returned for names that are not registered. */
+    public static final int UNKNOWN = 0;
+    /** The code of "ECG". */
+    public static final int ECG = 1;
+    /** The code of "Saturation", also known as "BloodSaturation" and "OxygenSaturation". */
+    public static final int SATURATION = 2;
+    /** The code of "SystolicPressure". */
+    public static final int SYSTOLIC_PRESSURE = 3;
+    /** The code of "DiastolicPressure". */
+    public static final int DIASTOLIC_PRESSURE = 4;
+    /** The code of "Cholesterol". */
+    public static final int CHOLESTEROL = 5;
+    /** The code of "WhiteBloodCells". */
+    public static final int WHITE_BLOOD_CELLS = 6;
+    /** The code of "RedBloodCells". */
+    public static final int RED_BLOOD_CELLS = 7;
+    /** The code of "Alert". */
+    public static final int ALERT = 8;
+    /** The code of "HeartRate", a signal that is measured but not simulated. Codes up to 63 are reserved. */
+    public static final int HEART_RATE = 32;
+    /** The first code given to names that are registered at runtime. */
+    public static final int FIRST_DYNAMIC_CODE = 64;
+    /** The number of runtime codes up to which names from untrusted sources are registered, see {@link #tryCode}. */
+    public static final int MAX_UNTRUSTED_DYNAMIC_CODES = 1024;
+
+    private static final Map<String, Integer> CODES = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[FIRST_DYNAMIC_CODE];
+    private static int nextCode = FIRST_DYNAMIC_CODE;
+
+    static {
+        for (SignalType signal : SignalType.values()) {
+            register(signal.label(), signal.code());
+        }
+        register("HeartRate", HEART_RATE);
+        alias("BloodSaturation", SATURATION);
+        alias("OxygenSaturation", SATURATION);
+    }
+
+    private SignalRegistry() {
+    }
+
+    /**
+     * Returns the code of a record type, registering the name with a new code
+     * if it is not known yet.
+     *
+     * @param name the name or alias of the record type, e.g. "ECG"
+     * @return the signal code
+     */
+    public static int code(String name) {
+        Integer code = CODES.get(name);
+        return code != null ? code : registerDynamic(name);
+    }
+
+    /**
+     * Returns the code of a record type, registering the name only while fewer
+     * than {@link #MAX_UNTRUSTED_DYNAMIC_CODES} codes have been registered at
+     * runtime. Names from untrusted sources, such as network peers, go through
+     * here, so that a peer cannot grow the registry without bound.
+     *
+     * @param name the name or alias of the record type, e.g. "ECG"
+     * @return the signal code, or {@link #UNKNOWN} if the name is not known
+     *         and no more codes are given out to untrusted names
+     */
+    public static int tryCode(String name) {
+        Integer code = CODES.get(name);
+        return code != null ? code : tryRegisterDynamic(name);
+    }
+
+    /**
+     * Returns the code of a record type without registering it.
+     *
+     * @param name the name or alias of the record type, e.g. "ECG"
+     * @return the signal code, or {@link #UNKNOWN} if the name is not registered
+     */
+    public static int lookup(String name) {
+        Integer code = CODES.get(name);
+        return code != null ? code : UNKNOWN;
+    }
+
+    /**
+     * Returns the canonical name of a signal.
+     *
+     * @param code the signal code
+     * @return the name, e.g. "Saturation", or {@code null} if no signal has the
+     *         code
+     */
+    public static String name(int code) {
+        String[] current = names;
+        return code > 0 && code < current.length ? current[code] : null;
+    }
+
+    /**
+     * Makes a name another name of an existing signal.
+     *
+     * @param alias the other name, e.g. "SpO2"
+     * @param code  the code of the signal
+     * @throws IllegalArgumentException if no signal has the code, or the alias
+     *                                  already names a different signal
+     */
+    public static synchronized void alias(String alias, int code) {
+        if (name(code) == null) {
+            throw new IllegalArgumentException("Unknown signal code: " + code);
+        }
+        Integer existing = CODES.putIfAbsent(alias, code);
+        if (existing != null && existing != code) {
+            throw new IllegalArgumentException(alias + " already names signal " + names[existing]);
+        }
+    }
+
+    private static synchronized int registerDynamic(String name) {
+        Integer code = CODES.get(name);
+        if (code != null) {
+            return code;
+        }
+        register(name, nextCode);
+        return nextCode++;
+    }
+
+    private static synchronized int tryRegisterDynamic(String name) {
+        Integer code = CODES.get(name);
+        if (code != null) {
+            return code;
+        }
+        return nextCode - FIRST_DYNAMIC_CODE < MAX_UNTRUSTED_DYNAMIC_CODES ? registerDynamic(name) : UNKNOWN;
+    }
+
+    private static void register(String name, int code) {
+        String[] grown = Arrays.copyOf(names, Math.max(names.length, code < names.length ? 0 : names.length * 2));
+        grown[code] = name;
+        // Publish the name before the code, so that every code a reader can get has a name
+        names = grown;
+        CODES.put(name, code);
+    }
+}
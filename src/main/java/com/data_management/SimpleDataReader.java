@@ -5,17 +5,42 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * The {@code SimpleDataReader} class implements the {@link DataReader} interface
  * to read patient data from a simple text file. Each line of the file represents
  * a patient record with fields separated by commas in the following order:
  * patientId, measurementValue, recordType, timestamp.
+ * <p>
+ * {@link #readBulk(DataStorage)} loads large files much faster than
+ * {@link #readData(DataStorage)}: the file is memory-mapped and split into
+ * chunks at line boundaries, which are parsed in parallel straight from the
+ * mapped bytes, without creating strings. The records of a chunk are grouped
+ * into batches per patient and record type that are added to the storage with
+ * one call each, in file order, so series that are sorted in the file are
+ * appended rather than merged.
  */
 
 public class SimpleDataReader implements DataReader {
 
+    /** The size of the chunks that are parsed in parallel by default, in bytes. */
+    public static final int DEFAULT_CHUNK_BYTES = 32 << 20;
+
+    private static final int MAX_LINE_BYTES = 1 << 16;
+
     private String filePath;
+    private final int chunkBytes;
 
 /**
      * Constructs a {@code SimpleDataReader} with the specified file path.
@@ -24,7 +49,23 @@ public class SimpleDataReader implements DataReader {
      */
 
     public SimpleDataReader(String filePath) {
+        this(filePath, DEFAULT_CHUNK_BYTES);
+    }
+
+    /**
+     * Constructs a {@code SimpleDataReader} that splits the file into chunks of
+     * a given size for {@link #readBulk(DataStorage, int)}.
+     *
+     * @param filePath   the path to the file containing patient data
+     * @param chunkBytes the size of the chunks that are parsed in parallel, in
+     *                   bytes
+     */
+    public SimpleDataReader(String filePath, int chunkBytes) {
+        if (chunkBytes < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
         this.filePath = filePath;
+        this.chunkBytes = chunkBytes;
     }
 
 /**
@@ -39,17 +80,17 @@ public class SimpleDataReader implements DataReader {
 
     @Override
     public void readData(DataStorage dataStorage) throws IOException {
-        BufferedReader reader = new BufferedReader(new FileReader(filePath));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] parts = line.split(",");
-            int patientId = Integer.parseInt(parts[0]);
-            double measurementValue = Double.parseDouble(parts[1]);
-            String recordType = parts[2];
-            long timestamp = Long.parseLong(parts[3]);
-            dataStorage.addPatientData(patientId, measurementValue, recordType, timestamp);
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                int patientId = Integer.parseInt(parts[0]);
+                double measurementValue = Double.parseDouble(parts[1]);
+                String recordType = parts[2];
+                long timestamp = Long.parseLong(parts[3]);
+                dataStorage.addPatientData(patientId, measurementValue, recordType, timestamp);
+            }
         }
-        reader.close();
     }
 
 @Override
@@ -64,5 +105,204 @@ public class SimpleDataReader implements DataReader {
             throw new IOException("Failed to connect to WebSocket", e);
         }
     }
-    
+
+    /**
+     * Reads the file in parallel with one thread per processor.
+     *
+     * @param dataStorage the {@code DataStorage} instance to which the read data
+     *                    will be added
+     * @return the number of records added
+     * @throws IOException if an I/O error occurs while reading the file
+     * @see #readBulk(DataStorage, int)
+     */
+    public long readBulk(DataStorage dataStorage) throws IOException {
+        return readBulk(dataStorage, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Reads the file in parallel and adds its records to the provided
+     * {@link DataStorage} instance in batches. Unlike
+     * {@link #readData(DataStorage)}, malformed lines do not stop the read;
+     * they are skipped and reported on the error stream.
+     *
+     * @param dataStorage the {@code DataStorage} instance to which the read data
+     *                    will be added
+     * @param threads     the number of chunks parsed at the same time
+     * @return the number of records added
+     * @throws IOException if an I/O error occurs while reading the file
+     */
+    public long readBulk(DataStorage dataStorage, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        Path path = Paths.get(filePath);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) ((size + chunkBytes - 1) / chunkBytes);
+            ChunkOrder order = new ChunkOrder();
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, chunks)), r -> {
+                Thread thread = new Thread(r, "bulk-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            List<Future<Chunk>> results = new ArrayList<>(chunks);
+            try {
+                // The pool starts chunks in order, so every chunk a worker waits for is already running
+                for (int i = 0; i < chunks; i++) {
+                    Chunk chunk = new Chunk(i, (long) i * chunkBytes, Math.min(size, (long) (i + 1) * chunkBytes));
+                    results.add(pool.submit(() -> {
+                        try {
+                            try {
+                                chunk.parse(channel, size);
+                            } finally {
+                                order.awaitTurn(chunk.index);
+                            }
+                            chunk.addTo(dataStorage);
+                        } finally {
+                            order.finish(chunk.index);
+                        }
+                        return chunk;
+                    }));
+                }
+                long records = 0;
+                long malformed = 0;
+                long firstMalformed = -1;
+                for (Future<Chunk> result : results) {
+                    Chunk chunk = result.get();
+                    records += chunk.records;
+                    if (chunk.malformed > 0 && firstMalformed < 0) {
+                        firstMalformed = chunk.firstMalformed;
+                    }
+                    malformed += chunk.malformed;
+                }
+                if (malformed > 0) {
+                    System.err.println("Skipped " + malformed + " malformed lines in " + filePath
+                            + ", the first at byte " + firstMalformed);
+                }
+                return records;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading " + filePath, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to read " + filePath, e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Lets the chunks add their records in file order while they are parsed
+     * in any order.
+     */
+    private static final class ChunkOrder {
+
+        private int next;
+
+        synchronized void awaitTurn(int index) throws InterruptedException {
+            while (next != index) {
+                wait();
+            }
+        }
+
+        synchronized void finish(int index) {
+            next = index + 1;
+            notifyAll();
+        }
+    }
+
+    /**
+     * The lines whose first byte lies in a range of the file, and the batches
+     * of records parsed from them.
+     */
+    private static final class Chunk {
+
+        private final int index;
+        private final long start;
+        private final long end;
+        private final RecordBatches batches = new RecordBatches();
+        private final SignalNameCache signals = new SignalNameCache();
+        private long records;
+        private long malformed;
+        private long firstMalformed = -1;
+
+        Chunk(int index, long start, long end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        void parse(FileChannel channel, long size) throws IOException {
+            // Map the byte before the chunk, to tell whether a line starts with it, and enough to finish the last line
+            long mapStart = Math.max(0, start - 1);
+            long mapEnd = Math.min(size, end + MAX_LINE_BYTES);
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+            int limit = bytes.limit();
+            int chunkEnd = (int) (end - mapStart);
+            int position = 0;
+            if (start > 0) {
+                while (position < limit && bytes.get(position) != '\n') {
+                    position++;
+                }
+                position++;
+            }
+            while (position < chunkEnd && position < limit) {
+                int lineEnd = position;
+                while (lineEnd < limit && bytes.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                if (lineEnd == limit && mapEnd < size) {
+                    throw new IOException("Line longer than " + MAX_LINE_BYTES + " bytes at byte "
+                            + (mapStart + position));
+                }
+                int contentEnd = lineEnd > position && bytes.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                if (contentEnd > position && !parseLine(bytes, position, contentEnd)) {
+                    if (malformed++ == 0) {
+                        firstMalformed = mapStart + position;
+                    }
+                }
+                position = lineEnd + 1;
+            }
+        }
+
+        void addTo(DataStorage dataStorage) {
+            batches.commitTo(dataStorage);
+        }
+
+        /**
+         * Parses "patientId,measurementValue,recordType,timestamp" into the
+         * batch of its series.
+         *
+         * @return whether the line was well-formed
+         */
+        private boolean parseLine(ByteBuffer bytes, int from, int to) {
+            int comma1 = indexOf(bytes, from, to);
+            int comma2 = indexOf(bytes, comma1 + 1, to);
+            int comma3 = indexOf(bytes, comma2 + 1, to);
+            if (comma3 >= to) {
+                return false;
+            }
+            long patientId = DecimalParser.parseLong(bytes, from, comma1);
+            double value = DecimalParser.parseDouble(bytes, comma1 + 1, comma2);
+            long timestamp = DecimalParser.parseLong(bytes, comma3 + 1, to);
+            if (patientId != (int) patientId || Double.isNaN(value) || timestamp == Long.MIN_VALUE
+                    || comma3 == comma2 + 1) {
+                return false;
+            }
+            int signalCode = signals.code(bytes, comma2 + 1, comma3);
+            batches.add((int) patientId, signalCode, timestamp, value);
+            records++;
+            return true;
+        }
+    }
+
+    private static int indexOf(ByteBuffer bytes, int from, int to) {
+        while (from < to && bytes.get(from) != ',') {
+            from++;
+        }
+        return from;
+    }
 }
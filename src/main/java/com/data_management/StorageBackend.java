@@ -0,0 +1,22 @@
+package com.data_management;
+
+/**
+ * Where a {@link TimeSeries} keeps its samples.
+ */
+public enum StorageBackend {
+
+    /**
+     * Primitive {@code long[]} and {@code double[]} chunks on the Java heap.
+     * This is the default and the fastest choice for working sets that fit
+     * comfortably in the heap.
+     */
+    HEAP,
+
+    /**
+     * Fixed-width 16-byte records (timestamp, value) in direct memory, outside
+     * the Java heap. The garbage collector never copies or scans the samples,
+     * so pause times and heap size stay flat however many samples are stored;
+     * the memory is limited by {@code -XX:MaxDirectMemorySize} instead.
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,527 @@
+package com.data_management;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Makes the records of a {@link DataStorage} durable with a write-ahead log
+ * and periodic snapshots, which {@link JournalReader} loads back after a
+ * restart.
+ * <p>
+ * Patients are split into partitions by ID, each with its own directory, log
+ * file, write buffer and lock, so ingest threads only contend when they write
+ * patients of the same partition and recovery can load the partitions in
+ * parallel. A record is appended to the buffer of its partition and added to
+ * the patient under the partition lock; the buffer is written to the log file
+ * when it is full and every flush interval, so a crash loses at most the
+ * records of the last interval. With {@code durable} set, every write is also
+ * forced to the storage device.
+ * <p>
+ * Log files are sequences of frames: a 12-byte header (kind, payload length and
+ * CRC32C of the payload, little-endian) followed by the payload. A records
+ * frame holds 24-byte records in the layout of the simulator's segment log
+ * (timestamp, value, patient ID, signal code). Signal codes that are registered
+ * at runtime differ between processes, so a name frame maps such a code to its
+ * name before the code is first used in a file.
+ * <p>
+ * A snapshot of a partition rotates its log to a new file and, under the same
+ * lock, takes a {@link TimeSeries.View} of every series, so the snapshot holds
+ * exactly the records of the older log files. The views are written outside
+ * the lock as series frames of timestamp and value columns, 16 bytes per
+ * record, into a temporary file that is forced and renamed into place; only
+ * then are the older log files and snapshots deleted.
+ */
+public class StorageJournal implements AutoCloseable {
+
+    /** The number of partitions of a new journal. */
+    public static final int DEFAULT_PARTITIONS = 16;
+    /** The interval at which buffered records are written to the log by default, in milliseconds. */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 100;
+    /** The interval at which snapshots are taken by default, in milliseconds. */
+    public static final long DEFAULT_SNAPSHOT_INTERVAL_MILLIS = 10 * 60 * 1000;
+
+    static final int FRAME_HEADER_BYTES = 12;
+    static final int RECORD_BYTES = 24;
+    static final int KIND_RECORDS = 1;
+    static final int KIND_SIGNAL_NAME = 2;
+    static final int KIND_SERIES = 3;
+    static final int KIND_END = 4;
+    static final int SNAPSHOT_MAGIC = 0x4E534A43; // "CJSN"
+    static final String LOG_SUFFIX = ".wal";
+    static final String SNAPSHOT_SUFFIX = ".snap";
+    static final int MAX_SERIES_FRAME_RECORDS = 1 << 16;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private final Path directory;
+    private final Supplier<? extends Collection<Patient>> patients;
+    private final boolean durable;
+    private final Partition[] partitions;
+    private final ScheduledExecutorService scheduler;
+    private final Object snapshotLock = new Object();
+    private volatile boolean closed;
+
+    /**
+     * Opens a journal with the default partitions and intervals, without
+     * forcing writes to the storage device.
+     *
+     * @param directory the directory of the journal, created if needed
+     * @param patients  the patients to snapshot, e.g.
+     *                  {@code storage::getAllPatients}
+     * @throws IOException if the log files cannot be created
+     */
+    public StorageJournal(Path directory, Supplier<? extends Collection<Patient>> patients) throws IOException {
+        this(directory, patients, DEFAULT_PARTITIONS, DEFAULT_FLUSH_INTERVAL_MILLIS,
+                DEFAULT_SNAPSHOT_INTERVAL_MILLIS, false);
+    }
+
+    /**
+     * Opens a journal. A directory that already holds a journal keeps its
+     * number of partitions; new records go to new log files, so the existing
+     * files are left as they are until the next snapshot replaces them. Load
+     * them with a {@link JournalReader} before opening the journal.
+     *
+     * @param directory              the directory of the journal, created if
+     *                               needed
+     * @param patients               the patients to snapshot, e.g.
+     *                               {@code storage::getAllPatients}
+     * @param partitionCount         the number of partitions of a new journal
+     * @param flushIntervalMillis    the interval at which buffered records are
+     *                               written to the log, 0 to only write full
+     *                               buffers
+     * @param snapshotIntervalMillis the interval at which snapshots are taken,
+     *                               0 to only take them on {@link #snapshot()}
+     * @param durable                whether every write is forced to the
+     *                               storage device
+     * @throws IOException if the log files cannot be created
+     */
+    public StorageJournal(Path directory, Supplier<? extends Collection<Patient>> patients, int partitionCount,
+            long flushIntervalMillis, long snapshotIntervalMillis, boolean durable) throws IOException {
+        if (partitionCount < 1 || flushIntervalMillis < 0 || snapshotIntervalMillis < 0) {
+            throw new IllegalArgumentException("Partitions must be positive and intervals non-negative");
+        }
+        this.directory = directory;
+        this.patients = patients;
+        this.durable = durable;
+        List<Path> existing = partitionDirectories(directory);
+        int count = existing.isEmpty() ? partitionCount : existing.size();
+        this.partitions = new Partition[count];
+        for (int i = 0; i < count; i++) {
+            Path partitionDirectory = directory.resolve(partitionName(i));
+            Files.createDirectories(partitionDirectory);
+            partitions[i] = new Partition(partitionDirectory, lastSequence(partitionDirectory) + 1);
+        }
+        if (flushIntervalMillis > 0 || snapshotIntervalMillis > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "storage-journal");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (flushIntervalMillis > 0) {
+                scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+            if (snapshotIntervalMillis > 0) {
+                scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMillis,
+                        snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Logs a record and adds it to the patient. Both happen under the lock of
+     * the patient's partition, so that a snapshot sees the record if and only
+     * if it was logged before the snapshot rotated the log.
+     *
+     * @param patient    the patient the record belongs to
+     * @param signalCode the type of the record, see {@link SignalRegistry}
+     * @param timestamp  the time of the record, in milliseconds since the Unix
+     *                   epoch
+     * @param value      the measured value
+     */
+    public void append(Patient patient, int signalCode, long timestamp, double value) {
+        Partition partition = partitions[partitionOf(patient.getPatientId(), partitions.length)];
+        synchronized (partition) {
+            if (!closed) {
+                partition.append(patient.getPatientId(), signalCode, timestamp, value);
+            }
+            patient.addRecord(value, signalCode, timestamp);
+        }
+    }
+
+    /**
+     * Logs a batch of records of one signal and adds them to the patient,
+     * like {@link #append(Patient, int, long, double)} but taking the lock of
+     * the partition once for the whole batch.
+     *
+     * @param patient    the patient the records belong to
+     * @param signalCode the type of the records, see {@link SignalRegistry}
+     * @param timestamps the times of the records, in milliseconds since the
+     *                   Unix epoch
+     * @param values     the measured values
+     * @param offset     the index of the first record in the arrays
+     * @param count      the number of records
+     */
+    public void appendAll(Patient patient, int signalCode, long[] timestamps, double[] values, int offset,
+            int count) {
+        Partition partition = partitions[partitionOf(patient.getPatientId(), partitions.length)];
+        synchronized (partition) {
+            if (!closed) {
+                partition.append(patient.getPatientId(), signalCode, timestamps, values, offset, count);
+            }
+            patient.addRecords(signalCode, timestamps, values, offset, count);
+        }
+    }
+
+    /**
+     * Writes the buffered records of every partition to the log, forcing them
+     * to the storage device if the journal is durable.
+     *
+     * @throws IOException if a log file cannot be written
+     */
+    public void flush() throws IOException {
+        for (Partition partition : partitions) {
+            FileChannel channel;
+            synchronized (partition) {
+                partition.writeOut();
+                channel = partition.channel;
+            }
+            if (durable) {
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of every partition and deletes the log files and
+     * snapshots it replaces. Ingest into a partition only waits while its log
+     * is rotated and its series views are taken, not while the snapshot is
+     * written.
+     *
+     * @throws IOException if a snapshot cannot be written
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            Collection<Patient> all = patients.get();
+            List<List<Patient>> byPartition = new ArrayList<>(partitions.length);
+            for (int i = 0; i < partitions.length; i++) {
+                byPartition.add(new ArrayList<>());
+            }
+            for (Patient patient : all) {
+                byPartition.get(partitionOf(patient.getPatientId(), partitions.length)).add(patient);
+            }
+            for (int i = 0; i < partitions.length; i++) {
+                partitions[i].snapshot(byPartition.get(i));
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered records and closes the log files. Records appended
+     * afterwards are still added to their patients but no longer logged.
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        synchronized (snapshotLock) {
+            for (Partition partition : partitions) {
+                synchronized (partition) {
+                    closed = true;
+                    try {
+                        partition.writeOut();
+                        if (durable) {
+                            partition.channel.force(false);
+                        }
+                        partition.channel.close();
+                    } catch (IOException e) {
+                        System.err.println("Error closing journal " + partition.directory + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the directory of the journal.
+     *
+     * @return the directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    static int partitionOf(int patientId, int partitions) {
+        return Math.floorMod(patientId, partitions);
+    }
+
+    static String partitionName(int partition) {
+        return String.format("partition-%03d", partition);
+    }
+
+    static List<Path> partitionDirectories(Path directory) throws IOException {
+        List<Path> found = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return found;
+        }
+        for (int i = 0; Files.isDirectory(directory.resolve(partitionName(i))); i++) {
+            found.add(directory.resolve(partitionName(i)));
+        }
+        return found;
+    }
+
+    static String fileName(long sequence, String suffix) {
+        return String.format("%020d%s", sequence, suffix);
+    }
+
+    static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.indexOf('.')));
+    }
+
+    /**
+     * Lists the files of a partition with a suffix, in sequence order.
+     */
+    static List<Path> files(Path partitionDirectory, String suffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(partitionDirectory, "*" + suffix)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        return files;
+    }
+
+    private static long lastSequence(Path partitionDirectory) throws IOException {
+        long last = 0;
+        for (Path file : files(partitionDirectory, LOG_SUFFIX)) {
+            last = Math.max(last, sequenceOf(file));
+        }
+        for (Path file : files(partitionDirectory, SNAPSHOT_SUFFIX)) {
+            last = Math.max(last, sequenceOf(file));
+        }
+        return last;
+    }
+
+    private static void putFrameHeader(ByteBuffer buffer, int headerPosition, int kind) {
+        int payloadStart = headerPosition + FRAME_HEADER_BYTES;
+        CRC32C crc = new CRC32C();
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(payloadStart).limit(buffer.position());
+        crc.update(payload);
+        buffer.putInt(headerPosition, kind);
+        buffer.putInt(headerPosition + 4, buffer.position() - payloadStart);
+        buffer.putInt(headerPosition + 8, (int) crc.getValue());
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            System.err.println("Error writing journal " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            System.err.println("Error writing snapshot of " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The log file and write buffer of one partition, guarded by its own
+     * monitor.
+     */
+    private final class Partition {
+
+        private final Path directory;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        private final BitSet namedCodes = new BitSet(); // Runtime codes whose name is in the current file
+        private FileChannel channel;
+        private long sequence;
+        private int frameStart = -1; // Header position of the open records frame
+
+        private Partition(Path directory, long sequence) throws IOException {
+            this.directory = directory;
+            this.sequence = sequence;
+            this.channel = openLog(sequence);
+        }
+
+        private void append(int patientId, int signalCode, long timestamp, double value) {
+            if (signalCode >= SignalRegistry.FIRST_DYNAMIC_CODE && !namedCodes.get(signalCode)) {
+                appendName(signalCode);
+            }
+            putRecord(patientId, signalCode, timestamp, value);
+        }
+
+        private void append(int patientId, int signalCode, long[] timestamps, double[] values, int offset,
+                int count) {
+            if (signalCode >= SignalRegistry.FIRST_DYNAMIC_CODE && !namedCodes.get(signalCode)) {
+                appendName(signalCode);
+            }
+            for (int i = offset; i < offset + count; i++) {
+                putRecord(patientId, signalCode, timestamps[i], values[i]);
+            }
+        }
+
+        private void putRecord(int patientId, int signalCode, long timestamp, double value) {
+            if (buffer.remaining() < RECORD_BYTES + (frameStart < 0 ? FRAME_HEADER_BYTES : 0)) {
+                writeOutQuietly();
+            }
+            if (frameStart < 0) {
+                frameStart = buffer.position();
+                buffer.position(frameStart + FRAME_HEADER_BYTES);
+            }
+            buffer.putLong(timestamp).putDouble(value).putInt(patientId).putInt(signalCode);
+        }
+
+        private void appendName(int signalCode) {
+            byte[] name = SignalRegistry.name(signalCode).getBytes(StandardCharsets.UTF_8);
+            closeFrame();
+            if (buffer.remaining() < FRAME_HEADER_BYTES + 4 + name.length) {
+                writeOutQuietly();
+            }
+            int header = buffer.position();
+            buffer.position(header + FRAME_HEADER_BYTES);
+            buffer.putInt(signalCode).put(name);
+            putFrameHeader(buffer, header, KIND_SIGNAL_NAME);
+            namedCodes.set(signalCode);
+        }
+
+        private void closeFrame() {
+            if (frameStart >= 0) {
+                putFrameHeader(buffer, frameStart, KIND_RECORDS);
+                frameStart = -1;
+            }
+        }
+
+        private void writeOut() throws IOException {
+            closeFrame();
+            buffer.flip();
+            try {
+                writeFully(channel, buffer);
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        private void writeOutQuietly() {
+            try {
+                writeOut();
+            } catch (IOException e) {
+                System.err.println("Error writing journal " + directory + ": " + e.getMessage());
+            }
+        }
+
+        private FileChannel openLog(long sequence) throws IOException {
+            return FileChannel.open(directory.resolve(fileName(sequence, LOG_SUFFIX)), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+
+        private void snapshot(List<Patient> members) throws IOException {
+            List<TimeSeries.View> views = new ArrayList<>();
+            List<Integer> owners = new ArrayList<>();
+            long snapshotSequence;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                writeOut();
+                FileChannel previous = channel;
+                channel = openLog(sequence + 1);
+                sequence++;
+                namedCodes.clear();
+                if (durable) {
+                    previous.force(false);
+                }
+                previous.close();
+                snapshotSequence = sequence;
+                for (Patient patient : members) {
+                    for (String recordType : patient.getRecordTypes()) {
+                        views.add(patient.getRecords(recordType, Long.MIN_VALUE, Long.MAX_VALUE));
+                        owners.add(patient.getPatientId());
+                    }
+                }
+            }
+            writeSnapshot(snapshotSequence, views, owners);
+            for (Path file : files(directory, LOG_SUFFIX)) {
+                if (sequenceOf(file) < snapshotSequence) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            for (Path file : files(directory, SNAPSHOT_SUFFIX)) {
+                if (sequenceOf(file) < snapshotSequence) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+
+        private void writeSnapshot(long snapshotSequence, List<TimeSeries.View> views, List<Integer> owners)
+                throws IOException {
+            Path target = directory.resolve(fileName(snapshotSequence, SNAPSHOT_SUFFIX));
+            Path temporary = directory.resolve(fileName(snapshotSequence, SNAPSHOT_SUFFIX + ".tmp"));
+            ByteBuffer frame = ByteBuffer.allocateDirect(FRAME_HEADER_BYTES + 512 + MAX_SERIES_FRAME_RECORDS * 16)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(SNAPSHOT_MAGIC).putInt(1).putLong(snapshotSequence).flip();
+                writeFully(out, header);
+                for (int i = 0; i < views.size(); i++) {
+                    TimeSeries.View view = views.get(i);
+                    byte[] name = view.getRecordType().getBytes(StandardCharsets.UTF_8);
+                    // Long series are split into frames of a bounded size
+                    for (int from = 0; from < view.size(); from += MAX_SERIES_FRAME_RECORDS) {
+                        int count = Math.min(MAX_SERIES_FRAME_RECORDS, view.size() - from);
+                        frame.clear().position(FRAME_HEADER_BYTES);
+                        frame.putInt(owners.get(i)).putInt(count).putShort((short) name.length).put(name);
+                        for (int j = 0; j < count; j++) {
+                            frame.putLong(view.timestamp(from + j));
+                        }
+                        for (int j = 0; j < count; j++) {
+                            frame.putDouble(view.value(from + j));
+                        }
+                        putFrameHeader(frame, 0, KIND_SERIES);
+                        frame.flip();
+                        writeFully(out, frame);
+                    }
+                }
+                frame.clear().position(FRAME_HEADER_BYTES);
+                putFrameHeader(frame, 0, KIND_END);
+                frame.flip();
+                writeFully(out, frame);
+                out.force(true);
+            }
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.data_management;
+
+import com.data_management.WebSocketClientImpl.TextFormat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses lines of four comma-separated fields, as the simulator's WebSocket
+ * and TCP outputs send them, straight from the bytes into batches per patient
+ * and signal. Lines are either in the simulator's layout,
+ * {@code patientId,timestamp,label,data}, or in the layout of
+ * {@link SimpleDataReader}, {@code patientId,value,label,timestamp}; see
+ * {@link TextFormat}. Malformed lines are reported and skipped. The text
+ * comes from the network, so new record types are only registered up to the
+ * limit of {@link SignalRegistry#tryCode(String)}; lines of other new types
+ * are skipped as malformed. Not thread-safe; each connection has its own
+ * parser.
+ */
+final class TextRecordParser {
+
+    private static final byte[] TRIGGERED = "triggered".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RESOLVED = "resolved".getBytes(StandardCharsets.US_ASCII);
+
+    private final TextFormat textFormat;
+    private final SignalNameCache signalNames = new SignalNameCache(false);
+    private final RecordBatches batches = new RecordBatches();
+
+    /**
+     * Creates a parser for lines in a given layout.
+     *
+     * @param textFormat the layout of the lines
+     */
+    TextRecordParser(TextFormat textFormat) {
+        this.textFormat = textFormat;
+    }
+
+    /**
+     * Parses the lines in a range of a buffer into the pending batches. A line
+     * without its terminating newline is only parsed if no more text follows.
+     *
+     * @param bytes the buffer holding the text, one byte per character
+     * @param from  the index of the first byte of the text
+     * @param to    the index after the last byte of the text
+     * @param last  whether the text ends at {@code to}, so that an
+     *              unterminated line at the end is complete
+     * @return the index after the last line parsed; the bytes from there on are
+     *         an incomplete line to be parsed once it has been received
+     */
+    int parseLines(ByteBuffer bytes, int from, int to, boolean last) {
+        int start = from;
+        while (start < to) {
+            int end = start;
+            while (end < to && bytes.get(end) != '\n') {
+                end++;
+            }
+            if (end == to && !last) {
+                break;
+            }
+            int contentEnd = end > start && bytes.get(end - 1) == '\r' ? end - 1 : end;
+            if (contentEnd > start) {
+                parseLine(bytes, start, contentEnd);
+            }
+            start = Math.min(end + 1, to);
+        }
+        return start;
+    }
+
+    /**
+     * Returns the number of records parsed since the last commit.
+     *
+     * @return the number of pending records
+     */
+    long size() {
+        return batches.size();
+    }
+
+    /**
+     * Adds the records parsed since the last commit to a sink.
+     *
+     * @param sink the sink to which the records are added
+     */
+    void commitTo(RecordSink sink) {
+        batches.commitTo(sink);
+    }
+
+    /**
+     * Parses a line of four comma-separated fields into the batch of its series.
+     */
+    private void parseLine(ByteBuffer bytes, int from, int to) {
+        int comma1 = indexOf(bytes, from, to);
+        int comma2 = indexOf(bytes, comma1 + 1, to);
+        int comma3 = indexOf(bytes, comma2 + 1, to);
+        if (comma3 >= to || indexOf(bytes, comma3 + 1, to) < to) {
+            System.err.println("Invalid message format: " + lineOf(bytes, from, to));
+            return;
+        }
+        long patientId = DecimalParser.parseLong(bytes, from, comma1);
+        long timestamp;
+        double value;
+        if (isSimulatorLayout(bytes, comma1, comma2, comma3, to)) {
+            timestamp = DecimalParser.parseLong(bytes, comma1 + 1, comma2);
+            value = parseValue(bytes, comma3 + 1, to);
+        } else {
+            value = parseValue(bytes, comma1 + 1, comma2);
+            timestamp = DecimalParser.parseLong(bytes, comma3 + 1, to);
+        }
+        if (patientId != (int) patientId || timestamp == Long.MIN_VALUE || Double.isNaN(value)
+                || comma3 == comma2 + 1) {
+            System.err.println("Error parsing message: " + lineOf(bytes, from, to));
+            return;
+        }
+        int signalCode = signalNames.code(bytes, comma2 + 1, comma3);
+        if (signalCode == SignalRegistry.UNKNOWN) {
+            System.err.println("Unknown record type: " + lineOf(bytes, from, to));
+            return;
+        }
+        batches.add((int) patientId, signalCode, timestamp, value);
+    }
+
+    private boolean isSimulatorLayout(ByteBuffer bytes, int comma1, int comma2, int comma3, int to) {
+        if (textFormat != TextFormat.AUTO) {
+            return textFormat == TextFormat.SIMULATOR;
+        }
+        if (DecimalParser.parseLong(bytes, comma1 + 1, comma2) == Long.MIN_VALUE) {
+            return false;
+        }
+        return DecimalParser.parseLong(bytes, comma3 + 1, to) == Long.MIN_VALUE || comma2 - comma1 >= to - comma3;
+    }
+
+    /**
+     * Parses a value as the simulator writes it: a number, possibly followed by
+     * "%", or an alert state, "triggered" for 1 and "resolved" for 0.
+     *
+     * @return the value, or NaN if the text is not one
+     */
+    private static double parseValue(ByteBuffer bytes, int from, int to) {
+        if (to - from == TRIGGERED.length && SignalNameCache.matches(bytes, from, TRIGGERED)) {
+            return 1;
+        }
+        if (to - from == RESOLVED.length && SignalNameCache.matches(bytes, from, RESOLVED)) {
+            return 0;
+        }
+        return DecimalParser.parseDouble(bytes, from, to > from && bytes.get(to - 1) == '%' ? to - 1 : to);
+    }
+
+    private static int indexOf(ByteBuffer bytes, int from, int to) {
+        while (from < to && bytes.get(from) != ',') {
+            from++;
+        }
+        return from;
+    }
+
+    private static String lineOf(ByteBuffer bytes, int from, int to) {
+        byte[] line = new byte[to - from];
+        for (int i = 0; i < line.length; i++) {
+            line[i] = bytes.get(from + i);
+        }
+        return new String(line, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,818 @@
+package com.data_management;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Holds the measurements of one record type of one patient, ordered by
+ * timestamp, in primitive columns.
+ * <p>
+ * Timestamps and values are kept in separate {@code long[]} and
+ * {@code double[]} arrays, split into chunks of {@value #CHUNK_SIZE} entries so
+ * that growing the series never copies the data already stored. Only the first
+ * chunk is allocated smaller and doubled as it fills, so sparse series such as
+ * blood levels stay small. Records normally arrive in time order and are
+ * appended. A late record, one older than the newest stored record, is kept in
+ * a small sorted buffer instead; once {@value #LATE_LIMIT} late records have
+ * gathered they are merged into the columns in one pass.
+ * <p>
+ * With {@link StorageBackend#OFF_HEAP} the chunks are direct buffers of
+ * 16-byte records instead of arrays, so the samples live outside the Java heap;
+ * everything else, including views, works the same way.
+ * <p>
+ * Because the timestamps are sorted, a time range is found with two binary
+ * searches, and {@link #range(long, long)} returns a {@link View} of the range
+ * without copying it. A query therefore costs O(log n + k) for k matching
+ * records, however long the history is; only a range that overlaps pending
+ * late records is copied, to merge them in.
+ * <p>
+ * One thread at a time may add records (adds are synchronized on the series),
+ * while any number of threads read without locking. Entries that readers can
+ * see are never changed in place: an append writes past the published size and
+ * then publishes the new size, and a merge writes new chunks and publishes
+ * them as a whole. A view therefore keeps showing the records that were in its
+ * range when it was created, however many records are added later.
+ * <p>
+ * A {@link RetentionPolicy} bounds the memory of the series. Records past the
+ * maximum age or count are hidden from queries at once and freed a whole chunk
+ * at a time, by publishing columns without the oldest chunks; views created
+ * earlier keep the chunks they read. Every record is also added to the rollups
+ * of the policy, which {@link #aggregate(long, long, long)} combines with the
+ * raw records to summarize any range.
+ */
+public class TimeSeries {
+
+    /** The number of entries in each full chunk. */
+    public static final int CHUNK_SIZE = 1024;
+    /** The number of late records that are buffered before they are merged. */
+    public static final int LATE_LIMIT = 256;
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Late NO_LATE_RECORDS = new Late(new long[0], new double[0]);
+
+    private final int patientId;
+    private final int signalCode;
+    private final RetentionPolicy policy;
+    private final RollupSeries[] rollups;
+    private volatile Columns columns;
+    private volatile int size; // Written after the entries below it, so readers read it first
+    private volatile int first; // Entries before it are past retention and about to be freed
+    private volatile Late late = NO_LATE_RECORDS;
+    private volatile int rewrites; // Odd while a merge or trim replaces the columns, see range()
+
+    /**
+     * Constructs an empty series that keeps every record.
+     *
+     * @param patientId  the patient the records belong to
+     * @param recordType the type of the records, e.g. "ECG"
+     */
+    public TimeSeries(int patientId, String recordType) {
+        this(patientId, recordType, RetentionPolicy.UNLIMITED);
+    }
+
+    /**
+     * Constructs an empty series that keeps records as the policy says.
+     *
+     * @param patientId  the patient the records belong to
+     * @param recordType the type of the records, e.g. "ECG"
+     * @param policy     the retention policy of the series
+     */
+    public TimeSeries(int patientId, String recordType, RetentionPolicy policy) {
+        this(patientId, SignalRegistry.code(recordType), policy);
+    }
+
+    /**
+     * Constructs an empty series for a signal code that keeps records as the
+     * policy says.
+     *
+     * @param patientId  the patient the records belong to
+     * @param signalCode the type of the records, see {@link SignalRegistry}
+     * @param policy     the retention policy of the series
+     */
+    public TimeSeries(int patientId, int signalCode, RetentionPolicy policy) {
+        this(patientId, signalCode, policy, StorageBackend.HEAP);
+    }
+
+    /**
+     * Constructs an empty series for a signal code that keeps records as the
+     * policy says, in the given kind of memory.
+     *
+     * @param patientId  the patient the records belong to
+     * @param signalCode the type of the records, see {@link SignalRegistry}
+     * @param policy     the retention policy of the series
+     * @param backend    where the records are kept
+     */
+    public TimeSeries(int patientId, int signalCode, RetentionPolicy policy, StorageBackend backend) {
+        this.columns = backend == StorageBackend.OFF_HEAP
+                ? new OffHeapColumns(new ByteBuffer[4])
+                : new HeapColumns(new long[4][], new double[4][]);
+        this.patientId = patientId;
+        this.signalCode = signalCode;
+        this.policy = policy;
+        this.rollups = new RollupSeries[policy.getRollupCount()];
+        for (int level = 0; level < rollups.length; level++) {
+            rollups[level] = new RollupSeries(policy.getRollupResolution(level), policy.getRollupMaxAge(level));
+        }
+    }
+
+    /**
+     * Adds a measurement, keeping the series in timestamp order. Records with
+     * equal timestamps keep the order in which they were added.
+     *
+     * @param timestamp the time of the measurement, in milliseconds since the
+     *                  Unix epoch
+     * @param value     the measured value
+     */
+    public synchronized void add(long timestamp, double value) {
+        append(timestamp, value);
+    }
+
+    /**
+     * Adds a batch of measurements under one acquisition of the lock, which is
+     * how bulk loaders avoid taking it for every record.
+     *
+     * @param timestamps the times of the measurements, in milliseconds since
+     *                   the Unix epoch
+     * @param values     the measured values
+     * @param offset     the index of the first measurement in the arrays
+     * @param count      the number of measurements
+     */
+    public synchronized void addAll(long[] timestamps, double[] values, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            append(timestamps[i], values[i]);
+        }
+    }
+
+    private void append(long timestamp, double value) {
+        for (RollupSeries rollup : rollups) {
+            rollup.add(timestamp, value);
+        }
+        int count = size;
+        if (count > 0 && columns.timestamp(count - 1) > timestamp) {
+            if (isExpired(timestamp, columns.timestamp(count - 1))) {
+                return;
+            }
+            late = late.insert(timestamp, value);
+            if (late.size() >= LATE_LIMIT) {
+                mergeLateRecords();
+            }
+        } else {
+            Columns current = ensureCapacity(count + 1);
+            current.set(count, timestamp, value);
+            size = count + 1;
+            if (policy.isBounded()) {
+                // The retained records only ever move forward, so this is amortized constant time
+                int oldest = Math.max(first, count + 1 - policy.getMaxRecords());
+                while (isExpired(current.timestamp(oldest), timestamp)) {
+                    oldest++;
+                }
+                first = oldest;
+            }
+        }
+        if (first >= CHUNK_SIZE) {
+            trim();
+        }
+    }
+
+    /**
+     * Summarizes the records within a time range in buckets of the given
+     * width. The range is widened to whole buckets, aligned to multiples of
+     * the resolution since the Unix epoch. Each part of the range is read from
+     * the coarsest rollup that has closed it and whose resolution divides the
+     * requested one, and the rest from the raw records, so a long range costs
+     * about as much as the number of buckets it spans.
+     * <p>
+     * Buckets that have neither rollups nor raw records left, or that have no
+     * records at all, are left out.
+     *
+     * @param startTime  the start of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param endTime    the end of the time range, in milliseconds since the
+     *                   Unix epoch
+     * @param resolution the width of the buckets, in milliseconds
+     * @return the aggregates of the buckets, in time order
+     * @throws IllegalArgumentException if the resolution is not positive
+     */
+    public List<Aggregate> aggregate(long startTime, long endTime, long resolution) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("Resolution must be positive: " + resolution);
+        }
+        List<Aggregate> aggregates = new ArrayList<>();
+        if (startTime > endTime) {
+            return aggregates;
+        }
+        long cursor = Math.floorDiv(startTime, resolution) * resolution;
+        long lastBucket = Math.floorDiv(endTime, resolution) * resolution;
+        long until = lastBucket > Long.MAX_VALUE - resolution ? Long.MAX_VALUE : lastBucket + resolution;
+        for (int level = rollups.length - 1; level >= 0; level--) {
+            RollupSeries rollup = rollups[level];
+            if (resolution % rollup.getResolution() != 0) {
+                continue;
+            }
+            long closed = Math.min(until, rollup.getClosedUntil());
+            if (closed > cursor) {
+                rollup.summarize(cursor, closed, resolution, aggregates);
+                cursor = closed;
+            }
+        }
+        if (cursor < until) {
+            View records = range(cursor, until - 1);
+            for (int i = 0; i < records.size(); i++) {
+                double value = records.value(i);
+                Aggregate.addTo(aggregates, records.timestamp(i), resolution, value, value, value, 1);
+            }
+        }
+        return aggregates;
+    }
+
+    /**
+     * Returns the records whose timestamps fall within a time range, both ends
+     * included, as a view that shares the storage of this series.
+     *
+     * @param startTime the start of the time range, in milliseconds since the
+     *                  Unix epoch
+     * @param endTime   the end of the time range, in milliseconds since the Unix
+     *                  epoch
+     * @return a view of the matching records, in timestamp order
+     */
+    public View range(long startTime, long endTime) {
+        Columns snapshotColumns;
+        int count;
+        int oldest;
+        Late snapshotLate;
+        while (true) {
+            int before = rewrites;
+            count = size;
+            oldest = Math.min(first, count);
+            snapshotColumns = columns;
+            snapshotLate = late;
+            if ((before & 1) == 0 && rewrites == before) {
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        if (startTime > endTime) {
+            return new View(snapshotColumns, 0, 0);
+        }
+        int from = Math.max(oldest, lowerBound(snapshotColumns, count, startTime));
+        int to = Math.max(from, upperBound(snapshotColumns, count, endTime));
+        // Pending late records are only dropped when they are merged, so records past the maximum age are skipped here
+        long lateStart = startTime;
+        if (count > 0 && policy.getMaxAgeMillis() != Long.MAX_VALUE) {
+            lateStart = Math.max(startTime, snapshotColumns.timestamp(count - 1) - policy.getMaxAgeMillis());
+        }
+        int lateFrom = snapshotLate.lowerBound(lateStart);
+        int lateTo = Math.max(lateFrom, snapshotLate.upperBound(endTime));
+        if (lateFrom == lateTo) {
+            return new View(snapshotColumns, from, to);
+        }
+        int length = to - from + lateTo - lateFrom;
+        Columns merged = HeapColumns.allocate(length);
+        merge(snapshotColumns, from, to, snapshotLate, lateFrom, lateTo, merged, 0);
+        return new View(merged, 0, length);
+    }
+
+    /**
+     * Returns the number of records in the series.
+     *
+     * @return the record count
+     */
+    public int size() {
+        int count = size;
+        return count - Math.min(first, count) + late.size();
+    }
+
+    /**
+     * Returns the type of the records in this series.
+     *
+     * @return the record type, e.g. "ECG"
+     */
+    public String getRecordType() {
+        return SignalRegistry.name(signalCode);
+    }
+
+    /**
+     * Returns the type of the records in this series as a signal code.
+     *
+     * @return the code, see {@link SignalRegistry}
+     */
+    public int getSignalCode() {
+        return signalCode;
+    }
+
+    /**
+     * Tells whether a record is past the maximum age, measured from the
+     * newest record of the series.
+     */
+    private boolean isExpired(long timestamp, long newest) {
+        long maxAge = policy.getMaxAgeMillis();
+        return maxAge != Long.MAX_VALUE && timestamp < newest - maxAge;
+    }
+
+    private static int lowerBound(Columns columns, int count, long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (columns.timestamp(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int upperBound(Columns columns, int count, long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (columns.timestamp(middle) <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Merges the buffered late records into the columns. Chunks before the
+     * first late record are shared with the old columns, the chunks after it
+     * are written anew, and the result is published while {@code rewrites}
+     * is odd, so that readers never combine the new columns with the old
+     * buffer.
+     */
+    private void mergeLateRecords() {
+        Late pending = late;
+        Columns current = columns;
+        int count = size;
+        int total = count + pending.size();
+        int position = upperBound(current, count, pending.timestamps[0]);
+        int firstChunk = position >>> CHUNK_SHIFT;
+        int chunks = ((total - 1) >>> CHUNK_SHIFT) + 1;
+        Columns merged = current.copy(0, Math.max(chunks, current.chunks()));
+        for (int chunk = firstChunk; chunk < chunks; chunk++) {
+            merged.allocateChunk(chunk, CHUNK_SIZE);
+        }
+        int start = firstChunk << CHUNK_SHIFT;
+        merge(current, start, count, pending, 0, pending.size(), merged, start);
+        int oldest = Math.max(0, total - policy.getMaxRecords());
+        long maxAge = policy.getMaxAgeMillis();
+        if (maxAge != Long.MAX_VALUE) {
+            oldest = Math.max(oldest, lowerBound(merged, total, merged.timestamp(total - 1) - maxAge));
+        }
+
+        rewrites++;
+        columns = merged;
+        late = NO_LATE_RECORDS;
+        size = total;
+        first = oldest;
+        rewrites++;
+    }
+
+    /**
+     * Frees the chunks that only hold records past retention. The columns are
+     * published without them, with every position moved down by the dropped
+     * entries, while {@code rewrites} is odd.
+     */
+    private void trim() {
+        Columns current = columns;
+        int chunks = first >>> CHUNK_SHIFT;
+        int dropped = chunks << CHUNK_SHIFT;
+        Columns trimmed = current.copy(chunks, current.chunks());
+
+        rewrites++;
+        columns = trimmed;
+        size = size - dropped;
+        first = first - dropped;
+        rewrites++;
+    }
+
+    /**
+     * Merges a range of columns with a range of late records into other
+     * columns. On equal timestamps the column entry comes first, as it was
+     * added before the late record.
+     */
+    private static void merge(Columns source, int from, int to, Late pending, int lateFrom, int lateTo,
+            Columns target, int position) {
+        int i = from;
+        int j = lateFrom;
+        while (i < to || j < lateTo) {
+            if (j == lateTo || (i < to && source.timestamp(i) <= pending.timestamps[j])) {
+                target.set(position++, source.timestamp(i), source.value(i));
+                i++;
+            } else {
+                target.set(position++, pending.timestamps[j], pending.values[j]);
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Makes room for an entry at position {@code capacity - 1}. The published
+     * columns are only extended past the size that readers see; chunks that
+     * have to be reallocated are copied and published as new columns.
+     *
+     * @param capacity the number of entries needed
+     * @return the columns to write to
+     */
+    private Columns ensureCapacity(int capacity) {
+        Columns current = columns;
+        int chunk = (capacity - 1) >>> CHUNK_SHIFT;
+        int length = chunk < current.chunks() ? current.chunkLength(chunk) : 0;
+        int needed = ((capacity - 1) & CHUNK_MASK) + 1;
+        if (length >= needed) {
+            return current;
+        }
+        // Chunks are added one at a time, so doubling always makes room for the next one
+        Columns grown = current.copy(0, chunk < current.chunks() ? current.chunks() : current.chunks() * 2);
+        if (length == 0) {
+            grown.allocateChunk(chunk, chunk == 0 ? INITIAL_CAPACITY : CHUNK_SIZE);
+        } else {
+            // Only the first chunk starts small; it doubles until it is full size
+            grown.growChunk(chunk, Math.min(CHUNK_SIZE, length * 2));
+        }
+        columns = grown;
+        return grown;
+    }
+
+    /**
+     * The chunks of a series. A series replaces its columns instead of changing
+     * entries that readers may see, so a reader that holds on to one
+     * {@code Columns} reads consistent data below the size it read before it.
+     * Copies share the chunks they keep; only new or grown chunks are
+     * allocated.
+     */
+    private abstract static class Columns {
+
+        abstract long timestamp(int index);
+
+        abstract double value(int index);
+
+        abstract void set(int index, long timestamp, double value);
+
+        /** Returns the number of chunk slots, allocated or not. */
+        abstract int chunks();
+
+        /** Returns the number of entries a chunk has room for, 0 if it is not allocated. */
+        abstract int chunkLength(int chunk);
+
+        /** Returns columns with the chunk slots [from, to) of these, sharing the chunks. */
+        abstract Columns copy(int from, int to);
+
+        abstract void allocateChunk(int chunk, int length);
+
+        /** Replaces a chunk with a longer copy of it. */
+        abstract void growChunk(int chunk, int length);
+    }
+
+    /**
+     * Columns of {@code long[]} and {@code double[]} chunks on the heap.
+     */
+    private static final class HeapColumns extends Columns {
+
+        private final long[][] timestamps;
+        private final double[][] values;
+
+        private HeapColumns(long[][] timestamps, double[][] values) {
+            this.timestamps = timestamps;
+            this.values = values;
+        }
+
+        private static HeapColumns allocate(int length) {
+            int chunks = Math.max(1, ((length - 1) >>> CHUNK_SHIFT) + 1);
+            HeapColumns allocated = new HeapColumns(new long[chunks][], new double[chunks][]);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                allocated.allocateChunk(chunk, CHUNK_SIZE);
+            }
+            return allocated;
+        }
+
+        @Override
+        long timestamp(int index) {
+            return timestamps[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+        }
+
+        @Override
+        double value(int index) {
+            return values[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+        }
+
+        @Override
+        void set(int index, long timestamp, double value) {
+            timestamps[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = timestamp;
+            values[index >>> CHUNK_SHIFT][index & CHUNK_MASK] = value;
+        }
+
+        @Override
+        int chunks() {
+            return timestamps.length;
+        }
+
+        @Override
+        int chunkLength(int chunk) {
+            return timestamps[chunk] == null ? 0 : timestamps[chunk].length;
+        }
+
+        @Override
+        Columns copy(int from, int to) {
+            return new HeapColumns(Arrays.copyOfRange(timestamps, from, to), Arrays.copyOfRange(values, from, to));
+        }
+
+        @Override
+        void allocateChunk(int chunk, int length) {
+            timestamps[chunk] = new long[length];
+            values[chunk] = new double[length];
+        }
+
+        @Override
+        void growChunk(int chunk, int length) {
+            timestamps[chunk] = Arrays.copyOf(timestamps[chunk], length);
+            values[chunk] = Arrays.copyOf(values[chunk], length);
+        }
+    }
+
+    /**
+     * Columns of direct buffers from the {@link OffHeapArena}, holding one
+     * 16-byte record per entry: the timestamp at offset 0 and the value at
+     * offset 8, in native byte order.
+     */
+    private static final class OffHeapColumns extends Columns {
+
+        private static final int RECORD_SHIFT = 4;
+
+        private final ByteBuffer[] chunks;
+
+        private OffHeapColumns(ByteBuffer[] chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        long timestamp(int index) {
+            return chunks[index >>> CHUNK_SHIFT].getLong((index & CHUNK_MASK) << RECORD_SHIFT);
+        }
+
+        @Override
+        double value(int index) {
+            return chunks[index >>> CHUNK_SHIFT].getDouble(((index & CHUNK_MASK) << RECORD_SHIFT) + 8);
+        }
+
+        @Override
+        void set(int index, long timestamp, double value) {
+            ByteBuffer chunk = chunks[index >>> CHUNK_SHIFT];
+            int offset = (index & CHUNK_MASK) << RECORD_SHIFT;
+            chunk.putLong(offset, timestamp);
+            chunk.putDouble(offset + 8, value);
+        }
+
+        @Override
+        int chunks() {
+            return chunks.length;
+        }
+
+        @Override
+        int chunkLength(int chunk) {
+            return chunks[chunk] == null ? 0 : chunks[chunk].capacity() >>> RECORD_SHIFT;
+        }
+
+        @Override
+        Columns copy(int from, int to) {
+            return new OffHeapColumns(Arrays.copyOfRange(chunks, from, to));
+        }
+
+        @Override
+        void allocateChunk(int chunk, int length) {
+            chunks[chunk] = OffHeapArena.allocate(length << RECORD_SHIFT);
+        }
+
+        @Override
+        void growChunk(int chunk, int length) {
+            ByteBuffer grown = OffHeapArena.allocate(length << RECORD_SHIFT);
+            grown.duplicate().put(chunks[chunk].duplicate().clear());
+            chunks[chunk] = grown;
+        }
+    }
+
+    /**
+     * The sorted, immutable buffer of late records. Each late record replaces
+     * the buffer with a copy that holds it, which stays cheap because the
+     * buffer never grows beyond {@link #LATE_LIMIT} records.
+     */
+    private static final class Late {
+
+        private final long[] timestamps;
+        private final double[] values;
+
+        private Late(long[] timestamps, double[] values) {
+            this.timestamps = timestamps;
+            this.values = values;
+        }
+
+        private int size() {
+            return timestamps.length;
+        }
+
+        private Late insert(long timestamp, double value) {
+            int position = upperBound(timestamp);
+            long[] newTimestamps = new long[timestamps.length + 1];
+            double[] newValues = new double[values.length + 1];
+            System.arraycopy(timestamps, 0, newTimestamps, 0, position);
+            System.arraycopy(values, 0, newValues, 0, position);
+            newTimestamps[position] = timestamp;
+            newValues[position] = value;
+            System.arraycopy(timestamps, position, newTimestamps, position + 1, timestamps.length - position);
+            System.arraycopy(values, position, newValues, position + 1, values.length - position);
+            return new Late(newTimestamps, newValues);
+        }
+
+        private int lowerBound(long timestamp) {
+            int position = Arrays.binarySearch(timestamps, timestamp);
+            if (position < 0) {
+                return -position - 1;
+            }
+            while (position > 0 && timestamps[position - 1] == timestamp) {
+                position--;
+            }
+            return position;
+        }
+
+        private int upperBound(long timestamp) {
+            int position = Arrays.binarySearch(timestamps, timestamp);
+            if (position < 0) {
+                return -position - 1;
+            }
+            while (position < timestamps.length && timestamps[position] == timestamp) {
+                position++;
+            }
+            return position;
+        }
+    }
+
+    /**
+     * A range of records of a {@link TimeSeries}, as it was when the view was
+     * created. The view reads the stored chunks directly: the timestamps and
+     * values are available as primitives through {@link #timestamp(int)} and
+     * {@link #value(int)}, and a {@link PatientRecord} is only created when an
+     * element is requested through the {@link java.util.List} interface.
+     */
+    public final class View extends AbstractList<PatientRecord> implements RandomAccess {
+
+        private final Columns columns;
+        private final int from;
+        private final int to;
+
+        private View(Columns columns, int from, int to) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public PatientRecord get(int index) {
+            return new PatientRecord(patientId, value(index), signalCode, timestamp(index));
+        }
+
+        /**
+         * Returns the timestamp of a record in the view.
+         *
+         * @param index the position of the record in the view
+         * @return the timestamp, in milliseconds since the Unix epoch
+         */
+        public long timestamp(int index) {
+            return columns.timestamp(checkIndex(index));
+        }
+
+        /**
+         * Returns the value of a record in the view.
+         *
+         * @param index the position of the record in the view
+         * @return the measured value
+         */
+        public double value(int index) {
+            return columns.value(checkIndex(index));
+        }
+
+        /**
+         * Returns the type of the records in the view.
+         *
+         * @return the record type, e.g. "ECG"
+         */
+        public String getRecordType() {
+            return SignalRegistry.name(signalCode);
+        }
+
+        /**
+         * Returns the type of the records in the view as a signal code.
+         *
+         * @return the code, see {@link SignalRegistry}
+         */
+        public int getSignalCode() {
+            return signalCode;
+        }
+
+        /**
+         * Returns a cursor over the records of the view.
+         *
+         * @return a cursor positioned before the first record
+         */
+        public Cursor cursor() {
+            return new Cursor(columns, from, to);
+        }
+
+        private int checkIndex(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + (to - from));
+            }
+            return from + index;
+        }
+    }
+
+    /**
+     * Walks the records of a {@link View} in timestamp order without copying
+     * them or creating objects, which is the cheapest way to scan a range:
+     * <pre>
+     * TimeSeries.Cursor cursor = storage.getRecords(patientId, SignalRegistry.ECG, start, end).cursor();
+     * while (cursor.next()) {
+     *     sum += cursor.value();
+     * }
+     * </pre>
+     * A cursor is not thread-safe, but any number of cursors may read the same
+     * series while it is appended to.
+     */
+    public final class Cursor {
+
+        private final Columns columns;
+        private final int to;
+        private int index;
+
+        private Cursor(Columns columns, int from, int to) {
+            this.columns = columns;
+            this.index = from - 1;
+            this.to = to;
+        }
+
+        /**
+         * Moves to the next record.
+         *
+         * @return {@code true} if there is a record, {@code false} at the end
+         */
+        public boolean next() {
+            if (index < to) {
+                index++;
+            }
+            return index < to;
+        }
+
+        /**
+         * Returns the timestamp of the current record. Only valid after
+         * {@link #next()} returned {@code true}.
+         *
+         * @return the timestamp, in milliseconds since the Unix epoch
+         */
+        public long timestamp() {
+            return columns.timestamp(index);
+        }
+
+        /**
+         * Returns the value of the current record. Only valid after
+         * {@link #next()} returned {@code true}.
+         *
+         * @return the measured value
+         */
+        public double value() {
+            return columns.value(index);
+        }
+
+        /**
+         * Returns the number of records that {@link #next()} has yet to move
+         * to.
+         *
+         * @return the remaining record count
+         */
+        public int remaining() {
+            return Math.max(0, to - index - 1);
+        }
+
+        /**
+         * Returns the type of the records as a signal code.
+         *
+         * @return the code, see {@link SignalRegistry}
+         */
+        public int getSignalCode() {
+            return signalCode;
+        }
+    }
+}
@@ -1,18 +1,65 @@
 package com.data_management;
 
+import com.cardio_generator.outputs.AdaptiveDeflateExtension;
+import com.cardio_generator.outputs.BinaryWireFormat;
+
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
 import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * The {@code WebSocketClientImpl} class extends the {@link WebSocketClient} class
  * to connect to a WebSocket server and receive patient data in real-time.
+ * <p>
+ * Text messages are parsed in place: the characters are copied into a reused
+ * byte buffer and the fields are read from it without splitting the message or
+ * creating strings, except to report a malformed line; the TCP source of
+ * {@link IngestionPipeline} parses its lines the same way. The records of a
+ * message, text or binary, are gathered into batches per patient and signal,
+ * and each batch is added to the storage with one call.
  */
 
 public class WebSocketClientImpl extends WebSocketClient {
 
-    private DataStorage dataStorage;
+    /**
+     * The layouts of the lines of text messages.
+     */
+
+    public enum TextFormat {
+        /**
+         * "patientId,timestamp,label,data", as sent by the simulator's WebSocket output, e.g.
+         * "7,1700000000000,Saturation,97.0%".
+         */
+        SIMULATOR,
+        /** "patientId,measurementValue,recordType,timestamp", the layout read by {@link SimpleDataReader}. */
+        SIMPLE,
+        /**
+         * Either layout, told apart for each line by which of the second and fourth fields is an integer
+         * timestamp. If both are integers the longer one is taken as the timestamp, and on a tie the simulator's
+         * layout.
+         */
+        AUTO
+    }
+
+    private RecordSink dataStorage;
+    private int[] signalCodes = new int[0]; // SignalRegistry codes indexed by wire code, from the dictionary frame
+    private ByteBuffer text = ByteBuffer.allocate(1 << 14); // The current text message, one byte per character
+    private final TextRecordParser parser;
+    private final RecordBatches batches = new RecordBatches();
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile long unknownRecords;
 
     /**
      * Constructs a {@code WebSocketClientImpl} with the specified server URI and data storage.
@@ -24,6 +71,67 @@ public class WebSocketClientImpl extends WebSocketClient {
     public WebSocketClientImpl(URI serverUri, DataStorage dataStorage) {
         super(serverUri);
         this.dataStorage = dataStorage;
+        this.parser = new TextRecordParser(TextFormat.AUTO);
+    }
+
+    /**
+     * Constructs a {@code WebSocketClientImpl} that optionally offers the binary
+     * protocol ({@link BinaryWireFormat#PROTOCOL}) to the server. Servers that
+     * do not support it keep sending text, which is handled as usual.
+     *
+     * @param serverUri the URI of the WebSocket server
+     * @param dataStorage the data storage where received data will be stored
+     * @param binary whether to ask for binary frames
+     */
+
+    public WebSocketClientImpl(URI serverUri, DataStorage dataStorage, boolean binary) {
+        this(serverUri, dataStorage, binary, null);
+    }
+
+    /**
+     * Constructs a {@code WebSocketClientImpl} that optionally offers the binary
+     * protocol and permessage-deflate compression to the server. Either is only
+     * used if the server agrees to it during the handshake.
+     *
+     * @param serverUri the URI of the WebSocket server
+     * @param dataStorage the data storage where received data will be stored
+     * @param binary whether to ask for binary frames
+     * @param compression the compression to offer, or {@code null} for none
+     */
+
+    public WebSocketClientImpl(URI serverUri, DataStorage dataStorage, boolean binary,
+            AdaptiveDeflateExtension compression) {
+        this(serverUri, dataStorage, binary, compression, TextFormat.AUTO);
+    }
+
+    /**
+     * Constructs a {@code WebSocketClientImpl} that expects text messages in a
+     * given layout, e.g. to rule out guessing for servers that send values
+     * which look like timestamps.
+     *
+     * @param serverUri the URI of the WebSocket server
+     * @param sink where received data will be stored, usually the data storage
+     * @param binary whether to ask for binary frames
+     * @param compression the compression to offer, or {@code null} for none
+     * @param textFormat the layout of the lines of text messages
+     */
+
+    public WebSocketClientImpl(URI serverUri, RecordSink sink, boolean binary,
+            AdaptiveDeflateExtension compression, TextFormat textFormat) {
+        super(serverUri, draft(binary, compression));
+        this.dataStorage = sink;
+        this.parser = new TextRecordParser(textFormat);
+    }
+
+    /**
+     * Returns whether the server agreed to send binary frames.
+     *
+     * @return {@code true} once the binary protocol has been negotiated
+     */
+
+    public boolean isBinary() {
+        IProtocol protocol = getProtocol();
+        return protocol != null && BinaryWireFormat.PROTOCOL.equals(protocol.getProvidedProtocol());
     }
 
 /**
@@ -39,30 +147,159 @@ public class WebSocketClientImpl extends WebSocketClient {
 
     /**
      * Handles incoming messages from the WebSocket server by parsing the message
-     * and adding the data to the data storage.
+     * and adding the data to the data storage. A message may carry several
+     * records, one per line; malformed lines are reported and skipped.
      *
      * @param message the message received from the server
      */
 
     @Override
-    public void onMessage(String message) {
-        // Parse message and add to dataStorage
-        String[] parts = message.split(",");
-        if (parts.length == 4) {
-            try {
-                int patientId = Integer.parseInt(parts[0]);
-                double measurementValue = Double.parseDouble(parts[1]);
-                String recordType = parts[2];
-                long timestamp = Long.parseLong(parts[3]);
-                dataStorage.addPatientData(patientId, measurementValue, recordType, timestamp);
-            } catch (NumberFormatException e) {
-                System.err.println("Error parsing message: " + message);
-            }
-        } else {
+    public synchronized void onMessage(String message) {
+        if (message.isEmpty()) {
             System.err.println("Invalid message format: " + message);
+            return;
+        }
+        ByteBuffer bytes = toBytes(message);
+        parser.parseLines(bytes, 0, bytes.limit(), true);
+        parser.commitTo(dataStorage);
+    }
+
+    /**
+     * Handles binary frames of the {@link BinaryWireFormat#PROTOCOL} protocol.
+     * Records are read straight from the frame and added to the data storage;
+     * their labels come from the dictionary frame the server sends first, so
+     * decoding a record allocates nothing.
+     *
+     * @param bytes the frame received from the server
+     */
+
+    @Override
+    public synchronized void onMessage(ByteBuffer bytes) {
+        ByteBuffer frame = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (frame.remaining() < 2 || frame.get(1) != BinaryWireFormat.VERSION) {
+            System.err.println("Invalid binary frame of " + frame.remaining() + " bytes");
+            return;
+        }
+        try {
+            if (frame.get(0) == BinaryWireFormat.DICTIONARY_FRAME) {
+                readDictionary(frame);
+            } else if (frame.get(0) == BinaryWireFormat.RECORD_FRAME) {
+                readRecords(frame);
+            } else {
+                System.err.println("Unknown binary frame type: " + frame.get(0));
+            }
+        } catch (IndexOutOfBoundsException e) {
+            System.err.println("Truncated binary frame of " + frame.remaining() + " bytes");
+        }
+    }
+
+    /**
+     * Asks the server to only send data of some patients and signals, e.g.
+     * {@code "patients=1,5-9;signals=ECG,Alert"}. An empty filter subscribes
+     * to everything again.
+     *
+     * @param filter the patients and signals to receive
+     */
+
+    public void subscribe(String filter) {
+        send(filter.isEmpty() ? "SUBSCRIBE all" : "SUBSCRIBE " + filter);
+    }
+
+    /**
+     * Returns the number of binary records that were skipped because their
+     * signal code is not in the dictionary or not registered.
+     *
+     * @return the number of records with an unknown signal
+     */
+
+    public long getUnknownRecords() {
+        return unknownRecords;
+    }
+
+    private void readDictionary(ByteBuffer frame) {
+        int entries = frame.getShort(2) & 0xFFFF;
+        int[] codes = new int[0];
+        int position = 4;
+        for (int i = 0; i < entries; i++) {
+            int code = frame.getShort(position) & 0xFFFF;
+            int length = frame.getShort(position + 2) & 0xFFFF;
+            byte[] label = new byte[length];
+            frame.position(position + 4);
+            frame.get(label);
+            if (code >= codes.length) {
+                codes = Arrays.copyOf(codes, code + 1);
+            }
+            // New labels from the server are only registered up to a limit; past it they stay UNKNOWN
+            codes[code] = SignalRegistry.tryCode(new String(label, StandardCharsets.US_ASCII));
+            position += 4 + length;
+        }
+        signalCodes = codes;
+    }
+
+    private void readRecords(ByteBuffer frame) {
+        int count = frame.getInt(BinaryWireFormat.COUNT_OFFSET);
+        // Checked up front, so that a frame that ends early queues none of its records
+        if (count < 0 || BinaryWireFormat.RECORD_HEADER_BYTES + (long) count * BinaryWireFormat.RECORD_BYTES
+                > frame.limit()) {
+            System.err.println("Binary frame of " + frame.limit() + " bytes cannot hold " + count + " records");
+            return;
+        }
+        long baseTimestamp = frame.getLong(BinaryWireFormat.BASE_TIMESTAMP_OFFSET);
+        int[] codes = signalCodes;
+        int unknown = 0;
+        int position = BinaryWireFormat.RECORD_HEADER_BYTES;
+        for (int i = 0; i < count; i++, position += BinaryWireFormat.RECORD_BYTES) {
+            int patientId = frame.getInt(position);
+            int signalCode = frame.getInt(position + 4);
+            long timestamp = baseTimestamp + frame.getInt(position + 8);
+            double value = frame.getDouble(position + 12);
+            if (signalCode < 0 || signalCode >= codes.length || codes[signalCode] == SignalRegistry.UNKNOWN) {
+                unknown++;
+                continue;
+            }
+            batches.add(patientId, codes[signalCode], timestamp, value);
+        }
+        batches.commitTo(dataStorage);
+        if (unknown > 0) {
+            unknownRecords += unknown;
+            System.err.println("Skipped " + unknown + " records with unknown signal codes");
         }
     }
 
+    private static Draft_6455 draft(boolean binary, AdaptiveDeflateExtension compression) {
+        List<IExtension> extensions = compression == null
+                ? Collections.emptyList()
+                : Collections.singletonList(compression);
+        // The empty protocol keeps the connection working with servers that only send text
+        List<IProtocol> protocols = binary
+                ? Arrays.asList(new Protocol(BinaryWireFormat.PROTOCOL), new Protocol(""))
+                : Collections.singletonList(new Protocol(""));
+        return new Draft_6455(extensions, protocols);
+    }
+
+    /**
+     * Copies a message into the reused text buffer, one byte per character.
+     * Messages with characters beyond ASCII, which only labels may contain,
+     * are encoded as UTF-8 instead.
+     */
+
+    private ByteBuffer toBytes(String message) {
+        int length = message.length();
+        if (text.capacity() < length) {
+            text = ByteBuffer.allocate(Math.max(length, text.capacity() * 2));
+        }
+        byte[] array = text.array();
+        for (int i = 0; i < length; i++) {
+            char c = message.charAt(i);
+            if (c >= 0x80) {
+                return ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8));
+            }
+            array[i] = (byte) c;
+        }
+        text.clear().limit(length);
+        return text;
+    }
+
     /**
      * Handles WebSocket connection closure by printing the reason for disconnection.
      *
@@ -74,6 +311,18 @@ public class WebSocketClientImpl extends WebSocketClient {
     @Override
     public void onClose(int code, String reason, boolean remote) {
         System.out.println("Disconnected from WebSocket server: " + reason);
+        closed.countDown();
+    }
+
+    /**
+     * Waits until the connection is closed, for callers that supervise the
+     * connection.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+
+    void awaitClose() throws InterruptedException {
+        closed.await();
     }
 
     /**
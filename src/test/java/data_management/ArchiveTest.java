@@ -0,0 +1,139 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.archive.BitOutput;
+import com.cardio_generator.archive.SeriesDecoder;
+import com.cardio_generator.archive.SeriesEncoder;
+import com.cardio_generator.outputs.ArchiveOutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
+import com.data_management.ArchiveDataReader;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+
+public class ArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSeriesRoundTripsExactly() throws IOException {
+        Random random = new Random(7);
+        long[] timestamps = new long[500];
+        double[] values = new double[500];
+        long time = 1714376789000L;
+        for (int i = 0; i < timestamps.length; i++) {
+            // Mostly regular sampling with some jitter, gaps and out-of-order samples
+            time += i % 50 == 0 ? random.nextInt(100_000) - 20_000 : 1000 + random.nextInt(3) - 1;
+            timestamps[i] = time;
+            values[i] = i % 3 == 0 ? random.nextGaussian() : Math.round(random.nextDouble() * 5) + 95;
+        }
+        values[10] = Double.NaN;
+        values[11] = -0.0;
+
+        SeriesEncoder encoder = new SeriesEncoder();
+        for (int i = 0; i < timestamps.length; i++) {
+            encoder.add(timestamps[i], values[i]);
+        }
+        SeriesDecoder decoder = decode(encoder);
+        for (int i = 0; i < timestamps.length; i++) {
+            assertTrue(decoder.next());
+            assertEquals(timestamps[i], decoder.timestamp());
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoder.value()));
+        }
+        assertFalse(decoder.next());
+    }
+
+    @Test
+    public void testSlowlyChangingSignalCompressesToAFewBytesPerSample() throws IOException {
+        SeriesEncoder encoder = new SeriesEncoder();
+        Random random = new Random(3);
+        double saturation = 97;
+        for (int i = 0; i < 1024; i++) {
+            saturation = Math.max(95, Math.min(100, saturation + random.nextInt(3) - 1));
+            encoder.add(1714376789000L + 1000L * i, saturation);
+        }
+        assertTrue(encoder.bits().byteLength() < 2 * 1024, "Compressed to " + encoder.bits().byteLength() + " bytes");
+    }
+
+    @Test
+    public void testArchiveOutputReadsBackIntoStorage() throws IOException {
+        Path file = directory.resolve("vitals.gca");
+        ArchiveOutputStrategy output = new ArchiveOutputStrategy(file.toString(), 100);
+        SampleBatch batch = new SampleBatch(2);
+        for (int second = 0; second < 250; second++) {
+            batch.clear();
+            batch.add(515151, 1000L * second, SignalType.SATURATION, 95 + second % 3);
+            batch.add(515152, 1000L * second, SignalType.ECG, Math.sin(second));
+            output.outputBatch(batch);
+        }
+        output.output(515151, 300_000L, "Alert", "triggered");
+        output.close();
+        // 2 full blocks per series, then the partial blocks and the alert written on close
+        assertTrue(Files.size(file) < 250 * 2 * 10);
+
+        DataStorage storage = DataStorage.getInstance();
+        new ArchiveDataReader(file.toString()).readData(storage);
+        List<PatientRecord> saturation = storage.getRecords(515151, 0, Long.MAX_VALUE);
+        assertEquals(251, saturation.size());
+        List<PatientRecord> ecg = storage.getRecords(515152, 0, Long.MAX_VALUE);
+        assertEquals(250, ecg.size());
+        for (PatientRecord record : ecg) {
+            assertEquals(Math.sin(record.getTimestamp() / 1000), record.getMeasurementValue());
+        }
+    }
+
+    @Test
+    public void testTornBlockIsDroppedBeforeAppending() throws IOException {
+        Path file = directory.resolve("torn.gca");
+        ArchiveOutputStrategy output = new ArchiveOutputStrategy(file.toString(), 100);
+        for (int second = 0; second < 200; second++) {
+            output.output(515153, 1000L * second, SignalType.ECG.code(), second);
+        }
+        output.close();
+        // A writer killed in the middle of its second block
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 5);
+        }
+
+        output = new ArchiveOutputStrategy(file.toString(), 100);
+        for (int second = 200; second < 300; second++) {
+            output.output(515153, 1000L * second, SignalType.ECG.code(), second);
+        }
+        output.close();
+
+        DataStorage storage = DataStorage.getInstance();
+        new ArchiveDataReader(file.toString()).readData(storage);
+        List<PatientRecord> records = storage.getRecords(515153, 0, Long.MAX_VALUE);
+        assertEquals(200, records.size());
+        assertEquals(99_000L, records.get(99).getTimestamp());
+        assertEquals(200_000L, records.get(100).getTimestamp());
+
+        Path other = directory.resolve("other.gca");
+        Files.write(other, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9 });
+        assertThrows(IOException.class, () -> new ArchiveOutputStrategy(other.toString()));
+    }
+
+    private static SeriesDecoder decode(SeriesEncoder encoder) throws IOException {
+        BitOutput bits = encoder.bits();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bits.writeTo(new DataOutputStream(bytes));
+        assertEquals(bits.byteLength(), bytes.size());
+        SeriesDecoder decoder = new SeriesDecoder();
+        decoder.reset(bytes.toByteArray(), 0, bytes.size(), encoder.count());
+        return decoder;
+    }
+}
@@ -0,0 +1,60 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.data_management.DataStorage;
+import com.data_management.SimpleDataReader;
+import com.data_management.TimeSeries;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+public class BulkReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testBulkReadMatchesLineByLineParsing() throws IOException {
+        String[] types = { "ECG", "Saturation", "SystolicPressure" };
+        String[] values = new String[30_000];
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            switch (i % 5) {
+                case 0: values[i] = Integer.toString(random.nextInt(200)); break;
+                case 1: values[i] = Double.toString(random.nextGaussian()); break;
+                case 2: values[i] = String.format("%.9f", random.nextDouble() * 1000); break;
+                case 3: values[i] = "-" + random.nextInt(10) + "." + random.nextInt(1000) + "E-3"; break;
+                default: values[i] = Double.toString(random.nextDouble() * 1e25); break;
+            }
+            text.append(9950 + i % 4).append(',').append(values[i]).append(',').append(types[i % 3]).append(',')
+                    .append(1000L * i).append(i % 7 == 0 ? "\r\n" : "\n");
+        }
+        text.append("9950,not-a-number,ECG,1\n");
+        Path file = directory.resolve("export.csv");
+        Files.write(file, text.toString().getBytes(StandardCharsets.US_ASCII));
+
+        DataStorage storage = DataStorage.getInstance();
+        // Small chunks, so that lines cross chunk boundaries
+        long records = new SimpleDataReader(file.toString(), 4096).readBulk(storage, 3);
+
+        assertEquals(values.length, records);
+        for (int patient = 0; patient < 4; patient++) {
+            for (int type = 0; type < 3; type++) {
+                TimeSeries.View series = storage.getRecords(9950 + patient, types[type], 0, Long.MAX_VALUE);
+                int expected = patient + 4 * ((type - patient % 3 + 3) % 3);
+                assertEquals(2500, series.size());
+                for (int j = 0; j < series.size(); j++, expected += 12) {
+                    assertEquals(1000L * expected, series.timestamp(j));
+                    assertEquals(Double.parseDouble(values[expected]), series.value(j), values[expected]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.DataStorage;
+import com.data_management.Patient;
+import com.data_management.TimeSeries;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrentStorageTest {
+
+    @Test
+    public void testParallelWritersAndReadersSeeConsistentSeries() throws Exception {
+        DataStorage storage = DataStorage.getInstance();
+        int writers = 4;
+        int perWriter = 50_000;
+        int shared = 9700;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads[w] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perWriter; i++) {
+                    storage.addPatientData(9600 + writer, i, "ECG", 1000L * i);
+                    // Interleaved timestamps from all writers, so some arrive late
+                    storage.addPatientData(shared, i, "ECG", 1000L * i + writer);
+                }
+            });
+            threads[w].start();
+        }
+        Thread reader = new Thread(() -> {
+            int previous = 0;
+            while (writing.get()) {
+                TimeSeries.View view = storage.getRecords(shared, "ECG", 0, Long.MAX_VALUE);
+                if (view.size() < previous) {
+                    failure.set("Series shrank from " + previous + " to " + view.size());
+                }
+                previous = view.size();
+                for (int i = 1; i < view.size(); i++) {
+                    if (view.timestamp(i - 1) > view.timestamp(i)) {
+                        failure.set("Out of order at " + i);
+                    }
+                }
+            }
+        });
+        reader.start();
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        writing.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+        for (int w = 0; w < writers; w++) {
+            assertEquals(perWriter, storage.getRecords(9600 + w, 0, Long.MAX_VALUE).size());
+        }
+        TimeSeries.View all = storage.getRecords(shared, "ECG", 0, Long.MAX_VALUE);
+        assertEquals(writers * perWriter, all.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(1000L * (i / writers) + i % writers, all.timestamp(i));
+        }
+    }
+
+    @Test
+    public void testViewIsNotChangedByLaterRecords() {
+        Patient patient = new Patient(1);
+        patient.addRecord(1, "Saturation", 1000);
+        patient.addRecord(3, "Saturation", 3000);
+        TimeSeries.View before = patient.getRecords("Saturation", 0, 5000);
+        patient.addRecord(2, "Saturation", 2000);
+        patient.addRecord(4, "Saturation", 4000);
+
+        assertEquals(2, before.size());
+        assertEquals(3, before.value(1));
+        assertEquals(4, patient.getRecords("Saturation", 0, 5000).size());
+    }
+
+    @Test
+    public void testAllPatientsAreIndexed() {
+        DataStorage storage = DataStorage.getInstance();
+        for (int id = 200_000; id < 205_000; id++) {
+            storage.addPatientData(id, id, "HeartRate", 1);
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (Patient patient : storage.getAllPatients()) {
+            ids.add(patient.getPatientId());
+        }
+        for (int id = 200_000; id < 205_000; id++) {
+            assertTrue(ids.contains(id));
+            assertEquals(id, storage.getRecords(id, "HeartRate", 0, 1).value(0));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class FileOutputStrategyTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testBufferedLinesAreWrittenOnClose() throws IOException {
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 1 << 16, 0, false);
+        SampleBatch batch = new SampleBatch(4);
+        batch.add(1, 1000L, SignalType.ECG, 0.5);
+        batch.add(2, 1000L, SignalType.SATURATION, 97);
+        batch.add(1, 2000L, SignalType.ECG, -0.25);
+        output.outputBatch(batch);
+        output.output(3, 3000L, "ECG", "1.0");
+
+        Path ecgFile = directory.resolve("ECG.txt");
+        assertEquals(0, Files.size(ecgFile));
+
+        output.close();
+        List<String> ecg = Files.readAllLines(ecgFile);
+        assertEquals(List.of(
+                "Patient ID: 1, Timestamp: 1000, Label: ECG, Data: 0.5",
+                "Patient ID: 1, Timestamp: 2000, Label: ECG, Data: -0.25",
+                "Patient ID: 3, Timestamp: 3000, Label: ECG, Data: 1.0"), ecg);
+        assertEquals(List.of("Patient ID: 2, Timestamp: 1000, Label: Saturation, Data: 97.0%"),
+                Files.readAllLines(directory.resolve("Saturation.txt")));
+    }
+
+    @Test
+    public void testFullBufferIsWrittenOutImmediately() throws IOException {
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 64, 0, true);
+        for (int i = 0; i < 10; i++) {
+            output.output(i, 1000L + i, SignalType.CHOLESTEROL.code(), 180);
+        }
+        // Ten lines of about 70 bytes overflow a 64 byte buffer many times over
+        assertTrue(Files.size(directory.resolve("Cholesterol.txt")) >= 9 * 64);
+        output.close();
+        assertEquals(10, Files.readAllLines(directory.resolve("Cholesterol.txt")).size());
+    }
+}
@@ -0,0 +1,98 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.FileOutputStrategy;
+import com.cardio_generator.outputs.SignalType;
+import com.data_management.DataStorage;
+import com.data_management.FileTailReader;
+import com.data_management.SignalRegistry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class FileTailReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReadsOnlyCompleteNewLines() throws IOException {
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 1 << 16, 0, false);
+        for (int i = 0; i < 100; i++) {
+            output.output(9970, 1000L * i, SignalType.SATURATION.code(), 95 + i % 3);
+            output.output(9970, 1000L * i, SignalType.ECG.code(), i / 10.0);
+        }
+        output.output(9970, 500_000, "Alert", "triggered");
+        output.flush();
+
+        DataStorage storage = DataStorage.getInstance();
+        Path offsets = directory.resolve("offsets");
+        FileTailReader reader = new FileTailReader(directory.toString(), offsets, 1000);
+        assertEquals(201, reader.readAvailable(storage));
+        assertEquals(0, reader.readAvailable(storage));
+        assertEquals(96, storage.getRecords(9970, SignalRegistry.SATURATION, 1000, 1000).value(0));
+        assertEquals(1, storage.getRecords(9970, SignalRegistry.ALERT, 0, Long.MAX_VALUE).value(0));
+
+        // A line that is still being written is left for the next read
+        Path ecg = directory.resolve("ECG.txt");
+        long complete = Files.size(ecg);
+        append(ecg, "Patient ID: 9970, Timestamp: 200000, Label: ECG, Da");
+        assertEquals(0, reader.readAvailable(storage));
+        assertEquals(complete, reader.getOffset("ECG.txt"));
+        append(ecg, "ta: 0.25\n");
+        assertEquals(1, reader.readAvailable(storage));
+        assertEquals(0.25, storage.getRecords(9970, SignalRegistry.ECG, 200000, 200000).value(0));
+        reader.close();
+
+        // Offsets are saved when the reader is closed, so a new reader only reads later lines
+        FileTailReader restarted = new FileTailReader(directory.toString(), offsets, 1000);
+        assertEquals(0, restarted.readAvailable(storage));
+        assertEquals(0, restarted.getMalformedLines());
+    }
+
+    @Test
+    public void testFollowsNewFilesAndAppends() throws Exception {
+        DataStorage storage = DataStorage.getInstance();
+        FileTailReader reader = new FileTailReader(directory.toString(), null, 50);
+        Thread follower = new Thread(() -> {
+            try {
+                reader.readData(storage);
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+        follower.start();
+
+        FileOutputStrategy output = new FileOutputStrategy(directory.toString(), 1 << 16, 0, false);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 50; i++) {
+                output.output(9971, 1000L * (round * 50 + i), SignalType.SYSTOLIC_PRESSURE.code(), 120);
+            }
+            output.flush();
+            int expected = (round + 1) * 50;
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (count(storage) < expected && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(expected, count(storage));
+        }
+        output.close();
+        reader.close();
+        follower.join(5000);
+        assertFalse(follower.isAlive());
+    }
+
+    private static int count(DataStorage storage) {
+        return storage.getRecords(9971, SignalRegistry.SYSTOLIC_PRESSURE, 0, Long.MAX_VALUE).size();
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+    }
+}
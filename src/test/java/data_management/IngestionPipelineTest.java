@@ -0,0 +1,197 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.DataStorage;
+import com.data_management.IngestionPipeline;
+import com.data_management.RecordSink;
+import com.data_management.SignalRegistry;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class IngestionPipelineTest {
+
+    private final Map<Integer, List<Long>> delivered = new HashMap<>();
+    private final RecordSink recorder = (patientId, signalCode, timestamps, values, offset, count) -> {
+        synchronized (delivered) {
+            List<Long> series = delivered.computeIfAbsent(patientId, id -> new ArrayList<>());
+            for (int i = offset; i < offset + count; i++) {
+                series.add(timestamps[i]);
+            }
+        }
+    };
+
+    @Test
+    public void testMergesSourcesInTimestampOrder() throws Exception {
+        IngestionPipeline pipeline = new IngestionPipeline(recorder, 64, 30_000, 1024);
+        for (int source = 0; source < 2; source++) {
+            int first = source;
+            pipeline.addSource(new TestSource("source-" + source, sink -> {
+                send(sink, 0);
+                // Both sources hold the watermark back once both first records have been delivered
+                waitFor(() -> pipeline.getDeliveredRecords() >= 2);
+                // Messages of ten lines, handed over like the readers do: one batch per patient
+                long[] even = new long[5];
+                long[] odd = new long[5];
+                for (long base = 20; base < 20_000; base += 20) {
+                    for (int j = 0; j < 5; j++) {
+                        even[j] = base + 4 * j + first;
+                        odd[j] = base + 4 * j + 2 + first;
+                    }
+                    sink.addRecords(9990, SignalRegistry.ECG, even, new double[5], 0, 5);
+                    sink.addRecords(9991, SignalRegistry.ECG, odd, new double[5], 0, 5);
+                }
+            }));
+        }
+        // The records above the start of the last batches wait for the watermark until the pipeline is closed
+        waitFor(() -> pipeline.getDeliveredRecords() >= 19_965);
+        pipeline.close();
+
+        // Records are released in timestamp order and added to the target in batches per patient
+        assertEquals(0, pipeline.getLateRecords());
+        assertEquals(19_982, delivered.get(9990).size() + delivered.get(9991).size());
+        for (List<Long> series : delivered.values()) {
+            for (int i = 1; i < series.size(); i++) {
+                assertTrue(series.get(i - 1) <= series.get(i), "Out of order at " + i);
+            }
+        }
+    }
+
+    @Test
+    public void testStalledSourceDoesNotHoldUpOthers() throws Exception {
+        IngestionPipeline pipeline = new IngestionPipeline(recorder, 16, 200, 64);
+        pipeline.addSource(new TestSource("stalled", sink -> send(sink, 0)));
+        waitFor(() -> pipeline.getDeliveredRecords() == 1);
+        pipeline.addSource(new TestSource("live", sink -> {
+            for (long timestamp = 1; timestamp <= 1000; timestamp++) {
+                send(sink, timestamp);
+            }
+        }));
+
+        waitFor(() -> pipeline.getDeliveredRecords() == 1001);
+        assertEquals(1001, pipeline.getDeliveredRecords());
+        pipeline.close();
+    }
+
+    @Test
+    public void testRestartsFailingSource() throws Exception {
+        DataStorage storage = DataStorage.getInstance();
+        IngestionPipeline pipeline = new IngestionPipeline(storage);
+        AtomicInteger runs = new AtomicInteger();
+        pipeline.addSource(new TestSource("flaky", sink -> {
+            if (runs.incrementAndGet() < 3) {
+                throw new IOException("connection refused");
+            }
+            sink.addRecords(9990, SignalRegistry.ECG, new long[] { 1000, 2000 }, new double[] { 0.5, 0.25 }, 0, 2);
+        }));
+
+        waitFor(() -> pipeline.getDeliveredRecords() == 2);
+        pipeline.close();
+        assertEquals(3, runs.get());
+        assertEquals(2, storage.getRecords(9990, SignalRegistry.ECG, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testDroppedSourceHoldsWatermarkWhileReconnecting() throws Exception {
+        IngestionPipeline pipeline = new IngestionPipeline(recorder, 64, 1000, 1024);
+        long start = System.currentTimeMillis();
+        AtomicInteger runs = new AtomicInteger();
+        pipeline.addSource(new TestSource("dropping", sink -> {
+            if (runs.incrementAndGet() == 1) {
+                sink.addRecords(9992, SignalRegistry.ECG, new long[] { start }, new double[1], 0, 1);
+                // Quiet for almost the idle timeout, then the connection drops
+                sleep(950);
+                throw new IOException("connection reset");
+            }
+            // After reconnecting, the source continues with records the others have already passed
+            sink.addRecords(9992, SignalRegistry.ECG, new long[] { start + 500 }, new double[1], 0, 1);
+        }));
+        pipeline.addSource(new TestSource("live", sink -> {
+            for (long now = System.currentTimeMillis(); now < start + 1500; now = System.currentTimeMillis()) {
+                sink.addRecords(9993, SignalRegistry.ECG, new long[] { now }, new double[1], 0, 1);
+                sleep(10);
+            }
+        }));
+
+        waitFor(() -> {
+            synchronized (delivered) {
+                return delivered.containsKey(9992) && delivered.get(9992).size() == 2;
+            }
+        });
+        assertEquals(2, runs.get());
+        assertEquals(0, pipeline.getLateRecords());
+        pipeline.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(RecordSink sink, long timestamp) {
+        sink.addRecords(9990, SignalRegistry.ECG, new long[] { timestamp }, new double[] { 1 }, 0, 1);
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private interface Feed {
+        void send(RecordSink sink) throws IOException;
+    }
+
+    /**
+     * A source that runs a feed once per run and then stays connected until it
+     * is closed.
+     */
+    private static final class TestSource implements IngestionPipeline.Source {
+
+        private final String name;
+        private final Feed feed;
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        TestSource(String name, Feed feed) {
+            this.name = name;
+            this.feed = feed;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void run(RecordSink sink) throws IOException {
+            feed.send(sink);
+            try {
+                closed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
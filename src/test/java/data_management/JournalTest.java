@@ -0,0 +1,105 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.data_management.DataStorage;
+import com.data_management.JournalReader;
+import com.data_management.Patient;
+import com.data_management.SignalRegistry;
+import com.data_management.StorageJournal;
+import com.data_management.TimeSeries;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecoversSnapshotAndLogTail() throws IOException {
+        Patient patient = new Patient(9900);
+        int customCode = SignalRegistry.code("JournalTestSignal");
+        try (StorageJournal journal = new StorageJournal(directory, () -> List.of(patient), 4, 0, 0, false)) {
+            for (int i = 0; i < 100_000; i++) {
+                journal.append(patient, SignalRegistry.ECG, 1000L * i, i);
+                if (i == 60_000) {
+                    journal.snapshot();
+                }
+            }
+            journal.append(patient, customCode, 5000, 42);
+        }
+
+        DataStorage storage = DataStorage.getInstance();
+        new JournalReader(directory).readData(storage);
+
+        TimeSeries.View recovered = storage.getRecords(9900, SignalRegistry.ECG, 0, Long.MAX_VALUE);
+        assertEquals(100_000, recovered.size());
+        for (int i = 0; i < recovered.size(); i++) {
+            assertEquals(1000L * i, recovered.timestamp(i));
+            assertEquals(i, recovered.value(i));
+        }
+        TimeSeries.View custom = storage.getRecords(9900, "JournalTestSignal", 0, Long.MAX_VALUE);
+        assertEquals(1, custom.size());
+        assertEquals(42, custom.value(0));
+    }
+
+    @Test
+    public void testStopsAtTornFrame() throws IOException {
+        Patient patient = new Patient(9901);
+        try (StorageJournal journal = new StorageJournal(directory, () -> List.of(patient), 1, 0, 0, false)) {
+            for (int i = 0; i < 1000; i++) {
+                journal.append(patient, SignalRegistry.SATURATION, 1000L * i, 95);
+            }
+        }
+        // A crash in the middle of a write leaves part of a frame at the end of the log
+        Path log;
+        try (Stream<Path> files = Files.walk(directory)) {
+            log = files.filter(file -> file.toString().endsWith(".wal")).collect(Collectors.toList()).get(0);
+        }
+        Files.write(log, new byte[] { 1, 0, 0, 0, 24, 0, 0, 0, 7, 7, 7, 7, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        DataStorage storage = DataStorage.getInstance();
+        new JournalReader(directory).readData(storage);
+
+        assertEquals(1000, storage.getRecords(9901, SignalRegistry.SATURATION, 0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void testBatchAppendIsRecovered() throws IOException {
+        Patient patient = new Patient(9902);
+        int customCode = SignalRegistry.code("JournalBatchSignal");
+        try (StorageJournal journal = new StorageJournal(directory, () -> List.of(patient), 2, 0, 0, false)) {
+            long[] timestamps = new long[1000];
+            double[] values = new double[1000];
+            for (int batch = 0; batch < 10; batch++) {
+                for (int i = 0; i < 1000; i++) {
+                    timestamps[i] = 1000L * (1000 * batch + i);
+                    values[i] = 1000 * batch + i;
+                }
+                journal.appendAll(patient, batch == 5 ? customCode : SignalRegistry.ECG, timestamps, values, 0,
+                        1000);
+            }
+        }
+        assertEquals(9000, patient.getRecords("ECG", 0, Long.MAX_VALUE).size());
+
+        DataStorage storage = DataStorage.getInstance();
+        new JournalReader(directory).readData(storage);
+
+        TimeSeries.View recovered = storage.getRecords(9902, SignalRegistry.ECG, 0, Long.MAX_VALUE);
+        assertEquals(9000, recovered.size());
+        assertEquals(4999, recovered.value(4999));
+        assertEquals(6000, recovered.value(5000));
+        TimeSeries.View custom = storage.getRecords(9902, "JournalBatchSignal", 0, Long.MAX_VALUE);
+        assertEquals(1000, custom.size());
+        assertEquals(5000, custom.value(0));
+    }
+}
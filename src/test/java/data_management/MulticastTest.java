@@ -0,0 +1,134 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.MulticastOutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
+import com.data_management.DataStorage;
+import com.data_management.MulticastDataReader;
+import com.data_management.PatientRecord;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.util.List;
+
+public class MulticastTest {
+
+    private static final String GROUP = "239.255.42.99";
+
+    @Test
+    public void testBatchesArriveInSequencedDatagrams() throws Exception {
+        InetAddress group = InetAddress.getByName(GROUP);
+        NetworkInterface loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+        DataStorage storage = DataStorage.getInstance();
+        Thread receiver;
+        try (MulticastDataReader reader = new MulticastDataReader(group, 0, loopback)) {
+            receiver = StorageAwait.startReader(reader, storage);
+            // Room for four records per datagram
+            MulticastOutputStrategy output = new MulticastOutputStrategy(group, reader.getPort(), loopback,
+                    MulticastOutputStrategy.HEADER_BYTES + 4 * MulticastOutputStrategy.RECORD_BYTES, 0);
+            SampleBatch batch = new SampleBatch(10);
+            for (int i = 0; i < 10; i++) {
+                batch.add(9301, 1_700_000_000_000L + i * 1000, SignalType.ECG, i / 10.0);
+            }
+            output.outputBatch(batch);
+            output.output(9301, 1_700_000_020_000L, "Alert", "triggered");
+            output.close();
+
+            List<PatientRecord> records = StorageAwait.awaitRecords(storage, 9301, 11);
+            assertEquals(0.3, records.get(3).getMeasurementValue());
+            assertEquals(1_700_000_009_000L, records.get(9).getTimestamp());
+            assertEquals("Alert", records.get(10).getRecordType());
+            assertEquals(1.0, records.get(10).getMeasurementValue());
+            assertEquals(4, output.getSentDatagrams());
+            assertEquals(4, reader.getReceivedDatagrams());
+            assertEquals(0, reader.getLostDatagrams());
+            assertEquals(output.getSourceId(), reader.getSources().iterator().next().getSourceId());
+        }
+        receiver.join(5000);
+        assertFalse(receiver.isAlive());
+    }
+
+    @Test
+    public void testGapsReorderingAndDuplicatesAreDetected() throws Exception {
+        InetAddress group = InetAddress.getByName(GROUP);
+        NetworkInterface loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+        DataStorage storage = DataStorage.getInstance();
+        try (MulticastDataReader reader = new MulticastDataReader(group, 0, loopback);
+                DatagramChannel sender = DatagramChannel.open(StandardProtocolFamily.INET)) {
+            sender.setOption(StandardSocketOptions.IP_MULTICAST_IF, loopback);
+            InetSocketAddress target = new InetSocketAddress(group, reader.getPort());
+            StorageAwait.startReader(reader, storage);
+
+            // 0, 1, then 2 and 5 go missing, 2 turns up late and 3 is duplicated
+            for (long sequence : new long[] {0, 1, 3, 4, 2, 3, 6}) {
+                sender.send(datagram(42L, sequence, 9302, 1000 + sequence, SignalType.SATURATION.code()), target);
+            }
+            // A signal code nobody registered is dropped rather than stored
+            sender.send(datagram(42L, 7, 9302, 1007, 9999), target);
+            sender.send(ByteBuffer.wrap(new byte[] {1, 2, 3}), target);
+
+            StorageAwait.awaitRecords(storage, 9302, 6);
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((reader.getMalformedDatagrams() == 0 || reader.getUnknownRecords() == 0)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            MulticastDataReader.SourceStats source = reader.getSources().iterator().next();
+            assertEquals(42L, source.getSourceId());
+            assertEquals(7, source.getReceived());
+            assertEquals(1, source.getLost());
+            assertEquals(1, source.getReordered());
+            assertEquals(1, source.getDuplicates());
+            assertEquals(7, source.getHighestSequence());
+            assertEquals(1 / 8.0, reader.getLossRate(), 1e-9);
+            assertEquals(1, reader.getMalformedDatagrams());
+            assertEquals(1, reader.getUnknownRecords());
+            assertEquals(6, storage.getRecords(9302, 0, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    public void testDatagramsBeforeTheFirstHeardAreNotCountedAsFound() throws Exception {
+        InetAddress group = InetAddress.getByName(GROUP);
+        NetworkInterface loopback = NetworkInterface.getByInetAddress(InetAddress.getLoopbackAddress());
+        DataStorage storage = DataStorage.getInstance();
+        try (MulticastDataReader reader = new MulticastDataReader(group, 0, loopback);
+                DatagramChannel sender = DatagramChannel.open(StandardProtocolFamily.INET)) {
+            sender.setOption(StandardSocketOptions.IP_MULTICAST_IF, loopback);
+            InetSocketAddress target = new InetSocketAddress(group, reader.getPort());
+            StorageAwait.startReader(reader, storage);
+
+            // Joined while 5 was on its way, and 4 overtaken by it; 4 was never missed
+            for (long sequence : new long[] {5, 4}) {
+                sender.send(datagram(43L, sequence, 9303, 1000 + sequence, SignalType.SATURATION.code()), target);
+            }
+
+            StorageAwait.awaitRecords(storage, 9303, 2);
+            MulticastDataReader.SourceStats source = reader.getSources().iterator().next();
+            assertEquals(2, source.getReceived());
+            assertEquals(0, source.getLost());
+            assertEquals(0, reader.getLossRate());
+        }
+    }
+
+    private static ByteBuffer datagram(long sourceId, long sequence, int patientId, long timestamp,
+            int signalCode) {
+        ByteBuffer datagram = ByteBuffer.allocate(MulticastOutputStrategy.HEADER_BYTES
+                + MulticastOutputStrategy.RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        datagram.putInt(MulticastOutputStrategy.MAGIC).put(MulticastOutputStrategy.VERSION).put((byte) 0)
+                .putShort((short) 1).putLong(sourceId).putLong(sequence).putLong(timestamp);
+        datagram.putInt(patientId).putInt(signalCode).putInt(0).putDouble(97);
+        datagram.flip();
+        return datagram;
+    }
+}
@@ -0,0 +1,77 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.DataStorage;
+import com.data_management.RetentionPolicy;
+import com.data_management.SignalRegistry;
+import com.data_management.StorageBackend;
+import com.data_management.TimeSeries;
+
+import java.util.Random;
+
+public class OffHeapStorageTest {
+
+    @Test
+    public void testOffHeapSeriesMatchesHeapSeries() {
+        RetentionPolicy policy = new RetentionPolicy(Long.MAX_VALUE, 20_000);
+        TimeSeries heap = new TimeSeries(1, SignalRegistry.ECG, policy, StorageBackend.HEAP);
+        TimeSeries offHeap = new TimeSeries(1, SignalRegistry.ECG, policy, StorageBackend.OFF_HEAP);
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            // Mostly in order, with some late records
+            long timestamp = 1000L * i - (random.nextInt(10) == 0 ? random.nextInt(5000) : 0);
+            heap.add(timestamp, i);
+            offHeap.add(timestamp, i);
+        }
+
+        TimeSeries.View expected = heap.range(0, Long.MAX_VALUE);
+        TimeSeries.View actual = offHeap.range(0, Long.MAX_VALUE);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.timestamp(i), actual.timestamp(i));
+            assertEquals(expected.value(i), actual.value(i));
+        }
+    }
+
+    @Test
+    public void testCursorWalksRange() {
+        TimeSeries series = new TimeSeries(1, SignalRegistry.SATURATION, RetentionPolicy.UNLIMITED,
+                StorageBackend.OFF_HEAP);
+        for (int i = 0; i < 5000; i++) {
+            series.add(1000L * i, i);
+        }
+
+        TimeSeries.Cursor cursor = series.range(1_000_000, 1_999_999).cursor();
+        assertEquals(1000, cursor.remaining());
+        long expected = 1000;
+        while (cursor.next()) {
+            assertEquals(1000L * expected, cursor.timestamp());
+            assertEquals(expected, cursor.value());
+            expected++;
+        }
+        assertEquals(2000, expected);
+        assertFalse(cursor.next());
+        assertEquals(SignalRegistry.SATURATION, cursor.getSignalCode());
+    }
+
+    @Test
+    public void testStorageBackendAppliesToNewPatients() {
+        DataStorage storage = DataStorage.getInstance();
+        StorageBackend previous = storage.getStorageBackend();
+        storage.setStorageBackend(StorageBackend.OFF_HEAP);
+        try {
+            for (int i = 0; i < 3000; i++) {
+                storage.addPatientData(9810, i, "ECG", 1000L * i);
+            }
+        } finally {
+            storage.setStorageBackend(previous);
+        }
+
+        assertEquals(3000, storage.getRecords(9810, 0, Long.MAX_VALUE).size());
+        TimeSeries.View records = storage.getRecords(9810, SignalRegistry.ECG, 5000, 9000);
+        assertEquals(5, records.size());
+        assertEquals(7, records.get(2).getMeasurementValue());
+    }
+}
@@ -0,0 +1,81 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.generators.BloodLevelsDataGenerator;
+import com.cardio_generator.generators.BloodPressureDataGenerator;
+import com.cardio_generator.generators.ECGDataGenerator;
+import com.cardio_generator.generators.PatientDataGenerator;
+import com.cardio_generator.outputs.OutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PatientDataGeneratorTest {
+
+    private static final long SEED = 42L;
+    private static final long START = 1714376789000L;
+
+    @Test
+    public void testSameSeedGivesSameStreamWhateverTheShard() {
+        // Patient 7 lives in a shard of 1..10 in one run and in a shard of 5..8 in the other
+        List<String> wholeRange = generate(new ECGDataGenerator(1, 10, SEED), 7);
+        List<String> smallShard = generate(new ECGDataGenerator(5, 8, SEED), 7);
+        assertEquals(wholeRange, smallShard);
+    }
+
+    @Test
+    public void testPatientStreamsDoNotDependOnOtherPatients() {
+        BloodPressureDataGenerator interleaved = new BloodPressureDataGenerator(1, 2, SEED);
+        List<String> patientTwo = new ArrayList<>();
+        OutputStrategy collect = (patientId, timestamp, label, data) -> {
+            if (patientId == 2) {
+                patientTwo.add(timestamp + label + data);
+            }
+        };
+        for (int i = 0; i < 20; i++) {
+            interleaved.generate(1, START + i, collect);
+            interleaved.generate(2, START + i, collect);
+        }
+        assertEquals(generate(new BloodPressureDataGenerator(2, 2, SEED), 2), patientTwo);
+    }
+
+    @Test
+    public void testDifferentSeedsGiveDifferentStreams() {
+        assertNotEquals(generate(new ECGDataGenerator(1, 1, 1L), 1), generate(new ECGDataGenerator(1, 1, 2L), 1));
+    }
+
+    @Test
+    public void testBatchMatchesSinglePatientPath() {
+        BloodLevelsDataGenerator single = new BloodLevelsDataGenerator(1, 4, SEED);
+        List<String> expected = new ArrayList<>();
+        OutputStrategy collect = (patientId, timestamp, label, data) -> expected.add(patientId + label + data);
+        for (int patientId = 1; patientId <= 4; patientId++) {
+            single.generate(patientId, START, collect);
+        }
+
+        SampleBatch batch = new SampleBatch(2);
+        new BloodLevelsDataGenerator(1, 4, SEED).generateBatch(new int[] { 1, 2, 3, 4 }, 0, 4, START, batch);
+
+        assertEquals(12, batch.size());
+        assertEquals(SignalType.CHOLESTEROL, batch.signal(0));
+        assertEquals(START, batch.timestamp(11));
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            actual.add(batch.patientId(i) + batch.signal(i).label() + batch.signal(i).format(batch.value(i)));
+        }
+        assertEquals(expected, actual);
+    }
+
+    private List<String> generate(PatientDataGenerator generator, int patientId) {
+        List<String> samples = new ArrayList<>();
+        OutputStrategy collect = (id, timestamp, label, data) -> samples.add(timestamp + label + data);
+        for (int i = 0; i < 20; i++) {
+            generator.generate(patientId, START + i, collect);
+        }
+        return samples;
+    }
+}
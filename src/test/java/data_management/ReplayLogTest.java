@@ -0,0 +1,139 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.ReplayLogOutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SegmentLog;
+import com.cardio_generator.outputs.SignalType;
+import com.data_management.DataStorage;
+import com.data_management.LogReplayReader;
+import com.data_management.PatientRecord;
+import com.data_management.SignalRegistry;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+public class ReplayLogTest {
+
+    // Room for a little over 2000 records per segment
+    private static final int SEGMENT_BYTES = 64 + 32 + 2100 * SegmentLog.RECORD_BYTES;
+    private static final long START = 1_700_000_000_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testLateConsumerCatchesUpAcrossSegmentsThenFollowsLog() throws Exception {
+        ReplayLogOutputStrategy output = new ReplayLogOutputStrategy(directory.resolve("log").toString(), 0,
+                SEGMENT_BYTES);
+        append(output, 9401, 0, 5000);
+        assertTrue(SegmentLog.listSegments(directory.resolve("log")).size() >= 3);
+
+        DataStorage storage = DataStorage.getInstance();
+        LogReplayReader reader = new LogReplayReader("localhost", output.getServer().getPort(), 0);
+        Thread consumer = StorageAwait.startReader(reader, storage);
+        StorageAwait.awaitRecords(storage, 9401, 5000);
+        assertEquals(1, output.getServer().getConsumerCount());
+
+        append(output, 9401, 5000, 10);
+        List<PatientRecord> records = StorageAwait.awaitRecords(storage, 9401, 5010);
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(START + i * 1000L, records.get(i).getTimestamp());
+        }
+
+        // Registered codes that are not simulator signals are kept, codes nobody registered are skipped
+        output.output(9401, START, SignalRegistry.HEART_RATE, 72);
+        output.output(9401, START, 9999, 1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (reader.getNextOffset() < 5012 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        List<PatientRecord> heartRate = storage.getRecords(9401, SignalRegistry.HEART_RATE, 0, Long.MAX_VALUE);
+        assertEquals(1, heartRate.size());
+        assertEquals(72.0, heartRate.get(0).getMeasurementValue());
+        assertEquals(5011, storage.getRecords(9401, 0, Long.MAX_VALUE).size());
+
+        reader.close();
+        consumer.join(5000);
+        assertFalse(consumer.isAlive());
+        assertEquals(5012, reader.getNextOffset());
+        assertEquals(1, reader.getUnknownRecords());
+        output.close();
+    }
+
+    @Test
+    public void testTimeRequestStartsAtFirstRecordAtOrAfterTime() throws Exception {
+        ReplayLogOutputStrategy output = new ReplayLogOutputStrategy(directory.resolve("log").toString(), 0,
+                SEGMENT_BYTES);
+        append(output, 9402, 0, 3000);
+
+        DataStorage storage = DataStorage.getInstance();
+        LogReplayReader reader = LogReplayReader.fromTime("localhost", output.getServer().getPort(),
+                START + 2500 * 1000L - 1);
+        Thread consumer = StorageAwait.startReader(reader, storage);
+        List<PatientRecord> records = StorageAwait.awaitRecords(storage, 9402, 500);
+        assertEquals(START + 2500 * 1000L, records.get(0).getTimestamp());
+        reader.close();
+        consumer.join(5000);
+        assertEquals(3000, reader.getNextOffset());
+        output.close();
+    }
+
+    @Test
+    public void testRestartedConsumerResumesFromOffsetFile() throws Exception {
+        ReplayLogOutputStrategy output = new ReplayLogOutputStrategy(directory.resolve("log").toString(), 0,
+                SEGMENT_BYTES);
+        int port = output.getServer().getPort();
+        Path offsetFile = directory.resolve("consumer.offset");
+        append(output, 9403, 0, 100);
+
+        DataStorage storage = DataStorage.getInstance();
+        LogReplayReader reader = new LogReplayReader("localhost", port, offsetFile);
+        Thread consumer = StorageAwait.startReader(reader, storage);
+        StorageAwait.awaitRecords(storage, 9403, 100);
+        reader.close();
+        consumer.join(5000);
+        assertEquals("100", new String(Files.readAllBytes(offsetFile), StandardCharsets.US_ASCII));
+
+        // Written while the consumer was away
+        append(output, 9403, 100, 50);
+        reader = new LogReplayReader("localhost", port, offsetFile);
+        StorageAwait.startReader(reader, storage);
+        StorageAwait.awaitRecords(storage, 9403, 150);
+        Thread.sleep(200);
+        assertEquals(150, storage.getRecords(9403, 0, Long.MAX_VALUE).size());
+        reader.close();
+        output.close();
+    }
+
+    @Test
+    public void testOffsetFileErrorStopsTheReader() throws Exception {
+        ReplayLogOutputStrategy output = new ReplayLogOutputStrategy(directory.resolve("log").toString(), 0,
+                SEGMENT_BYTES);
+        append(output, 9404, 0, 10);
+        // The offset file cannot be written below a regular file
+        Path blocker = Files.createFile(directory.resolve("blocker"));
+        LogReplayReader reader = new LogReplayReader("localhost", output.getServer().getPort(),
+                blocker.resolve("consumer.offset"));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> assertThrows(IOException.class, () -> reader.readData(DataStorage.getInstance())));
+        reader.close();
+        output.close();
+    }
+
+    private static void append(ReplayLogOutputStrategy output, int patientId, int from, int count) {
+        SampleBatch batch = new SampleBatch(count);
+        for (int i = from; i < from + count; i++) {
+            batch.add(patientId, START + i * 1000L, SignalType.SATURATION, 90 + i % 10);
+        }
+        output.outputBatch(batch);
+    }
+}
@@ -0,0 +1,141 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.Aggregate;
+import com.data_management.DataStorage;
+import com.data_management.RetentionPolicy;
+import com.data_management.TimeSeries;
+
+import java.util.List;
+
+public class RetentionTest {
+
+    @Test
+    public void testOldRecordsAreDroppedByCountAndAge() {
+        TimeSeries byCount = new TimeSeries(1, "ECG", new RetentionPolicy(Long.MAX_VALUE, 5000));
+        TimeSeries byAge = new TimeSeries(1, "ECG", new RetentionPolicy(60_000, Integer.MAX_VALUE));
+        for (int i = 0; i < 100_000; i++) {
+            byCount.add(1000L * i, i);
+            byAge.add(1000L * i, i);
+        }
+
+        assertEquals(5000, byCount.size());
+        TimeSeries.View kept = byCount.range(0, Long.MAX_VALUE);
+        assertEquals(95_000, kept.value(0));
+        assertEquals(99_999, kept.value(kept.size() - 1));
+
+        // Records at most a minute older than the newest one
+        assertEquals(61, byAge.size());
+        assertEquals(1000L * 99_939, byAge.range(0, Long.MAX_VALUE).timestamp(0));
+        assertTrue(byAge.range(0, 1000L * 99_938).isEmpty());
+
+        // A late record past the maximum age is not kept
+        byAge.add(0, -1);
+        assertEquals(61, byAge.size());
+    }
+
+    @Test
+    public void testAggregatesUseRollupsAfterRawRecordsAreGone() {
+        RetentionPolicy policy = new RetentionPolicy(10 * 60_000L, Integer.MAX_VALUE)
+                .withRollup(60_000, 24 * 3_600_000L)
+                .withRollup(3_600_000, 30 * 24 * 3_600_000L);
+        TimeSeries series = new TimeSeries(1, "HeartRate", policy);
+        int hours = 48;
+        for (long t = 0; t < hours * 3_600_000L; t += 1000) {
+            // A sawtooth from 0 to 59 within every minute
+            series.add(t, (t / 1000) % 60);
+        }
+
+        // Raw records only cover the last ten minutes
+        assertTrue(series.size() <= 601 + TimeSeries.CHUNK_SIZE);
+
+        List<Aggregate> hourly = series.aggregate(0, hours * 3_600_000L - 1, 3_600_000);
+        assertEquals(hours, hourly.size());
+        for (int h = 0; h < hours; h++) {
+            Aggregate aggregate = hourly.get(h);
+            assertEquals(h * 3_600_000L, aggregate.getStartTime());
+            assertEquals(3600, aggregate.getCount());
+            assertEquals(0, aggregate.getMin());
+            assertEquals(59, aggregate.getMax());
+            assertEquals(29.5, aggregate.getMean(), 1e-9);
+        }
+
+        // The last minutes come from the minute rollup and the raw records
+        long lastHour = (hours - 1) * 3_600_000L;
+        List<Aggregate> minutes = series.aggregate(lastHour, lastHour + 3_600_000L - 1, 60_000);
+        assertEquals(60, minutes.size());
+        for (Aggregate aggregate : minutes) {
+            assertEquals(60, aggregate.getCount());
+            assertEquals(29.5, aggregate.getMean(), 1e-9);
+        }
+
+        // A resolution no rollup divides is computed from the raw records
+        List<Aggregate> tenSeconds = series.aggregate(lastHour + 3_540_000L, lastHour + 3_600_000L - 1, 10_000);
+        assertEquals(6, tenSeconds.size());
+        assertEquals(50, tenSeconds.get(5).getMin());
+        assertEquals(59, tenSeconds.get(5).getMax());
+    }
+
+    @Test
+    public void testLateRecordsUpdateRollups() {
+        TimeSeries series = new TimeSeries(1, "Saturation",
+                RetentionPolicy.UNLIMITED.withRollup(60_000, 3_600_000));
+        series.add(0, 95);
+        series.add(120_000, 97);
+        series.add(180_000, 98);
+        // Late records for a closed minute and for a minute that had no records
+        series.add(30_000, 91);
+        series.add(90_000, 93);
+
+        List<Aggregate> minutes = series.aggregate(0, 179_999, 60_000);
+        assertEquals(3, minutes.size());
+        assertEquals(2, minutes.get(0).getCount());
+        assertEquals(91, minutes.get(0).getMin());
+        assertEquals(95, minutes.get(0).getMax());
+        assertEquals(60_000, minutes.get(1).getStartTime());
+        assertEquals(93, minutes.get(1).getMean());
+        assertEquals(97, minutes.get(2).getMean());
+    }
+
+    @Test
+    public void testMaxAgeHoldsAcrossGapsAndForLateRecords() {
+        TimeSeries series = new TimeSeries(1, "Saturation", new RetentionPolicy(60_000, Integer.MAX_VALUE)
+                .withRollup(60_000, 3_600_000));
+        series.add(100_000, 95);
+        // Still pending when newer records push it past the maximum age
+        series.add(90_000, 94);
+        series.add(10 * 3_600_000L, 97);
+
+        TimeSeries.View records = series.range(0, Long.MAX_VALUE);
+        assertEquals(1, records.size());
+        assertEquals(10 * 3_600_000L, records.timestamp(0));
+        // The ring still has room for the old minute, but it is past the maximum age of the rollup
+        List<Aggregate> minutes = series.aggregate(0, 11 * 3_600_000L, 60_000);
+        assertEquals(1, minutes.size());
+        assertEquals(10 * 3_600_000L, minutes.get(0).getStartTime());
+
+        // A coarser rollup must not be kept for less time than a finer one
+        assertThrows(IllegalArgumentException.class, () -> RetentionPolicy.UNLIMITED
+                .withRollup(60_000, 3_600_000).withRollup(3_600_000, 1_800_000));
+    }
+
+    @Test
+    public void testStorageAppliesPolicyPerRecordType() {
+        DataStorage storage = DataStorage.getInstance();
+        storage.setRetentionPolicy("RetainedSignal", new RetentionPolicy(Long.MAX_VALUE, 2000)
+                .withRollup(1000, 3_600_000));
+        for (int i = 0; i < 10_000; i++) {
+            storage.addPatientData(9800, i, "RetainedSignal", 100L * i);
+            storage.addPatientData(9800, i, "UnboundedSignal", 100L * i);
+        }
+
+        assertEquals(2000, storage.getRecords(9800, "RetainedSignal", 0, Long.MAX_VALUE).size());
+        assertEquals(10_000, storage.getRecords(9800, "UnboundedSignal", 0, Long.MAX_VALUE).size());
+        List<Aggregate> seconds = storage.getAggregates(9800, "RetainedSignal", 0, 999_999, 1000);
+        assertEquals(1000, seconds.size());
+        assertEquals(10, seconds.get(0).getCount());
+        assertEquals(4.5, seconds.get(0).getMean(), 1e-9);
+    }
+}
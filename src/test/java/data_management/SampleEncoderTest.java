@@ -0,0 +1,63 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.SampleEncoder;
+import com.cardio_generator.outputs.SignalType;
+
+public class SampleEncoderTest {
+
+    @Test
+    public void testReadableLineMatchesTextFormat() {
+        SampleEncoder encoder = new SampleEncoder(16);
+        encoder.appendReadable(7, 1714376789050L, SignalType.SATURATION.code(), 97);
+        assertEquals(String.format("Patient ID: %d, Timestamp: %d, Label: %s, Data: %s%n",
+                7, 1714376789050L, "Saturation", "97.0%"), encoder.toString());
+    }
+
+    @Test
+    public void testCsvEncodesAlertStates() {
+        SampleEncoder encoder = new SampleEncoder(16);
+        encoder.appendCsv(3, 1000L, SignalType.ALERT.code(), 1);
+        encoder.appendByte(' ');
+        encoder.appendCsv(3, 2000L, SignalType.ALERT.code(), 0);
+        assertEquals("3,1000,Alert,triggered 3,2000,Alert,resolved", encoder.toString());
+    }
+
+    @Test
+    public void testDoublesRoundTripWithinNineDigits() {
+        double[] values = {0, -0.0, 120, -3.5, 0.123456789, 1e-4, 250.1, -0.987654321987, 9999999.9999999999, 1e9,
+                Double.NaN, Double.NEGATIVE_INFINITY};
+        for (double value : values) {
+            SampleEncoder encoder = new SampleEncoder(1);
+            encoder.appendDouble(value);
+            double parsed = Double.parseDouble(encoder.toString());
+            if (Double.isNaN(value)) {
+                assertTrue(Double.isNaN(parsed));
+            } else {
+                assertEquals(value, parsed, 1e-9, encoder.toString());
+            }
+        }
+    }
+
+    @Test
+    public void testWholeNumbersMatchDoubleToString() {
+        for (double value : new double[] {0, 1, 42, 120, -80, 9999999}) {
+            SampleEncoder encoder = new SampleEncoder(1);
+            encoder.appendDouble(value);
+            assertEquals(Double.toString(value), encoder.toString());
+        }
+    }
+
+    @Test
+    public void testClearReusesBuffer() {
+        SampleEncoder encoder = new SampleEncoder(64);
+        encoder.appendLong(Long.MIN_VALUE);
+        byte[] buffer = encoder.array();
+        encoder.clear();
+        encoder.appendLong(-12);
+        assertEquals("-12", encoder.toString());
+        assertSame(buffer, encoder.array());
+    }
+}
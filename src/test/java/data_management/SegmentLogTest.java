@@ -0,0 +1,125 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.cardio_generator.outputs.MappedSegmentOutputStrategy;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SegmentLog;
+import com.cardio_generator.outputs.SignalType;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.SegmentLogReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SegmentLogTest {
+
+    // Room for a little over 2000 records per segment
+    private static final int SEGMENT_BYTES = 64 + 32 + 2100 * SegmentLog.RECORD_BYTES;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRecordsRollOverSegmentsAndReadBackInOrder() throws IOException {
+        MappedSegmentOutputStrategy output = new MappedSegmentOutputStrategy(directory.toString(), SEGMENT_BYTES);
+        SampleBatch batch = new SampleBatch(1000);
+        for (int tick = 0; tick < 10; tick++) {
+            batch.clear();
+            for (int patientId = 1; patientId <= 1000; patientId++) {
+                batch.add(patientId, 1000L * tick, SignalType.ECG, patientId + tick / 10.0);
+            }
+            output.outputBatch(batch);
+        }
+        assertEquals(10_000, output.getLog().nextSequence());
+        output.close();
+        assertEquals(5, SegmentLog.listSegments(directory).size());
+
+        List<Long> timestamps = new ArrayList<>();
+        long count = new SegmentLogReader(directory.toString())
+                .scan((patientId, timestamp, signalCode, value) -> timestamps.add(timestamp));
+        assertEquals(10_000, count);
+        for (int i = 1; i < timestamps.size(); i++) {
+            assertTrue(timestamps.get(i - 1) <= timestamps.get(i));
+        }
+    }
+
+    @Test
+    public void testTimeRangeUsesIndexAndReadDataStoresLabels() throws IOException {
+        MappedSegmentOutputStrategy output = new MappedSegmentOutputStrategy(directory.toString(), SEGMENT_BYTES);
+        for (int second = 0; second < 5000; second++) {
+            output.output(424242, 1000L * second, SignalType.SATURATION.code(), 95 + second % 5);
+        }
+        output.output(424242, 5_000_000L, "Alert", "triggered");
+        output.close();
+
+        SegmentLogReader reader = new SegmentLogReader(directory.toString(), 100_000L, 199_000L);
+        assertEquals(100, reader.scan((patientId, timestamp, signalCode, value) -> {
+            assertEquals(SignalType.SATURATION.code(), signalCode);
+        }));
+
+        DataStorage storage = DataStorage.getInstance();
+        new SegmentLogReader(directory.toString(), 4_999_000L, Long.MAX_VALUE).readData(storage);
+        List<PatientRecord> records = storage.getRecords(424242, 0, Long.MAX_VALUE);
+        assertEquals(2, records.size());
+        assertEquals("Saturation", records.get(0).getRecordType());
+        assertEquals(99.0, records.get(0).getMeasurementValue());
+        assertEquals("Alert", records.get(1).getRecordType());
+        assertEquals(1.0, records.get(1).getMeasurementValue());
+    }
+
+    @Test
+    public void testReopenedLogContinuesSequence() throws IOException {
+        MappedSegmentOutputStrategy first = new MappedSegmentOutputStrategy(directory.toString(), SEGMENT_BYTES);
+        for (int i = 0; i < 3000; i++) {
+            first.output(1, i, SignalType.ECG.code(), i);
+        }
+        first.close();
+
+        MappedSegmentOutputStrategy second = new MappedSegmentOutputStrategy(directory.toString(), SEGMENT_BYTES);
+        assertEquals(3000, second.getLog().nextSequence());
+        second.output(1, 3000, SignalType.ECG.code(), 3000);
+        second.close();
+
+        List<Double> values = new ArrayList<>();
+        new SegmentLogReader(directory.toString()).scan((patientId, timestamp, signalCode, value) -> values.add(value));
+        assertEquals(3001, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i, values.get(i));
+        }
+    }
+
+    @Test
+    public void testReopenAfterUncleanShutdownKeepsSequenceDense() throws Exception {
+        SegmentLog first = new SegmentLog(directory, SEGMENT_BYTES);
+        for (int i = 0; i < 3000; i++) {
+            first.append(1, i, SignalType.ECG.code(), i);
+        }
+        // The writer is never closed, so the segment prepared for the next roll stays behind empty
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (SegmentLog.listSegments(directory).size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(3, SegmentLog.listSegments(directory).size());
+
+        SegmentLog second = new SegmentLog(directory, SEGMENT_BYTES);
+        assertEquals(3000, second.nextSequence());
+        second.append(1, 3000, SignalType.ECG.code(), 3000);
+        second.close();
+
+        List<Path> segments = SegmentLog.listSegments(directory);
+        assertEquals(2, segments.size());
+        assertTrue(SegmentLog.Segment.open(segments.get(0)).isSealed());
+        List<Double> values = new ArrayList<>();
+        new SegmentLogReader(directory.toString()).scan((patientId, timestamp, signalCode, value) -> values.add(value));
+        assertEquals(3001, values.size());
+        for (int i = 0; i < values.size(); i++) {
+            assertEquals(i, values.get(i));
+        }
+    }
+}
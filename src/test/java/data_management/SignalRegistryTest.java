@@ -0,0 +1,55 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.SignalType;
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.SignalRegistry;
+
+import java.util.List;
+
+public class SignalRegistryTest {
+
+    @Test
+    public void testSimulatorSignalsKeepTheirCodes() {
+        for (SignalType signal : SignalType.values()) {
+            assertEquals(signal.code(), SignalRegistry.lookup(signal.label()));
+            assertEquals(signal.label(), SignalRegistry.name(signal.code()));
+        }
+        assertEquals(SignalType.SATURATION.code(), SignalRegistry.SATURATION);
+        assertEquals(SignalType.ALERT.code(), SignalRegistry.ALERT);
+        assertEquals(SignalType.SATURATION, SignalType.fromCode(SignalRegistry.lookup("OxygenSaturation")));
+        assertNull(SignalType.fromLabel("OxygenSaturation"));
+    }
+
+    @Test
+    public void testAliasesShareOneSeries() {
+        Patient patient = new Patient(1);
+        patient.addRecord(97, "Saturation", 1000);
+        patient.addRecord(96, "BloodSaturation", 2000);
+        patient.addRecord(95, "OxygenSaturation", 3000);
+
+        assertEquals(List.of("Saturation"), patient.getRecordTypes());
+        assertEquals(3, patient.getRecords("BloodSaturation", 0, 5000).size());
+        assertEquals(3, patient.getRecords(SignalRegistry.SATURATION, 0, 5000).size());
+        PatientRecord record = patient.getRecords(0, 5000).get(1);
+        assertEquals(SignalRegistry.SATURATION, record.getSignalCode());
+        assertEquals("Saturation", record.getRecordType());
+    }
+
+    @Test
+    public void testUnknownNamesAreRegisteredOnFirstUse() {
+        assertEquals(SignalRegistry.UNKNOWN, SignalRegistry.lookup("RespiratoryRate"));
+
+        int code = SignalRegistry.code("RespiratoryRate");
+        assertTrue(code >= SignalRegistry.FIRST_DYNAMIC_CODE);
+        assertEquals(code, SignalRegistry.code("RespiratoryRate"));
+        assertEquals("RespiratoryRate", SignalRegistry.name(code));
+
+        SignalRegistry.alias("BreathingRate", code);
+        assertEquals(code, SignalRegistry.lookup("BreathingRate"));
+        assertThrows(IllegalArgumentException.class, () -> SignalRegistry.alias("BreathingRate", SignalRegistry.ECG));
+    }
+}
@@ -0,0 +1,59 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.data_management.DataReader;
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+
+/**
+ * Helpers shared by the tests of readers that fill the storage from a background thread.
+ */
+final class StorageAwait {
+    private StorageAwait() {
+    }
+
+    /**
+     * Runs {@code reader.readData(storage)} on a daemon thread.
+     *
+     * @param reader the reader to run
+     * @param storage the storage the reader fills
+     * @return the started thread
+     */
+    static Thread startReader(DataReader reader, DataStorage storage) {
+        Thread thread = new Thread(() -> {
+            try {
+                reader.readData(storage);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Waits up to five seconds for a patient to hold the given number of records and asserts that it does.
+     *
+     * @param storage the storage to poll
+     * @param patientId the patient to poll
+     * @param count the number of records expected
+     * @return the patient's records
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static List<PatientRecord> awaitRecords(DataStorage storage, int patientId, int count)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        List<PatientRecord> records = storage.getRecords(patientId, 0, Long.MAX_VALUE);
+        while (records.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            records = storage.getRecords(patientId, 0, Long.MAX_VALUE);
+        }
+        assertEquals(count, records.size());
+        return records;
+    }
+}
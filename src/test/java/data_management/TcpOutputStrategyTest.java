@@ -0,0 +1,72 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
+import com.cardio_generator.outputs.TcpOutputStrategy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+public class TcpOutputStrategyTest {
+
+    @Test
+    public void testEveryClientReceivesEveryBatch() throws Exception {
+        TcpOutputStrategy output = new TcpOutputStrategy(0, 64, TcpOutputStrategy.OverflowPolicy.DROP_OLDEST);
+        try (Socket first = new Socket("localhost", output.getPort());
+                Socket second = new Socket("localhost", output.getPort())) {
+            awaitClients(output, 2);
+
+            SampleBatch batch = new SampleBatch(100);
+            for (int tick = 0; tick < 10; tick++) {
+                batch.clear();
+                for (int patientId = 1; patientId <= 100; patientId++) {
+                    batch.add(patientId, 1000L * tick, SignalType.SATURATION, 97);
+                }
+                output.outputBatch(batch);
+            }
+            output.output(7, 20_000L, SignalType.ALERT.code(), 1);
+
+            for (Socket client : new Socket[] {first, second}) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+                assertEquals("1,0,Saturation,97.0%", in.readLine());
+                for (int i = 1; i < 1000; i++) {
+                    assertNotNull(in.readLine());
+                }
+                assertEquals("7,20000,Alert,triggered", in.readLine());
+            }
+            assertEquals(0, output.getDroppedChunks());
+        } finally {
+            output.close();
+        }
+    }
+
+    @Test
+    public void testDisconnectedClientIsRemoved() throws Exception {
+        TcpOutputStrategy output = new TcpOutputStrategy(0, 4, TcpOutputStrategy.OverflowPolicy.DISCONNECT);
+        try {
+            Socket client = new Socket("localhost", output.getPort());
+            awaitClients(output, 1);
+            client.close();
+            awaitClients(output, 0);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void awaitClients(TcpOutputStrategy output, int count) throws InterruptedException, IOException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (output.getClientCount() != count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Expected " + count + " clients but found " + output.getClientCount());
+            }
+            Thread.sleep(10);
+        }
+    }
+}
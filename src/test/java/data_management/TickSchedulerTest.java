@@ -0,0 +1,107 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.scheduling.TickScheduler;
+import com.cardio_generator.scheduling.VirtualClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TickSchedulerTest {
+
+    private static final long START = 1714376789000L;
+
+    @Test
+    public void testVirtualTimeRunsPeriodicTasksOnExactTicks() throws InterruptedException {
+        TickScheduler scheduler = new TickScheduler(2, 100, 64, new VirtualClock(START, 0));
+        List<Long> fast = Collections.synchronizedList(new ArrayList<>());
+        List<Long> slow = Collections.synchronizedList(new ArrayList<>());
+        scheduler.schedule(fast::add, 0, 0, 1000);
+        scheduler.schedule(slow::add, 1, 2000, 60000);
+        scheduler.stopAt(START + 10 * 60 * 1000);
+
+        scheduler.start();
+        scheduler.awaitTermination();
+
+        // Ten simulated minutes: 601 one-second ticks and 10 one-minute ticks starting at +2s
+        assertEquals(601, fast.size());
+        assertEquals(10, slow.size());
+        for (int i = 0; i < fast.size(); i++) {
+            assertEquals(START + i * 1000L, fast.get(i).longValue());
+        }
+        assertEquals(START + 2000, slow.get(0).longValue());
+        assertEquals(START + 2000 + 9 * 60000, slow.get(9).longValue());
+    }
+
+    @Test
+    public void testPeriodLongerThanOneWheelRevolution() throws InterruptedException {
+        // 16 buckets of 100 ms cover 1.6 s, so a 5 s period has to survive several revolutions
+        TickScheduler scheduler = new TickScheduler(1, 100, 16, new VirtualClock(START, 0));
+        List<Long> runs = Collections.synchronizedList(new ArrayList<>());
+        scheduler.schedule(runs::add, 0, 0, 5000);
+        scheduler.stopAt(START + 20000);
+
+        scheduler.start();
+        scheduler.awaitTermination();
+
+        assertEquals(List.of(START, START + 5000, START + 10000, START + 15000, START + 20000), runs);
+    }
+
+    @Test
+    public void testTasksDueOnATickShareItsTimestamp() throws InterruptedException {
+        TickScheduler scheduler = new TickScheduler(2, 10, 8);
+        List<List<Long>> runs = new ArrayList<>();
+        AtomicInteger[] active = { new AtomicInteger(), new AtomicInteger() };
+        AtomicBoolean overlapped = new AtomicBoolean();
+        for (int i = 0; i < 6; i++) {
+            List<Long> taskRuns = Collections.synchronizedList(new ArrayList<>());
+            runs.add(taskRuns);
+            AtomicInteger lane = active[i % 2];
+            scheduler.schedule(tickTime -> {
+                if (lane.incrementAndGet() > 1) {
+                    overlapped.set(true);
+                }
+                taskRuns.add(tickTime);
+                lane.decrementAndGet();
+            }, i % 2, 0, 10);
+        }
+
+        scheduler.start();
+        Thread.sleep(200);
+        scheduler.stop();
+        scheduler.awaitTermination();
+
+        int ticks = runs.stream().mapToInt(List::size).min().getAsInt();
+        assertTrue(ticks >= 5, "Only " + ticks + " ticks ran");
+        for (int tick = 0; tick < ticks; tick++) {
+            for (List<Long> taskRuns : runs) {
+                assertEquals(runs.get(0).get(tick), taskRuns.get(tick));
+            }
+            if (tick > 0) {
+                assertTrue(runs.get(0).get(tick) > runs.get(0).get(tick - 1));
+            }
+        }
+        assertFalse(overlapped.get(), "Tasks on the same lane ran concurrently");
+
+        // Nothing runs after the scheduler has stopped, once the tick in progress has finished
+        Thread.sleep(20);
+        int total = runs.stream().mapToInt(List::size).sum();
+        Thread.sleep(50);
+        assertEquals(total, runs.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    public void testRejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TickScheduler(0, 10, 8));
+        assertThrows(IllegalArgumentException.class, () -> new TickScheduler(1, 0, 8));
+        TickScheduler scheduler = new TickScheduler(2, 10, 8);
+        assertThrows(IllegalArgumentException.class, () -> scheduler.schedule(tickTime -> { }, 2, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> scheduler.schedule(tickTime -> { }, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> scheduler.schedule(tickTime -> { }, 0, -1, 10));
+    }
+}
@@ -0,0 +1,77 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.data_management.Patient;
+import com.data_management.PatientRecord;
+import com.data_management.TimeSeries;
+
+import java.util.List;
+
+public class TimeSeriesTest {
+
+    @Test
+    public void testRangeSpansChunksAndIncludesBothEnds() {
+        TimeSeries series = new TimeSeries(7, "ECG");
+        int count = 3 * TimeSeries.CHUNK_SIZE + 100;
+        for (int i = 0; i < count; i++) {
+            series.add(1000L * i, i);
+        }
+        assertEquals(count, series.size());
+
+        TimeSeries.View view = series.range(1000L * (TimeSeries.CHUNK_SIZE - 2),
+                1000L * (2 * TimeSeries.CHUNK_SIZE + 1));
+        assertEquals(TimeSeries.CHUNK_SIZE + 4, view.size());
+        assertEquals(TimeSeries.CHUNK_SIZE - 2, view.value(0));
+        assertEquals(1000L * (2 * TimeSeries.CHUNK_SIZE + 1), view.timestamp(view.size() - 1));
+        PatientRecord record = view.get(2);
+        assertEquals(7, record.getPatientId());
+        assertEquals("ECG", record.getRecordType());
+        assertEquals(1000L * TimeSeries.CHUNK_SIZE, record.getTimestamp());
+
+        assertEquals(1, series.range(500, 1500).size());
+        assertTrue(series.range(-10, -1).isEmpty());
+        assertTrue(series.range(2000, 1000).isEmpty());
+        assertThrows(IndexOutOfBoundsException.class, () -> view.value(view.size()));
+    }
+
+    @Test
+    public void testLateRecordsAreMovedIntoTimestampOrder() {
+        TimeSeries series = new TimeSeries(7, "Saturation");
+        series.add(1000, 1);
+        series.add(3000, 3);
+        series.add(2000, 2);
+        series.add(3000, 4);
+        series.add(500, 0);
+
+        TimeSeries.View all = series.range(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(5, all.size());
+        double[] expected = { 0, 1, 2, 3, 4 };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], all.value(i));
+        }
+        assertEquals(2, series.range(3000, 3000).size());
+    }
+
+    @Test
+    public void testPatientMergesTypesInTimestampOrder() {
+        Patient patient = new Patient(8);
+        for (int i = 0; i < 10; i++) {
+            patient.addRecord(i, "ECG", 1000L * i);
+            if (i % 3 == 0) {
+                patient.addRecord(95, "Saturation", 1000L * i + 500);
+            }
+        }
+
+        List<PatientRecord> records = patient.getRecords(0, 4000);
+        assertEquals(7, records.size());
+        for (int i = 1; i < records.size(); i++) {
+            assertTrue(records.get(i - 1).getTimestamp() <= records.get(i).getTimestamp());
+        }
+        assertEquals("Saturation", records.get(1).getRecordType());
+        assertEquals(4, patient.getRecords("Saturation", 0, Long.MAX_VALUE).size());
+        assertTrue(patient.getRecords("HeartRate", 0, Long.MAX_VALUE).isEmpty());
+        assertEquals(List.of("ECG", "Saturation"), patient.getRecordTypes());
+    }
+}
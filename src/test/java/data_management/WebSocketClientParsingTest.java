@@ -0,0 +1,92 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.BinaryWireFormat;
+import com.cardio_generator.outputs.SignalType;
+import com.data_management.DataStorage;
+import com.data_management.SignalRegistry;
+import com.data_management.WebSocketClientImpl;
+import com.data_management.WebSocketClientImpl.TextFormat;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class WebSocketClientParsingTest {
+
+    private final DataStorage storage = DataStorage.getInstance();
+
+    @Test
+    public void testParsesSimulatorFrames() throws Exception {
+        WebSocketClientImpl client = new WebSocketClientImpl(new URI("ws://localhost:1"), storage);
+        client.onMessage("9980,1000,Saturation,97.0%\n9980,1000,ECG,0.5\r\n9980,2000,Saturation,96.5%\n"
+                + "9980,3000,Alert,triggered\n9980,4000,Alert,resolved");
+
+        assertEquals(97.0, storage.getRecords(9980, SignalRegistry.SATURATION, 1000, 1000).value(0));
+        assertEquals(96.5, storage.getRecords(9980, SignalRegistry.SATURATION, 2000, 2000).value(0));
+        assertEquals(0.5, storage.getRecords(9980, SignalRegistry.ECG, 0, 5000).value(0));
+        assertEquals(1, storage.getRecords(9980, SignalRegistry.ALERT, 3000, 3000).value(0));
+        assertEquals(0, storage.getRecords(9980, SignalRegistry.ALERT, 4000, 4000).value(0));
+    }
+
+    @Test
+    public void testTellsLayoutsApartAndSkipsMalformedLines() throws Exception {
+        WebSocketClientImpl client = new WebSocketClientImpl(new URI("ws://localhost:1"), storage);
+        client.onMessage("9981,120.5,SystolicPressure,1714376789050\n"
+                + "9981,80,DiastolicPressure,1714376789050\n"
+                + "9981,1714376789051,SystolicPressure,121\n"
+                + "9981,invalid,SystolicPressure,1714376789052\n"
+                + "9981,1714376789053,SystolicPressure\n"
+                + "9981,1714376789054,SystolicPressure,122");
+
+        assertEquals(3, storage.getRecords(9981, SignalRegistry.SYSTOLIC_PRESSURE, 0, Long.MAX_VALUE).size());
+        assertEquals(120.5, storage.getRecords(9981, SignalRegistry.SYSTOLIC_PRESSURE, 1714376789050L,
+                1714376789050L).value(0));
+        assertEquals(121, storage.getRecords(9981, SignalRegistry.SYSTOLIC_PRESSURE, 1714376789051L,
+                1714376789051L).value(0));
+        assertEquals(80, storage.getRecords(9981, SignalRegistry.DIASTOLIC_PRESSURE, 0, Long.MAX_VALUE).value(0));
+    }
+
+    @Test
+    public void testExplicitFormatDoesNotGuess() throws Exception {
+        WebSocketClientImpl client = new WebSocketClientImpl(new URI("ws://localhost:1"), storage, false, null,
+                TextFormat.SIMULATOR);
+        client.onMessage("9982,5,Cholesterol,1000");
+
+        assertEquals(1000, storage.getRecords(9982, SignalRegistry.CHOLESTEROL, 5, 5).value(0));
+    }
+
+    @Test
+    public void testNewRecordTypesFromServerAreRegistered() throws Exception {
+        WebSocketClientImpl client = new WebSocketClientImpl(new URI("ws://localhost:1"), storage);
+        client.onMessage("9983,1000,ParsingTestSignal,1.0\n9983,1000,HeartRate,72");
+
+        // Well within the limit of codes that untrusted names may take
+        int code = SignalRegistry.lookup("ParsingTestSignal");
+        assertTrue(code >= SignalRegistry.FIRST_DYNAMIC_CODE);
+        assertEquals(1, storage.getRecords(9983, code, 0, Long.MAX_VALUE).size());
+        assertEquals(72, storage.getRecords(9983, SignalRegistry.HEART_RATE, 0, Long.MAX_VALUE).value(0));
+    }
+
+    @Test
+    public void testRejectsRecordFramesThatCannotHoldTheirCount() throws Exception {
+        WebSocketClientImpl client = new WebSocketClientImpl(new URI("ws://localhost:1"), storage, true);
+        client.onMessage(BinaryWireFormat.dictionary());
+        ByteBuffer frame = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        BinaryWireFormat.startRecordFrame(frame, 1000);
+        BinaryWireFormat.putRecord(frame, 9984, SignalType.ECG.code(), 1000, 0.5);
+        BinaryWireFormat.putRecord(frame, 9984, SignalType.ECG.code(), 2000, 0.25);
+        // Claims three records but holds two
+        frame.putInt(BinaryWireFormat.COUNT_OFFSET, 3);
+        client.onMessage(frame.duplicate().flip());
+        assertEquals(0, storage.getRecords(9984, 0, Long.MAX_VALUE).size());
+
+        frame.putInt(BinaryWireFormat.COUNT_OFFSET, 2);
+        BinaryWireFormat.putRecord(frame, 9984, 999, 3000, 1);
+        client.onMessage(frame.duplicate().flip());
+        assertEquals(2, storage.getRecords(9984, 0, Long.MAX_VALUE).size());
+        assertEquals(1, client.getUnknownRecords());
+    }
+}
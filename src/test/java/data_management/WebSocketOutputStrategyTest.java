@@ -0,0 +1,215 @@
+package data_management;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.cardio_generator.outputs.AdaptiveDeflateExtension;
+import com.cardio_generator.outputs.BinaryWireFormat;
+import com.cardio_generator.outputs.SampleBatch;
+import com.cardio_generator.outputs.SignalType;
+import com.cardio_generator.outputs.Subscription;
+import com.cardio_generator.outputs.WebSocketOutputStrategy;
+
+import com.data_management.DataStorage;
+import com.data_management.PatientRecord;
+import com.data_management.WebSocketClientImpl;
+
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.TextFrame;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class WebSocketOutputStrategyTest {
+
+    @Test
+    public void testSubscriptionParsing() {
+        Subscription subscription = Subscription.parse("SUBSCRIBE patients=1,5-9;signals=ECG,Alert");
+        assertTrue(subscription.matches(7, SignalType.ECG.code()));
+        assertTrue(subscription.matches(1, SignalType.ALERT.code()));
+        assertFalse(subscription.matches(4, SignalType.ECG.code()));
+        assertFalse(subscription.matches(7, SignalType.SATURATION.code()));
+        assertEquals(subscription, Subscription.parse("subscribe signals=Alert,ECG;patients=5-9,1"));
+        assertSame(Subscription.ALL, Subscription.parse("SUBSCRIBE all"));
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("SUBSCRIBE signals=Pulse"));
+
+        // Wide ranges up to the largest ID are stored as ranges, and overlapping ones merge into equal subscriptions
+        Subscription wide = Subscription.parse("SUBSCRIBE patients=3-2147483647,0-1");
+        assertTrue(wide.matches(Integer.MAX_VALUE, SignalType.ECG.code()));
+        assertTrue(wide.matches(0, SignalType.ECG.code()));
+        assertFalse(wide.matches(2, SignalType.ECG.code()));
+        assertFalse(wide.matches(-1, SignalType.ECG.code()));
+        assertEquals(Subscription.parse("SUBSCRIBE patients=1-3,2-6,7"), Subscription.parse("SUBSCRIBE patients=1-7"));
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("SUBSCRIBE patients=0-2147483648"));
+        assertThrows(IllegalArgumentException.class, () -> Subscription.parse("SUBSCRIBE patients=9-5"));
+    }
+
+    @Test
+    public void testFramesAreCoalescedAndFiltered() throws Exception {
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(0, 1 << 20, 60_000);
+        Collector everything = new Collector(output.getPort());
+        Collector dashboard = new Collector(output.getPort());
+        try {
+            assertTrue(everything.connectBlocking(5, TimeUnit.SECONDS));
+            assertTrue(dashboard.connectBlocking(5, TimeUnit.SECONDS));
+            dashboard.send("SUBSCRIBE patients=2-3;signals=Saturation");
+            Thread.sleep(200);
+
+            SampleBatch batch = new SampleBatch(20);
+            for (int patientId = 1; patientId <= 5; patientId++) {
+                batch.add(patientId, 1000L, SignalType.SATURATION, 97);
+                batch.add(patientId, 1000L, SignalType.ECG, 0.5);
+            }
+            output.outputBatch(batch);
+            output.flush();
+
+            List<String> all = Arrays.asList(everything.frames.poll(5, TimeUnit.SECONDS).split("\n"));
+            assertEquals(10, all.size());
+            assertEquals("1,1000,Saturation,97.0%", all.get(0));
+            assertEquals("2,1000,Saturation,97.0%\n3,1000,Saturation,97.0%",
+                    dashboard.frames.poll(5, TimeUnit.SECONDS));
+            assertTrue(everything.frames.isEmpty());
+        } finally {
+            everything.closeBlocking();
+            dashboard.closeBlocking();
+            output.close();
+        }
+    }
+
+    @Test
+    public void testBinaryProtocolIsNegotiatedAndDecoded() throws Exception {
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(0, 1 << 20, 60_000);
+        WebSocketClientImpl binary = new WebSocketClientImpl(
+                new URI("ws://localhost:" + output.getPort()), DataStorage.getInstance(), true);
+        Collector text = new Collector(output.getPort());
+        try {
+            assertTrue(binary.connectBlocking(5, TimeUnit.SECONDS));
+            assertTrue(text.connectBlocking(5, TimeUnit.SECONDS));
+            assertTrue(binary.isBinary());
+            assertEquals(BinaryWireFormat.PROTOCOL, binary.getProtocol().getProvidedProtocol());
+            Thread.sleep(200);
+
+            SampleBatch batch = new SampleBatch(4);
+            batch.add(9120, 1_700_000_000_000L, SignalType.SATURATION, 97);
+            batch.add(9120, 1_700_000_000_250L, SignalType.ECG, 0.314565883);
+            output.outputBatch(batch);
+            output.output(9120, 1_700_000_000_500L, "Alert", "triggered");
+            output.flush();
+
+            assertEquals("9120,1700000000000,Saturation,97.0%\n9120,1700000000250,ECG,0.314565883\n"
+                    + "9120,1700000000500,Alert,triggered", text.frames.poll(5, TimeUnit.SECONDS));
+            List<PatientRecord> records = StorageAwait.awaitRecords(DataStorage.getInstance(), 9120, 3);
+            assertEquals("Saturation", records.get(0).getRecordType());
+            assertEquals(97.0, records.get(0).getMeasurementValue());
+            assertEquals(1_700_000_000_250L, records.get(1).getTimestamp());
+            assertEquals(0.314565883, records.get(1).getMeasurementValue());
+            assertEquals("Alert", records.get(2).getRecordType());
+            assertEquals(1.0, records.get(2).getMeasurementValue());
+        } finally {
+            binary.closeBlocking();
+            text.closeBlocking();
+            output.close();
+        }
+    }
+
+    @Test
+    public void testSmallAndIncompressibleFramesAreSentRaw() throws Exception {
+        AdaptiveDeflateExtension extension = new AdaptiveDeflateExtension(64, 1);
+        TextFrame small = textFrame("1,1000,ECG,0.5");
+        extension.encodeFrame(small);
+        assertFalse(small.isRSV1());
+
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            lines.append(i).append(",1000,Saturation,97.0%\n");
+        }
+        TextFrame large = textFrame(lines.toString());
+        extension.encodeFrame(large);
+        assertTrue(large.isRSV1());
+        assertTrue(large.getPayloadData().remaining() < lines.length() / 2);
+
+        AdaptiveDeflateExtension receiver = new AdaptiveDeflateExtension(64, 1);
+        receiver.decodeFrame(large);
+        receiver.decodeFrame(small);
+        assertEquals(lines.toString(), StandardCharsets.US_ASCII.decode(large.getPayloadData()).toString());
+        assertEquals("1,1000,ECG,0.5", StandardCharsets.US_ASCII.decode(small.getPayloadData()).toString());
+    }
+
+    @Test
+    public void testCompressionIsNegotiatedPerClient() throws Exception {
+        WebSocketOutputStrategy output = new WebSocketOutputStrategy(0, 1 << 20, 60_000,
+                new AdaptiveDeflateExtension(0, 1));
+        Collector compressed = new Collector(output.getPort(), new Draft_6455(new AdaptiveDeflateExtension()));
+        Collector compressedToo = new Collector(output.getPort(), new Draft_6455(new AdaptiveDeflateExtension()));
+        Collector plain = new Collector(output.getPort());
+        try {
+            assertTrue(compressed.connectBlocking(5, TimeUnit.SECONDS));
+            assertTrue(compressedToo.connectBlocking(5, TimeUnit.SECONDS));
+            assertTrue(plain.connectBlocking(5, TimeUnit.SECONDS));
+            Draft_6455 negotiated = (Draft_6455) compressed.getConnection().getDraft();
+            assertTrue(negotiated.getExtension() instanceof AdaptiveDeflateExtension);
+            Thread.sleep(200);
+
+            SampleBatch batch = new SampleBatch(200);
+            for (int patientId = 1; patientId <= 200; patientId++) {
+                batch.add(patientId, 1000L, SignalType.SATURATION, 97);
+            }
+            output.outputBatch(batch);
+            output.flush();
+
+            String expected = plain.frames.poll(5, TimeUnit.SECONDS);
+            assertEquals(200, expected.split("\n").length);
+            // The frame is deflated once and shared by both compressed clients
+            assertEquals(expected, compressed.frames.poll(5, TimeUnit.SECONDS));
+            assertEquals(expected, compressedToo.frames.poll(5, TimeUnit.SECONDS));
+        } finally {
+            compressed.closeBlocking();
+            compressedToo.closeBlocking();
+            plain.closeBlocking();
+            output.close();
+        }
+    }
+
+    private static TextFrame textFrame(String text) {
+        TextFrame frame = new TextFrame();
+        frame.setPayload(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)));
+        return frame;
+    }
+
+    private static class Collector extends WebSocketClient {
+        private final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+
+        Collector(int port) throws Exception {
+            super(new URI("ws://localhost:" + port));
+        }
+
+        Collector(int port, Draft_6455 draft) throws Exception {
+            super(new URI("ws://localhost:" + port), draft);
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+        }
+
+        @Override
+        public void onMessage(String message) {
+            frames.add(message);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(Exception ex) {
+        }
+    }
+}